@@ -0,0 +1,762 @@
+//			 MhwBench.java
+//
+// this class times the hot paths of morphogenesis and circuit evaluation,
+// so that the effect of an optimisation can be measured, by running the
+// same fixed workload before and after the change. the benchmarks are:
+//
+//	cellstep	MhwCell.step, one cell of a grown circuit per op
+//	mhwstep		MhwMatrix.step, growing from the initial state
+//	bindtf		TFCell.bindTF, on a cell populated with free TFs
+//	updatetfs	TFCell.updateTFs, ageing free, bound & morphogen TFs
+//	morphogen	TFResources.createMorphogen, spreading over the layout
+//	isequiv		LUTIncrFN.isEquiv, random LUTs & LUT FN expressions
+//	contentious	JBitsResources.isContentious, on the grown circuit
+//	activein	ActiveInputLEs.update, tracing the grown circuit
+//	evalcct		TestInToOutRecurse.evalCCT, on the grown circuit
+//
+// those that grow a circuit are run on each of the slim5x5, slim8x8 and
+// adder1 layouts (as would be used by runEHW for the slim:5x5, slim:8x8
+// and adder1 tests), using the fixture chromosomes from the Bench/fixtures
+// directory. these were decoded from the 4th chromosome of the GEPP/testfiles
+// population, with enhancers added (see Bench_README.txt), as otherwise
+// none of its genes would ever be expressed.
+//
+// each benchmark is warmed up, so that the JIT has compiled the code being
+// timed, and then run for a number of timed trials. before each trial, the
+// state it works on is reset, untimed, to exactly the same starting point
+// (growth is rewound using MhwMatrix's fork/rewind, TF cells are recreated
+// from the same seed), so every trial does the same work. a checksum of the
+// state after each trial is reported, which should be identical between
+// trials and between runs, otherwise the numbers aren't comparable.
+// timing is by System.currentTimeMillis, so there needs to be enough ops
+// per trial for a trial to take at least a few 100 ms.
+//
+// by default the FPGA is a blank PackedDevice configuration, written to a
+// temporary file, so that it doesn't need a bitstream or the JBits device
+// model (although the JBits classes are still needed for the Bits and
+// Value constants)
+//
+// 		written Oct 2026, agent
+//
+// this class also requires the local classes:
+// 			MhwMatrix, TFCell, TFResources, LUTIncrFN,
+// 			JBitsResources, PackedDevice, ActiveInputLEs,
+// 			TestInToOutRecurse, StringSplitter, LEcoord
+
+
+// for collection classes (eg ArrayList)
+import java.util.*;
+// for IO
+import java.io.*;
+// for checksumming the TFs
+import java.util.zip.*;
+// for formatting decimal numbers for output (like printf)
+import java.text.DecimalFormat;
+
+// for ConfigurationException
+import com.xilinx.JBits.Virtex.ConfigurationException;
+
+
+
+class MhwBench {
+
+	// benchmark names, and the default number of ops per trial
+	static final String[] BENCHMARKS={ "cellstep", "mhwstep", "bindtf",
+	  "updatetfs", "morphogen", "isequiv", "contentious", "activein",
+	  "evalcct" };
+	static final int[] DEFAULTOPS={ 50000, 500, 100000, 50000, 20000,
+	  200000, 1000000, 2000, 3000 };
+
+	static final int CELLSTEP=0;
+	static final int MHWSTEP=1;
+	static final int BINDTF=2;
+	static final int UPDATETFS=3;
+	static final int MORPHOGEN=4;
+	static final int ISEQUIV=5;
+	static final int CONTENTIOUS=6;
+	static final int ACTIVEIN=7;
+	static final int EVALCCT=8;
+
+	// the benchmarks that don't depend on the layout are only run once
+	static final boolean[] PERLAYOUT={ true, true, false, false, true,
+	  false, true, true, true };
+
+	// the layouts, on an XCV50, with inputs on the left and outputs on
+	// the right, as EHWLayout gives for the runEHW tests (with LE
+	// granularity). these are: name, min CLB, max CLB, input LEs, output
+	// LEs, fixture chromosome, and whether LEs share the OUT bus lines
+	static final String[][] LAYOUTS={
+	  { "slim5x5", "5,9", "9,13", "7,9,0,0", "7,13,1,1",
+	    "slim_pop4.txt", "false" },
+	  { "slim8x8", "4,8", "11,15", "7,8,0,0 7,8,1,1 8,8,0,0 8,8,1,1",
+	    "4,15,0,0 6,15,1,1 9,15,0,0 11,15,1,1", "slim_pop4.txt", "false" },
+	  { "adder1", "7,11", "8,12", "7,11,0,0 7,11,1,1 8,11,0,0",
+	    "7,12,0,0 8,12,1,1", "adder_pop4.txt", "true" }
+	};
+
+	// growth parameters, as used by TestInToOutRecurse
+	static final double NPOLY2GENE=0.3;
+	static final double POLYTHRESHOLD=0.8;
+	static final int TRANSCRIPTIONRATE=4;
+	static final int MGLIFESPAN=8;
+	static final int TFLIFESPAN=8;
+	static final int AGERATEFREE=3;
+	static final int AGERATEBOUND=5;
+	static final int MGPROPDELAY=1;
+	static final int VGRAN=1;
+
+	// benchmark settings
+	long seed=1;
+	int warmup=3;
+	int trials=10;
+	int opsOverride=0;		// 0 for each benchmark's default
+	int growsteps=20;		// growth before the grown state is kept
+	String devname="XCV50";
+	String bitfile=null;		// null to use a blank stand-in
+	String contentionfile="../JBitsRes/contentionInfo.txt";
+	String fixturedir="fixtures";
+	String chromfile=null;		// overrides the layout's fixture
+	String cytofile=null;
+	String tffile="../GEPP/testfiles/tftest.txt";
+	boolean csv=false;
+	boolean verbose=false;
+	boolean stats=false;		// grow with MhwStats enabled
+
+	// the current layout, and the circuit grown on it
+	String[] layout;
+	JBitsResources jbr;
+	MhwMatrix mhw;
+	MhwMatrix start;		// fork of mhw before any growth
+	MhwMatrix grown;		// and after growsteps iterations
+	ActiveInputLEs activeLEs;
+	TestInToOutRecurse tester;
+
+	// the TFs from tffile, as type, dist, seq
+	String[] tftype;
+	String[] tfdist;
+	String[] tfseq;
+	// the morphogens from these that have a full (8 digit) spread code
+	String[] mgspread;
+	String[] mgseq;
+
+	// the contentious settings from the contention file
+	String[] cbits;
+	String[] cvals;
+
+	// random LUTs and LUT FN expressions for isequiv
+	int[][] luts;
+	String[] exprns;
+
+	// the TF cell, and TF resources, that the TF benchmarks work on
+	TFCell tfcell;
+	TFResources tfres;
+
+	// the results of the benchmarks that only query
+	long isequivCount;
+	long contentiousCount;
+
+	DecimalFormat fmt=new DecimalFormat("0.000");
+
+
+
+public static void main(String[] args)
+{
+  String usage="Usage: MhwBench [-seed N] [-warmup N] [-trials N] [-ops N] [-grow N]\n"
+  +"		[-layout slim5x5|slim8x8|adder1] [-dev devname] [-bit bitfile]\n"
+  +"		[-contention file] [-fixtures dir] [-chrom dchromfile]\n"
+  +"		[-cyto cytofile] [-tfs tffile] [-stats] [-csv] [-v]\n"
+  +"		[benchmark ..]\n"
+  +"where benchmark is one of:";
+  for (int b=0; b<BENCHMARKS.length; b++) { usage+=" "+BENCHMARKS[b]; }
+
+  MhwBench bench=new MhwBench();
+  List layouts=new ArrayList();
+  boolean[] selected=new boolean[BENCHMARKS.length];
+  boolean any=false;
+
+  try {
+    for (int i=0; i<args.length; i++) {
+      if (args[i].equals("-seed")) {
+        bench.seed=Long.parseLong(args[++i]);
+      } else if (args[i].equals("-warmup")) {
+        bench.warmup=Integer.parseInt(args[++i]);
+      } else if (args[i].equals("-trials")) {
+        bench.trials=Integer.parseInt(args[++i]);
+      } else if (args[i].equals("-ops")) {
+        bench.opsOverride=Integer.parseInt(args[++i]);
+      } else if (args[i].equals("-grow")) {
+        bench.growsteps=Integer.parseInt(args[++i]);
+      } else if (args[i].equals("-layout")) {
+        layouts.add(findLayout(args[++i]));
+      } else if (args[i].equals("-dev")) {
+        bench.devname=args[++i];
+      } else if (args[i].equals("-bit")) {
+        bench.bitfile=args[++i];
+      } else if (args[i].equals("-contention")) {
+        bench.contentionfile=args[++i];
+      } else if (args[i].equals("-fixtures")) {
+        bench.fixturedir=args[++i];
+      } else if (args[i].equals("-chrom")) {
+        bench.chromfile=args[++i];
+      } else if (args[i].equals("-cyto")) {
+        bench.cytofile=args[++i];
+      } else if (args[i].equals("-tfs")) {
+        bench.tffile=args[++i];
+      } else if (args[i].equals("-stats")) {
+        bench.stats=true;
+      } else if (args[i].equals("-csv")) {
+        bench.csv=true;
+      } else if (args[i].equals("-v")) {
+        bench.verbose=true;
+      } else if (args[i].charAt(0)=='-') {
+        System.err.println(usage);
+        System.exit(1);
+      } else {
+        selected[findBenchmark(args[i])]=true;
+	any=true;
+      }
+    }
+  } catch (ArrayIndexOutOfBoundsException e) {
+    System.err.println(usage);
+    System.exit(1);
+  } catch (NumberFormatException e) {
+    System.err.println(usage);
+    System.exit(1);
+  }
+
+  if (bench.trials<1 || bench.warmup<0 || bench.opsOverride<0 || bench.growsteps<0) {
+    System.err.println("MhwBench: trials must be at least 1, and warmup, ops and grow can't be negative");
+    System.exit(1);
+  }
+
+  if (!any) { Arrays.fill(selected,true); }
+  if (layouts.size()==0) {
+    for (int l=0; l<LAYOUTS.length; l++) { layouts.add(LAYOUTS[l]); }
+  }
+
+  bench.run(selected,(String[][])layouts.toArray(new String[0][]));
+}
+
+
+static String[] findLayout(String name)
+{
+  for (int l=0; l<LAYOUTS.length; l++) {
+    if (LAYOUTS[l][0].equals(name)) { return LAYOUTS[l]; }
+  }
+  System.err.println("MhwBench: unknown layout ("+name+")");
+  System.exit(1);
+  return null;
+}
+
+
+static int findBenchmark(String name)
+{
+  for (int b=0; b<BENCHMARKS.length; b++) {
+    if (BENCHMARKS[b].equals(name)) { return b; }
+  }
+  System.err.println("MhwBench: unknown benchmark ("+name+")");
+  System.exit(1);
+  return -1;
+}
+
+
+
+// run the selected benchmarks, those that depend on the layout on each
+// of the given layouts, and the rest just once
+void run(boolean[] selected, String[][] layouts)
+{
+  boolean standin=(bitfile==null);
+  if (standin) { bitfile=createStandIn(devname); }
+
+  loadTFs(tffile);
+  loadContentious(contentionfile);
+  createLUTs();
+
+  printHeader(standin);
+
+  for (int b=0; b<BENCHMARKS.length; b++) {
+    if (selected[b] && !PERLAYOUT[b]) { time(b); }
+  }
+
+  for (int l=0; l<layouts.length; l++) {
+    layout=null;
+    for (int b=0; b<BENCHMARKS.length; b++) {
+      if (selected[b] && PERLAYOUT[b]) {
+	if (layout==null) { setupLayout(layouts[l]); }
+	time(b);
+      }
+    }
+  }
+
+  if (standin) { new File(bitfile).delete(); }
+}
+
+
+
+// time trials of a benchmark, after warming it up, and print the results
+void time(int b)
+{
+  int ops=(opsOverride>0) ? opsOverride : DEFAULTOPS[b];
+  long[] times=new long[trials];
+  long checksum=0;
+  boolean varies=false;
+  long t0,chk;
+
+  if (verbose) { System.err.println("warming up "+BENCHMARKS[b]+"..."); }
+  for (int w=0; w<warmup; w++) {
+    reset(b,ops);
+    op(b,ops);
+  }
+
+  for (int t=0; t<trials; t++) {
+    reset(b,ops);
+    t0=System.currentTimeMillis();
+    op(b,ops);
+    times[t]=System.currentTimeMillis()-t0;
+    chk=checksum(b);
+    if (t==0) {
+      checksum=chk;
+    } else if (chk!=checksum) {
+      varies=true;
+    }
+    if (verbose) { System.err.println(BENCHMARKS[b]+" trial "+t+": "+times[t]+" ms"); }
+  }
+
+  printResult(b,ops,times,checksum,varies);
+}
+
+
+
+// put the benchmark's state back to where each trial starts from
+void reset(int b, int ops)
+{
+  switch (b) {
+    case CELLSTEP:
+    case CONTENTIOUS:
+    case ACTIVEIN:
+    case EVALCCT:
+      mhw.rewind(grown);
+      break;
+    case MHWSTEP:
+      mhw.rewind(start);
+      break;
+    case BINDTF:
+      // enough free TFs that every bind can find one
+      tfcell=new TFCell(MGLIFESPAN,TFLIFESPAN,AGERATEFREE,AGERATEBOUND);
+      for (int i=0; i<=ops/tftype.length; i++) {
+	for (int t=0; t<tftype.length; t++) {
+	  tfcell.createTF(tfseq[t],tftype[t],tfdist[t],(long)i*10);
+	}
+      }
+      break;
+    case UPDATETFS:
+      // TFs live long enough that none die during the trial, and half
+      // are bound, as are those in a growing cell
+      long lifespan=(long)ops*AGERATEBOUND+1;
+      tfcell=new TFCell(lifespan,lifespan,AGERATEFREE,AGERATEBOUND);
+      for (int i=0; i<16; i++) {
+	for (int t=0; t<tftype.length; t++) {
+	  tfcell.createTF(tfseq[t],tftype[t],tfdist[t],(long)i*10);
+	  if ((i&1)==1) { tfcell.bindTF(tfdist[t],tfseq[t],(long)i*10); }
+	}
+      }
+      for (int m=0; m<mgseq.length; m++) {
+	tfcell.addMorphogen(ops+m,mgseq[m],mgspread[m],(long)m*10);
+      }
+      break;
+    case MORPHOGEN:
+      tfres=new TFResources(mhw.getCellRows(),mhw.getCellCols(),MGLIFESPAN,
+		TFLIFESPAN,AGERATEFREE,AGERATEBOUND,MGPROPDELAY,new Random(seed),false);
+      break;
+  }
+}
+
+
+
+// perform ops operations of the benchmark
+void op(int b, int ops)
+{
+  int rows,cols,n;
+  long sum=0;
+
+  switch (b) {
+    case CELLSTEP:
+      rows=mhw.getCellRows();
+      cols=mhw.getCellCols();
+      for (int i=0; i<ops; i++) {
+	n=i%(rows*cols);
+	mhw.step(n/cols,n%cols);
+      }
+      break;
+    case MHWSTEP:
+      mhw.step(ops);
+      break;
+    case BINDTF:
+      n=tftype.length;
+      for (int i=0; i<ops; i++) {
+	tfcell.bindTF(tfdist[i%n],tfseq[i%n],(long)(i/n)*10+5);
+      }
+      break;
+    case UPDATETFS:
+      for (int i=0; i<ops; i++) { tfcell.updateTFs(); }
+      break;
+    case MORPHOGEN:
+      rows=tfres.getRows();
+      cols=tfres.getCols();
+      n=mgseq.length;
+      for (int i=0; i<ops; i++) {
+	tfres.createMorphogen((i/n)%rows,(i/(n*rows))%cols,mgseq[i%n],mgspread[i%n],(long)i);
+      }
+      break;
+    case ISEQUIV:
+      for (int i=0; i<ops; i++) {
+	if (LUTIncrFN.isEquiv(luts[i&255],exprns[(i>>>8)&255])) { sum++; }
+      }
+      isequivCount=sum;
+      break;
+    case CONTENTIOUS:
+      int minrow=mhw.getMinCLBrow();
+      int mincol=mhw.getMinCLBcol();
+      rows=mhw.getMaxCLBrow()-minrow+1;
+      cols=mhw.getMaxCLBcol()-mincol+1;
+      n=cbits.length;
+      for (int i=0; i<ops; i++) {
+	if (jbr.isContentious(minrow+(i/n)%rows,mincol+(i/(n*rows))%cols,cbits[i%n],cvals[i%n])) {
+	  sum++;
+	}
+      }
+      contentiousCount=sum;
+      break;
+    case ACTIVEIN:
+      for (int i=0; i<ops; i++) { activeLEs.update(); }
+      break;
+    case EVALCCT:
+      for (int i=0; i<ops; i++) { tester.evalCCT(); }
+      break;
+  }
+}
+
+// a checksum of the benchmark's state after a trial
+long checksum(int b)
+{
+  long chk=0;
+
+  switch (b) {
+    case CELLSTEP:
+    case MHWSTEP:
+      chk=mhw.getCellStates().hashCode();
+      chk=chk*31+configChecksum();
+      break;
+    case BINDTF:
+    case UPDATETFS:
+      chk=tfcell.getState().hashCode();
+      break;
+    case MORPHOGEN:
+      // the cells' state strings get too long with all of the morphogens
+      CRC32 crc=new CRC32();
+      try {
+	DataOutputStream out=new DataOutputStream(new CheckedOutputStream(new ByteArrayOutputStream(),crc));
+	tfres.writeState(out);
+	out.close();
+      } catch (IOException e) {
+	System.err.println("MhwBench: can't checksum TFs: "+e);
+	System.exit(1);
+      }
+      chk=crc.getValue();
+      break;
+    case ISEQUIV:
+      chk=isequivCount;
+      break;
+    case CONTENTIOUS:
+      chk=contentiousCount;
+      break;
+    case ACTIVEIN:
+      for (int r=0; r<activeLEs.stateMatrix.length; r++) {
+	for (int c=0; c<activeLEs.stateMatrix[r].length; c++) {
+	  chk=chk*31+activeLEs.stateMatrix[r][c];
+	}
+      }
+      break;
+    case EVALCCT:
+      chk=tester.getStateMatrix().hashCode();
+      chk=chk*31+Double.doubleToLongBits(tester.getFitness());
+      break;
+  }
+
+  return chk;
+}
+
+
+
+// a checksum of the configuration of the layout's CLBs. the change count
+// can't be used for this, as it keeps counting when growth is rewound
+long configChecksum()
+{
+  int[][] tile=PackedDevice.tileBits();
+  DeviceConfig dev=jbr.getDevice();
+  long chk=0;
+  int[] bits;
+
+  try {
+    for (int r=mhw.getMinCLBrow(); r<=mhw.getMaxCLBrow(); r++) {
+      for (int c=mhw.getMinCLBcol(); c<=mhw.getMaxCLBcol(); c++) {
+	bits=dev.get(r,c,tile);
+	for (int i=0; i<bits.length; i++) { chk=chk*31+bits[i]; }
+      }
+    }
+  } catch (ConfigurationException ce) {
+    System.err.println("MhwBench: can't read configuration: "+ce);
+    System.exit(1);
+  }
+  return chk;
+}
+
+
+
+// create the FPGA for the layout, and grow the fixture chromosome on it,
+// keeping the initial and grown states to rewind to
+void setupLayout(String[] lay)
+{
+  layout=lay;
+  String dchrom=(chromfile!=null) ? chromfile : fixturedir+File.separator+lay[5];
+  String[] ins=StringSplitter.split(lay[3]," ");
+  String[] outs=StringSplitter.split(lay[4]," ");
+
+  if (verbose) { System.err.println("growing "+dchrom+" on layout "+lay[0]+"..."); }
+
+  jbr=new JBitsResources(devname,contentionfile,bitfile);
+  mhw=new MhwMatrix(seed,jbr,lay[1],lay[2],ins,outs,dchrom,cytofile,
+	  NPOLY2GENE,POLYTHRESHOLD,TRANSCRIPTIONRATE,MGLIFESPAN,TFLIFESPAN,
+	  AGERATEFREE,AGERATEBOUND,MGPROPDELAY,VGRAN,false);
+  // forks don't keep stats, but rewinding to them keeps mhw's cells
+  if (stats) { mhw.enableStats(); }
+  start=mhw.fork();
+  mhw.step(growsteps);
+  grown=mhw.fork();
+
+  activeLEs=createActiveInputLEs(ins,lay[1],lay[2]);
+  activeLEs.setIncremental(false);
+
+  tester=new TestInToOutRecurse(jbr,lay[1],lay[2],ins,outs,lay[6].equals("true"),true);
+  tester.setIncremental(false);
+}
+
+
+// the active input LEs are those that route the inputs into the left of
+// the region, with the rest of that column inactive, as is done by
+// TestFnInToOut for left to right layouts
+ActiveInputLEs createActiveInputLEs(String[] ins, String mincoord, String maxcoord)
+{
+  LEcoord[] activeinlocs=new LEcoord[ins.length];
+  for (int i=0; i<ins.length; i++) {
+    activeinlocs[i]=new LEcoord(ins[i]);
+    activeinlocs[i].col--;
+    activeinlocs[i].line=(activeinlocs[i].slice==0) ? 4 : 1;
+  }
+
+  LEcoord mncoord=new LEcoord(mincoord+",0,0");
+  LEcoord mxcoord=new LEcoord(maxcoord+",0,0");
+  mncoord.col=activeinlocs[0].col;
+
+  List inactivelist=new ArrayList();
+  LEcoord loc;
+  boolean active;
+  for (int r=mncoord.row; r<=mxcoord.row; r++) {
+    for (int s=0; s<2; s++) {
+      for (int l=0; l<2; l++) {
+	loc=new LEcoord(r,mncoord.col,s,l);
+	active=false;
+	for (int i=0; i<activeinlocs.length; i++) {
+	  if (activeinlocs[i].equals(loc)) { active=true; }
+	}
+	if (!active) { inactivelist.add(loc); }
+      }
+    }
+  }
+
+  return new ActiveInputLEs(jbr,mncoord,mxcoord,activeinlocs,
+	   (LEcoord[])inactivelist.toArray(new LEcoord[0]),false);
+}
+
+
+
+// write a blank configuration of the device to a temporary packed config
+// file, to stand in for a bitstream
+static String createStandIn(String devname)
+{
+  String file=null;
+  try {
+    File tmp=File.createTempFile("mhwbench",PackedDevice.FILEEXT);
+    tmp.deleteOnExit();
+    file=tmp.getPath();
+    new PackedDevice(devname).write(file);
+  } catch (ConfigurationException ce) {
+    System.err.println("MhwBench: can't create stand-in device: "+ce);
+    System.exit(1);
+  } catch (IOException e) {
+    System.err.println("MhwBench: can't write stand-in configuration: "+e);
+    System.exit(1);
+  }
+  return file;
+}
+
+
+
+// read the TFs, one per line as: type,dist,seq
+void loadTFs(String file)
+{
+  List lines=readLines(file);
+  List mgs=new ArrayList();
+  String[] fields;
+
+  tftype=new String[lines.size()];
+  tfdist=new String[lines.size()];
+  tfseq=new String[lines.size()];
+  for (int i=0; i<lines.size(); i++) {
+    fields=StringSplitter.split((String)lines.get(i),",");
+    if (fields.length!=3) {
+      System.err.println("MhwBench: invalid TF in "+file+" ("+lines.get(i)+")");
+      System.exit(1);
+    }
+    tftype[i]=fields[0];
+    tfdist[i]=fields[1];
+    tfseq[i]=fields[2];
+    if (tftype[i].charAt(0)=='m' && tfdist[i].length()>=8) { mgs.add(new Integer(i)); }
+  }
+
+  if (tftype.length==0 || mgs.size()==0) {
+    System.err.println("MhwBench: "+file+" needs TFs, including a morphogen with an 8 digit spread code");
+    System.exit(1);
+  }
+
+  mgspread=new String[mgs.size()];
+  mgseq=new String[mgs.size()];
+  for (int m=0; m<mgs.size(); m++) {
+    mgspread[m]=tfdist[((Integer)mgs.get(m)).intValue()];
+    mgseq[m]=tfseq[((Integer)mgs.get(m)).intValue()];
+  }
+}
+
+
+// the contentious settings are the lines of the contention file that
+// aren't comments or the (tab indented) competing resources
+void loadContentious(String file)
+{
+  List lines=readLines(file);
+  List bits=new ArrayList();
+  List vals=new ArrayList();
+  String line;
+  String[] fields;
+
+  for (int i=0; i<lines.size(); i++) {
+    line=(String)lines.get(i);
+    if (line.charAt(0)=='#' || Character.isWhitespace(line.charAt(0))) { continue; }
+    fields=StringSplitter.trimsplit(line,",");
+    if (fields.length==2) {
+      bits.add(fields[0]);
+      vals.add(fields[1]);
+    }
+  }
+
+  if (bits.size()==0) {
+    System.err.println("MhwBench: no contentious settings in "+file);
+    System.exit(1);
+  }
+
+  cbits=(String[])bits.toArray(new String[0]);
+  cvals=(String[])vals.toArray(new String[0]);
+}
+
+
+// random LUT contents and LUT FN expressions (setop,boolop,lines)
+void createLUTs()
+{
+  Random rnd=new Random(seed);
+  char[] lines=new char[4];
+
+  luts=new int[256][16];
+  exprns=new String[256];
+  for (int i=0; i<256; i++) {
+    for (int j=0; j<16; j++) { luts[i][j]=rnd.nextInt(2); }
+    for (int j=0; j<4; j++) { lines[j]="-01".charAt(rnd.nextInt(3)); }
+    exprns[i]=LUTIncrFN.SETOPS[rnd.nextInt(LUTIncrFN.SETOPS.length)]+","
+	     +LUTIncrFN.BOOLOPS[rnd.nextInt(LUTIncrFN.BOOLOPS.length)]+","
+	     +new String(lines);
+  }
+}
+
+
+// the non-blank lines of a file
+static List readLines(String file)
+{
+  List lines=new ArrayList();
+  String line;
+  try {
+    BufferedReader in=new BufferedReader(new FileReader(file));
+    while ((line=in.readLine())!=null) {
+      if (line.trim().length()>0) { lines.add(line); }
+    }
+    in.close();
+  } catch (IOException e) {
+    System.err.println("MhwBench: can't read "+file+": "+e);
+    System.exit(1);
+  }
+  return lines;
+}
+
+
+
+void printHeader(boolean standin)
+{
+  String dev=devname+" "+((standin) ? "(blank stand-in)" : bitfile);
+  if (csv) {
+    System.out.println("benchmark,layout,ops,trials,min_ms,median_ms,max_ms,us_per_op,checksum,varies");
+  } else {
+    System.out.println("# MhwBench: device "+dev+", seed "+seed+", "+warmup
+	+" warmup + "+trials+" timed trials, grown "+growsteps+" steps");
+    System.out.println(pad("benchmark",12)+pad("layout",9)+lpad("ops",8)
+	+lpad("min ms",9)+lpad("median ms",11)+lpad("max ms",9)
+	+lpad("us/op",12)+"  checksum");
+  }
+}
+
+
+void printResult(int b, int ops, long[] times, long checksum, boolean varies)
+{
+  long[] sorted=(long[])times.clone();
+  Arrays.sort(sorted);
+  long min=sorted[0];
+  long max=sorted[sorted.length-1];
+  double median=(sorted.length%2==1) ? sorted[sorted.length/2]
+	      : (sorted[sorted.length/2-1]+sorted[sorted.length/2])/2.0;
+  String perop=fmt.format(median*1000.0/ops);
+  String lay=(PERLAYOUT[b]) ? layout[0] : "-";
+  String chk=Long.toHexString(checksum);
+
+  if (csv) {
+    System.out.println(BENCHMARKS[b]+","+lay+","+ops+","+trials+","+min+","
+	+median+","+max+","+perop+","+chk+","+varies);
+  } else {
+    System.out.println(pad(BENCHMARKS[b],12)+pad(lay,9)+lpad(""+ops,8)
+	+lpad(""+min,9)+lpad(""+median,11)+lpad(""+max,9)+lpad(perop,12)
+	+"  "+chk+((varies) ? " (VARIES between trials!)" : ""));
+  }
+}
+
+
+static String pad(String s, int width)
+{
+  StringBuffer sb=new StringBuffer(s);
+  while (sb.length()<width) { sb.append(' '); }
+  return sb.toString();
+}
+
+static String lpad(String s, int width)
+{
+  StringBuffer sb=new StringBuffer();
+  while (sb.length()+s.length()<width) { sb.append(' '); }
+  return sb.append(s).toString();
+}
+
+
+}
@@ -35,6 +35,10 @@
 #	testing the encoded circuit.  Optionally, the bitstream of the
 #	fittest circuit may be kept.
 
+# for running or connecting to an evaluation server
+use IPC::Open2;
+use IO::Socket;
+
 ######### GLOBALS
 
 $GEPP="perl decodechrom.pl";
@@ -85,6 +89,8 @@ if ($#ARGV>-1) { printUsage(); exit(1); }
 #	INIOBS OUTIOBS INCLBLES OUTCLBLES NUMGROWTHSTEPS NUMTESTITER
 #	TRANSCRIBERATE POLYTOGENE POLYTHRESHOLD USETFBINDS CYTOFILE
 #	ANTIGENEBLOAT GENECEILING MGSEED
+# and optionally:
+#	EVALSERVER EVALWORKERS JAVADECODE FITCACHE FITCACHESIZE
 # (depreceated) #	SPLITCHROMALIGN SPLITCHROMMARKER
 
 
@@ -154,27 +160,79 @@ if ($TEST=~/TestInToOutRecurse/ && !($CONF2BITS=~/slim/)) {
   $TEST .= " -sharedouts";
 }
 
+# if EVALSERVER is set, then morphogenesis circuits are grown and tested by
+# a TestFnInToOut evaluation server, rather than running a new test (and
+# JVM) for each chromosome. if it is "pipe" then a server is started here
+# and used for all the chromosomes read in, otherwise it is host:port of an
+# already running server (started with TestFnInToOut -serverport port).
+# EVALWORKERS is the number of worker threads for a piped server to use. as
+# all the chromosomes are sent to the server before any of the replies are
+# read, it can evaluate them concurrently if it has more than one worker.
+# if JAVADECODE is "true" then the server decodes the chromosomes itself
+# (a piped server is started with -decode), instead of them being decoded
+# here by GEPP and CONV2JBITS, and written to temp files for the server.
+# if FITCACHE is set, then a piped server keeps the results of the circuits
+# it evaluates in this file (of up to FITCACHESIZE results), and reuses
+# them for chromosomes that decode to the same genes. this needs MGSEED to
+# be set, as only results grown from a given seed can be reused.
+# if the server is lost (eg it crashes) before it has replied to all the
+# requests, then it is restarted, and the requests without replies are sent
+# again. if it is lost again before replying to the same request, then we
+# die, rather than giving the chromosomes a fitness of 0.
+# only TestFnInToOut has an evaluation server mode, so EVALSERVER can't be
+# used when TEST is another test (eg TestInToOutRecurse)
+if ($EVALSERVER ne "" && $MG && !($TEST=~/^java\b.*\bTestFnInToOut\b/)) {
+  die("EVALSERVER can only be used with TEST as TestFnInToOut, not: $TEST\n");
+}
+$EVALSERVERUP=0;
+$JAVADECODE=($JAVADECODE eq "true" && $EVALSERVER ne "" && $MG);
+
 # read chromosomes in, calculate fitness, and print fitness out
 if ($VERBOSE) { print STDERR "reading in chromosome(s)...\n"; }
 
-while (<STDIN>) {
-  if ($LINECNT) {
-    ++$lineno;
-    print STDERR "$lineno: ";
+if ($EVALSERVER ne "" && $MG) {
+  # read all the chromosomes first, so that they can be sent to the server
+  # as a batch, and then output the fitnesses in the same order
+  while (<STDIN>) {
+    chop;
+    push(@batch,$_) if ($_);
   }
-  chop;
-  if ($_) {
-    $chrom=$_;
+  @fitnesses=calcFitnessBatch(@batch);
+  for ($i=0; $i<=$#batch; $i++) {
+    if ($LINECNT) {
+      ++$lineno;
+      print STDERR "$lineno: ";
+    }
     # output fitness (and '>' chromosome)
-    print calcFitness($chrom);
+    print $fitnesses[$i];
     if ($FULLOUT) {
-      print ">$chrom";
+      print ">$batch[$i]";
     }
     print "\n";
+    print STDERR "\n" if ($LINECNT || $VERBOSE);
+  }
+} else {
+  while (<STDIN>) {
+    if ($LINECNT) {
+      ++$lineno;
+      print STDERR "$lineno: ";
+    }
+    chop;
+    if ($_) {
+      $chrom=$_;
+      # output fitness (and '>' chromosome)
+      print calcFitness($chrom);
+      if ($FULLOUT) {
+        print ">$chrom";
+      }
+      print "\n";
+    }
+    print STDERR "\n" if ($LINECNT || $VERBOSE);
   }
-  print STDERR "\n" if ($LINECNT || $VERBOSE);
 }
 
+if ($EVALSERVERUP) { stopEvalServer(); }
+
 if ($VERBOSE) { print STDERR "finished...\n"; }
 
 ### end main()
@@ -185,13 +243,155 @@ if ($VERBOSE) { print STDERR "finished...\n"; }
 sub calcFitness {
 
   my ($chromosome) = @_;
-  my $fitness;
-  my ($tchromfile,$dchromfile,$cdchromfile,$buildcmd,$testcmd,$dcodecmd,$delcnt);
-  my ($splitcmd,$chr,$nchr,$i);
-  my ($fitres,$saveoption,$itsd,$atIter,$seed,$maxfitness,$maxfititer);
-  my ($meanbestceilgcnt);
-  my (@fitreslines,@chroms);
-  my ($c);
+  my ($tchromfile,$cdchromfile,$testcmd);
+  my ($fitres,$saveoption);
+
+  checkExit();
+
+  if ($JAVADECODE) {
+    $saveoption=($SAVEBEST eq "true") ? "-s $TESTBIT" : "";
+    $testcmd="$saveoption " . evalArgs("-c $chromosome");
+    if ($VERBOSE) { print STDERR "requesting decoding and evaluation of chromosome ..\n"; }
+    $fitres=evalRequest($testcmd);
+    if ($fitres=~/^nogenes/) {
+      if ($VERBOSE) { print STDERR "no genes, no test required - result automatically 0..\n"; }
+      return 0;
+    }
+    return finishFitness($chromosome,$fitres,"","",$TESTBIT,1);
+  }
+
+  ($tchromfile,$cdchromfile)=decodeChrom($chromosome,"");
+
+  # construct circuit from instructions in the decoded chromosome
+  # and then evaluate it
+  if ($STANDARDGA) {	# standard GA
+    $saveoption=($SAVEBEST eq "true") ? "-s $TESTBIT" : "";
+    $testcmd="$TEST $saveoption $LAYOUTBIT \"$INIOBS\" \"$OUTIOBS\" \"$INCLBLES\" \"$OUTCLBLES\" \"$MINCLB\" \"$MAXCLB\" $CONTENTIONFILE \"$cdchromfile\"";
+    if ($VERBOSE) { print STDERR "executing $testcmd ..\n"; }
+    $fitres=`$testcmd`;
+  } elsif ($MG) {	# morphogenesis
+    if (!-e $cdchromfile) { # there was no genes so no conv decoded chrom file
+      #$fitres="0.0 @ 0 : 0 ; 0\n"; # dummy result
+      if ($VERBOSE) { print STDERR "no genes, no test required - result automatically 0..\n"; }
+      if ($VERBOSE) { print STDERR "cleaning up temp chromosome file ($tchromfile).."; }
+      unlink $tchromfile;
+      if ($VERBOSE) { print STDERR "done.\n"; }
+      return 0;
+    } else { # chrom has genes - OK
+      $saveoption=($SAVEBEST eq "true") ? "-s $TESTBIT" : "";
+      if ($EVALSERVER ne "") {
+        $testcmd="$saveoption " . evalArgs($cdchromfile);
+        if ($VERBOSE) { print STDERR "requesting evaluation of $testcmd ..\n"; }
+        $fitres=evalRequest($testcmd);
+      } else {
+        $testcmd="$TEST $saveoption $LAYOUTBIT \"$INIOBS\" \"$OUTIOBS\" \"$INCLBLES\" \"$OUTCLBLES\" \"$MINCLB\" \"$MAXCLB\" $CONTENTIONFILE " . evalArgs($cdchromfile);
+        if ($VERBOSE) { print STDERR "executing $testcmd ..\n"; }
+        $fitres=`$testcmd`;
+      }
+    }
+  }
+  # depreceated
+#  else {	# non-developmental move-set instructions
+#    $cdchromfile="";
+#    for ($i=1; $i<=$nchr; $i++) {
+#      if (-e "$dchromfile\_$i.txt") { # just in case section was empty
+#        $cdchromfile=$cdchromfile . $dchromfile . "_$i.txt;";
+#      }
+#    }
+#    chop($cdchromfile);	# get rid of trailing semicolon
+#    $saveoption=($SAVEBEST eq "true") ? "-s $TESTBIT" : "";
+#    $testcmd="$TEST $saveoption $LAYOUTBIT \"$INIOBS\" \"$OUTIOBS\" \"$INCLBLES\" \"$OUTCLBLES\" \"$MINCLB\" \"$MAXCLB\" $CONTENTIONFILE \"$cdchromfile\"";
+#    if ($VERBOSE) { print STDERR "executing $testcmd ..\n"; }
+#    $fitres=`$testcmd`;
+#  }
+
+  finishFitness($chromosome,$fitres,$cdchromfile,$tchromfile,$TESTBIT,1);
+}
+
+
+
+# this calculates the fitness of all the (morphogenesis) chromosomes in the
+# batch using the evaluation server. all the requests are sent before any
+# replies are read, so that a server with multiple workers can evaluate
+# them concurrently. each chromosome is decoded to its own temp files, and
+# any bitstreams are saved to TESTBIT.i (where i is the chromosome's index
+# in the batch), as these can't be cleaned up until all replies are in.
+# returns the list of fitnesses, in the same order as the chromosomes
+sub calcFitnessBatch {
+
+  my (@batch) = @_;
+  my (@tchromfiles,@cdchromfiles,@testbits,@fitnesses);
+  my (@requests,@resent);
+  my ($i,$testcmd,$saveoption,$fitres);
+
+  checkExit();
+
+  for ($i=0; $i<=$#batch; $i++) {
+    $testbits[$i]="$TESTBIT.$i";
+    if ($JAVADECODE) {
+      $saveoption=($SAVEBEST eq "true") ? "-s $testbits[$i]" : "";
+      $testcmd="$saveoption " . evalArgs("-c $batch[$i]");
+      if ($VERBOSE) { print STDERR "requesting decoding and evaluation of chromosome $i ..\n"; }
+      if (!$EVALSERVERUP) { startEvalServer(); }
+      sendRequest($testcmd);
+      $requests[$i]=$testcmd;
+      next;
+    }
+    ($tchromfiles[$i],$cdchromfiles[$i])=decodeChrom($batch[$i],"_$i");
+    if (-e $cdchromfiles[$i]) {
+      $saveoption=($SAVEBEST eq "true") ? "-s $testbits[$i]" : "";
+      $testcmd="$saveoption " . evalArgs($cdchromfiles[$i]);
+      if ($VERBOSE) { print STDERR "requesting evaluation of $testcmd ..\n"; }
+      if (!$EVALSERVERUP) { startEvalServer(); }
+      sendRequest($testcmd);
+      $requests[$i]=$testcmd;
+    }
+  }
+
+  # the replies come back in the order the requests were sent
+  for ($i=0; $i<=$#batch; $i++) {
+    if ($JAVADECODE) {
+      $fitres=readBatchReply($i,\@requests,\@resent);
+      if ($fitres=~/^nogenes/) { # the server found no genes to grow
+        if ($VERBOSE) { print STDERR "no genes, no test required - result automatically 0..\n"; }
+        $fitnesses[$i]=0;
+      } else {
+        $fitnesses[$i]=finishFitness($batch[$i],$fitres,"","",$testbits[$i],0);
+      }
+    } elsif (!-e $cdchromfiles[$i]) { # there was no genes so no test done
+      if ($VERBOSE) { print STDERR "no genes, no test required - result automatically 0..\n"; }
+      unlink $tchromfiles[$i];
+      $fitnesses[$i]=0;
+    } else {
+      $fitres=readBatchReply($i,\@requests,\@resent);
+      $fitnesses[$i]=finishFitness($batch[$i],$fitres,$cdchromfiles[$i],$tchromfiles[$i],$testbits[$i],0);
+    }
+  }
+
+  # now that all the results are in, delete all but the best bitstream
+  if ($SAVEBEST eq "true") { cleanup(); }
+
+  @fitnesses;
+}
+
+
+
+# the (trailing) arguments to the test or evaluation server, that specify
+# the decoded chromosome and how it is to be grown and tested. for a server
+# that decodes the chromosome itself, this is given "-c chromosome" instead
+# of the decoded chromosome file
+sub evalArgs {
+  my ($cdchromfile) = @_;
+
+  "$cdchromfile $CYTOFILE $NUMTESTITER $NUMGROWTHSTEPS $TRANSCRIBERATE $POLYTOGENE $POLYTHRESHOLD $MGSEED";
+}
+
+
+
+# exits if a 100% solution has been found (and EXITONSUCCESS is set), or
+# if there has been no improvement for EXITONSTAGNATEGENS generations
+sub checkExit {
+  my ($maxfitness,$maxfititer);
 
   # check the records of the maximum fitness attained so far
   ($maxfitness,$maxfititer)=getMaxFitness();
@@ -219,20 +419,31 @@ sub calcFitness {
     print STDERR "\n-----------------------------------------------------------------------------\n\n";
     exit(2);
   }
+}
+
 
 
+# decode and convert the chromosome to JBits format. the tag is used to
+# give the temp files unique names, when more than one chromosome is being
+# decoded at a time. returns the temp chromosome file and decoded file names
+sub decodeChrom {
+  my ($chromosome,$tag) = @_;
+  my ($tchromfile,$dchromfile,$cdchromfile,$dcodecmd);
+  my ($chr,$nchr,$c);
+  my (@chroms);
+
   $CHROMSECTIONCNT="";		# used to pass info to store in fittest dets
 
   # save current chromosome to a temp file
   # this is just to help debugging when the system fails, so that the
   # chromosome that the system failed on is available
-  $tchromfile="$DATADIR/$PID" . "_tmp_chrom.txt";
+  $tchromfile="$DATADIR/$PID" . $tag . "_tmp_chrom.txt";
   open(TCFILE,">$tchromfile") || die "Unable to create $tchromfile";
   print TCFILE $chromosome . "\n";
   close(TCFILE);
 
   # decode and convert the chromosome to JBits format
-  $dchromfile="$DATADIR/$PID" . "_dc_chrom";
+  $dchromfile="$DATADIR/$PID" . $tag . "_dc_chrom";
   if ($MG) {
     $dcodecmd="$GEPP $GENECODE $CYTOFILE | $CONV2JBITS $CONF2BITS $dchromfile txt";
     push(@chroms,$chromosome);
@@ -273,44 +484,27 @@ sub calcFitness {
   close(DCHROM);
   if ($VERBOSE) { print STDERR "done.\n"; }
 
-  # construct circuit from instructions in the decoded chromosome
-  # and then evaluate it
-  if ($STANDARDGA) {	# standard GA
-    $cdchromfile=$dchromfile . "_1.txt"; # it is the only chrom
-    $saveoption=($SAVEBEST eq "true") ? "-s $TESTBIT" : "";
-    $testcmd="$TEST $saveoption $LAYOUTBIT \"$INIOBS\" \"$OUTIOBS\" \"$INCLBLES\" \"$OUTCLBLES\" \"$MINCLB\" \"$MAXCLB\" $CONTENTIONFILE \"$cdchromfile\"";
-    if ($VERBOSE) { print STDERR "executing $testcmd ..\n"; }
-    $fitres=`$testcmd`;
-  } elsif ($MG) {	# morphogenesis
-    $cdchromfile=$dchromfile . "_1.txt"; # it is the only chrom
-    if (!-e $cdchromfile) { # there was no genes so no conv decoded chrom file
-      #$fitres="0.0 @ 0 : 0 ; 0\n"; # dummy result
-      if ($VERBOSE) { print STDERR "no genes, no test required - result automatically 0..\n"; }
-      if ($VERBOSE) { print STDERR "cleaning up temp chromosome file ($tchromfile).."; }
-      unlink $tchromfile;
-      if ($VERBOSE) { print STDERR "done.\n"; }
-      return 0;
-    } else { # chrom has genes - OK
-      $saveoption=($SAVEBEST eq "true") ? "-s $TESTBIT" : "";
-      $testcmd="$TEST $saveoption $LAYOUTBIT \"$INIOBS\" \"$OUTIOBS\" \"$INCLBLES\" \"$OUTCLBLES\" \"$MINCLB\" \"$MAXCLB\" $CONTENTIONFILE $cdchromfile $CYTOFILE $NUMTESTITER $NUMGROWTHSTEPS $TRANSCRIBERATE $POLYTOGENE $POLYTHRESHOLD $MGSEED";
-      if ($VERBOSE) { print STDERR "executing $testcmd ..\n"; }
-      $fitres=`$testcmd`;
-    }
-  }
-  # depreceated
-#  else {	# non-developmental move-set instructions
-#    $cdchromfile="";
-#    for ($i=1; $i<=$nchr; $i++) {
-#      if (-e "$dchromfile\_$i.txt") { # just in case section was empty
-#        $cdchromfile=$cdchromfile . $dchromfile . "_$i.txt;";
-#      }
-#    }
-#    chop($cdchromfile);	# get rid of trailing semicolon
-#    $saveoption=($SAVEBEST eq "true") ? "-s $TESTBIT" : "";
-#    $testcmd="$TEST $saveoption $LAYOUTBIT \"$INIOBS\" \"$OUTIOBS\" \"$INCLBLES\" \"$OUTCLBLES\" \"$MINCLB\" \"$MAXCLB\" $CONTENTIONFILE \"$cdchromfile\"";
-#    if ($VERBOSE) { print STDERR "executing $testcmd ..\n"; }
-#    $fitres=`$testcmd`;
-#  }
+  # there is only the one decoded chromosome
+  $cdchromfile=$dchromfile . "_1.txt";
+
+  ($tchromfile,$cdchromfile);
+}
+
+
+
+# get the fitness from the result of the test, scaling it if needed to
+# limit gene bloat, update the best if it is, and remove the temp files.
+# testbit is the name the test saved its bitstreams to, and if docleanup is
+# set then all but the best bitstream are removed. returns the fitness
+sub finishFitness {
+  my ($chromosome,$fitres,$cdchromfile,$tchromfile,$testbit,$docleanup) = @_;
+  my ($fitness,$delcnt);
+  my ($itsd,$atIter,$seed,$maxfitness,$maxfititer);
+  my ($meanbestceilgcnt);
+  my (@fitreslines);
+
+  # the best may have been updated since the test was started
+  ($maxfitness,$maxfititer)=getMaxFitness();
 
   # using VirtexDS, we may get some lines to STDOUT (for eg when setting the
   # speed grade) that we don't want, but are unable (as far as I know) to
@@ -385,7 +579,7 @@ sub calcFitness {
   # and save best chromosome & possibly bitstream
 
   if ($fitness>$maxfitness) {
-    updateBest($chromosome,$fitness,$atIter,$seed,$maxfitness,$BESTGEN,$maxfititer,$BESTGENECNT,$PREVBEST);
+    updateBest($chromosome,$fitness,$atIter,$seed,$maxfitness,$BESTGEN,$maxfititer,$BESTGENECNT,$PREVBEST,$testbit);
     $BESTGEN=$GEN;
     $maxfitness=$fitness;
   } elsif ($ANTIGENEBLOAT eq "true" && $fitness <= $maxfitness && $fitness>0 &&
@@ -417,7 +611,7 @@ sub calcFitness {
   if ($VERBOSE) { print STDERR " deleted $delcnt files. done.\n"; }
 
   # we need to delete all but the best bitstreams
-  if ($SAVEBEST eq "true") { cleanup(); }
+  if ($SAVEBEST eq "true" && $docleanup) { cleanup(); }
 
   # return the fitness of this circuit
   $fitness;
@@ -425,6 +619,141 @@ sub calcFitness {
 
 
 
+# send an evaluation request to the server, starting or connecting to it
+# first if needed, and return its reply
+sub evalRequest {
+  my ($request) = @_;
+
+  if (!$EVALSERVERUP) { startEvalServer(); }
+
+  sendRequest($request);
+  readBatchReply(0,[$request],[]);
+}
+
+
+
+# read the reply to request i of a batch (of requests, all sent already).
+# if the server is lost before replying, then it is restarted, and request
+# i and all the requests after it are sent again, as none of them have been
+# replied to. resent marks the requests that have been sent again, so if
+# the server is lost a second time before replying to request i, then that
+# request is taken to be what is killing it, and we die
+sub readBatchReply {
+  my ($i,$requests,$resent) = @_;
+  my ($j,$reply);
+
+  while (1) {
+    $reply=readReply();
+    return $reply if ($EVALSERVERUP);
+
+    if ($$resent[$i]) {
+      die("Lost evaluation server again while evaluating: $$requests[$i]\n");
+    }
+    print STDERR "*** Warning at gen $GEN! lost evaluation server, restarting it and resending requests ***\n";
+    startEvalServer();
+    for ($j=$i; $j<=$#$requests; $j++) {
+      if (defined($$requests[$j])) {
+        sendRequest($$requests[$j]);
+        $$resent[$j]=1;
+      }
+    }
+  }
+}
+
+
+
+# the server must already be started. replies are read with readReply(),
+# in the same order as the requests were sent
+sub sendRequest {
+  my ($request) = @_;
+
+  print $EVALOUT "$request\n";
+}
+
+
+
+# read the reply to the next outstanding request. the server may also output
+# some lines from VirtexDS, so we skip everything up to the result (or error)
+sub readReply {
+  my ($reply);
+
+  # the server may have died while replying to an earlier request
+  if (!$EVALSERVERUP) { return ""; }
+
+  while (defined($reply=<$EVALIN>)) {
+    last if ($reply=~/^\d/ || $reply=~/^error/ || $reply=~/^nogenes/);
+  }
+
+  # if the server died, then the caller restarts it (see readBatchReply)
+  if (!defined($reply)) {
+    if ($VERBOSE) { print STDERR "lost connection to evaluation server..\n"; }
+    stopEvalServer();
+    $reply="";
+  }
+
+  $reply;
+}
+
+
+
+sub startEvalServer {
+  my ($servercmd,$sock,$host,$port);
+  my ($workersopt,$decodeopt,$cacheopt);
+
+  # a piped server can evaluate a batch of requests concurrently
+  $workersopt=($EVALWORKERS ne "" && $EVALWORKERS>1) ? "-workers $EVALWORKERS" : "";
+  # and decode the chromosomes, the same way as GEPP and CONV2JBITS do
+  $decodeopt="";
+  if ($JAVADECODE) {
+    $decodeopt="-decode $GENECODE $CONF2BITS";
+    if ($USETFBINDS eq "false") { $decodeopt .= " -notfbind"; }
+  }
+  # and reuse the results of chromosomes with the same genes
+  $cacheopt="";
+  if ($FITCACHE ne "") {
+    $cacheopt="-fitcache $FITCACHE";
+    if ($FITCACHESIZE ne "") { $cacheopt .= " -fitcachesize $FITCACHESIZE"; }
+  }
+
+  if ($EVALSERVER eq "pipe") {
+    $servercmd="$TEST -server $workersopt $decodeopt $cacheopt $LAYOUTBIT \"$INIOBS\" \"$OUTIOBS\" \"$INCLBLES\" \"$OUTCLBLES\" \"$MINCLB\" \"$MAXCLB\" $CONTENTIONFILE";
+    if ($VERBOSE) { print STDERR "starting evaluation server: $servercmd ..\n"; }
+    # if the server dies, we find out when reading its reply
+    $SIG{PIPE}='IGNORE';
+    $EVALIN=\*EVALIN;
+    $EVALOUT=\*EVALOUT;
+    $EVALPID=open2($EVALIN,$EVALOUT,$servercmd);
+  } else {
+    ($host,$port)=split(/:/,$EVALSERVER);
+    if ($VERBOSE) { print STDERR "connecting to evaluation server at $host:$port ..\n"; }
+    $sock=IO::Socket::INET->new(PeerAddr => $host, PeerPort => $port,
+    				Proto => 'tcp')
+	|| die("Unable to connect to evaluation server at $EVALSERVER");
+    $sock->autoflush(1);
+    $EVALIN=$EVALOUT=$sock;
+    $EVALPID=0;
+  }
+  $EVALSERVERUP=1;
+}
+
+
+
+# a piped server is shut down, while for a server on a socket, we just
+# close our connection to it, so that it is available for the next run
+sub stopEvalServer {
+  if ($EVALPID) {
+    print $EVALOUT "quit\n";
+    close($EVALOUT);
+    close($EVALIN);
+    waitpid($EVALPID,0);
+  } else {
+    close($EVALIN);
+  }
+  $EVALSERVERUP=0;
+}
+
+
+
 sub getMaxFitness {
   my ($max,$mitsd,$miter,$mseed);
   my ($bestscnt);
@@ -462,7 +791,7 @@ sub getMaxFitness {
 
 
 sub updateBest {
-  my ($chromosome,$fitness,$atIter,$seed,$prevbestfit,$prevbestgen,$prevmaxfititer,$prevbestgenecnt,$oldbestdetails) = @_;
+  my ($chromosome,$fitness,$atIter,$seed,$prevbestfit,$prevbestgen,$prevmaxfititer,$prevbestgenecnt,$oldbestdetails,$testbit) = @_;
   my ($bitfilename);
   my ($oldets);
 
@@ -502,7 +831,7 @@ sub updateBest {
   if ($SAVEBEST eq "true") {
   # generated test bitstreams will be test.bit[.iter#]
   # best bitstream should be named best.bit
-    $bitfilename=($atIter ne "") ? $TESTBIT.".".$atIter : $TESTBIT;
+    $bitfilename=($atIter ne "") ? $testbit.".".$atIter : $testbit;
     if ($VERBOSE) { print STDERR "keeping best bitstream ($bitfilename) .. "; }
 
     if (-e $BESTBIT) { unlink($BESTBIT); }
@@ -0,0 +1,1331 @@
+//			 ChromDecoder.java
+//
+// this class decodes chromosomes, in the same way as decodechrom.pl does,
+// but in java, without running any scripts or writing any temporary files.
+// this is done by parsing the chromosome into genes, promoters, enhancers
+// and repressors (as parsechrom.pl does), associating these with their
+// genes, decoding the genes (decodegenes.pl), finding the binding sites on
+// enhancers and repressors (findbindingsites.pl), and finding the TFs and
+// resources that bind to these sites (bindmatch.pl), using the genetic code
+// (see GeneticCode) for all the decoding.
+//
+// the output is the same as that of decodechrom.pl, lines of:
+//
+// 	geneno,gstart: feat,+/-offset,length: details
+//
+// except that the chromosome number isn't given at the start of the line,
+// as only a single chromosome is decoded. the main() of this class mimics
+// decodechrom.pl, reading chromosomes from stdin, and writing decoded lines
+// (with chromosome numbers) to stdout.
+//
+// the scripts' quirks are all kept, so that the output is identical, such
+// as a gene with an undefined codon ending the decoding of genes, and the
+// misplacing of decoded genes and binding sites when some are missing. the
+// only difference is where the scripts give results that depend on perl's
+// random ordering of hash keys: here TFs are taken in sorted order, and a
+// TF's list of source distances is sorted when duplicates are removed. so
+// the output (and so the chromosome) is always the same, whereas with the
+// scripts, it can (rarely) differ between runs.
+//
+// a ChromDecoder can be used by several threads at once, as decoding only
+// reads the decoder's settings, and the cytoplasmic TFs read from a file
+// are kept in a synchronized table.
+//
+// 		written Oct 2026, agent
+//
+// this class also requires the local classes:
+// 			GeneticCode, StringSplitter
+
+
+// for String's etc
+import java.lang.*;
+// for collection classes (eg ArrayList)
+import java.util.*;
+// for IO
+import java.io.*;
+
+
+class ChromDecoder {
+
+	// the default start and stop codons, and promoter, as in parsechrom.pl
+	static final String[] STARTCODONS={ "203" };
+	static final String[] STOPCODONS={ "022", "023", "032" };
+	static final String[] PROMOTERS={ "0202" };
+	static final int PMIN=3;	// shortest allowable promoter
+
+	// the symbols used to mark features on the chromosome
+	static final char PROMOTERSTART='p';
+	static final char PROMOTEREND='P';
+	static final char STARTCODON='<';
+	static final char STOPCODON='>';
+	static final char ENDOFCHROM='!';
+
+	// the distances from source that are tried for binding morphogens
+	static final String[] MDISTS={ "", "0", "1", "00", "01", "10", "11",
+	  "000", "001", "010", "011", "100", "101", "110", "111" };
+
+	GeneticCode code;
+	String[] startcodons;
+	String[] stopcodons;
+	String[] promoters;
+	int pbound=-1;		// bounds on promoter, enhancer and repressor
+	int ebound=-1;		// distance from the gene or promoter, -1 for
+	int rbound=-1;		// no bound
+	boolean notfbind=false;	// if true, don't check for TF binding
+
+	Hashtable cytocache;	// cyto file to the list of its TFs (seq,dist)
+
+
+
+ChromDecoder(String codefile)
+{
+  this(new GeneticCode(codefile));
+}
+
+
+ChromDecoder(GeneticCode code)
+{
+  this.code=code;
+  startcodons=STARTCODONS;
+  stopcodons=STOPCODONS;
+  promoters=PROMOTERS;
+  cytocache=new Hashtable();
+}
+
+
+public GeneticCode getGeneticCode() { return code; }
+
+
+public void setStartCodons(String[] codons) throws Exception
+{
+  if (!codesvalid(codons)) {
+    throw new Exception("bad start codon - codons must consist of 3 valid bases [0-3]!");
+  }
+  startcodons=codons;
+}
+
+public void setStopCodons(String[] codons) throws Exception
+{
+  if (!codesvalid(codons)) {
+    throw new Exception("bad stop codon - codons must consist of 3 valid bases [0-3]!");
+  }
+  stopcodons=codons;
+}
+
+public void setPromoters(String[] proms) throws Exception
+{
+  boolean valid=(proms.length>0);
+  for (int i=0; i<proms.length; i++) {
+    if (proms[i].length()<PMIN || !isBase4(proms[i])) { valid=false; }
+  }
+  if (!valid) {
+    throw new Exception("bad promoter - promoters must consist of at least "+PMIN+" valid bases [0-3]!");
+  }
+  promoters=proms;
+}
+
+// limits distance upstream of gene for promoter effect
+public void setPromoterBound(int bound) { pbound=bound; }
+
+// limits distance upstream of promoter for enhancer binding
+public void setEnhancerBound(int bound) { ebound=bound; }
+
+// limits distance downstream of promoter for repressor binding
+public void setRepressorBound(int bound) { rbound=bound; }
+
+public void setNoTFBind(boolean notfbind) { this.notfbind=notfbind; }
+
+
+static boolean codesvalid(String[] codes)
+{
+  if (codes.length<1) { return false; }
+  for (int i=0; i<codes.length; i++) {
+    if (codes[i].length()!=3 || !isBase4(codes[i])) { return false; }
+  }
+  return true;
+}
+
+
+static boolean isBase4(String str)
+{
+  if (str==null || str.length()==0) { return false; }
+  for (int i=0; i<str.length(); i++) {
+    if (str.charAt(i)<'0' || str.charAt(i)>'3') { return false; }
+  }
+  return true;
+}
+
+
+
+public static void main(String[] args)
+{
+  boolean notfbind=false;
+  String codefile=null;
+  String cytofile=null;
+  String[] proms=null;
+  String[] starts=null;
+  String[] stops=null;
+  int pb=-1;
+  int eb=-1;
+  int rb=-1;
+
+  int a=0;
+  if (a<args.length && args[a].equals("-notfbind")) { notfbind=true; a++; }
+  if (a<args.length && !args[a].startsWith("-")) {
+    codefile=args[a++];
+  } else {
+    printUsage();
+    System.exit(1);
+  }
+  if (a<args.length && !args[a].startsWith("-") && !isOptionArg(args[a])) {
+    cytofile=args[a++];
+  }
+  for (; a<args.length; a++) {
+    if (args[a].startsWith("p:") && proms==null) {
+      proms=StringSplitter.perlsplit(args[a].substring(2),",");
+    } else if (args[a].startsWith("s:") && starts==null) {
+      starts=StringSplitter.perlsplit(args[a].substring(2),",");
+    } else if (args[a].startsWith("e:") && stops==null) {
+      stops=StringSplitter.perlsplit(args[a].substring(2),",");
+    } else if (args[a].startsWith("pb=") && pb<0 && isBoundArg(args[a])) {
+      pb=(int)StringSplitter.perlnum(args[a].substring(3));
+    } else if (args[a].startsWith("eb=") && eb<0 && isBoundArg(args[a])) {
+      eb=(int)StringSplitter.perlnum(args[a].substring(3));
+    } else if (args[a].startsWith("rb=") && rb<0 && isBoundArg(args[a])) {
+      rb=(int)StringSplitter.perlnum(args[a].substring(3));
+    } else {
+      printUsage();
+      System.exit(1);
+    }
+  }
+
+  if (!(new File(codefile)).isFile()) {
+    System.err.println("Can't find genetic code file ("+codefile+")");
+    System.exit(1);
+  }
+
+  ChromDecoder decoder=new ChromDecoder(codefile);
+  try {
+    if (starts!=null && starts.length>0) { decoder.setStartCodons(starts); }
+    if (stops!=null && stops.length>0) { decoder.setStopCodons(stops); }
+    if (proms!=null && proms.length>0) { decoder.setPromoters(proms); }
+  } catch (Exception e) {
+    System.err.println(e.getMessage());
+    System.exit(1);
+  }
+  decoder.setPromoterBound(pb);
+  decoder.setEnhancerBound(eb);
+  decoder.setRepressorBound(rb);
+  decoder.setNoTFBind(notfbind);
+
+  try {
+    BufferedReader in=new BufferedReader(new InputStreamReader(System.in));
+    PrintWriter out=new PrintWriter(new BufferedWriter(new OutputStreamWriter(System.out)));
+    String line;
+    int cno=0;
+    while ((line=in.readLine())!=null) {
+      if (line.length()==0 || line.equals("0")) { continue; }
+      cno++;
+      String[] decoded=decoder.decode(line,cytofile);
+      for (int i=0; i<decoded.length; i++) {
+        out.println(cno+": "+decoded[i]);
+      }
+    }
+    out.close();
+  } catch (Exception e) {
+    System.err.println("ChromDecoder: "+e.getMessage());
+    System.exit(1);
+  }
+}
+
+
+// p:, s:, e:, pb=, eb=, or rb=
+static boolean isOptionArg(String arg)
+{
+  return ((arg.length()>1 && "pse".indexOf(arg.charAt(0))>-1 && arg.charAt(1)==':')
+	  || (arg.length()>2 && "per".indexOf(arg.charAt(0))>-1
+	      && arg.charAt(1)=='b' && arg.charAt(2)=='='));
+}
+
+
+// pb=, eb=, or rb= followed by a number
+static boolean isBoundArg(String arg)
+{
+  return (arg.length()>3 && arg.charAt(2)=='='
+	  && (arg.startsWith("pb") || arg.startsWith("eb") || arg.startsWith("rb"))
+	  && arg.charAt(3)>='0' && arg.charAt(3)<='9');
+}
+
+
+static void printUsage()
+{
+  System.err.println(
+  "  Synopsis:\n"+
+  "  java ChromDecoder [-notfbind] code-file [cyto-file] [p:promoter-list] [s:start-list] [e:stop-list] [pb=bound] [eb=bound] [rb=bound]\n"+
+  "  Args:\n"+
+  "      -notfbind	- don't check for TF binding,\n"+
+  "      code-file	- the genetic code file (eg VirtexGeneticCode.conf)\n"+
+  "      cyto-file	- file of cytoplasmic determinants, of which TFs are used\n"+
+  "      p:promoter-list	- comma separated list of promoter sequences\n"+
+  "      s:start-list	- comma separated list of start codons\n"+
+  "      e:stop-list	- comma separated list of stop codons\n"+
+  "      pb=bound	- limits distance upstream of gene for promoter effect\n"+
+  "      eb=bound	- limits distance upstream of promoter for enhancer binding\n"+
+  "      rb=bound	- limits distance downstream of promoter for repressor binding\n"+
+  "  Inputs: (stdin)\n"+
+  "  		- lines of chromosomes in base 4\n"+
+  "  Outputs: (stdout)\n"+
+  "  		- lines of: chromno: geneno,gstart: feat,+/-offset,length: details\n"+
+  "  		  as for decodechrom.pl\n");
+}
+
+
+
+// decode a chromosome, giving the lines of decoded genes and their
+// regulatory features. cytofile is a file of cytoplasmic determinants,
+// whose TFs can bind to enhancers and repressors, or null for none
+public String[] decode(String chrom) throws Exception
+{
+  return decode(chrom,null);
+}
+
+
+public String[] decode(String chrom, String cytofile) throws Exception
+{
+  ArrayList chrominfo=extractChromRegions(chrom,parseChrom(chrom));
+  ArrayList geneinfo=assocByGene(chrominfo);
+  String[] decodedgenes=decodeGenes(geneinfo,chrominfo);
+  Hashtable enhbinds=getBindingSites(true,geneinfo,chrominfo);
+  Hashtable repbinds=getBindingSites(false,geneinfo,chrominfo);
+
+  Hashtable tfs=new Hashtable();
+  if (!notfbind) {
+    extractTFsFromGenes(decodedgenes,tfs);
+    if (cytofile!=null && cytofile.length()>0) {
+      addTFsFromCytoplasm(cytofile,tfs);
+    }
+  }
+  String[] tfkeys=bindableTFs(tfs);
+
+  Hashtable enhbindingelems=bindMatch(tfkeys,enhbinds);
+  Hashtable repbindingelems=bindMatch(tfkeys,repbinds);
+
+  ArrayList lines=new ArrayList();
+  int dg=0;			// number of deleted (empty) genes
+  for (int gi=0; gi<geneinfo.size(); gi++) {
+    int[] gn=(int[])geneinfo.get(gi);
+    ChromRegion gene=(ChromRegion)chrominfo.get(gn[0]);
+    String gdetails=(gi<decodedgenes.length) ? decodedgenes[gi] : "";
+    if (gdetails.length()==0) {
+      dg++;
+      continue;
+    }
+    int gno=gi-dg+1;
+    lines.add(geneDetails(gno,gene.start,"gene",gene.start,""+gene.len,gdetails));
+    if (gn[1]>-1) {
+      ChromRegion prom=(ChromRegion)chrominfo.get(gn[1]);
+      lines.add(geneDetails(gno,gene.start,"prom",prom.start,""+prom.len,prom.seq));
+    }
+    if (gn[2]>-1) {
+      addBindDetails(lines,gno,gene.start,"enhb",gi,(ChromRegion)chrominfo.get(gn[2]),enhbinds,enhbindingelems);
+    }
+    if (gn[3]>-1) {
+      addBindDetails(lines,gno,gene.start,"repb",gi,(ChromRegion)chrominfo.get(gn[3]),repbinds,repbindingelems);
+    }
+  }
+
+  String[] decoded=new String[lines.size()];
+  lines.toArray(decoded);
+  return decoded;
+}
+
+
+void addBindDetails(ArrayList lines, int gno, int gstart, String feat, int gi, ChromRegion reg, Hashtable binds, Hashtable bindingelems)
+{
+  String[] sites=StringSplitter.perlsplit(str(binds.get(""+gi)),";");
+  for (int i=1; i<=sites.length; i++) {
+    String[] site=StringSplitter.perlsplit(sites[i-1],",");
+    long bstart=reg.start+StringSplitter.perlnum(field(site,0));
+    String elems=(String)bindingelems.get(gi+"."+i);
+    if (elems==null || elems.length()==0) { continue; }
+    lines.add(geneDetails(gno,gstart,feat,bstart,field(site,1),elems));
+  }
+}
+
+
+static String geneDetails(int gno, long gstart, String feat, long featstart, String length, String details)
+{
+  long off=featstart-gstart;
+  String offset=(off==0) ? "0" : ((off>0) ? "+"+off : ""+off);
+  return gno+","+gstart+": "+feat+","+offset+","+length+": "+details;
+}
+
+
+// perl's undefined values become empty strings when used as strings
+static String str(Object o) { return (o==null) ? "" : (String)o; }
+
+static String field(String[] fields, int i) { return (i<fields.length) ? fields[i] : ""; }
+
+static String join(List list, String delim)
+{
+  StringBuffer sb=new StringBuffer();
+  for (int i=0; i<list.size(); i++) {
+    if (i>0) { sb.append(delim); }
+    if (list.get(i)!=null) { sb.append(list.get(i)); }
+  }
+  return sb.toString();
+}
+
+
+
+// parsechrom.pl: mark the locations of genes' start and stop codons, and
+// of promoters, on the chromosome. the marks are keyed by their location
+TreeMap parseChrom(String chrom)
+{
+  TreeMap chrinfo=new TreeMap();
+  int i=0;
+  int ge=-3;				// -3 + (codon length) = start
+  int gs;
+  int[] prom;
+
+  while (i>-1) {
+    gs=nextStartCodon(chrom,i);
+    if (gs>-1 && findStopCodon(chrom,gs+3)<0) { gs=-1; }
+    if (gs>-1) {
+      prom=upstreamPromoter(chrom,gs-1,ge+3);
+      if (prom[0]>-1) {
+        chrinfo.put(new Integer(prom[0]),new Character(PROMOTERSTART));
+        chrinfo.put(new Integer(prom[0]+prom[1]-1),new Character(PROMOTEREND));
+      }
+      ge=findStopCodon(chrom,gs+3);
+      chrinfo.put(new Integer(gs),new Character(STARTCODON));
+      chrinfo.put(new Integer(ge),new Character(STOPCODON));
+      i=ge+3;				// next search after gene ends
+    } else {				// no gene found
+      prom=downstreamPromoter(chrom,i,chrom.length()-1);
+      if (prom[0]>-1) {
+        chrinfo.put(new Integer(prom[0]),new Character(PROMOTERSTART));
+        chrinfo.put(new Integer(prom[0]+prom[1]-1),new Character(PROMOTEREND));
+      }
+      i=-1;				// no more genes or promoters
+    }
+  }
+  chrinfo.put(new Integer(chrom.length()),new Character(ENDOFCHROM));
+  return chrinfo;
+}
+
+
+// returns the start and length of the closest promoter preceding i, that
+// doesn't start before backto, or -1 if none
+int[] upstreamPromoter(String chrom, int i, int backto)
+{
+  int prevpi=-1;
+  int prevlen=0;
+  for (int k=0; k<promoters.length; k++) {
+    int from=i-promoters[k].length()+1;
+    if (from>-1) {
+      int p=chrom.lastIndexOf(promoters[k],from);
+      if (p>=backto && p>prevpi) {
+        prevpi=p;
+        prevlen=promoters[k].length();
+      }
+    }
+  }
+  return new int[] { prevpi, prevlen };
+}
+
+
+// returns the start and length of the first promoter from i that ends by
+// upto, or -1 if none
+int[] downstreamPromoter(String chrom, int i, int upto)
+{
+  int nextpi=chrom.length();
+  int nextlen=0;
+  for (int k=0; k<promoters.length; k++) {
+    int p=chrom.indexOf(promoters[k],i);
+    if (p>=0 && p+promoters[k].length()-1<=upto && p<nextpi) {
+      nextpi=p;
+      nextlen=promoters[k].length();
+    }
+  }
+  if (nextpi==chrom.length()) { nextpi=-1; }
+  return new int[] { nextpi, nextlen };
+}
+
+
+int nextStartCodon(String chrom, int i)
+{
+  int nextsc=chrom.length();
+  for (int k=0; k<startcodons.length; k++) {
+    int s=chrom.indexOf(startcodons[k],i);
+    if (s<nextsc && s>=0) { nextsc=s; }
+  }
+  return (nextsc==chrom.length()) ? -1 : nextsc;
+}
+
+
+// returns the index of the first stop codon in frame from i, or -1
+int findStopCodon(String chrom, int i)
+{
+  int len=chrom.length();
+  while (i<len) {
+    if (isIn(chrom.substring(i,Math.min(i+3,len)),stopcodons)) { return i; }
+    i+=3;
+  }
+  return -1;
+}
+
+
+static boolean isIn(String str, String[] list)
+{
+  for (int i=0; i<list.length; i++) {
+    if (list[i]!=null && list[i].equals(str)) { return true; }
+  }
+  return false;
+}
+
+
+// break the chromosome into regions, at the marked locations, as
+// junk, gene, promoter, enhancer and repressor regions
+ArrayList extractChromRegions(String chrom, TreeMap chrinfo)
+{
+  int n=chrinfo.size();
+  int[] locs=new int[n];
+  char[] typs=new char[n];
+  Iterator it=chrinfo.keySet().iterator();
+  for (int k=0; k<n; k++) {
+    Integer loc=(Integer)it.next();
+    locs[k]=loc.intValue();
+    typs[k]=((Character)chrinfo.get(loc)).charValue();
+  }
+
+  ArrayList regions=new ArrayList();
+  char ptyp='g';			// to get leading junk region
+  int pidx=-3;				// -3 coz align on pretend codon
+  int pge=-3;				// previous gene's stop codon
+  int plen=0;
+  int i=0;
+  while (i<n) {
+    int idx=locs[i];
+    char typ=typs[i++];
+    if (typ==STARTCODON) {
+      int gs=idx;
+      int ge=locs[i++];
+      int clen=ge-gs+3;			// include start/stop codons
+      if (ptyp=='g') {			// no promoter for this gene
+        addRegion(regions,chrom,"junk",pge+3,gs-(pge+3));
+      }
+      addRegion(regions,chrom,"gene",gs,clen);
+      pge=ge;
+      ptyp='g';
+      pidx=ge;
+    } else if (typ==PROMOTERSTART) {
+      int gp=idx;
+      idx=locs[i++];			// promoter end
+      plen=idx-gp+1;
+      if (i<n && typs[i]==STARTCODON) {
+        int gs=locs[i];
+        addRegion(regions,chrom,"enhancer",pge+3,gp-(pge+3));
+        addRegion(regions,chrom,"promoter",gp,plen);
+        addRegion(regions,chrom,"repressor",gp+plen,gs-gp-plen);
+      } else {				// should only occur at end of chrom
+        addRegion(regions,chrom,"junk",pge+3,gp-(pge+3));
+        addRegion(regions,chrom,"promoter",gp,plen);
+      }
+      ptyp='p';
+      pidx=gp;
+    } else {				// end of chromosome
+      pidx+=(ptyp=='g') ? 3 : plen;	// move past last feature
+      addRegion(regions,chrom,"junk",pidx,idx-pidx);
+      ptyp=ENDOFCHROM;
+      pidx=idx;
+    }
+  }
+  return regions;
+}
+
+
+// regions of no length aren't kept
+static void addRegion(ArrayList regions, String chrom, String feat, int start, int len)
+{
+  if (len>0) {
+    regions.add(new ChromRegion(feat,start,len,chrom.substring(start,start+len)));
+  }
+}
+
+
+// associate promoters, enhancers and repressors with the gene that they
+// precede, giving, for each gene, the indexes of its gene, promoter,
+// enhancer and repressor regions (-1 if it lacks one)
+ArrayList assocByGene(ArrayList chrominfo)
+{
+  ArrayList geneinfo=new ArrayList();
+  int g,p,e,r,j,ploc;
+  g=p=e=r=j=ploc=-1;
+
+  for (int i=0; i<chrominfo.size(); i++) {
+    ChromRegion reg=(ChromRegion)chrominfo.get(i);
+    if (reg.feat.equals("junk")) {
+      g=p=e=r=-1; j=i;				// reset FSM
+    } else if (reg.feat.equals("promoter")) {
+      if (j<0) { p=i; ploc=reg.start; }		// if no preceding junk
+    } else if (reg.feat.equals("enhancer")) {
+      j=-1;
+      e=i;
+    } else if (reg.feat.equals("repressor")) {
+      j=-1;
+      r=i;
+    } else {					// gene
+      g=i;
+      if (p>-1 && pbound>-1 && reg.start-ploc>pbound) { p=e=r=-1; }
+      geneinfo.add(new int[] { g, p, e, r });
+      g=p=e=r=j=ploc=-1;
+    }
+  }
+  return geneinfo;
+}
+
+
+
+// decodegenes.pl: decode each gene's codons into resources, attributes and
+// settings. the result is a list of decoded genes, each being a semicolon
+// delimited list of elements of: offset,length,resource,attribute,settings
+//
+// as in decodechrom.pl, the decoded genes are listed in the order they're
+// decoded, and genes that decode to nothing are skipped (apart from the
+// first), so a gene can be given another gene's decoding. an undefined
+// codon stops any further genes from being decoded
+String[] decodeGenes(ArrayList geneinfo, ArrayList chrominfo)
+{
+  ArrayList decodedgenes=new ArrayList();
+  ArrayList decodedgn=new ArrayList();
+  int oldgenenum=1;
+
+  try {
+    for (int i=0; i<geneinfo.size(); i++) {
+      int[] gn=(int[])geneinfo.get(i);
+      ArrayList elems=decodeGene(((ChromRegion)chrominfo.get(gn[0])).seq);
+      for (int k=0; k<elems.size(); k++) {
+        if (i+1!=oldgenenum) {
+          decodedgenes.add(join(decodedgn,";"));
+          decodedgn.clear();
+          oldgenenum=i+1;
+        }
+        decodedgn.add(elems.get(k));
+      }
+    }
+  } catch (Exception e) {
+    // decodegenes.pl dies, leaving the genes decoded so far
+  }
+  if (decodedgn.size()>0) { decodedgenes.add(join(decodedgn,";")); }
+
+  String[] decoded=new String[decodedgenes.size()];
+  decodedgenes.toArray(decoded);
+  return decoded;
+}
+
+
+// decode a gene (including its start and stop codons), to a list of
+// elements of offset,length,resource,attribute,settings
+ArrayList decodeGene(String gene) throws Exception
+{
+  if (gene.length()%3!=0) {
+    throw new Exception("gene has trailing base(s).. should only be codons!");
+  }
+  String[] codons=getCodons(gene.substring(3,gene.length()-3));
+
+  ArrayList elems=new ArrayList();
+  int numcodons=codons.length;
+  int i=0;
+  while (i<numcodons) {
+    String[] entry=code.lookupGene(codons[i]);
+    if (entry==null) {
+      throw new Exception("undefined codon ("+codons[i]+") in genetic code!");
+    }
+    i++;
+    String resource=field(entry,0);
+    if (resource.equals("Undef") || resource.length()==0) { continue; }
+    int len=codingLength(entry,codons,i,1,1);	// includes stop marker
+    String[] settings=code.decode(resource,field(entry,1),slice(codons,i,len));
+    int ci=i-1;
+    int clen=len+1;
+    elems.add(((ci*3)+3)+","+(clen*3)+","+resattrset(resource,settings));
+    i+=len;
+  }
+  return elems;
+}
+
+
+// the length (in codons) of the resource starting at codon i, from its
+// genetic code table entry. for a variable length resource, this is up
+// to the first of its stop codons, found at least the minimum length
+// after i, plus atstop, or else to the end, plus nostop
+static int codingLength(String[] entry, String[] codons, int i, int atstop, int nostop) throws Exception
+{
+  String lenspec=field(entry,2);
+  int numcodons=codons.length;
+  int q=lenspec.indexOf('?');
+  if (q>-1 && isDigits(lenspec.substring(0,q))) {	// variable length
+    int minl=(q==0) ? 0 : Integer.parseInt(lenspec.substring(0,q));
+    String[] stops=new String[Math.max(entry.length-3,0)];
+    for (int k=3; k<entry.length; k++) { stops[k-3]=entry[k]; }
+    for (int j=i+minl; j<numcodons; j++) {
+      if (isIn(codons[j],stops)) { return j-i+atstop; }
+    }
+    return numcodons-i+nostop;
+  } else if (lenspec.length()>0 && isDigits(lenspec)) {	// fixed length
+    int len=Integer.parseInt(lenspec);
+    return (i+len>numcodons) ? numcodons-i : len;
+  }
+  throw new Exception("Error: Invalid length specification ("+lenspec+") for "+field(entry,0)+", "+field(entry,1));
+}
+
+
+static boolean isDigits(String str)
+{
+  for (int i=0; i<str.length(); i++) {
+    if (str.charAt(i)<'0' || str.charAt(i)>'9') { return false; }
+  }
+  return true;
+}
+
+
+// len codons from i, which may go past the end, giving nulls
+static String[] slice(String[] codons, int i, int len)
+{
+  String[] cs=new String[Math.max(len,0)];
+  for (int k=0; k<cs.length; k++) {
+    cs[k]=(i+k<codons.length) ? codons[i+k] : null;
+  }
+  return cs;
+}
+
+
+// resource,attribute,setting1,setting2,.. dropping empty settings
+static String resattrset(String resource, String[] attrsettings)
+{
+  StringBuffer sb=new StringBuffer(resource);
+  sb.append(',');
+  if (attrsettings.length>0 && attrsettings[0]!=null) { sb.append(attrsettings[0]); }
+  for (int k=1; k<attrsettings.length; k++) {
+    if (attrsettings[k]!=null && attrsettings[k].length()>0) {
+      sb.append(',').append(attrsettings[k]);
+    }
+  }
+  return sb.toString();
+}
+
+
+// split into codons, dropping any trailing bases
+static String[] getCodons(String str)
+{
+  String[] codons=new String[str.length()/3];
+  for (int i=0; i<codons.length; i++) {
+    codons[i]=str.substring(i*3,i*3+3);
+  }
+  return codons;
+}
+
+
+
+// the reverse of the inverse of a regulatory region, which is what is
+// scanned for binding
+static String reverseInvert(String region)
+{
+  StringBuffer sb=new StringBuffer(region.length());
+  for (int i=region.length()-1; i>=0; i--) {
+    char c=region.charAt(i);
+    switch (c) {
+      case '0': c='2'; break;
+      case '1': c='3'; break;
+      case '2': c='0'; break;
+      case '3': c='1'; break;
+    }
+    sb.append(c);
+  }
+  return sb.toString();
+}
+
+
+// drop every 3rd base
+static String skip3rdBase(String str)
+{
+  StringBuffer sb=new StringBuffer(str.length());
+  int i;
+  for (i=0; i+3<=str.length(); i+=3) { sb.append(str.substring(i,i+2)); }
+  sb.append(str.substring(i));
+  return sb.toString();
+}
+
+
+
+// findbindingsites.pl: find the binding sites on each of the genes'
+// enhancer (or repressor) regions, giving a table from gene index to a
+// semicolon delimited list of sites of: offset,length,sequence
+//
+// this keeps decodechrom.pl's handling of the sites, so the sites are
+// given to the wrong genes when regions shorter than 3 bases (which have
+// no sites) are skipped, and for all but the first region, only the last
+// site is kept
+Hashtable getBindingSites(boolean enhancers, ArrayList geneinfo, ArrayList chrominfo)
+{
+  int bound=(enhancers) ? ebound : rbound;
+  ArrayList regidxes=new ArrayList();
+  ArrayList regions=new ArrayList();
+  for (int i=0; i<geneinfo.size(); i++) {
+    int[] gn=(int[])geneinfo.get(i);
+    int ri=(enhancers) ? gn[2] : gn[3];
+    if (ri>-1) {
+      regions.add(((ChromRegion)chrominfo.get(ri)).seq);
+      regidxes.add(""+i);
+    }
+  }
+
+  Hashtable bindingsites=new Hashtable();
+  ArrayList regbindsites=new ArrayList();
+  String oldginfoidx=null;
+  int regnum=0;
+  try {
+    for (int r=0; r<regions.size(); r++) {
+      String regionstr=(String)regions.get(r);
+      String region=regionstr;
+      int boundoffset=0;
+      if (bound>0) {			// enhancer bound is upstream
+        if (enhancers) {
+          region=StringSplitter.perlsubstr(regionstr,-bound);
+          boundoffset=regionstr.length()-bound;
+        } else {
+          region=StringSplitter.perlsubstr(regionstr,0,bound);
+        }
+      }
+      region=reverseInvert(region);
+      int regionlen=region.length();
+      if (regionlen<3) { continue; }	// ignore regions less than 3 bases
+      regnum++;
+
+      ArrayList bindlist=new ArrayList();
+      for (int k=0; k<3; k++) {
+        String[] codons=getCodons(skip3rdBase(region.substring(k)));
+        ArrayList sites=findBindSites(codons);
+        for (int s=0; s<sites.size(); s++) {
+          int[] site=(int[])sites.get(s);
+          int idx1=site[0];
+          int idx2=idx1+site[1]-1;
+          int rvidx1=idx1*3;
+          rvidx1+=(rvidx1/2)+k;			// add skipped bases
+          int rvidx2=(idx2*3)+2;		// +2 as including end of codon
+          rvidx2+=(rvidx2/2)+k;
+          int bindidx1=regionlen-rvidx2-1;
+          int bindidx2=regionlen-rvidx1-1;
+          bindlist.add((bindidx1+boundoffset)+","+(bindidx2-bindidx1+1));
+        }
+      }
+
+      ArrayList sorted=sortBindSites(bindlist);
+      String ginfoidx=(String)regidxes.get(regnum-1);
+      for (int s=0; s<sorted.size(); s++) {
+        long[] site=(long[])sorted.get(s);
+        String seq=str(StringSplitter.perlsubstr(regionstr,site[0],site[1]));
+        if (regnum!=1) {
+          bindingsites.put(str(oldginfoidx),join(regbindsites,";"));
+          regbindsites.clear();
+        }
+        regbindsites.add(site[0]+","+site[1]+","+seq);
+        oldginfoidx=ginfoidx;
+      }
+    }
+  } catch (Exception e) {
+    // findbindingsites.pl dies, leaving the sites found so far
+  }
+  if (regbindsites.size()>0) { bindingsites.put(oldginfoidx,join(regbindsites,";")); }
+  return bindingsites;
+}
+
+
+// the binding sites on a region, as the codon index and length of each
+ArrayList findBindSites(String[] codons) throws Exception
+{
+  ArrayList sites=new ArrayList();
+  int i=0;
+  while (i<codons.length) {
+    String[] entry=code.lookupBind(codons[i]);
+    i++;
+    if (entry!=null && field(entry,0).equals("BindSite")) {
+      // the stop codon isn't included in the site
+      sites.add(new int[] { i, codingLength(entry,codons,i,0,0) });
+    }
+  }
+  return sites;
+}
+
+
+// sort the sites (offset,length) by location and length, remove sites at
+// the same location as the previous site, and then remove sites that
+// cover the next site. as in findbindingsites.pl, a site given a negative
+// offset or length (by a bound) isn't matched when extracting locations
+// and lengths, which puts the locations and lengths out of step
+ArrayList sortBindSites(ArrayList bindlist)
+{
+  final ArrayList locs0=extractAll(bindlist,true);
+  final ArrayList lens0=extractAll(bindlist,false);
+  ArrayList order=new ArrayList();
+  for (int i=0; i<bindlist.size(); i++) { order.add(new Integer(i)); }
+  Collections.sort(order,new BindSiteOrder(locs0,lens0));
+  ArrayList bindlocs=new ArrayList();
+  for (int i=0; i<order.size(); i++) {
+    bindlocs.add(bindlist.get(((Integer)order.get(i)).intValue()));
+  }
+
+  ArrayList locs=extractAll(bindlocs,true);
+  ArrayList lens=extractAll(bindlocs,false);
+  int i=0;
+  while (i<locs.size()-1) {
+    if (num(locs,i)==num(locs,i+1)) {		// remove following entry
+      locs=slice(locs,0,i,i+2,locs.size()-1);
+      lens=slice(lens,0,i,i+2,lens.size()-1);
+    } else {
+      i++;
+    }
+  }
+  i=0;
+  while (i<locs.size()-1) {
+    if (num(locs,i)+num(lens,i)>=num(locs,i+1)+num(lens,i+1)) { // covers next
+      locs=slice(locs,0,i-1,i+1,locs.size()-1);
+      lens=slice(lens,0,i-1,i+1,lens.size()-1);
+    } else {
+      i++;
+    }
+  }
+
+  ArrayList sites=new ArrayList();
+  for (i=0; i<locs.size(); i++) {
+    sites.add(new long[] { num(locs,i), num(lens,i) });
+  }
+  return sites;
+}
+
+
+// the locations (leading digits), or the lengths (the first digits
+// following a comma), of those sites that have them
+static ArrayList extractAll(ArrayList sites, boolean locations)
+{
+  ArrayList vals=new ArrayList();
+  for (int i=0; i<sites.size(); i++) {
+    String s=(String)sites.get(i);
+    int start=-1;
+    if (locations) {
+      if (s.length()>0 && Character.isDigit(s.charAt(0))) { start=0; }
+    } else {
+      for (int c=s.indexOf(','); c>-1 && start<0; c=s.indexOf(',',c+1)) {
+        if (c+1<s.length() && Character.isDigit(s.charAt(c+1))) { start=c+1; }
+      }
+    }
+    if (start>-1) {
+      int end=start;
+      while (end<s.length() && Character.isDigit(s.charAt(end))) { end++; }
+      vals.add(s.substring(start,end));
+    }
+  }
+  return vals;
+}
+
+
+// perl's numeric value of list element i, which may not exist
+static long num(ArrayList list, int i)
+{
+  return (i<list.size()) ? StringSplitter.perlnum((String)list.get(i)) : 0;
+}
+
+
+// perl's slice list[a1..b1,a2..b2], with nulls for indexes past the end
+static ArrayList slice(ArrayList list, int a1, int b1, int a2, int b2)
+{
+  ArrayList s=new ArrayList();
+  for (int i=a1; i<=b1; i++) { s.add((i<list.size()) ? list.get(i) : null); }
+  for (int i=a2; i<=b2; i++) { s.add((i<list.size()) ? list.get(i) : null); }
+  return s;
+}
+
+
+
+// decodechrom.pl's extractTFsFromGenes: add the TFs produced by the genes,
+// to the table of TF sequence to comma delimited distances from source
+static void extractTFsFromGenes(String[] decodedgenes, Hashtable tfs)
+{
+  for (int g=0; g<decodedgenes.length; g++) {
+    String[] elems=StringSplitter.perlsplit(decodedgenes[g],";");
+    for (int i=0; i<elems.length; i++) {
+      String[] f=StringSplitter.perlsplit(elems[i],",");
+      String res=field(f,2);
+      String attr=field(f,3);
+      String dist=field(f,4);
+      String seq=field(f,5);
+      if (res.equals("TF") && seq.length()>0) {	// ensure its a valid TF
+        if (dist.equals("-")) { dist=""; }
+        if (attr.startsWith("M") || attr.startsWith("m")) { dist="?"; }
+        String d=(String)tfs.get(seq);
+        if (d!=null && d.length()>0 && !d.equals("0")) {
+          tfs.put(seq,d+","+dist);
+        } else {
+          tfs.put(seq,dist);
+        }
+      }
+    }
+  }
+}
+
+
+// add the TFs from the cytoplasmic determinants file, which are read once
+// and kept for subsequent decodes
+void addTFsFromCytoplasm(String cytofile, Hashtable tfs) throws IOException
+{
+  ArrayList cytotfs=(ArrayList)cytocache.get(cytofile);
+  if (cytotfs==null) {
+    cytotfs=readCytoTFs(cytofile);
+    cytocache.put(cytofile,cytotfs);
+  }
+  for (int i=0; i<cytotfs.size(); i++) {
+    String[] tf=(String[])cytotfs.get(i);
+    String d=(String)tfs.get(tf[0]);
+    tfs.put(tf[0],(d!=null) ? d+","+tf[1] : tf[1]);
+  }
+}
+
+
+// the TFs (sequence, distance) from lines of: row,col: TF=type,dist,seq
+static ArrayList readCytoTFs(String cytofile) throws IOException
+{
+  ArrayList cytotfs=new ArrayList();
+  BufferedReader in;
+  try {
+    in=new BufferedReader(new FileReader(cytofile));
+  } catch (IOException e) {
+    throw new IOException("Unable to read cytoplasm TFs from file "+cytofile);
+  }
+  String line;
+  while ((line=in.readLine())!=null) {
+    String trimmed=line.trim();
+    if (trimmed.length()==0 || trimmed.startsWith("#")) { continue; }
+    String[] f=StringSplitter.perlsplit(line,":");
+    String details=(f.length>1) ? lstrip(f[1]) : "";
+    String[] typedets=StringSplitter.perlsplit(details,"=");
+    if (field(typedets,0).equals("TF")) {
+      String[] tf=StringSplitter.perlsplit(field(typedets,1),",");
+      String tftype=field(tf,0);
+      String dist=field(tf,1);
+      if (tftype.startsWith("L") || tftype.startsWith("l")) { dist=""; }
+      cytotfs.add(new String[] { field(tf,2), dist });
+    }
+  }
+  in.close();
+  return cytotfs;
+}
+
+
+static String lstrip(String str)
+{
+  int i=0;
+  while (i<str.length() && StringSplitter.isperlspace(str.charAt(i))) { i++; }
+  return str.substring(i);
+}
+
+
+// the TFs that can bind, as sorted keys of: sequence,dist where dist is
+// empty for a local TF, ? for a morphogen, or the (binary) distance from
+// source of a cytoplasmic TF. duplicate distances are removed first
+static String[] bindableTFs(Hashtable tfs)
+{
+  TreeSet keys=new TreeSet();
+  Enumeration e=tfs.keys();
+  while (e.hasMoreElements()) {
+    String tf=(String)e.nextElement();
+    TreeSet dists=new TreeSet();
+    String[] ds=StringSplitter.perlsplit((String)tfs.get(tf),",");
+    for (int i=0; i<ds.length; i++) { dists.add(ds[i]); }
+    ds=StringSplitter.perlsplit(join(new ArrayList(dists),","),",");
+
+    ArrayList lines=new ArrayList();
+    if (ds.length==0) {
+      lines.add("Local,,"+tf);
+    } else {
+      for (int i=0; i<ds.length; i++) {
+        String tftype=(ds[i].length()==0) ? "Local"
+				: ((ds[i].equals("?")) ? "Morphogen" : "Cytoplasm");
+        lines.add(tftype+","+ds[i]+","+tf);
+      }
+    }
+
+    // as bindmatch.pl reads them
+    for (int i=0; i<lines.size(); i++) {
+      String[] f=StringSplitter.perlsplit((String)lines.get(i),",");
+      String type=lstrip(field(f,0));
+      String dist=lstrip(field(f,1));
+      String bindstr=lstrip(field(f,2));
+      if (isBase4(bindstr)) {
+        if (type.startsWith("l") || type.startsWith("L")) { dist=""; }
+        keys.add(bindstr+","+dist);
+      }
+    }
+  }
+  String[] tfkeys=new String[keys.size()];
+  keys.toArray(tfkeys);
+  return tfkeys;
+}
+
+
+
+// bindmatch.pl: find the resources and TFs that bind to each of the sites
+// given by getBindingSites, giving a table from gene index "." site number
+// (from 1) to a semicolon delimited list of bindings of:
+// 	offset,length,resource,attribute,settings
+// or	offset,length,TF,TF,dist,sequence
+Hashtable bindMatch(String[] tfkeys, Hashtable regulators)
+{
+  TreeSet keys=new TreeSet(regulators.keySet());
+  ArrayList regions=new ArrayList();
+  ArrayList bs=new ArrayList();
+  Iterator it=keys.iterator();
+  while (it.hasNext()) {
+    String k=(String)it.next();
+    String[] sites=StringSplitter.perlsplit((String)regulators.get(k),";");
+    for (int i=0; i<sites.length; i++) {
+      regions.add(field(StringSplitter.perlsplit(sites[i],","),2));
+      bs.add(k+"."+(i+1));
+    }
+  }
+
+  Hashtable bindingelems=new Hashtable();
+  int bindnum=0;
+  try {
+    for (int r=0; r<regions.size(); r++) {
+      String region=reverseInvert((String)regions.get(r));
+      int regionlen=region.length();
+      if (regionlen<3) { continue; }	// ignore regions less than 3 bases
+      bindnum++;
+
+      ArrayList bindlist=new ArrayList();
+      String[] offs=new String[3];
+      for (int k=0; k<3; k++) {
+        offs[k]=skip3rdBase(region.substring(k));
+        ArrayList matches=decodeBindCodons(getCodons(offs[k]));
+        for (int m=0; m<matches.size(); m++) {
+          BindMatch bm=(BindMatch)matches.get(m);
+          bm.locate(regionlen,bm.idx*3,((bm.idx+bm.len-1)*3)+2,k);
+          bindlist.add(bm);
+        }
+      }
+      for (int k=0; k<3; k++) {
+        ArrayList matches=findTFBindSites(tfkeys,offs[k]);
+        for (int m=0; m<matches.size(); m++) {
+          BindMatch bm=(BindMatch)matches.get(m);
+          bm.locate(regionlen,bm.idx,bm.idx+bm.len-1,k);
+          bindlist.add(bm);
+        }
+      }
+      Collections.sort(bindlist,new BindSiteOrder(null,null));
+
+      if (bindlist.size()>0) {
+        ArrayList sitelems=new ArrayList();
+        for (int m=0; m<bindlist.size(); m++) {
+          BindMatch bm=(BindMatch)bindlist.get(m);
+          sitelems.add(bm.bindidx+","+bm.bindlen+","+bm.matched);
+        }
+        bindingelems.put(bs.get(bindnum-1),join(sitelems,";"));
+      }
+    }
+  } catch (Exception e) {
+    // bindmatch.pl dies, leaving the sites matched so far
+  }
+  return bindingelems;
+}
+
+
+// the resources that bind, decoded from the bind code table. unlike genes,
+// a resource's codons may also be the start of other resources
+ArrayList decodeBindCodons(String[] codons) throws Exception
+{
+  ArrayList matches=new ArrayList();
+  int i=0;
+  while (i<codons.length) {
+    String[] entry=code.lookupBind(codons[i]);
+    i++;
+    String resource=(entry==null) ? "" : field(entry,0);
+    if (resource.length()>0 && !resource.equals("Undef")
+	&& !resource.equals("BindSite") && !resource.equals("TF")) {
+      int len=codingLength(entry,codons,i,1,0);
+      String[] settings=code.bind(resource,field(entry,1),slice(codons,i,len));
+      matches.add(new BindMatch(i-1,len+1,resattrset(resource,settings)));
+    }
+  }
+  return matches;
+}
+
+
+// the TFs that match a region, preceded by the base 4 encoding of their
+// distance from source, for cytoplasmic TFs and morphogens
+static ArrayList findTFBindSites(String[] tfkeys, String region)
+{
+  ArrayList tfmatches=new ArrayList();
+  for (int t=0; t<tfkeys.length; t++) {
+    String[] tfdist=StringSplitter.perlsplit(tfkeys[t],",");
+    String tf=field(tfdist,0);
+    String[] dists=(field(tfdist,1).equals("?")) ? MDISTS
+					: new String[] { field(tfdist,1) };
+    // as in bindmatch.pl, the second match list is only reset for each TF,
+    // so is repeated for distances that don't need one
+    ArrayList matches2=new ArrayList();
+    for (int d=0; d<dists.length; d++) {
+      ArrayList matches1;
+      if (dists[d].length()>0) {			// if its not local
+        String[] b4=base2tobase4(dists[d]);
+        if (b4[0].length()>0) {
+          matches1=matchTF(region,tf,dists[d],b4[0].charAt(0)+b4[1]);
+          matches2=matchTF(region,tf,dists[d],b4[0].charAt(1)+b4[1]);
+        } else {
+          matches1=matchTF(region,tf,dists[d],b4[1]);
+        }
+      } else {
+        matches1=matchTF(region,tf,dists[d],"");
+      }
+      tfmatches.addAll(matches1);
+      tfmatches.addAll(matches2);
+    }
+  }
+  return tfmatches;
+}
+
+
+// the (possibly overlapping) occurrences of the TF, preceded by distb4
+static ArrayList matchTF(String region, String tf, String dist, String distb4)
+{
+  ArrayList matches=new ArrayList();
+  String tfwdist=distb4+tf;
+  int i=0;
+  int ti;
+  while ((ti=region.indexOf(tfwdist,i))>-1) {
+    matches.add(new BindMatch(ti,tfwdist.length(),"TF,TF,"+lstrip(dist)+","+tf));
+    i=ti+1;
+  }
+  return matches;
+}
+
+
+// convert a binary string to base 4, returning the base 4 string, and if
+// there is an odd number of binary digits, the 2 bases that the leading
+// half base could be (02 for 0, and 13 for 1)
+static String[] base2tobase4(String binstr)
+{
+  String halfbases="";
+  StringBuffer strb4=new StringBuffer();
+  if (binstr.length()%2==1) {
+    halfbases=(digit(binstr,0)==0) ? "02" : "13";
+    binstr=binstr.substring(1);
+  }
+  for (int i=0; i<binstr.length(); i+=2) {
+    strb4.append((digit(binstr,i)*2)+digit(binstr,i+1));
+  }
+  return new String[] { halfbases, strb4.toString() };
+}
+
+
+static long digit(String str, int i)
+{
+  return (i<str.length()) ? StringSplitter.perlnum(str.substring(i,i+1)) : 0;
+}
+
+
+}
+
+
+
+// a region of the chromosome, one of: junk, gene, promoter, enhancer or
+// repressor
+class ChromRegion {
+
+	String feat;
+	int start;
+	int len;
+	String seq;
+
+ChromRegion(String feat, int start, int len, String seq)
+{
+  this.feat=feat;
+  this.start=start;
+  this.len=len;
+  this.seq=seq;
+}
+
+}
+
+
+
+// a resource or TF bound to a regulatory region. idx and len are the codon
+// (or base, for TFs) index and length of the match on the scanned region,
+// and bindidx and bindlen are the location and length of this on the
+// regulatory region
+class BindMatch {
+
+	int idx;
+	int len;
+	String matched;
+	int bindidx;
+	int bindlen;
+
+BindMatch(int idx, int len, String matched)
+{
+  this.idx=idx;
+  this.len=len;
+  this.matched=matched;
+}
+
+// idx1 and idx2 are the first and last base on the scanned region, which
+// is every 3rd base skipped from offset k of the reversed region
+void locate(int regionlen, int idx1, int idx2, int k)
+{
+  int rvidx1=idx1+(idx1/2)+k;
+  int rvidx2=idx2+(idx2/2)+k;
+  bindidx=regionlen-rvidx2-1;
+  bindlen=rvidx2-rvidx1+1;
+}
+
+}
+
+
+
+// orders binding sites by location, then length. for BindMatch's these are
+// compared directly, otherwise the sites are list indexes, and the
+// locations and lengths are looked up in the given lists, where a missing
+// entry is taken as 0
+class BindSiteOrder implements Comparator {
+
+	ArrayList locs;
+	ArrayList lens;
+
+BindSiteOrder(ArrayList locs, ArrayList lens)
+{
+  this.locs=locs;
+  this.lens=lens;
+}
+
+public int compare(Object a, Object b)
+{
+  long loca, locb, lena, lenb;
+  if (a instanceof BindMatch) {
+    loca=((BindMatch)a).bindidx;
+    locb=((BindMatch)b).bindidx;
+    lena=((BindMatch)a).bindlen;
+    lenb=((BindMatch)b).bindlen;
+  } else {
+    int ia=((Integer)a).intValue();
+    int ib=((Integer)b).intValue();
+    loca=ChromDecoder.num(locs,ia);
+    locb=ChromDecoder.num(locs,ib);
+    lena=ChromDecoder.num(lens,ia);
+    lenb=ChromDecoder.num(lens,ib);
+  }
+  if (loca!=locb) { return (loca<locb) ? -1 : 1; }
+  if (lena!=lenb) { return (lena<lenb) ? -1 : 1; }
+  return 0;
+}
+
+}
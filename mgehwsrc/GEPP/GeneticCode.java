@@ -0,0 +1,465 @@
+//			 GeneticCode.java
+//
+// this class loads a genetic code file (eg VirtexGeneticCode.conf), for
+// decoding chromosomes in java (see ChromDecoder), rather than with the
+// decodegenes.pl, findbindingsites.pl and bindmatch.pl scripts.
+//
+// the genetic code's tables ($GeneticCodeTable for genes, $BindCodeTable
+// for regulatory regions) are read from the file, in the same way that
+// the scripts read them, so that codons map to the same resources,
+// attributes and lengths. the perl decode_ and bind_ functions defined in
+// the file, which decode a resource's codons into its attribute and
+// settings, can't be run from java, so these are implemented here instead.
+// these are the functions defined by the VirtexGeneticCode*.conf files
+// (which all define them the same, some without the LUTActiveFN functions),
+// and the file's functions are only used to find which of these exist. a
+// file that defines a function not implemented here (such as the example
+// functions in egGeneticCode.conf) is rejected.
+//
+// the functions here keep the quirks of their perl originals, including
+// the handling of perl's undefined values: a codon past the end of a gene
+// (as given to variable length resources that reach the end) is null, and
+// treated as having bases of 0, and an undefined attribute or setting is
+// returned as null.
+//
+// 		written Oct 2026, agent
+//
+// this class also requires the local classes:
+// 			StringSplitter
+
+
+// for String's etc
+import java.lang.*;
+// for collection classes (eg Hashtable)
+import java.util.*;
+// for IO
+import java.io.*;
+
+
+class GeneticCode {
+
+	String codefile;
+	Hashtable geneCodons;	// codon to resource, attribute, length, stops
+	Hashtable bindCodons;	// as above, from the bind code table
+	Hashtable functions;	// names of the decode_ and bind_ functions
+
+	// the functions that this class implements
+	static final String[] DECODEFNS={ "SliceIn", "SliceToOut",
+	  "OutToSingleBus", "OutToSingleDir", "SliceRAM", "LUTBitFN",
+	  "LUTIncrFN", "LUTActiveFN", "TF" };
+	static final String[] BINDFNS={ "BindSite", "SliceIn", "SliceToOut",
+	  "OutToSingleBus", "OutToSingleDir", "SliceRAM", "LUTBitFN",
+	  "LUTIncrFN", "LUTActiveFN" };
+
+	// the tables used by the decode functions
+	static final String[] LUTi={ "F1","F2","F3","F4","F4","F3","F2","F1",
+	  "G1","G2","G3","G4","G4","G3","G2","G1" };
+	static final String[] CTRLi={ "Clk","BX","CE","SR","BX","BY","SR","CE",
+	  "Clk","BY","BX","BY","BY","BX","CE","SR" };
+	static final String[] DUALi={ "DUAL_OFF","DUAL_ON" };
+	static final String[] RAMi={ "SHIFT","32X1","LUT","RAM",
+	  "LUT","LUT","LUT","LUT",
+	  "SHIFT","SHIFT","SHIFT","SHIFT",
+	  "LUT","32X1","LUT","RAM" };
+	static final String[] SETCODES={ "SET","OR","XOR","AND" };
+	static final String[] OPCODES={ "XNOR","MJR0","XOR","MJR1",
+	  "AND","NOR","NAND","OR",
+	  "XOR","MJR1","XNOR","MJR0",
+	  "OR","NAND","NOR","AND" };
+	static final String[] TFSTOPS={ "222", "223", "232" };
+
+
+
+GeneticCode(String codefile)
+{
+  this.codefile=codefile;
+  String text=readFile(codefile);
+
+  geneCodons=parseTable(text,"GeneticCodeTable");
+  bindCodons=parseTable(text,"BindCodeTable");
+
+  // find the decode and bind functions that are defined
+  functions=new Hashtable();
+  String[] lines=StringSplitter.split(text,"\n");
+  for (int i=0; i<lines.length; i++) {
+    String line=lines[i].trim();
+    if (!line.startsWith("sub ")) { continue; }
+    line=line.substring(4).trim();
+    int e=0;
+    while (e<line.length() && (Character.isLetterOrDigit(line.charAt(e)) || line.charAt(e)=='_')) { e++; }
+    String fn=line.substring(0,e);
+    String[] known=null;
+    String res=null;
+    if (fn.startsWith("decode_")) {
+      known=DECODEFNS;
+      res=fn.substring(7);
+    } else if (fn.startsWith("bind_")) {
+      known=BINDFNS;
+      res=fn.substring(5);
+    } else {
+      continue;			// a helper function
+    }
+    boolean found=false;
+    for (int j=0; j<known.length; j++) { if (known[j].equals(res)) { found=true; } }
+    if (!found) {
+      System.err.println("GeneticCode: "+codefile+" defines "+fn+", which has no java implementation!");
+      System.exit(1);
+    }
+    functions.put(fn,fn);
+  }
+}
+
+
+public String getCodeFile() { return codefile; }
+
+
+// read the whole file, with its lines separated by "\n"
+static String readFile(String file)
+{
+  StringBuffer sb=new StringBuffer();
+  try {
+    BufferedReader in=new BufferedReader(new FileReader(file));
+    String line;
+    while ((line=in.readLine())!=null) {
+      sb.append(line).append('\n');
+    }
+    in.close();
+  } catch (IOException e) {
+    System.err.println("Can't read genetic code file ("+file+"): "+e);
+    System.exit(1);
+  }
+  return sb.toString();
+}
+
+
+// get the table assigned to $name as a double quoted string, and parse
+// it as decodegenes.pl does: each line, minus any comment, is split on
+// commas into codon, resource, attribute, length, and variable length stop
+// codons. if there's no such table, it's empty
+static Hashtable parseTable(String text, String name)
+{
+  Hashtable table=new Hashtable();
+  // find: $name = "
+  int start=-1;
+  int from=0;
+  while (start<0 && (from=text.indexOf("$"+name,from))>-1) {
+    from+=name.length()+1;
+    int i=from;
+    while (i<text.length() && StringSplitter.isperlspace(text.charAt(i))) { i++; }
+    if (i<text.length() && text.charAt(i)=='=') {
+      i++;
+      while (i<text.length() && StringSplitter.isperlspace(text.charAt(i))) { i++; }
+      if (i<text.length() && text.charAt(i)=='"') { start=i; }
+    }
+  }
+  if (start<0) { return table; }
+  int end=text.indexOf("\"",start+1);
+  if (end<0) { end=text.length(); }
+
+  String[] tlines=StringSplitter.split(text.substring(start+1,end),"\n");
+  for (int i=0; i<tlines.length; i++) {
+    String line=tlines[i];
+    int c=line.indexOf('#');
+    if (c>-1) { line=line.substring(0,c); }
+    int e=line.length();
+    while (e>0 && StringSplitter.isperlspace(line.charAt(e-1))) { e--; }
+    line=line.substring(0,e);
+    String[] fields=StringSplitter.perlsplitspaced(line,",");
+    // perl's "if ($codon)" - neither empty nor "0"
+    if (fields.length>0 && fields[0].length()>0 && !fields[0].equals("0")) {
+      // the scripts store the fields joined by commas, and split them when
+      // looked up, so trailing empty fields are dropped
+      String[] entry=new String[fields.length-1];
+      for (int j=1; j<fields.length; j++) { entry[j-1]=fields[j]; }
+      table.put(fields[0],StringSplitter.droptrailing(entry));
+    }
+  }
+  return table;
+}
+
+
+
+// the entry for a codon: resource, attribute, length, and any stop codons,
+// or null if the codon isn't in the table
+public String[] lookupGene(String codon) { return (String[])geneCodons.get(codon); }
+public String[] lookupBind(String codon) { return (String[])bindCodons.get(codon); }
+
+
+public boolean hasDecodeFn(String resource)
+{
+  return functions.containsKey("decode_"+resource);
+}
+
+public boolean hasBindFn(String resource)
+{
+  return functions.containsKey("bind_"+resource);
+}
+
+
+
+// decode a gene's codons for resource, returning its attribute and
+// settings, as processResource in decodegenes.pl does. if the genetic code
+// doesn't have a decode function for the resource, then it is only the
+// attribute from the genetic code table
+public String[] decode(String resource, String attr, String[] codons) throws Exception
+{
+  if (!hasDecodeFn(resource)) { return new String[] { attr }; }
+
+  if (resource.equals("SliceIn")) { return sliceIn(attr,codons,""); }
+  if (resource.equals("SliceToOut")) { return sliceToOut(attr,codons); }
+  if (resource.equals("OutToSingleBus")) { return outToSingleBus(attr,codons,""); }
+  if (resource.equals("OutToSingleDir")) { return outToSingleDir(attr,codons,false); }
+  if (resource.equals("SliceRAM")) { return sliceRAM(attr,codons); }
+  if (resource.equals("LUTBitFN")) { return lutBitFN(attr,codons); }
+  if (resource.equals("LUTIncrFN")) { return lutIncrFN(attr,codons); }
+  if (resource.equals("LUTActiveFN")) { return lutActiveFN(attr,codons); }
+  return tf(attr,codons);
+}
+
+
+// as above, but for the bind_ functions used for regulatory regions, as
+// in findbindingsites.pl and bindmatch.pl
+public String[] bind(String resource, String attr, String[] codons)
+{
+  if (!hasBindFn(resource)) { return new String[] { attr }; }
+
+  if (resource.equals("BindSite")) { return new String[] { bindSeq(codons) }; }
+  if (resource.equals("SliceIn")) { return sliceIn(attr,codons,"connect_"); }
+  if (resource.equals("SliceToOut")) { return sliceToOut(attr,codons); }
+  if (resource.equals("OutToSingleBus")) { return outToSingleBus(attr,codons,"connect_"); }
+  if (resource.equals("OutToSingleDir")) { return outToSingleDir(attr,codons,true); }
+  if (resource.equals("SliceRAM")) { return sliceRAM(attr,codons); }
+  if (resource.equals("LUTBitFN")) { return lutBitFN(attr,codons); }
+  if (resource.equals("LUTIncrFN")) { return lutIncrFN(attr,codons); }
+  return lutActiveFN(attr,codons);
+}
+
+
+
+// the numeric value of base i of a codon, with the bases of an undefined
+// codon being 0
+static int b(String codon, int i)
+{
+  if (codon==null || i>=codon.length()) { return 0; }
+  char c=codon.charAt(i);
+  return (c>='0' && c<='9') ? c-'0' : 0;
+}
+
+// base i of a codon as a string, "" if undefined
+static String bs(String codon, int i)
+{
+  if (codon==null || i>=codon.length()) { return ""; }
+  return codon.substring(i,i+1);
+}
+
+// the 4 bits given by the first 2 bases of a codon
+static String bits(String codon)
+{
+  int b1=b(codon,0);
+  int b2=b(codon,1);
+  return ""+(b1/2)+(b1%2)+(b2/2)+(b2%2);
+}
+
+
+
+// SliceIn: input is from codon 0, and line from codon 1. for bind, an
+// attribute of connect_xx gives a connecting input
+static String[] sliceIn(String attr, String[] codons, String connectprefix)
+{
+  String connect="";
+  if (connectprefix.length()>0 && attr.startsWith(connectprefix)) {
+    attr=attr.substring(connectprefix.length());
+    connect=connectprefix;
+  }
+  String input=null;
+  String line=null;
+  if (codons.length>0) {
+    int b1=b(codons[0],0);
+    int b2=b(codons[0],1);
+    input=connect+((attr.equals("LUT")) ? LUTi[b1*4+b2] : CTRLi[b1*4+b2]);
+    if (codons.length>1) {
+      b1=b(codons[1],0);
+      b2=b(codons[1],1);
+      int b3=b(codons[1],2);
+      line=""+((b1*8)+(b2*2)+(b3%2)-((b1>0) ? 4 : 0));
+    }
+  }
+  return new String[] { input, line };
+}
+
+
+static String[] sliceToOut(String attr, String[] codons)
+{
+  String outbus=null;
+  String sliceoutput=null;
+  if (codons.length>0) {
+    int b1=b(codons[0],0);
+    int b2=b(codons[0],1);
+    int b3=b(codons[0],2);
+    outbus=""+(StringSplitter.perlnum(attr)+(4*(b1/2)));
+    int so=(b2*2)+(b3%2)+2;
+    sliceoutput=""+((so>7) ? so-8 : so);
+  }
+  return new String[] { outbus, sliceoutput };
+}
+
+
+static String[] outToSingleBus(String attr, String[] codons, String connectprefix)
+{
+  String connect="";
+  if (connectprefix.length()>0 && attr.startsWith(connectprefix)) {
+    attr=attr.substring(connectprefix.length());
+    connect=connectprefix;
+  }
+  String outbus=null;
+  String tosingle=null;
+  String setting=null;
+  if (codons.length>0) {
+    int b1=b(codons[0],0);
+    int b2=b(codons[0],1);
+    int b3=b(codons[0],2);
+    outbus=connect+(StringSplitter.perlnum(attr)+(4*(b2/2)));
+    int ts=(b1-1)*2+(b2%2)+1;
+    if (ts<1) {
+      tosingle=setting="";
+    } else {
+      tosingle=""+ts;
+      setting=""+(b3%2);
+    }
+  }
+  return new String[] { outbus, tosingle, setting };
+}
+
+
+// for bind, the connect_ prefix is only kept if a line is selected
+static String[] outToSingleDir(String attr, String[] codons, boolean bind)
+{
+  String connect="";
+  if (bind && attr.startsWith("connect_")) {
+    attr=attr.substring(8);
+    connect="connect_";
+  }
+  String dir=attr;
+  String line=null;
+  String setting=null;
+  if (codons.length>0) {
+    int b1=b(codons[0],0);
+    int b2=b(codons[0],1);
+    int b3=b(codons[0],2);
+    int l=(b1-1)*4+b2+1;
+    if (l<1) {
+      line=setting="";
+    } else {
+      line=""+l;
+      setting=""+(b3%2);
+      dir=connect+dir;
+    }
+  }
+  return new String[] { dir, line, setting };
+}
+
+
+static String[] sliceRAM(String attr, String[] codons)
+{
+  String mode="";
+  String setting="";
+  if (codons.length>0) {
+    int b1=b(codons[0],0);
+    int b2=b(codons[0],1);
+    mode=DUALi[b1%2];
+    setting=RAMi[b1*4+b2];
+  }
+  return new String[] { mode, setting };
+}
+
+
+static String[] lutBitFN(String attr, String[] codons)
+{
+  StringBuffer bitset=new StringBuffer();
+  for (int i=0; i<codons.length; i++) { bitset.append(bits(codons[i])); }
+  return new String[] { attr, bitset.toString() };
+}
+
+
+static String[] lutIncrFN(String attr, String[] codons)
+{
+  String set=null;
+  String op=null;
+  String lines=null;
+  if (codons.length>0) {
+    set=SETCODES[b(codons[0],0)];
+    op=OPCODES[b(codons[0],1)*4+b(codons[0],2)];
+    if (codons.length>1) {
+      char[] lbits=bits(codons[1]).replace('0','-').toCharArray();
+      if (codons.length>2) {
+        String ibits=bits(codons[2]);
+        for (int i=0; i<ibits.length(); i++) {
+          if (lbits[i]=='1' && ibits.charAt(i)=='1') { lbits[i]='0'; }
+        }
+        lines=new String(lbits);
+      }
+    }
+  }
+  return new String[] { attr, set, op, lines };
+}
+
+
+static String[] lutActiveFN(String attr, String[] codons)
+{
+  String op=null;
+  String lines=null;
+  if (codons.length>0) {
+    op=OPCODES[b(codons[0],1)*4+b(codons[0],2)];
+    if (codons.length>1) { lines=bits(codons[1]); }
+  }
+  return new String[] { attr, op, lines };
+}
+
+
+// a TF's source distance for a morphogen is given by the first 2 codons,
+// and the rest give its binding sequence
+static String[] tf(String attr, String[] codons) throws Exception
+{
+  String srcdist="";
+  int first=0;
+  if (attr.equals("Local")) {
+    srcdist="-";
+  } else if (attr.equals("Morphogen")) {
+    for (first=0; first<2 && first<codons.length; first++) {
+      srcdist+=bits(codons[first]);
+    }
+  } else {
+    throw new Exception("Unknown TF type ("+attr+") generated by genetic code!");
+  }
+  String[] rest=new String[codons.length-first];
+  for (int i=first; i<codons.length; i++) { rest[i-first]=codons[i]; }
+  return new String[] { attr, srcdist, bindSeq(rest) };
+}
+
+
+// the binding sequence of a TF or bind site: any trailing stop codon is
+// dropped, 033 and 233 are skipped, and other codons give 1 or 2 bases
+static String bindSeq(String[] codons)
+{
+  int n=codons.length;
+  if (n>0 && codons[n-1]!=null) {
+    for (int i=0; i<TFSTOPS.length; i++) {
+      if (codons[n-1].equals(TFSTOPS[i])) { n--; break; }
+    }
+  }
+  StringBuffer bindstr=new StringBuffer();
+  for (int i=0; i<n; i++) {
+    String c=codons[i];
+    if (c!=null && (c.equals("033") || c.equals("233"))) { continue; }
+    int b1=b(c,0);
+    if (b(c,2)/2==1) {
+      bindstr.append((b1%2==1 && bs(c,1).equals("3")) ? b1-1 : b1);
+    } else {
+      bindstr.append(bs(c,0)).append(bs(c,1));
+    }
+  }
+  return bindstr.toString();
+}
+
+
+}
@@ -9,7 +9,7 @@
 // 		written Aug 2004, J.A. Lee
 //
 // this class also requires the local classes:
-// 			LEcoord, StringSplitter, JBitsResources 
+// 			LEcoord, StringSplitter, JBitsResources, OutBusRoutes
 
 
 // for String's etc
@@ -64,6 +64,46 @@ public class ActiveInputLEs {
         // region, every other CLB in that CLB row/col shouldn't be used
 	LEcoord[] inactiveLocs=null;
 
+	// the connectivity found for each LE is kept between updates, and
+	// the states are only re-traced when a CLB in (or bordering on) the
+	// evolvable region has changed since the last update
+	boolean incremental=true;	// false to re-trace every update
+	boolean traced=false;		// states are from the last update
+	long tracedModCount=0;		// jbitsres' change count at that time
+	LEcoord[] tracedActive=null;	// and the start/inactive lists used
+	LEcoord[] tracedInactive=null;
+
+	// LEs are indexed by their position in the state matrix, that is
+	// (row*leCols)+col, where leCols is the number of columns in it
+	int numLEs;
+	int leCols;
+
+	static final int UNTRACED=-2;	// connectivity not known yet
+	static final int NOTDRIVEN=-1;	// input not driven from region
+	static final int PUSHED=-2;	// state is being traced by a frame
+
+	int[] driverMemo;	// LE*4+line-1: source LE*8+outline or NOTDRIVEN
+	int[] outbusMemo;	// bitmask of OUT bus lines driven by each LE
+	int[][] targetMemo;	// LE*8+outline: LUT inputs connected to OUT line
+
+	// the states before the last update, to see which LUTs need updating
+	int[] prevState;
+	int[] prevLUTin;
+
+	// the stack of trace frames, which can't be deeper than there are LEs
+	static final int FORETRACE=0;
+	static final int BACKTRACE=1;
+	int[] stkType;		// FORETRACE or BACKTRACE
+	int[] stkLE;		// LE being traced
+	int[] stkArg;		// input line traced from, or output line traced to
+	int[] stkStep;		// lines 1-4 are steps 0-3, OUT0-7 are steps 4-11
+	int[] stkSub;		// target within OUT line, or 1 if awaiting input
+	int[] stkState;		// LE state found so far
+	int sp=0;
+
+	// for the LUT inputs found by OutBusRoutes
+	int[] routeTargets=new int[OutBusRoutes.maxTargets];
+
 
 
 
@@ -116,6 +156,20 @@ ActiveInputLEs(JBitsResources jbr, LEcoord mincoord, LEcoord maxcoord, LEcoord[]
   stateMatrix=new int[numrows*2][numcols*2];
   lutinStateMatrix=new int[numrows*2][numcols*2][4]; // 4 inputs per LUT
 
+  leCols=numcols*2;
+  numLEs=numrows*2*leCols;
+  driverMemo=new int[numLEs*4];
+  outbusMemo=new int[numLEs];
+  targetMemo=new int[numLEs*8][];
+  prevState=new int[numLEs];
+  prevLUTin=new int[numLEs*4];
+  stkType=new int[numLEs+1];
+  stkLE=new int[numLEs+1];
+  stkArg=new int[numLEs+1];
+  stkStep=new int[numLEs+1];
+  stkSub=new int[numLEs+1];
+  stkState=new int[numLEs+1];
+
 //System.err.println("rows="+minrow+"-"+maxrow+", cols="+mincol+"-"+maxcol);
 
   // initialise the state of the LEs
@@ -125,6 +179,10 @@ ActiveInputLEs(JBitsResources jbr, LEcoord mincoord, LEcoord maxcoord, LEcoord[]
   // class, so that it can use it with LUTActiveFNs
   jbitsres.addActiveLineMatrix(lutinStateMatrix,minrow,mincol);
   jbitsres.setActiveCode(ActiveInputLEs.ACTIVE);
+
+  // the LUTs were updated before JBitsResources had the matrix, so they
+  // will all need updating again next time
+  traced=false;
 }
 
 
@@ -132,6 +190,7 @@ ActiveInputLEs(JBitsResources jbr, LEcoord mincoord, LEcoord maxcoord, LEcoord[]
 // note that there are 2 slices to each col, and 2 LEs to each row
 public void resetState()
 {
+  traced=false;
   for (int i=0; i<numrows*2; i++) {
     for (int j=0; j<numcols*2; j++) {
       stateMatrix[i][j]=ActiveInputLEs.UNKNOWN;
@@ -211,6 +270,24 @@ public void update() { update(activeInStartLocs,inactiveLocs); }
 
 public void update(LEcoord[] activeStartList, LEcoord[] inactiveList)
 {
+  // the connectivity of LEs in CLBs that haven't changed since the last
+  // update is already known, and if none have changed at all, then the
+  // states (and so the LUTs' active functions) will be the same as before
+  boolean full=(!incremental || !traced ||
+      activeStartList!=tracedActive || inactiveList!=tracedInactive);
+  if (full) {
+    forgetAll();
+  } else if (!forgetChanged()) {
+    if (VERBOSE) { System.err.println("no change to CLBs since LUT activations last updated"); }
+    return;
+  }
+
+  // keep the previous states, so can tell which LUTs need updating
+  for (int le=0; le<numLEs; le++) {
+    prevState[le]=stateAt(le);
+    for (int k=1; k<=4; k++) { prevLUTin[le*4+k-1]=getLUTinState(le,k); }
+  }
+
   // set state of all LEs and their connected lines to UNKNOWN
   // and set unconnected lines to INACTIVE
   resetState();
@@ -222,7 +299,10 @@ public void update(LEcoord[] activeStartList, LEcoord[] inactiveList)
     }
   }
 
-  if (activeStartList==null) { return; }
+  if (activeStartList==null) {
+    setTraced(activeStartList,inactiveList);
+    return;
+  }
 
   // these elements will never be examined/modified, they are set to ACTIVE
   for (int i=0; i<activeStartList.length; i++) {
@@ -257,16 +337,21 @@ public void update(LEcoord[] activeStartList, LEcoord[] inactiveList)
   // applied to active inputs, as given by the just updated lutinStateMatrix
   // that the JBitsResources object has a copy of. Note that only active LEs
   // are updated, as they are the only ones that will have any effect anyway
+  // and of these, only those whose CLB or active inputs have changed since
+  // the last update, as the others will still have the same function
   if (VERBOSE) { System.err.println("updating LUT active functions..."); }
   for (int i=0; i<numrows*2; i++) {
     for (int j=0; j<numcols*2; j++) {
-      if (stateMatrix[i][j]==ActiveInputLEs.ACTIVE) {
+      if (stateMatrix[i][j]==ActiveInputLEs.ACTIVE &&
+	  (full || changedLE((i*leCols)+j) ||
+	   jbitsres.getModCount((i/2)+minrow,(j/2)+mincol,0)>tracedModCount)) {
 	// update LUTActiveFN with LUT's existing boolean function
 	// and inversion mask, but with updated active input list
         jbitsres.updateLUTActiveFN((i/2)+minrow,(j/2)+mincol,j%2,i%2);
       }
     }
   }
+  setTraced(activeStartList,inactiveList);
 
   if (VERBOSE) {
     System.err.println("active LUT input counts...");
@@ -284,6 +369,63 @@ public void update(LEcoord[] activeStartList, LEcoord[] inactiveList)
 
 
 
+// incremental updates can be turned off, so that the states are re-traced
+// from scratch each update, as a check of the incremental updates
+public void setIncremental(boolean incr)
+{
+  incremental=incr;
+}
+
+
+// note the change count of the configuration that the states were traced
+// from. the LUT updates are our own changes, but they don't affect routing
+void setTraced(LEcoord[] activeStartList, LEcoord[] inactiveList)
+{
+  traced=true;
+  tracedModCount=jbitsres.getModCount();
+  tracedActive=activeStartList;
+  tracedInactive=inactiveList;
+}
+
+
+// forget the connectivity of any LEs whose CLB, or a neighbouring CLB, has
+// changed since the last update. returns true if there were any
+boolean forgetChanged()
+{
+  boolean changed=false;
+  for (int r=minrow; r<=maxrow; r++) {
+    for (int c=mincol; c<=maxcol; c++) {
+      if (jbitsres.getModCount(r,c,1)>tracedModCount) {
+	forgetCLB(r,c);
+	changed=true;
+      }
+    }
+  }
+  return changed;
+}
+
+
+void forgetAll()
+{
+  for (int r=minrow; r<=maxrow; r++) {
+    for (int c=mincol; c<=maxcol; c++) { forgetCLB(r,c); }
+  }
+}
+
+
+// returns true if the LE's state, or that of any of its inputs, is
+// different to what it was before the last update
+boolean changedLE(int le)
+{
+  if (prevState[le]!=stateAt(le)) { return true; }
+  for (int k=1; k<=4; k++) {
+    if (prevLUTin[le*4+k-1]!=getLUTinState(le,k)) { return true; }
+  }
+  return false;
+}
+
+
+
 // these will only be called from within this class
 void setState(LEcoord loc, int state)
 {
@@ -312,181 +454,287 @@ boolean inRange(LEcoord loc)
 
 
 // starting with an active LUT input line (1-4) at a given location,
-// recurse through circuit, marking all LEs that are connected from these
+// trace through circuit, marking all LEs that are connected from these
 // as active. On the other input lines trace backwards to determine if
 // any are active (eg an oscillating signal caused by a recurrent subcircuit
 // NOTE that this assumes that GLCK is connected to the slice clk!)
+//
+// rather than recursing, which can go as deep as there are LEs in the
+// evolvable region, the forward and backward traces are done as frames on
+// an explicit stack. each frame steps through the LE's 4 input lines, and
+// then the LEs that are driven from each of its 8 OUT bus lines, pushing a
+// frame for each neighbour that needs to be traced, and resuming where it
+// left off when that neighbour's frame is popped. so the order in which
+// LEs are visited, and the states they are given, are the same as if the
+// traces called each other recursively
 
 void traceForwardActivations(LEcoord loc, int lutline)
 {
-  // make sure that don't get caught in loops or go outside of evolvable region
-  if (getState(loc)!=ActiveInputLEs.UNKNOWN) { return; }
-
-  if (VERBOSE) { System.err.println("forward tracing active LE "+loc+" from input line "+lutline+"..."); }
+  if (!enterForward(leIndex(loc),lutline)) { return; }
+
+  int f,le,step,line,outline,d,res;
+  int[] targets;
+
+  // result of the last backward trace popped off the stack
+  int ret=ActiveInputLEs.UNKNOWN;
+
+  while (sp>0) {
+    f=sp-1;
+    le=stkLE[f];
+    step=stkStep[f];
+
+    if (step<4) {			// evaluate state of LUT input line
+      line=step+1;
+      if (stkSub[f]==1) {		// returned from trace back to its source
+	stkSub[f]=0;
+        setLUTinState(le,line,ret);
+	if (stkType[f]==BACKTRACE && ret==ActiveInputLEs.ACTIVE) {
+	  stkState[f]=ActiveInputLEs.ACTIVE;
+	}
+	stkStep[f]++;
+	continue;
+      }
 
-  // LE is active and so is the traced input line
-  setState(loc,ActiveInputLEs.ACTIVE);
-  setLUTinState(loc,lutline,ActiveInputLEs.ACTIVE);
-
-  LEcoord[] nbours=null;
-
-  LEcoord nbour=null;
-  int nbstate=ActiveInputLEs.UNKNOWN;
-
-  // trace backwards on each unevaluated connected input line
-  for (int i=1; i<=4; i++) {
-    if (VERBOSE) { System.err.print("testing input line "+i+"... "); }
-    if (getLUTinState(loc,i)==ActiveInputLEs.UNKNOWN) {
-      nbour=inputDrivenByLE(loc,i);
-      if (nbour!=null && inRange(nbour)) {
-        if (VERBOSE) { System.err.println("tracing backwards to "+nbour+" to find status..."); }
-	// nbour will be input originating location plus out bus line
-        nbstate=traceBackActivations(nbour,nbour.line);
-        if (VERBOSE) { System.err.println("returned from backwards trace: "+nbour+" has status "+nbstate); }
-        setLUTinState(loc,i,nbstate);
+      res=ActiveInputLEs.UNKNOWN;
+      if (stkType[f]==FORETRACE) {
+        if (getLUTinState(le,line)==ActiveInputLEs.UNKNOWN) {
+	  res=ActiveInputLEs.INACTIVE;
+	  d=inputDriver(le,line);
+	  if (d>=0) { res=enterBackward(d>>>3,d&7); }
+	  if (res==PUSHED) {
+	    stkSub[f]=1;
+	    continue;
+	  }
+          setLUTinState(le,line,res);
+	}
       } else {
-        if (VERBOSE) { System.err.println("inactive!"); }
-        setLUTinState(loc,i,ActiveInputLEs.INACTIVE);
+	// note line states = UNKNOWN, UNDEREVAL, INACTIVE, ACTIVE
+	res=getLUTinState(le,line);
+	if (res==ActiveInputLEs.ACTIVE) {
+	  stkState[f]=ActiveInputLEs.ACTIVE;
+	} else if (res==ActiveInputLEs.UNDEREVAL) {	// this shouldn't happen
+          setLUTinState(le,line,ActiveInputLEs.ACTIVE); // as it would imply that
+	  stkState[f]=ActiveInputLEs.ACTIVE;		// we are back in the
+	} else if (res==ActiveInputLEs.UNKNOWN) {	// originating LE!
+          setLUTinState(le,line,ActiveInputLEs.UNDEREVAL);
+	  res=ActiveInputLEs.INACTIVE;
+	  d=inputDriver(le,line);
+	  if (d>=0) { res=enterBackward(d>>>3,d&7); }
+	  if (res==PUSHED) {
+	    stkSub[f]=1;
+	    continue;
+	  }
+          setLUTinState(le,line,res);
+	  if (res==ActiveInputLEs.ACTIVE) { stkState[f]=ActiveInputLEs.ACTIVE; }
+	}
       }
-    } else {
-      if (VERBOSE) { System.err.println("already evaluated!"); }
-    }
-  }
+      stkStep[f]++;
 
-  if (VERBOSE) {
-    System.err.print(loc+" input states 1-4=");
-    for (int i=1; i<=4; i++) { System.err.print(" "+getLUTinState(loc,i)); }
-    System.err.println();
-  }
-
-  // trace forward from LUT registered output thru each connected OUT bus line
-  if (VERBOSE) { System.err.println("tracing active LE "+loc+" outputs.."); }
-  int[] outlines=connectedOUTbuses(loc);
-  if (outlines==null) {
-    if (VERBOSE) { System.err.println("output not connected to any out bus lines.."); }
-    return;
-  }
-
-  for (int o=0; o<outlines.length; o++) {
-    if (VERBOSE) { System.err.println(loc+" FF -> OUT "+outlines[o]+" .. "); }
-    nbours=OUTtoSingleConnectedLE(loc,outlines[o]);
-    if (nbours!=null && nbours.length>0) {
-      if (VERBOSE) {
-         System.err.println("single(s) connected to nbour(s).. ");
-         for (int k=0; k<nbours.length;k++) { System.err.print(nbours[k]+" "); }
-	 System.err.println();
+    } else if (step<12) {		// trace forward from an OUT bus line
+      outline=step-4;
+      if (step==4 && VERBOSE) {
+	System.err.println(leCoord(le,-1)+" states="+stateAt(le)+", inputs 1-4="+
+	  getLUTinState(le,1)+" "+getLUTinState(le,2)+" "+getLUTinState(le,3)+" "+getLUTinState(le,4));
+      }
+      // backward traces only trace forward if the LE turned out to be
+      // active, and then not along the line back to whoever traced it
+      if (stkType[f]==BACKTRACE &&
+          (stkState[f]!=ActiveInputLEs.ACTIVE || outline==stkArg[f])) {
+	stkStep[f]++;
+	continue;
       }
-      // trace each connected single to its neighbour entry location
-      for (int n=0; n<nbours.length; n++) {
-        // don't go outside evolvable region
-        if (inRange(nbours[n])) {
-          if (VERBOSE) { System.err.println("connection from "+loc+" to "+nbours[n]+" .. "); }
-	  traceForwardActivations(nbours[n],nbours[n].line);
+      if ((outBuses(le)&(1<<outline))!=0) {
+	targets=outlineTargets(le,outline);
+	// trace each connected single to its neighbour entry location
+	while (stkSub[f]<targets.length) {
+	  d=targets[stkSub[f]++];
+	  if (enterForward(d>>>2,(d&3)+1)) { break; }
 	}
+	if (stkSub[f]<targets.length || sp-1!=f) { continue; }
       }
+      stkSub[f]=0;
+      stkStep[f]++;
+
+    } else {				// finished with this LE
+      ret=stkState[f];
+      if (stkType[f]==BACKTRACE && ret!=ActiveInputLEs.ACTIVE) {
+	ret=ActiveInputLEs.INACTIVE;
+      }
+      sp--;
     }
   }
 }
 
 
+// an LE is only traced forward if it hasn't been seen before. it and the
+// traced input line are then active. returns true if a frame was pushed
+boolean enterForward(int le, int lutline)
+{
+  // make sure that don't get caught in loops
+  if (stateAt(le)!=ActiveInputLEs.UNKNOWN) { return false; }
+
+  if (VERBOSE) { System.err.println("forward tracing active LE "+leCoord(le,-1)+" from input line "+lutline+"..."); }
+
+  // LE is active and so is the traced input line
+  setState(le,ActiveInputLEs.ACTIVE);
+  setLUTinState(le,lutline,ActiveInputLEs.ACTIVE);
+  push(FORETRACE,le,lutline,ActiveInputLEs.ACTIVE);
+  return true;
+}
+
+
 // this LE drives an input into another LUT, but don't know if that input
 // is active, so need to determine whether this LE is active or not
 // if any of its LUT inputs come from an active LE, or an LE under evaluation
 // (indicating a feedback loop), then it is ACTIVE
 // otherwise it is INACTIVE.
 // if active, trace forward on each unevaluated line an mark as active
-// return's either ACTIVE or INACTIVE
+// returns either ACTIVE or INACTIVE if this is already known, otherwise
+// a frame is pushed to evaluate the LE, and PUSHED is returned
 // NOTE: even though we count feedback loops as active, in reality they are
 // only active if there is some kind of signal inversion (creating an
 // oscillator), but for now we ignore this necessity, which would require
 // analysing each LUT FN to determine if this is occuring
-int traceBackActivations(LEcoord loc, int outline)
+int enterBackward(int le, int outline)
 {
-  LEcoord[] nbours=null;
-  LEcoord nbour=null;
-  int state=getState(loc); // get state of LE
+  int state=stateAt(le); // get state of LE
   if (state==ActiveInputLEs.ACTIVE || state==ActiveInputLEs.INACTIVE) {
     return state;
   } else if (state==ActiveInputLEs.UNDEREVAL) { // feedback loop, so active
-    setState(loc,ActiveInputLEs.ACTIVE);
+    setState(le,ActiveInputLEs.ACTIVE);
     return ActiveInputLEs.ACTIVE;
-  } else if (state==ActiveInputLEs.UNKNOWN) {
-    setState(loc,ActiveInputLEs.UNDEREVAL);
-    state=ActiveInputLEs.UNDEREVAL;
-  } else { // out of evolvable region, so shouldn't be active
-    return ActiveInputLEs.INACTIVE;
   }
-  int instate,nbstate;
-
-  for (int i=1; i<=4; i++) {
-    if (VERBOSE) { System.err.print("testing input line "+i+"... "); }
-    // note line states = UNKNOWN, UNDEREVAL, INACTIVE, ACTIVE
-    instate=getLUTinState(loc,i);
-    if (instate==ActiveInputLEs.ACTIVE) {
-      state=ActiveInputLEs.ACTIVE;
-      if (VERBOSE) { System.err.println("active!"); }
-    } else if (instate==ActiveInputLEs.UNDEREVAL) {   // this shouldn't happen
-      setLUTinState(loc,i,ActiveInputLEs.ACTIVE);     // as it would imply that
-      state=ActiveInputLEs.ACTIVE;                    // we are back in the
-      if (VERBOSE) { System.err.println("active!"); } // originating LE!
-    } else if (instate==ActiveInputLEs.UNKNOWN) {
-      setLUTinState(loc,i,ActiveInputLEs.UNDEREVAL);
-      // trace backwards on each unevaluated connected input line
-      nbour=inputDrivenByLE(loc,i);
-      if (nbour!=null && inRange(nbour)) {
-	// nbour will be input originating location plus out bus line
-        if (VERBOSE) { System.err.println("tracing backwards to "+nbour+" to find status..."); }
-        nbstate=traceBackActivations(nbour,nbour.line);
-        if (VERBOSE) { System.err.println("returned from backwards trace: "+nbour+" has status "+nbstate); }
-        setLUTinState(loc,i,nbstate);
-	if (nbstate==ActiveInputLEs.ACTIVE) {
-          state=ActiveInputLEs.ACTIVE;
-          if (VERBOSE) { System.err.println("updated LE status to active!"); }
-        } else if (instate==ActiveInputLEs.UNDEREVAL) { // should this happen??
-          state=ActiveInputLEs.ACTIVE;
-          if (VERBOSE) { System.err.println("updated LE status to active!"); }
-	}
-      } else {
-        setLUTinState(loc,i,ActiveInputLEs.INACTIVE);
-        if (VERBOSE) { System.err.println("inactive!"); }
-      }
+
+  if (VERBOSE) { System.err.println("tracing backwards to "+leCoord(le,outline)+" to find status..."); }
+  setState(le,ActiveInputLEs.UNDEREVAL);
+  push(BACKTRACE,le,outline,ActiveInputLEs.UNDEREVAL);
+  return PUSHED;
+}
+
+
+void push(int type, int le, int arg, int state)
+{
+  stkType[sp]=type;
+  stkLE[sp]=le;
+  stkArg[sp]=arg;
+  stkStep[sp]=0;
+  stkSub[sp]=0;
+  stkState[sp]=state;
+  sp++;
+}
+
+
+
+// the connectivity of each LE is found as it is needed, and is then kept
+// until one of the CLBs around it is changed. these are indexed by LE,
+// as given by leIndex()
+
+// returns the LE (and its OUT bus line) that drives the LUT line's input,
+// as leIndex*8+outline, or NOTDRIVEN if it's not driven from within the
+// evolvable region
+int inputDriver(int le, int lutline)
+{
+  int d=driverMemo[le*4+lutline-1];
+  if (d==UNTRACED) {
+    LEcoord nbour=inputDrivenByLE(leCoord(le,-1),lutline);
+    if (nbour!=null && inRange(nbour)) {
+      d=(leIndex(nbour)<<3)|nbour.line;
+    } else {
+      d=NOTDRIVEN;
     }
+    driverMemo[le*4+lutline-1]=d;
   }
+  return d;
+}
 
-  if (VERBOSE) {
-    System.err.print(loc+" input states 1-4=");
-    for (int i=1; i<=4; i++) { System.err.print(" "+getLUTinState(loc,i)); }
-    System.err.println();
+
+// returns a bitmask of the OUT bus lines that the LE's output drives
+int outBuses(int le)
+{
+  int m=outbusMemo[le];
+  if (m==UNTRACED) {
+    m=0;
+    int[] outlines=connectedOUTbuses(leCoord(le,-1));
+    if (outlines!=null) {
+      for (int o=0; o<outlines.length; o++) { m|=1<<outlines[o]; }
+    }
+    outbusMemo[le]=m;
   }
+  return m;
+}
 
-  if (state==ActiveInputLEs.ACTIVE) {
-    // trace forward on each unevaluated line an mark as active
-    // trace forward from LUT output thru connected OUT bus lines
-    // to unevaluated neighbours
-    int[] outlines=connectedOUTbuses(loc);
-    for (int o=0; o<outlines.length; o++) {
-      if (VERBOSE) { System.err.println(loc+" -> OUT "+outlines[o]+" .. "); }
-      if (outlines[o]!=outline) {
-        nbours=OUTtoSingleConnectedLE(loc,outlines[o]);
-        if (nbours!=null && nbours.length>0) {
-          // trace each connected single to its neighbour entry location
-	  // and mark it as active if its current state is unknown
-          for (int n=0; n<nbours.length; n++) {
-            // don't go outside evolvable region
-            if (inRange(nbours[n])) {
-	      traceForwardActivations(nbours[n],nbours[n].line);
-	    }
-	  }
-        }
-      } else {
-        if (VERBOSE) { System.err.println(loc+" -> OUT "+outline+" .. to backtrack caller"); }
+
+// returns the LUT inputs in the evolvable region that the OUT bus line
+// connects to, each as leIndex*4+(lutline-1)
+int[] outlineTargets(int le, int outline)
+{
+  int[] t=targetMemo[le*8+outline];
+  if (t==null) {
+    LEcoord[] nbours=OUTtoSingleConnectedLE(leCoord(le,-1),outline);
+    int n=0;
+    for (int i=0; i<nbours.length; i++) {
+      // don't go outside evolvable region
+      if (inRange(nbours[i])) { n++; }
+    }
+    t=new int[n];
+    n=0;
+    for (int i=0; i<nbours.length; i++) {
+      if (inRange(nbours[i])) {
+	t[n++]=(leIndex(nbours[i])<<2)|(nbours[i].line-1);
       }
     }
-  } else {
-    state=ActiveInputLEs.INACTIVE;
+    targetMemo[le*8+outline]=t;
   }
+  return t;
+}
+
 
-  return state; // state is either ACTIVE or INACTIVE
+// forget the connectivity of the LEs in the CLB, as it may have changed
+void forgetCLB(int row, int col)
+{
+  int le;
+  for (int l=0; l<2; l++) {
+    for (int s=0; s<2; s++) {
+      le=((((row-minrow)*2)+l)*leCols)+((col-mincol)*2)+s;
+      outbusMemo[le]=UNTRACED;
+      for (int i=0; i<4; i++) { driverMemo[le*4+i]=UNTRACED; }
+      for (int o=0; o<8; o++) { targetMemo[le*8+o]=null; }
+    }
+  }
+}
+
+
+// LEs are numbered in the same order as the state matrix' entries
+int leIndex(LEcoord loc)
+{
+  return ((((loc.row-minrow)*2)+loc.LE)*leCols)+((loc.col-mincol)*2)+loc.slice;
+}
+
+LEcoord leCoord(int le, int line)
+{
+  int i=le/leCols;
+  int j=le%leCols;
+  return new LEcoord((i/2)+minrow,(j/2)+mincol,j%2,i%2,line);
+}
+
+int stateAt(int le)
+{
+  return stateMatrix[le/leCols][le%leCols];
+}
+
+void setState(int le, int state)
+{
+  stateMatrix[le/leCols][le%leCols]=state;
+}
+
+int getLUTinState(int le, int linenum)
+{
+  return lutinStateMatrix[le/leCols][le%leCols][linenum-1];
+}
+
+void setLUTinState(int le, int linenum, int state)
+{
+  lutinStateMatrix[le/leCols][le%leCols][linenum-1]=state;
 }
 
 
@@ -813,864 +1061,21 @@ int[] connectedOUTbuses(LEcoord loc)
 }
 
 
-//    LUT-input			direct connect line
-//
-//  S0G1/S0F1/S1G4/S1F4:
-//	OFF N15 S6 W5 N19 S12 W17 N22 S13 W18 S21 OUT_WEST1
-//
-//  S0G2/S0F2/S1G3/S1F3:
-//	OFF E11 N12 S1 W2 E23 N17 W20 OUT_WEST0
-//
-//  S0G3/S0F3/S1G2/S1F2:
-//	OFF E5 N13 S0 W6 E7 S14 W8 E9 S20 W15 E10 W23 E21 OUT_EAST7
-//
-//  S0G4/S0F4/S1G1/S1F1:
-//	OFF E4 N0 S2 W3 E16 N1 S8 W11 E17 N3 S9 W14 E19 N5 S18 E22 N7 N10
-//	    OUT_EAST6
-
+// the LEs whose LUT inputs are connected to the OUT bus line, through a
+// single or direct connection, as found from the routes in OutBusRoutes
 // note that in LEcoord's LE==0 is G-Y LE, and LE==1 is F-X
 // NB. one line may drive multiple LUT inputs
 LEcoord[] OUTtoSingleConnectedLE(LEcoord loc, int outline)
 {
-  List nbours=new ArrayList();
-  int row=loc.row;
-  int col=loc.col;
-  int cnt=0;
-
-  if (outline==0) {
-
-    // OUT0 ->          OUT_WEST0 -> S0G2 S0F2 S1G3 S1F3
-    if (outlineToLUTConnected(row,col,0,"OUT_WEST0","S0G2")) {
-      nbours.add(new LEcoord(row,col+1,0,0,2));
-    }
-    if (outlineToLUTConnected(row,col,0,"OUT_WEST0","S0F2")) {
-      nbours.add(new LEcoord(row,col+1,0,1,2));
-    }
-    if (outlineToLUTConnected(row,col,0,"OUT_WEST0","S1G3")) {
-      nbours.add(new LEcoord(row,col+1,1,0,3));
-    }
-    if (outlineToLUTConnected(row,col,0,"OUT_WEST0","S1F3")) {
-      nbours.add(new LEcoord(row,col+1,1,1,3));
-    }
-    if (VERBOSE && nbours.size()>cnt) { System.err.println("OUT0->OUT_WEST0"); cnt++; }
-
-    // OUT0 -> EAST2 -> WEST2     -> S0G2 S0F2 S1G3 S1F3
-    if (outlineToLUTConnected(row,col,0,"EAST",2,"S0G2")) {
-      nbours.add(new LEcoord(row,col+1,0,0,2));
-    }
-    if (outlineToLUTConnected(row,col,0,"EAST",2,"S0F2")) {
-      nbours.add(new LEcoord(row,col+1,0,1,2));
-    }
-    if (outlineToLUTConnected(row,col,0,"EAST",2,"S1G3")) {
-      nbours.add(new LEcoord(row,col+1,1,0,3));
-    }
-    if (outlineToLUTConnected(row,col,0,"EAST",2,"S1F3")) {
-      nbours.add(new LEcoord(row,col+1,1,1,3));
-    }
-    if (VERBOSE && nbours.size()>cnt) { System.err.println("OUT0->EAST2"); cnt++; }
-
-    // OUT0 -> NORTH0 -> SOUTH0 -> S0G3 S0F3 S1G2 S1F2
-    if (outlineToLUTConnected(row,col,0,"NORTH",0,"S0G3")) {
-      nbours.add(new LEcoord(row+1,col,0,0,3));
-    }
-    if (outlineToLUTConnected(row,col,0,"NORTH",0,"S0F3")) {
-      nbours.add(new LEcoord(row+1,col,0,1,3));
-    }
-    if (outlineToLUTConnected(row,col,0,"NORTH",0,"S1G2")) {
-      nbours.add(new LEcoord(row+1,col,1,0,2));
-    }
-    if (outlineToLUTConnected(row,col,0,"NORTH",0,"S1F2")) {
-      nbours.add(new LEcoord(row+1,col,1,1,2));
-    }
-    if (VERBOSE && nbours.size()>cnt) { System.err.println("OUT0->NORTH0"); cnt++; }
-
-    // OUT0 -> NORTH1 -> SOUTH1 -> S0G2 S0F2 S1G3 S1F3
-    if (outlineToLUTConnected(row,col,0,"NORTH",1,"S0G2")) {
-      nbours.add(new LEcoord(row+1,col,0,0,2));
-    }
-    if (outlineToLUTConnected(row,col,0,"NORTH",1,"S0F2")) {
-      nbours.add(new LEcoord(row+1,col,0,1,2));
-    }
-    if (outlineToLUTConnected(row,col,0,"NORTH",1,"S1G3")) {
-      nbours.add(new LEcoord(row+1,col,1,0,3));
-    }
-    if (outlineToLUTConnected(row,col,0,"NORTH",1,"S1F3")) {
-      nbours.add(new LEcoord(row+1,col,1,1,3));
-    }
-    if (VERBOSE && nbours.size()>cnt) { System.err.println("OUT0->NORTH1"); cnt++; }
-
-    // OUT0 -> SOUTH1 -> NORTH1 -> S0G4 S0F4 S1G1 S1F1
-    if (outlineToLUTConnected(row,col,0,"SOUTH",1,"S0G4")) {
-      nbours.add(new LEcoord(row-1,col,0,0,4));
-    }
-    if (outlineToLUTConnected(row,col,0,"SOUTH",1,"S0F4")) {
-      nbours.add(new LEcoord(row-1,col,0,1,4));
-    }
-    if (outlineToLUTConnected(row,col,0,"SOUTH",1,"S1G1")) {
-      nbours.add(new LEcoord(row-1,col,1,0,1));
-    }
-    if (outlineToLUTConnected(row,col,0,"SOUTH",1,"S1F1")) {
-      nbours.add(new LEcoord(row-1,col,1,1,1));
-    }
-    if (VERBOSE && nbours.size()>cnt) { System.err.println("OUT0->SOUTH1"); cnt++; }
-
-    // OUT0 -> SOUTH3 -> NORTH3 -> S0G4 S0F4 S1G1 S1F1
-    if (outlineToLUTConnected(row,col,0,"SOUTH",3,"S0G4")) {
-      nbours.add(new LEcoord(row-1,col,0,0,4));
-    }
-    if (outlineToLUTConnected(row,col,0,"SOUTH",3,"S0F4")) {
-      nbours.add(new LEcoord(row-1,col,0,1,4));
-    }
-    if (outlineToLUTConnected(row,col,0,"SOUTH",3,"S1G1")) {
-      nbours.add(new LEcoord(row-1,col,1,0,1));
-    }
-    if (outlineToLUTConnected(row,col,0,"SOUTH",3,"S1F1")) {
-      nbours.add(new LEcoord(row-1,col,1,1,1));
-    }
-    if (VERBOSE && nbours.size()>cnt) { System.err.println("OUT0->SOUTH3"); cnt++; }
-
-    // OUT0 -> WEST7 -> EAST7 -> S0G3 S0F3 S1G2 S1F2
-    if (outlineToLUTConnected(row,col,0,"WEST",7,"S0G3")) {
-      nbours.add(new LEcoord(row,col-1,0,0,3));
-    }
-    if (outlineToLUTConnected(row,col,0,"WEST",7,"S0F3")) {
-      nbours.add(new LEcoord(row,col-1,0,1,3));
-    }
-    if (outlineToLUTConnected(row,col,0,"WEST",7,"S1G2")) {
-      nbours.add(new LEcoord(row,col-1,1,0,2));
-    }
-    if (outlineToLUTConnected(row,col,0,"WEST",7,"S1F2")) {
-      nbours.add(new LEcoord(row,col-1,1,1,2));
-    }
-    if (VERBOSE && nbours.size()>cnt) { System.err.println("OUT0->WEST7"); cnt++; }
-
-  } else if (outline==1) {
-
-    // OUT1     ->	OUT_WEST1 -> SOG1 S0F1 S1G4 S1F4
-    if (outlineToLUTConnected(row,col,1,"OUT_WEST1","S0G1")) {
-      nbours.add(new LEcoord(row,col+1,0,0,1));
-    }
-    if (outlineToLUTConnected(row,col,1,"OUT_WEST1","S0F1")) {
-      nbours.add(new LEcoord(row,col+1,0,1,1));
-    }
-    if (outlineToLUTConnected(row,col,1,"OUT_WEST1","S1G4")) {
-      nbours.add(new LEcoord(row,col+1,1,0,4));
-    }
-    if (outlineToLUTConnected(row,col,1,"OUT_WEST1","S1F4")) {
-      nbours.add(new LEcoord(row,col+1,1,1,4));
-    }
-    if (VERBOSE && nbours.size()>cnt) { System.err.println("OUT1->WEST_1"); cnt++; }
-
-    // OUT1 -> EAST3 -> WEST3     -> S0G4 S0F4 S1G1 S1F1
-    if (outlineToLUTConnected(row,col,1,"EAST",3,"S0G4")) {
-      nbours.add(new LEcoord(row,col+1,0,0,4));
-    }
-    if (outlineToLUTConnected(row,col,1,"EAST",3,"S0F4")) {
-      nbours.add(new LEcoord(row,col+1,0,1,4));
-    }
-    if (outlineToLUTConnected(row,col,1,"EAST",3,"S1G1")) {
-      nbours.add(new LEcoord(row,col+1,1,0,1));
-    }
-    if (outlineToLUTConnected(row,col,1,"EAST",3,"S1F1")) {
-      nbours.add(new LEcoord(row,col+1,1,1,1));
-    }
-    if (VERBOSE && nbours.size()>cnt) { System.err.println("OUT1->EAST3"); cnt++; }
-
-    // OUT1 -> EAST5 -> WEST5     -> SOG1 S0F1 S1G4 S1F4
-    if (outlineToLUTConnected(row,col,1,"EAST",5,"S0G1")) {
-      nbours.add(new LEcoord(row,col+1,0,0,1));
-    }
-    if (outlineToLUTConnected(row,col,1,"EAST",5,"S0F1")) {
-      nbours.add(new LEcoord(row,col+1,0,1,1));
-    }
-    if (outlineToLUTConnected(row,col,1,"EAST",5,"S1G4")) {
-      nbours.add(new LEcoord(row,col+1,1,0,4));
-    }
-    if (outlineToLUTConnected(row,col,1,"EAST",5,"S1F4")) {
-      nbours.add(new LEcoord(row,col+1,1,1,4));
-    }
-    if (VERBOSE && nbours.size()>cnt) { System.err.println("OUT1->EAST5"); cnt++; }
-
-    // OUT1 -> NORTH2 -> SOUTH2     -> S0F4 S0G4 S1F1 S1G1
-    if (outlineToLUTConnected(row,col,1,"NORTH",2,"S0G4")) {
-      nbours.add(new LEcoord(row+1,col,0,0,4));
-    }
-    if (outlineToLUTConnected(row,col,1,"NORTH",2,"S0F4")) {
-      nbours.add(new LEcoord(row+1,col,0,1,4));
-    }
-    if (outlineToLUTConnected(row,col,1,"NORTH",2,"S1G1")) {
-      nbours.add(new LEcoord(row+1,col,1,0,1));
-    }
-    if (outlineToLUTConnected(row,col,1,"NORTH",2,"S1F1")) {
-      nbours.add(new LEcoord(row+1,col,1,1,1));
-    }
-    if (VERBOSE && nbours.size()>cnt) { System.err.println("OUT1->NORTH2"); cnt++; }
-
-    // OUT1 -> SOUTH0 -> NORTH0     -> S0G4 S0F4 S1G1 S1F1
-    if (outlineToLUTConnected(row,col,1,"SOUTH",0,"S0G4")) {
-      nbours.add(new LEcoord(row-1,col,0,0,4));
-    }
-    if (outlineToLUTConnected(row,col,1,"SOUTH",0,"S0F4")) {
-      nbours.add(new LEcoord(row-1,col,0,1,4));
-    }
-    if (outlineToLUTConnected(row,col,1,"SOUTH",0,"S1G1")) {
-      nbours.add(new LEcoord(row-1,col,1,0,1));
-    }
-    if (outlineToLUTConnected(row,col,1,"SOUTH",0,"S1F1")) {
-      nbours.add(new LEcoord(row-1,col,1,1,1));
-    }
-    if (VERBOSE && nbours.size()>cnt) { System.err.println("OUT1->SOUTH0"); cnt++; }
-
-    // OUT1 -> WEST4 -> EAST4     -> S0G4 S0F4 S1G1 S1F1
-    if (outlineToLUTConnected(row,col,1,"WEST",4,"S0G4")) {
-      nbours.add(new LEcoord(row,col-1,0,0,4));
-    }
-    if (outlineToLUTConnected(row,col,1,"WEST",4,"S0F4")) {
-      nbours.add(new LEcoord(row,col-1,0,1,4));
-    }
-    if (outlineToLUTConnected(row,col,1,"WEST",4,"S1G1")) {
-      nbours.add(new LEcoord(row,col-1,1,0,1));
-    }
-    if (outlineToLUTConnected(row,col,1,"WEST",4,"S1F1")) {
-      nbours.add(new LEcoord(row,col-1,1,1,1));
-    }
-    if (VERBOSE && nbours.size()>cnt) { System.err.println("OUT1->WEST4"); cnt++; }
-
-    // OUT1 -> WEST5 -> EAST5 -> S0G3 S0F3 S1G2 S1F2
-    if (outlineToLUTConnected(row,col,1,"WEST",5,"S0G3")) {
-      nbours.add(new LEcoord(row,col-1,0,0,3));
-    }
-    if (outlineToLUTConnected(row,col,1,"WEST",5,"S0F3")) {
-      nbours.add(new LEcoord(row,col-1,0,1,3));
-    }
-    if (outlineToLUTConnected(row,col,1,"WEST",5,"S1G2")) {
-      nbours.add(new LEcoord(row,col-1,1,0,2));
-    }
-    if (outlineToLUTConnected(row,col,1,"WEST",5,"S1F2")) {
-      nbours.add(new LEcoord(row,col-1,1,1,2));
-    }
-    if (VERBOSE && nbours.size()>cnt) { System.err.println("OUT1->WEST5"); cnt++; }
-
-  } else if (outline==2) {
-
-    // OUT2 -> EAST6 -> WEST6 -> S0G3 S0F3 S1G2 S1F2
-    if (outlineToLUTConnected(row,col,2,"EAST",6,"S0G3")) {
-      nbours.add(new LEcoord(row,col+1,0,0,3));
-    }
-    if (outlineToLUTConnected(row,col,2,"EAST",6,"S0F3")) {
-      nbours.add(new LEcoord(row,col+1,0,1,3));
-    }
-    if (outlineToLUTConnected(row,col,2,"EAST",6,"S1G2")) {
-      nbours.add(new LEcoord(row,col+1,1,0,2));
+  int n=OutBusRoutes.connected(jbitsres,loc.row,loc.col,outline,true,routeTargets);
+  LEcoord[] nbours=new LEcoord[n];
+  for (int i=0; i<n; i++) {
+    if (VERBOSE && (i==0 || OutBusRoutes.targetRoute[routeTargets[i]]!=OutBusRoutes.targetRoute[routeTargets[i-1]])) {
+      System.err.println(OutBusRoutes.getRouteName(routeTargets[i]));
     }
-    if (outlineToLUTConnected(row,col,2,"EAST",6,"S1F2")) {
-      nbours.add(new LEcoord(row,col+1,1,1,2));
-    }
-    if (VERBOSE && nbours.size()>cnt) { System.err.println("OUT2->EAST6"); cnt++; }
-
-    // OUT2 -> NORTH6 -> SOUTH6     -> S0G1 S0F1 S1G4 S1F4
-    if (outlineToLUTConnected(row,col,2,"NORTH",6,"S0G1")) {
-      nbours.add(new LEcoord(row+1,col,0,0,1));
-    }
-    if (outlineToLUTConnected(row,col,2,"NORTH",6,"S0F1")) {
-      nbours.add(new LEcoord(row+1,col,0,1,1));
-    }
-    if (outlineToLUTConnected(row,col,2,"NORTH",6,"S1G4")) {
-      nbours.add(new LEcoord(row+1,col,1,0,4));
-    }
-    if (outlineToLUTConnected(row,col,2,"NORTH",6,"S1F4")) {
-      nbours.add(new LEcoord(row+1,col,1,1,4));
-    }
-    if (VERBOSE && nbours.size()>cnt) { System.err.println("OUT2->NORTH6"); cnt++; }
-
-    // OUT2 -> NORTH8 -> SOUTH8     -> S0G4 S0F4 S1G1 S1F1
-    if (outlineToLUTConnected(row,col,2,"NORTH",8,"S0G4")) {
-      nbours.add(new LEcoord(row+1,col,0,0,4));
-    }
-    if (outlineToLUTConnected(row,col,2,"NORTH",8,"S0F4")) {
-      nbours.add(new LEcoord(row+1,col,0,1,4));
-    }
-    if (outlineToLUTConnected(row,col,2,"NORTH",8,"S1G1")) {
-      nbours.add(new LEcoord(row+1,col,1,0,1));
-    }
-    if (outlineToLUTConnected(row,col,2,"NORTH",8,"S1F1")) {
-      nbours.add(new LEcoord(row+1,col,1,1,1));
-    }
-    if (VERBOSE && nbours.size()>cnt) { System.err.println("OUT2->NORTH8"); cnt++; }
-
-    // OUT2 -> SOUTH5 -> NORTH5     -> S0G4 S0F4 S1G1 S1G1
-    if (outlineToLUTConnected(row,col,2,"SOUTH",5,"S0G4")) {
-      nbours.add(new LEcoord(row-1,col,0,0,4));
-    }
-    if (outlineToLUTConnected(row,col,2,"SOUTH",5,"S0F4")) {
-      nbours.add(new LEcoord(row-1,col,0,1,4));
-    }
-    if (outlineToLUTConnected(row,col,2,"SOUTH",5,"S1G1")) {
-      nbours.add(new LEcoord(row-1,col,1,0,1));
-    }
-    if (outlineToLUTConnected(row,col,2,"SOUTH",5,"S1F1")) {
-      nbours.add(new LEcoord(row-1,col,1,1,1));
-    }
-    if (VERBOSE && nbours.size()>cnt) { System.err.println("OUT2->SOUTH5"); cnt++; }
-
-    // OUT2 -> SOUTH7 -> NORTH7     -> S0G4 S0F4 S1G1 S1G1
-    if (outlineToLUTConnected(row,col,2,"SOUTH",7,"S0G4")) {
-      nbours.add(new LEcoord(row-1,col,0,0,4));
-    }
-    if (outlineToLUTConnected(row,col,2,"SOUTH",7,"S0F4")) {
-      nbours.add(new LEcoord(row-1,col,0,1,4));
-    }
-    if (outlineToLUTConnected(row,col,2,"SOUTH",7,"S1G1")) {
-      nbours.add(new LEcoord(row-1,col,1,0,1));
-    }
-    if (outlineToLUTConnected(row,col,2,"SOUTH",7,"S1F1")) {
-      nbours.add(new LEcoord(row-1,col,1,1,1));
-    }
-    if (VERBOSE && nbours.size()>cnt) { System.err.println("OUT2->SOUTH7"); cnt++; }
-
-    // OUT2 -> WEST9 -> EAST6 -> S0G3 S0F3 S1G2 S1F2
-    if (outlineToLUTConnected(row,col,2,"WEST",9,"S0G3")) {
-      nbours.add(new LEcoord(row,col-1,0,0,3));
-    }
-    if (outlineToLUTConnected(row,col,2,"WEST",9,"S0F3")) {
-      nbours.add(new LEcoord(row,col-1,0,1,3));
-    }
-    if (outlineToLUTConnected(row,col,2,"WEST",9,"S1G2")) {
-      nbours.add(new LEcoord(row,col-1,1,0,2));
-    }
-    if (outlineToLUTConnected(row,col,2,"WEST",9,"S1F2")) {
-      nbours.add(new LEcoord(row,col-1,1,1,2));
-    }
-    if (VERBOSE && nbours.size()>cnt) { System.err.println("OUT2->WEST9"); cnt++; }
-
-  } else if (outline==3) {
-
-    // OUT3 -> EAST8 -> WEST8     -> S0G3 S0F3 S1G2 S1F2
-    if (outlineToLUTConnected(row,col,3,"EAST",8,"S0G3")) {
-      nbours.add(new LEcoord(row,col+1,0,0,3));
-    }
-    if (outlineToLUTConnected(row,col,3,"EAST",8,"S0F3")) {
-      nbours.add(new LEcoord(row,col+1,0,1,3));
-    }
-    if (outlineToLUTConnected(row,col,3,"EAST",8,"S1G2")) {
-      nbours.add(new LEcoord(row,col+1,1,0,2));
-    }
-    if (outlineToLUTConnected(row,col,3,"EAST",8,"S1F2")) {
-      nbours.add(new LEcoord(row,col+1,1,1,2));
-    }
-    if (VERBOSE && nbours.size()>cnt) { System.err.println("OUT3->EAST8"); cnt++; }
-
-    // OUT3 -> EAST11 -> WEST11     -> S0G4 S0F4 S1G1 S1F1
-    if (outlineToLUTConnected(row,col,3,"EAST",11,"S0G4")) {
-      nbours.add(new LEcoord(row,col+1,0,0,4));
-    }
-    if (outlineToLUTConnected(row,col,3,"EAST",11,"S0F4")) {
-      nbours.add(new LEcoord(row,col+1,0,1,4));
-    }
-    if (outlineToLUTConnected(row,col,3,"EAST",11,"S1G1")) {
-      nbours.add(new LEcoord(row,col+1,1,0,1));
-    }
-    if (outlineToLUTConnected(row,col,3,"EAST",11,"S1F1")) {
-      nbours.add(new LEcoord(row,col+1,1,1,1));
-    }
-    if (VERBOSE && nbours.size()>cnt) { System.err.println("OUT3->EAST11"); cnt++; }
-
-    // OUT3 -> NORTH9 -> SOUTH9     -> S0F4 S0G4 S1F1 S1G1
-    if (outlineToLUTConnected(row,col,3,"NORTH",9,"S0G4")) {
-      nbours.add(new LEcoord(row+1,col,0,0,4));
-    }
-    if (outlineToLUTConnected(row,col,3,"NORTH",9,"S0F4")) {
-      nbours.add(new LEcoord(row+1,col,0,1,4));
-    }
-    if (outlineToLUTConnected(row,col,3,"NORTH",9,"S1G1")) {
-      nbours.add(new LEcoord(row+1,col,1,0,1));
-    }
-    if (outlineToLUTConnected(row,col,3,"NORTH",9,"S1F1")) {
-      nbours.add(new LEcoord(row+1,col,1,1,1));
-    }
-    if (VERBOSE && nbours.size()>cnt) { System.err.println("OUT3->NORTH9"); cnt++; }
-
-    // OUT3 -> SOUTH10 -> NORTH10     -> S0G4 S0F4 S1G1 S1F1
-    if (outlineToLUTConnected(row,col,3,"SOUTH",10,"S0G4")) {
-      nbours.add(new LEcoord(row-1,col,0,0,4));
-    }
-    if (outlineToLUTConnected(row,col,3,"SOUTH",10,"S0F4")) {
-      nbours.add(new LEcoord(row-1,col,0,1,4));
-    }
-    if (outlineToLUTConnected(row,col,3,"SOUTH",10,"S1G1")) {
-      nbours.add(new LEcoord(row-1,col,1,0,1));
-    }
-    if (outlineToLUTConnected(row,col,3,"SOUTH",10,"S1F1")) {
-      nbours.add(new LEcoord(row-1,col,1,1,1));
-    }
-    if (VERBOSE && nbours.size()>cnt) { System.err.println("OUT3->SOUTH10"); cnt++; }
-
-    // OUT3 -> WEST10 -> EAST10 -> S0G3 S0F3 S1G2 S1F2
-    if (outlineToLUTConnected(row,col,3,"WEST",10,"S0G3")) {
-      nbours.add(new LEcoord(row,col-1,0,0,3));
-    }
-    if (outlineToLUTConnected(row,col,3,"WEST",10,"S0F3")) {
-      nbours.add(new LEcoord(row,col-1,0,1,3));
-    }
-    if (outlineToLUTConnected(row,col,3,"WEST",10,"S1G2")) {
-      nbours.add(new LEcoord(row,col-1,1,0,2));
-    }
-    if (outlineToLUTConnected(row,col,3,"WEST",10,"S1F2")) {
-      nbours.add(new LEcoord(row,col-1,1,1,2));
-    }
-    if (VERBOSE && nbours.size()>cnt) { System.err.println("OUT3->WEST10"); cnt++; }
-
-    // OUT3 -> WEST11 -> EAST11 -> S0G2 S0F2 S1G3 S1F3
-    if (outlineToLUTConnected(row,col,3,"WEST",11,"S0G2")) {
-      nbours.add(new LEcoord(row,col-1,0,0,2));
-    }
-    if (outlineToLUTConnected(row,col,3,"WEST",11,"S0F2")) {
-      nbours.add(new LEcoord(row,col-1,0,1,2));
-    }
-    if (outlineToLUTConnected(row,col,3,"WEST",11,"S1G3")) {
-      nbours.add(new LEcoord(row,col-1,1,0,3));
-    }
-    if (outlineToLUTConnected(row,col,3,"WEST",11,"S1F3")) {
-      nbours.add(new LEcoord(row,col-1,1,1,3));
-    }
-    if (VERBOSE && nbours.size()>cnt) { System.err.println("OUT3->WEST11"); cnt++; }
-
-  } else if (outline==4) {
-
-    // OUT4 -> EAST14 -> WEST14     -> S0G4 S0F4 S1G1 S1F1
-    if (outlineToLUTConnected(row,col,4,"EAST",14,"S0G4")) {
-      nbours.add(new LEcoord(row,col+1,0,0,4));
-    }
-    if (outlineToLUTConnected(row,col,4,"EAST",14,"S0F4")) {
-      nbours.add(new LEcoord(row,col+1,0,1,4));
-    }
-    if (outlineToLUTConnected(row,col,4,"EAST",14,"S1G1")) {
-      nbours.add(new LEcoord(row,col+1,1,0,1));
-    }
-    if (outlineToLUTConnected(row,col,4,"EAST",14,"S1F1")) {
-      nbours.add(new LEcoord(row,col+1,1,1,1));
-    }
-    if (VERBOSE && nbours.size()>cnt) { System.err.println("OUT4->EAST14"); cnt++; }
-
-    // OUT4 -> NORTH12 -> SOUTH12     -> S0G1 S0F1 S1G4 S1F4
-    if (outlineToLUTConnected(row,col,4,"NORTH",12,"S0G1")) {
-      nbours.add(new LEcoord(row+1,col,0,0,1));
-    }
-    if (outlineToLUTConnected(row,col,4,"NORTH",12,"S0F1")) {
-      nbours.add(new LEcoord(row+1,col,0,1,1));
-    }
-    if (outlineToLUTConnected(row,col,4,"NORTH",12,"S1G4")) {
-      nbours.add(new LEcoord(row+1,col,1,0,4));
-    }
-    if (outlineToLUTConnected(row,col,4,"NORTH",12,"S1F4")) {
-      nbours.add(new LEcoord(row+1,col,1,1,4));
-    }
-    if (VERBOSE && nbours.size()>cnt) { System.err.println("OUT4->NORTH12"); cnt++; }
-
-    // OUT4 -> NORTH13 -> SOUTH13     -> S0G1 S0F1 S1G4 S1F4
-    if (outlineToLUTConnected(row,col,4,"NORTH",13,"S0G1")) {
-      nbours.add(new LEcoord(row+1,col,0,0,1));
-    }
-    if (outlineToLUTConnected(row,col,4,"NORTH",13,"S0F1")) {
-      nbours.add(new LEcoord(row+1,col,0,1,1));
-    }
-    if (outlineToLUTConnected(row,col,4,"NORTH",13,"S1G4")) {
-      nbours.add(new LEcoord(row+1,col,1,0,4));
-    }
-    if (outlineToLUTConnected(row,col,4,"NORTH",13,"S1F4")) {
-      nbours.add(new LEcoord(row+1,col,1,1,4));
-    }
-    if (VERBOSE && nbours.size()>cnt) { System.err.println("OUT4->NORTH13"); cnt++; }
-
-    // OUT4 -> SOUTH13 -> NORTH13     -> S0G3 S0F3 S1G2 S1F2
-    if (outlineToLUTConnected(row,col,4,"SOUTH",13,"S0G3")) {
-      nbours.add(new LEcoord(row-1,col,0,0,3));
-    }
-    if (outlineToLUTConnected(row,col,4,"SOUTH",13,"S0F3")) {
-      nbours.add(new LEcoord(row-1,col,0,1,3));
-    }
-    if (outlineToLUTConnected(row,col,4,"SOUTH",13,"S1G2")) {
-      nbours.add(new LEcoord(row-1,col,1,0,2));
-    }
-    if (outlineToLUTConnected(row,col,4,"SOUTH",13,"S1F2")) {
-      nbours.add(new LEcoord(row-1,col,1,1,2));
-    }
-    if (VERBOSE && nbours.size()>cnt) { System.err.println("OUT4->SOUTH13"); cnt++; }
-
-    // OUT4 -> SOUTH15 -> NORTH15     -> S0G1 S0F1 S1G4 S1F4
-    if (outlineToLUTConnected(row,col,4,"SOUTH",15,"S0G1")) {
-      nbours.add(new LEcoord(row-1,col,0,0,1));
-    }
-    if (outlineToLUTConnected(row,col,4,"SOUTH",15,"S0F1")) {
-      nbours.add(new LEcoord(row-1,col,0,1,1));
-    }
-    if (outlineToLUTConnected(row,col,4,"SOUTH",15,"S1G4")) {
-      nbours.add(new LEcoord(row-1,col,1,0,4));
-    }
-    if (outlineToLUTConnected(row,col,4,"SOUTH",15,"S1F4")) {
-      nbours.add(new LEcoord(row-1,col,1,1,4));
-    }
-    if (VERBOSE && nbours.size()>cnt) { System.err.println("OUT4->SOUTH15"); cnt++; }
-
-    // OUT4 -> WEST19 -> EAST19     -> S0G4 S0F4 S1G1 S1F1
-    if (outlineToLUTConnected(row,col,4,"WEST",19,"S0G4")) {
-      nbours.add(new LEcoord(row,col-1,0,0,4));
-    }
-    if (outlineToLUTConnected(row,col,4,"WEST",19,"S0F4")) {
-      nbours.add(new LEcoord(row,col-1,0,1,4));
-    }
-    if (outlineToLUTConnected(row,col,4,"WEST",19,"S1G1")) {
-      nbours.add(new LEcoord(row,col-1,1,0,1));
-    }
-    if (outlineToLUTConnected(row,col,4,"WEST",19,"S1F1")) {
-      nbours.add(new LEcoord(row,col-1,1,1,1));
-    }
-    if (VERBOSE && nbours.size()>cnt) { System.err.println("OUT4->WEST19"); cnt++; }
-
-  } else if (outline==5) {
-
-    // OUT5 -> EAST15 -> WEST15     -> S0G3 S0F3 S1G2 S1F2
-    if (outlineToLUTConnected(row,col,5,"EAST",15,"S0G3")) {
-      nbours.add(new LEcoord(row,col+1,0,0,3));
-    }
-    if (outlineToLUTConnected(row,col,5,"EAST",15,"S0F3")) {
-      nbours.add(new LEcoord(row,col+1,0,1,3));
-    }
-    if (outlineToLUTConnected(row,col,5,"EAST",15,"S1G2")) {
-      nbours.add(new LEcoord(row,col+1,1,0,2));
-    }
-    if (outlineToLUTConnected(row,col,5,"EAST",15,"S1F2")) {
-      nbours.add(new LEcoord(row,col+1,1,1,2));
-    }
-    if (VERBOSE && nbours.size()>cnt) { System.err.println("OUT5->EAST15"); cnt++; }
-
-    // OUT5 -> EAST17 -> WEST17     -> S0G1 S0F1 S1G4 S1F4
-    if (outlineToLUTConnected(row,col,5,"EAST",17,"S0G1")) {
-      nbours.add(new LEcoord(row,col+1,0,0,1));
-    }
-    if (outlineToLUTConnected(row,col,5,"EAST",17,"S0F1")) {
-      nbours.add(new LEcoord(row,col+1,0,1,1));
-    }
-    if (outlineToLUTConnected(row,col,5,"EAST",17,"S1G4")) {
-      nbours.add(new LEcoord(row,col+1,1,0,4));
-    }
-    if (outlineToLUTConnected(row,col,5,"EAST",17,"S1F4")) {
-      nbours.add(new LEcoord(row,col+1,1,1,4));
-    }
-    if (VERBOSE && nbours.size()>cnt) { System.err.println("OUT5->EAST17"); cnt++; }
-
-    // OUT5 -> NORTH14 -> SOUTH14     -> S0G3 S0F3 S1G2 S1F2
-    if (outlineToLUTConnected(row,col,5,"NORTH",14,"S0G3")) {
-      nbours.add(new LEcoord(row+1,col,0,0,3));
-    }
-    if (outlineToLUTConnected(row,col,5,"NORTH",14,"S0F3")) {
-      nbours.add(new LEcoord(row+1,col,0,1,3));
-    }
-    if (outlineToLUTConnected(row,col,5,"NORTH",14,"S1G2")) {
-      nbours.add(new LEcoord(row+1,col,1,0,2));
-    }
-    if (outlineToLUTConnected(row,col,5,"NORTH",14,"S1F2")) {
-      nbours.add(new LEcoord(row+1,col,1,1,2));
-    }
-    if (VERBOSE && nbours.size()>cnt) { System.err.println("OUT5->NORTH14"); cnt++; }
-
-    // OUT5 -> SOUTH12 -> NORTH12     -> S0G2 S0F2 S1G3 S1F3
-    if (outlineToLUTConnected(row,col,5,"SOUTH",12,"S0G2")) {
-      nbours.add(new LEcoord(row-1,col,0,0,2));
-    }
-    if (outlineToLUTConnected(row,col,5,"SOUTH",12,"S0F2")) {
-      nbours.add(new LEcoord(row-1,col,0,1,2));
-    }
-    if (outlineToLUTConnected(row,col,5,"SOUTH",12,"S1G3")) {
-      nbours.add(new LEcoord(row-1,col,1,0,3));
-    }
-    if (outlineToLUTConnected(row,col,5,"SOUTH",12,"S1F3")) {
-      nbours.add(new LEcoord(row-1,col,1,1,3));
-    }
-    if (VERBOSE && nbours.size()>cnt) { System.err.println("OUT5->SOUTH12"); cnt++; }
-
-    // OUT5 -> WEST16 -> EAST16     -> S0G4 S0F4 S1G1 S1F1
-    if (outlineToLUTConnected(row,col,5,"WEST",16,"S0G4")) {
-      nbours.add(new LEcoord(row,col-1,0,0,4));
-    }
-    if (outlineToLUTConnected(row,col,5,"WEST",16,"S0F4")) {
-      nbours.add(new LEcoord(row,col-1,0,1,4));
-    }
-    if (outlineToLUTConnected(row,col,5,"WEST",16,"S1G1")) {
-      nbours.add(new LEcoord(row,col-1,1,0,1));
-    }
-    if (outlineToLUTConnected(row,col,5,"WEST",16,"S1F1")) {
-      nbours.add(new LEcoord(row,col-1,1,1,1));
-    }
-    if (VERBOSE && nbours.size()>cnt) { System.err.println("OUT5->WEST16"); cnt++; }
-
-    // OUT5 -> WEST17 -> EAST17     -> S0G4 S0F4 S1G1 S1F1
-    if (outlineToLUTConnected(row,col,5,"WEST",17,"S0G4")) {
-      nbours.add(new LEcoord(row,col-1,0,0,4));
-    }
-    if (outlineToLUTConnected(row,col,5,"WEST",17,"S0F4")) {
-      nbours.add(new LEcoord(row,col-1,0,1,4));
-    }
-    if (outlineToLUTConnected(row,col,5,"WEST",17,"S1G1")) {
-      nbours.add(new LEcoord(row,col-1,1,0,1));
-    }
-    if (outlineToLUTConnected(row,col,5,"WEST",17,"S1F1")) {
-      nbours.add(new LEcoord(row,col-1,1,1,1));
-    }
-    if (VERBOSE && nbours.size()>cnt) { System.err.println("OUT5->WEST17"); cnt++; }
-
-  } else if (outline==6) {
-
-    // OUT6 -> EAST18 -> WEST18     -> S0G1 S0F1 S1G4 S1F4
-    if (outlineToLUTConnected(row,col,6,"EAST",18,"S0G1")) {
-      nbours.add(new LEcoord(row,col+1,0,0,1));
-    }
-    if (outlineToLUTConnected(row,col,6,"EAST",18,"S0F1")) {
-      nbours.add(new LEcoord(row,col+1,0,1,1));
-    }
-    if (outlineToLUTConnected(row,col,6,"EAST",18,"S1G4")) {
-      nbours.add(new LEcoord(row,col+1,1,0,4));
-    }
-    if (outlineToLUTConnected(row,col,6,"EAST",18,"S1F4")) {
-      nbours.add(new LEcoord(row,col+1,1,1,4));
-    }
-    if (VERBOSE && nbours.size()>cnt) { System.err.println("OUT6->EAST18"); cnt++; }
-
-    // OUT6 -> NORTH18 -> SOUTH18     -> S0G4 S0F4 S1G1 S1F1
-    if (outlineToLUTConnected(row,col,6,"NORTH",18,"S0G4")) {
-      nbours.add(new LEcoord(row+1,col,0,0,4));
-    }
-    if (outlineToLUTConnected(row,col,6,"NORTH",18,"S0F4")) {
-      nbours.add(new LEcoord(row+1,col,0,1,4));
-    }
-    if (outlineToLUTConnected(row,col,6,"NORTH",18,"S1G1")) {
-      nbours.add(new LEcoord(row+1,col,1,0,1));
-    }
-    if (outlineToLUTConnected(row,col,6,"NORTH",18,"S1F1")) {
-      nbours.add(new LEcoord(row+1,col,1,1,1));
-    }
-    if (VERBOSE && nbours.size()>cnt) { System.err.println("OUT6->NORTH18"); cnt++; }
-
-    // OUT6 -> NORTH20 -> SOUTH20     -> S0G3 S0F3 S1G2 S1F2
-    if (outlineToLUTConnected(row,col,6,"NORTH",20,"S0G3")) {
-      nbours.add(new LEcoord(row+1,col,0,0,3));
-    }
-    if (outlineToLUTConnected(row,col,6,"NORTH",20,"S0F3")) {
-      nbours.add(new LEcoord(row+1,col,0,1,3));
-    }
-    if (outlineToLUTConnected(row,col,6,"NORTH",20,"S1G2")) {
-      nbours.add(new LEcoord(row+1,col,1,0,2));
-    }
-    if (outlineToLUTConnected(row,col,6,"NORTH",20,"S1F2")) {
-      nbours.add(new LEcoord(row+1,col,1,1,2));
-    }
-    if (VERBOSE && nbours.size()>cnt) { System.err.println("OUT6->NORTH20"); cnt++; }
-
-    // OUT6 -> SOUTH17 -> NORTH17     -> S0G2 S0F2 S1G3 S1F3
-    if (outlineToLUTConnected(row,col,6,"SOUTH",17,"S0G2")) {
-      nbours.add(new LEcoord(row-1,col,0,0,2));
-    }
-    if (outlineToLUTConnected(row,col,6,"SOUTH",17,"S0F2")) {
-      nbours.add(new LEcoord(row-1,col,0,1,2));
-    }
-    if (outlineToLUTConnected(row,col,6,"SOUTH",17,"S1G3")) {
-      nbours.add(new LEcoord(row-1,col,1,0,3));
-    }
-    if (outlineToLUTConnected(row,col,6,"SOUTH",17,"S1F3")) {
-      nbours.add(new LEcoord(row-1,col,1,1,3));
-    }
-    if (VERBOSE && nbours.size()>cnt) { System.err.println("OUT6->SOUTH17"); cnt++; }
-
-    // OUT6 -> SOUTH19 -> NORTH19     -> S0G1 S0F1 S1G4 S1F4
-    if (outlineToLUTConnected(row,col,6,"SOUTH",19,"S0G1")) {
-      nbours.add(new LEcoord(row-1,col,0,0,1));
-    }
-    if (outlineToLUTConnected(row,col,6,"SOUTH",19,"S0F1")) {
-      nbours.add(new LEcoord(row-1,col,0,1,1));
-    }
-    if (outlineToLUTConnected(row,col,6,"SOUTH",19,"S1G4")) {
-      nbours.add(new LEcoord(row-1,col,1,0,4));
-    }
-    if (outlineToLUTConnected(row,col,6,"SOUTH",19,"S1F4")) {
-      nbours.add(new LEcoord(row-1,col,1,1,4));
-    }
-    if (VERBOSE && nbours.size()>cnt) { System.err.println("OUT6->SOUTH19"); cnt++; }
-
-    // OUT6 -> WEST21 -> EAST21 -> S0G3 S0F3 S1G2 S1F2
-    if (outlineToLUTConnected(row,col,6,"WEST",21,"S0G3")) {
-      nbours.add(new LEcoord(row,col-1,0,0,3));
-    }
-    if (outlineToLUTConnected(row,col,6,"WEST",21,"S0F3")) {
-      nbours.add(new LEcoord(row,col-1,0,1,3));
-    }
-    if (outlineToLUTConnected(row,col,6,"WEST",21,"S1G2")) {
-      nbours.add(new LEcoord(row,col-1,1,0,2));
-    }
-    if (outlineToLUTConnected(row,col,6,"WEST",21,"S1F2")) {
-      nbours.add(new LEcoord(row,col-1,1,1,2));
-    }
-    if (VERBOSE && nbours.size()>cnt) { System.err.println("OUT6->WEST21"); cnt++; }
-
-    // OUT6 	-> OUT_EAST6     -> S0G4 S0F4 S1G1 S1F1
-    if (outlineToLUTConnected(row,col,6,"OUT_EAST6","S0G4")) {
-      nbours.add(new LEcoord(row,col-1,0,0,4));
-    }
-    if (outlineToLUTConnected(row,col,6,"OUT_EAST6","S0F4")) {
-      nbours.add(new LEcoord(row,col-1,0,1,4));
-    }
-    if (outlineToLUTConnected(row,col,6,"OUT_EAST6","S1G1")) {
-      nbours.add(new LEcoord(row,col-1,1,0,1));
-    }
-    if (outlineToLUTConnected(row,col,6,"OUT_EAST6","S1F1")) {
-      nbours.add(new LEcoord(row,col-1,1,1,1));
-    }
-    if (VERBOSE && nbours.size()>cnt) { System.err.println("OUT6->OUT_EAST6"); cnt++; }
-
-  } else { // (outline==7)
-
-    // OUT7 -> EAST20 -> WEST20     -> S0G2 S0F2 S1G3 S1F3
-    if (outlineToLUTConnected(row,col,7,"EAST",20,"S0G2")) {
-      nbours.add(new LEcoord(row,col+1,0,0,2));
-    }
-    if (outlineToLUTConnected(row,col,7,"EAST",20,"S0F2")) {
-      nbours.add(new LEcoord(row,col+1,0,1,2));
-    }
-    if (outlineToLUTConnected(row,col,7,"EAST",20,"S1G3")) {
-      nbours.add(new LEcoord(row,col+1,1,0,3));
-    }
-    if (outlineToLUTConnected(row,col,7,"EAST",20,"S1F3")) {
-      nbours.add(new LEcoord(row,col+1,1,1,3));
-    }
-    if (VERBOSE && nbours.size()>cnt) { System.err.println("OUT7->EAST20"); cnt++; }
-
-    // OUT7 -> EAST23 -> WEST23     -> S0G3 S0F3 S1G2 S1F2
-    if (outlineToLUTConnected(row,col,7,"EAST",23,"S0G3")) {
-      nbours.add(new LEcoord(row,col+1,0,0,3));
-    }
-    if (outlineToLUTConnected(row,col,7,"EAST",23,"S0F3")) {
-      nbours.add(new LEcoord(row,col+1,0,1,3));
-    }
-    if (outlineToLUTConnected(row,col,7,"EAST",23,"S1G2")) {
-      nbours.add(new LEcoord(row,col+1,1,0,2));
-    }
-    if (outlineToLUTConnected(row,col,7,"EAST",23,"S1F2")) {
-      nbours.add(new LEcoord(row,col+1,1,1,2));
-    }
-    if (VERBOSE && nbours.size()>cnt) { System.err.println("OUT7->EAST23"); cnt++; }
-
-    // OUT7 -> NORTH21 -> SOUTH21     -> S0G1 S0F1 S1G4 S1F4
-    if (outlineToLUTConnected(row,col,7,"NORTH",21,"S0G1")) {
-      nbours.add(new LEcoord(row+1,col,0,0,1));
-    }
-    if (outlineToLUTConnected(row,col,7,"NORTH",21,"S0F1")) {
-      nbours.add(new LEcoord(row+1,col,0,1,1));
-    }
-    if (outlineToLUTConnected(row,col,7,"NORTH",21,"S1G4")) {
-      nbours.add(new LEcoord(row+1,col,1,0,4));
-    }
-    if (outlineToLUTConnected(row,col,7,"NORTH",21,"S1F4")) {
-      nbours.add(new LEcoord(row+1,col,1,1,4));
-    }
-    if (VERBOSE && nbours.size()>cnt) { System.err.println("OUT7->NORTH21"); cnt++; }
-
-    // OUT7 -> SOUTH22 -> NORTH22     -> S0G1 S0F1 S1G4 S1F4
-    if (outlineToLUTConnected(row,col,7,"SOUTH",22,"S0G1")) {
-      nbours.add(new LEcoord(row-1,col,0,0,1));
-    }
-    if (outlineToLUTConnected(row,col,7,"SOUTH",22,"S0F1")) {
-      nbours.add(new LEcoord(row-1,col,0,1,1));
-    }
-    if (outlineToLUTConnected(row,col,7,"SOUTH",22,"S1G4")) {
-      nbours.add(new LEcoord(row-1,col,1,0,4));
-    }
-    if (outlineToLUTConnected(row,col,7,"SOUTH",22,"S1F4")) {
-      nbours.add(new LEcoord(row-1,col,1,1,4));
-    }
-    if (VERBOSE && nbours.size()>cnt) { System.err.println("OUT7->SOUTH22"); cnt++; }
-
-    // OUT7 -> WEST22 -> EAST22     -> S0G4 S0F4 S1G1 S1F1
-    if (outlineToLUTConnected(row,col,7,"WEST",22,"S0G4")) {
-      nbours.add(new LEcoord(row,col-1,0,0,4));
-    }
-    if (outlineToLUTConnected(row,col,7,"WEST",22,"S0F4")) {
-      nbours.add(new LEcoord(row,col-1,0,1,4));
-    }
-    if (outlineToLUTConnected(row,col,7,"WEST",22,"S1G1")) {
-      nbours.add(new LEcoord(row,col-1,1,0,1));
-    }
-    if (outlineToLUTConnected(row,col,7,"WEST",22,"S1F1")) {
-      nbours.add(new LEcoord(row,col-1,1,1,1));
-    }
-    if (VERBOSE && nbours.size()>cnt) { System.err.println("OUT7->WEST22"); cnt++; }
-
-    // OUT7 -> WEST23 -> EAST23 -> S0G2 S0F2 S1G3 S1F3
-    if (outlineToLUTConnected(row,col,7,"WEST",23,"S0G2")) {
-      nbours.add(new LEcoord(row,col-1,0,0,2));
-    }
-    if (outlineToLUTConnected(row,col,7,"WEST",23,"S0F2")) {
-      nbours.add(new LEcoord(row,col-1,0,1,2));
-    }
-    if (outlineToLUTConnected(row,col,7,"WEST",23,"S1G3")) {
-      nbours.add(new LEcoord(row,col-1,1,0,3));
-    }
-    if (outlineToLUTConnected(row,col,7,"WEST",23,"S1F3")) {
-      nbours.add(new LEcoord(row,col-1,1,1,3));
-    }
-    if (VERBOSE && nbours.size()>cnt) { System.err.println("OUT7->WEST23"); cnt++; }
-
-    // OUT7 	-> OUT_EAST7     -> S0G3 S0F3 S1G2 S1F2
-    if (outlineToLUTConnected(row,col,7,"OUT_EAST7","S0G3")) {
-      nbours.add(new LEcoord(row,col-1,0,0,3));
-    }
-    if (outlineToLUTConnected(row,col,7,"OUT_EAST7","S0F3")) {
-      nbours.add(new LEcoord(row,col-1,0,1,3));
-    }
-    if (outlineToLUTConnected(row,col,7,"OUT_EAST7","S1G2")) {
-      nbours.add(new LEcoord(row,col-1,1,0,2));
-    }
-    if (outlineToLUTConnected(row,col,7,"OUT_EAST7","S1F2")) {
-      nbours.add(new LEcoord(row,col-1,1,1,2));
-    }
-    if (VERBOSE && nbours.size()>cnt) { System.err.println("OUT7->OUT_EAST7"); cnt++; }
-
+    nbours[i]=OutBusRoutes.getTarget(loc.row,loc.col,routeTargets[i]);
   }
-
-//if(nbours.size()>0) { System.err.print("<nbours="+nbours+">"); }
-
-  // note use of empty array param to the ArrayList.toArray() method
-  // this ensures that (from API) "a new array is allocated with the
-  // runtime type of the specified array and the size of this list."
-  // otherwise a java.lang.ClassCastException is thrown
-
-  return (LEcoord[])nbours.toArray(new LEcoord[0]);
-}
-
-
-
-boolean outlineToLUTConnected(int row, int col, int busline, String singledir, int singlenum, String lutmux) 
-{
-  int roff=0;
-  int coff=0;
-  String lutsingle=null;
-  if (singledir.equals("EAST")) { coff=1; lutsingle="WEST"; }
-  if (singledir.equals("WEST")) { coff=-1; lutsingle="EAST"; }
-  if (singledir.equals("NORTH")) { roff=1; lutsingle="SOUTH"; }
-  if (singledir.equals("SOUTH")) { roff=-1; lutsingle="NORTH"; }
-
-  int[] val=jbitsres.getbits(row,col,"OutMuxToSingle.OUT"+busline+"_TO_SINGLE_"+singledir+singlenum);
-  int[] nbval=jbitsres.getbits(row+roff,col+coff,lutmux+"."+lutmux);
-  return (jbitsres.isEquivVal(row,col,val,"OutMuxToSingle.ON") &&
-	  jbitsres.isEquivVal(row+roff,col+coff,nbval,lutmux+".SINGLE_"+lutsingle+singlenum));
-
-}
-
-
-boolean outlineToLUTConnected(int row, int col, int busline, String directout, String lutmux) 
-{
-  // if OUT_WEST0 || OUT_WEST1: coff=1; if OUT_EAST6 || OUT_EAST7: coff=-1
-  int coff=(busline==0 || busline==1) ? 1 : -1;
-  int[] nbval=jbitsres.getbits(row,col+coff,lutmux+"."+lutmux);
-  return jbitsres.isEquivVal(row,col+coff,nbval,lutmux+"."+directout);
+  return nbours;
 }
 
 
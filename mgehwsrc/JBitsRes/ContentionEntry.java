@@ -13,6 +13,8 @@
 //   another resource, that will have contention problems if this JBits
 //   resource is set with the above settings. For eg the row & col offset
 //   for the above example would be 0, +1
+// - bits and value are the JBits constants for bitString and valString,
+//   these are set when the contention table is compiled by ContentionLookup
 //
 //
 // 		written December 2003, J.A. Lee
@@ -27,6 +29,9 @@ class ContentionEntry {
   public int rowOffset;
   public int colOffset;
 
+  public int[][] bits;
+  public int[] value;
+
 
 public ContentionEntry(String bs, String vs, int ro, int co)
 {
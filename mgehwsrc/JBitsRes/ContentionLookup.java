@@ -15,7 +15,15 @@
 // virtex resources. Also, the offsets are integers, typically -1,0,+1 for
 // single lines.
 //
-// this class also requires local classes: ContentionEntry, StringSplitter
+// once loaded, the table is compiled so that it can be used without any
+// string handling: each contentious resource setting is given an index, and
+// the JBits constants for its competing resources are looked up. each tile
+// bit used by a competing resource is also indexed, with the settings and
+// competing entries that use it, so that setting a resource only needs the
+// settings that it can affect to be checked again.
+//
+// this class also requires local classes:
+// 	ContentionEntry, StringSplitter, JBitsLookup
 //
 // 		written December 2003, J.A. Lee
 
@@ -32,6 +40,17 @@ class ContentionLookup {
 
   Map contentionTable;
 
+  // the compiled table, indexed by the contentious setting's index
+  int numSettings;
+  int[] settingBits;			// the setting's bits handle
+  int[] settingValue;			// the setting's value handle
+  ContentionEntry[][] settingEntries;	// its competing resources
+
+  int[][] settingsByBits;	// the settings' indexes for each bits handle
+  // for each tile bit used by competing resources, pairs of the setting's
+  // index and the entry's offset in its competing resources, or null
+  int[][][] competitors;	// [row][col][2*pair]
+
 
 public static void main (String[] args)
 {
@@ -59,6 +78,7 @@ public ContentionLookup(String contentionInfoFile)
   if (contentionInfoFile!=null && contentionInfoFile.length()>0) {
     loadTableFromFile(contentionInfoFile);
   }
+  compile();
 }
 
 
@@ -68,6 +88,135 @@ public List getList(String bits, String value)
 }
 
 
+// the index of the contentious resource setting with the given JBitsLookup
+// bits and value handles, or -1 if it isn't contentious
+public int getSettingIndex(int bitshandle, int valuehandle)
+{
+  if (bitshandle<0 || bitshandle>=settingsByBits.length || settingsByBits[bitshandle]==null) {
+    return -1;
+  }
+  int[] settings=settingsByBits[bitshandle];
+  for (int i=0; i<settings.length; i++) {
+    if (settingValue[settings[i]]==valuehandle) { return settings[i]; }
+  }
+  return -1;
+}
+
+
+public int getNumSettings() { return numSettings; }
+
+// the competing resources for the setting with index s
+public ContentionEntry[] getEntries(int s) { return settingEntries[s]; }
+
+
+// returns true if any of the bits are used by a competing resource, so
+// that setting them may change whether there is contention
+public boolean isCompeting(int[][] bits)
+{
+  int r,c;
+  for (int i=0; i<bits.length; i++) {
+    r=bits[i][0];
+    c=bits[i][1];
+    if (getCompetitors(r,c)!=null) { return true; }
+  }
+  return false;
+}
+
+
+// the setting index, entry offset pairs of the competing resources that
+// use tile bit r,c, or null if none do
+public int[] getCompetitors(int r, int c)
+{
+  if (r<0 || r>=competitors.length || c<0 || c>=competitors[r].length) {
+    return null;
+  }
+  return competitors[r][c];
+}
+
+
+// index the contentious settings and look up their competing resources'
+// JBits constants
+void compile()
+{
+  numSettings=contentionTable.size();
+  settingBits=new int[numSettings];
+  settingValue=new int[numSettings];
+  settingEntries=new ContentionEntry[numSettings][];
+
+  String resource;
+  int comma, maxbits=-1, maxrow=-1, maxcol=-1;
+  List clist;
+  ContentionEntry ce;
+  int s=0;
+  Iterator iter=contentionTable.entrySet().iterator();
+  while (iter.hasNext()) {
+    Map.Entry e=(Map.Entry)iter.next();
+    resource=(String)e.getKey();		// bits "," value
+    comma=resource.indexOf(',');
+    settingBits[s]=JBitsLookup.getBitsHandle(resource.substring(0,comma));
+    settingValue[s]=JBitsLookup.getValueHandle(resource.substring(comma+1));
+    if (settingBits[s]>maxbits) { maxbits=settingBits[s]; }
+
+    clist=(List)e.getValue();
+    settingEntries[s]=(ContentionEntry[])clist.toArray(new ContentionEntry[0]);
+    for (int i=0; i<settingEntries[s].length; i++) {
+      ce=settingEntries[s][i];
+      ce.bits=JBitsLookup.getBits(ce.bitString);
+      ce.value=JBitsLookup.getValue(ce.valString);
+      for (int b=0; b<ce.bits.length; b++) {
+        if (ce.bits[b][0]>maxrow) { maxrow=ce.bits[b][0]; }
+        if (ce.bits[b][1]>maxcol) { maxcol=ce.bits[b][1]; }
+      }
+    }
+    s++;
+  }
+
+  // the settings for each bits handle
+  settingsByBits=new int[maxbits+1][];
+  int[] settings;
+  for (s=0; s<numSettings; s++) {
+    settings=settingsByBits[settingBits[s]];
+    if (settings==null) {
+      settings=new int[1];
+    } else {
+      int[] more=new int[settings.length+1];
+      System.arraycopy(settings,0,more,0,settings.length);
+      settings=more;
+    }
+    settings[settings.length-1]=s;
+    settingsByBits[settingBits[s]]=settings;
+  }
+
+  // the competing resources using each tile bit
+  competitors=new int[maxrow+1][maxcol+1][];
+  int[] pairs;
+  int r,c;
+  for (s=0; s<numSettings; s++) {
+    for (int i=0; i<settingEntries[s].length; i++) {
+      ce=settingEntries[s][i];
+      for (int b=0; b<ce.bits.length; b++) {
+        r=ce.bits[b][0];
+        c=ce.bits[b][1];
+        if (r<0 || c<0) { continue; }
+        pairs=competitors[r][c];
+        if (pairs==null) {
+          pairs=new int[2];
+        } else if (pairs[pairs.length-2]==s && pairs[pairs.length-1]==i) {
+          continue;			// entry uses this bit more than once
+        } else {
+          int[] more=new int[pairs.length+2];
+          System.arraycopy(pairs,0,more,0,pairs.length);
+          pairs=more;
+        }
+        pairs[pairs.length-2]=s;
+        pairs[pairs.length-1]=i;
+        competitors[r][c]=pairs;
+      }
+    }
+  }
+}
+
+
 // print the state of the table for debugging purposes
 public void printTable()
 {
@@ -0,0 +1,951 @@
+//			 ConvToJBits.java
+//
+// this class converts decoded chromosomes' resource, attribute, settings
+// details, into JBits bits and values, in the same way as
+// resattrset2bitsval.pl does, but in java, so that a chromosome decoded by
+// ChromDecoder can be converted and loaded (see ChromInfo) without any
+// scripts or temporary files.
+//
+// the conversion is configured by a convToJBits.conf file, which defines a
+// perl function conv2jbits_RES for converting each resource, RES, and the
+// tables that each function uses to select JBits resources. the tables are
+// read from the file, so that these can be edited as before, but the
+// functions can't be run from java, and so they are implemented here. the
+// functions differ between the supplied .conf files, depending on the
+// layout that is being used (eg slim, LE-based), and each of these
+// versions of each function is implemented. which version to use for each
+// function is determined by looking for the statements that distinguish
+// it from the other versions; and a file whose functions aren't recognised
+// as any of these is rejected. so if the functions of a .conf file are
+// changed, then this class will also need to be changed.
+//
+// 		written Oct 2026, agent
+//
+// this class also requires the local classes:
+// 			StringSplitter
+
+
+// for String's etc
+import java.lang.*;
+// for collection classes (eg Hashtable)
+import java.util.*;
+// for IO
+import java.io.*;
+
+
+class ConvToJBits {
+
+	// the versions of the conversion functions
+	static final int STD=0;		// Virtex slice-based (convToJBits.conf)
+	static final int NFF=1;		// no FF SliceToOut (NFF, VirtexDS)
+	static final int LE=2;		// LE-based (legran*)
+	static final int LESLIM=3;	// LE-based slim (legranslim)
+	static final int LETRIM=4;	// LE-based trim (legrantrim)
+	static final int SLIM=5;	// slim
+	static final int NONE=6;	// resource isn't converted
+
+	static final String[] VERSIONS={ "standard", "NFF", "LE", "LE slim",
+	  "LE trim", "slim", "none" };
+
+	// the functions that this class implements
+	static final String[] CONVFNS={ "SliceIn", "SliceToOut",
+	  "OutToSingleBus", "OutToSingleDir", "SliceRAM", "LUTBitFN",
+	  "LUTIncrFN", "LUTActiveFN", "TF" };
+
+	static final String CONVJBITS_FN_PREFIX="conv2jbits_";
+	static final String DEFAULT_ON_OFF="ON";
+
+	String conffile;
+	Hashtable versions;	// function's resource to its version (Integer)
+	Hashtable tables;	// function's resource to a Hashtable of its
+				// tables, of keys to String or String[] values
+
+
+
+ConvToJBits(String conffile)
+{
+  this.conffile=conffile;
+  versions=new Hashtable();
+  tables=new Hashtable();
+
+  String text=stripComments(readFile(conffile));
+  int i=0;
+  while ((i=text.indexOf("sub "+CONVJBITS_FN_PREFIX,i))>-1) {
+    i+=4+CONVJBITS_FN_PREFIX.length();
+    int e=i;
+    while (e<text.length() && (Character.isLetterOrDigit(text.charAt(e)) || text.charAt(e)=='_')) { e++; }
+    String res=text.substring(i,e);
+    int start=text.indexOf('{',e);
+    int end=(start<0) ? -1 : matching(text,start,'{','}');
+    if (end<0) {
+      System.err.println("ConvToJBits: can't find the end of "+CONVJBITS_FN_PREFIX+res+" in "+conffile);
+      System.exit(1);
+    }
+    String body=text.substring(start,end+1);
+    i=end+1;
+
+    int version=identify(res,squeeze(body));
+    if (version<0) {
+      System.err.println("ConvToJBits: "+conffile+" defines "+CONVJBITS_FN_PREFIX+res+", which has no java implementation!");
+      System.exit(1);
+    }
+    versions.put(res,new Integer(version));
+    tables.put(res,parseTables(body));
+  }
+}
+
+
+public String getConfFile() { return conffile; }
+
+
+// read the whole file, with its lines separated by "\n"
+static String readFile(String file)
+{
+  StringBuffer sb=new StringBuffer();
+  try {
+    BufferedReader in=new BufferedReader(new FileReader(file));
+    String line;
+    while ((line=in.readLine())!=null) {
+      sb.append(line).append('\n');
+    }
+    in.close();
+  } catch (IOException e) {
+    System.err.println("Can't read config file ("+file+"): "+e);
+    System.exit(1);
+  }
+  return sb.toString();
+}
+
+
+// remove perl comments, being careful not to remove $#array
+static String stripComments(String text)
+{
+  StringBuffer sb=new StringBuffer(text.length());
+  int i=0;
+  while (i<text.length()) {
+    char c=text.charAt(i);
+    if (c=='#' && (i==0 || text.charAt(i-1)!='$')) {
+      while (i<text.length() && text.charAt(i)!='\n') { i++; }
+    } else {
+      sb.append(c);
+      i++;
+    }
+  }
+  return sb.toString();
+}
+
+
+// remove all whitespace, so the function can be identified by statements
+// regardless of their layout
+static String squeeze(String str)
+{
+  StringBuffer sb=new StringBuffer(str.length());
+  for (int i=0; i<str.length(); i++) {
+    if (!StringSplitter.isperlspace(str.charAt(i))) { sb.append(str.charAt(i)); }
+  }
+  return sb.toString();
+}
+
+
+// the index of the bracket that closes the one at start, or -1
+static int matching(String text, int start, char open, char close)
+{
+  int depth=0;
+  for (int i=start; i<text.length(); i++) {
+    if (text.charAt(i)==open) {
+      depth++;
+    } else if (text.charAt(i)==close) {
+      depth--;
+      if (depth==0) { return i; }
+    }
+  }
+  return -1;
+}
+
+
+// determine the version of a function from its (whitespace removed) code,
+// or -1 if it isn't one of the versions implemented here
+static int identify(String res, String code)
+{
+  boolean leslices=has(code,"\"LUT.SLICE0_G\"");
+  boolean attrslices=has(code,"\"LUT.SLICE0_$attr\"");
+
+  if (res.equals("SliceIn")) {
+    if (has(code,"%toLE=")) { return LE; }
+    if (has(code,"$jtable{\"S0G4\"}")) { return LESLIM; }
+    if (has(code,"\"S0\".$attr.\"4\"")) { return SLIM; }
+    if (has(code,"$sattr=\"S0\".$attr;")) { return STD; }
+  } else if (res.equals("SliceToOut")) {
+    if (has(code,"$jtable{\"S0_\".$jattr}")) { return STD; }
+    if (has(code,"$jtable{\"S0_OUT\"}")) { return NFF; }
+    if (has(code,"$jtable{\"S0G_OUT\"}")) { return LE; }
+    if (has(code,"OUT0.S0_YQ/OUT2.OUT2")) { return LESLIM; }
+    if (has(code,"OUT0.S0_YQ/OUT4.OUT4")) { return SLIM; }
+  } else if (res.equals("OutToSingleBus")) {
+    if (has(code,"%tos0gy=")) {
+      return (has(code,"if($single0gne\"\")")) ? LESLIM : LETRIM;
+    }
+    if (has(code,"%tos0=")) { return SLIM; }
+    if (has(code,"$jattr=\"OUT\".$attr;")) { return STD; }
+  } else if (res.equals("OutToSingleDir")) {
+    if (has(code,"%j0gtable=")) { return LESLIM; }
+    if (has(code,"%j0table=")) { return SLIM; }
+    if (has(code,"$jattr=$dirtable{$attr};")) { return STD; }
+  } else if (res.equals("SliceRAM")) {
+    if (has(code,"%ramtable=")) { return STD; }
+    if (!has(code,"$settings")) { return NONE; }
+  } else if (res.equals("LUTBitFN")) {
+    if (leslices && has(code,"\"0000000000000000\"")) { return LESLIM; }
+    if (attrslices && has(code,"\"0000000000000000\"")) { return SLIM; }
+    if (leslices) { return LE; }
+    if (attrslices) { return STD; }
+  } else if (res.equals("LUTIncrFN")) {
+    if (!has(code,"$settings")) { return NONE; }
+    if (has(code,"\"SET,$op,---\"")) { return SLIM; }
+    if (leslices) { return LE; }
+    if (attrslices) { return STD; }
+  } else if (res.equals("LUTActiveFN")) {
+    if (leslices) { return LE; }
+    if (attrslices) { return STD; }
+  } else if (res.equals("TF")) {
+    if (has(code,"\"TF=\".join(\",\",$attr,$spread,$seq)")) { return STD; }
+  }
+  return -1;
+}
+
+
+static boolean has(String code, String statement)
+{
+  return code.indexOf(statement)>-1;
+}
+
+
+// get the tables (my %name = ( key => value, ... );) from a function,
+// where a value is a string, number, or a list of these: [ "a", "b" ]
+static Hashtable parseTables(String body)
+{
+  Hashtable fntables=new Hashtable();
+  int i=0;
+  while ((i=body.indexOf("my %",i))>-1) {
+    i+=4;
+    int e=i;
+    while (e<body.length() && (Character.isLetterOrDigit(body.charAt(e)) || body.charAt(e)=='_')) { e++; }
+    String name=body.substring(i,e);
+    int start=body.indexOf('(',e);
+    int end=(start<0) ? -1 : matching(body,start,'(',')');
+    if (end<0) { break; }
+    fntables.put(name,parseTable(tokenize(body.substring(start+1,end))));
+    i=end+1;
+  }
+  return fntables;
+}
+
+
+// split a perl list into: quoted strings (given without their quotes),
+// barewords and numbers, and the symbols: => , [ ]
+static ArrayList tokenize(String list)
+{
+  ArrayList tokens=new ArrayList();
+  int i=0;
+  int n=list.length();
+  while (i<n) {
+    char c=list.charAt(i);
+    if (StringSplitter.isperlspace(c)) {
+      i++;
+    } else if (c=='"' || c=='\'') {
+      int e=list.indexOf(c,i+1);
+      if (e<0) { e=n; }
+      tokens.add(new Token(list.substring(i+1,e),true));
+      i=e+1;
+    } else if (c=='=' && i+1<n && list.charAt(i+1)=='>') {
+      tokens.add(new Token("=>",false));
+      i+=2;
+    } else if (c==',' || c=='[' || c==']') {
+      tokens.add(new Token(""+c,false));
+      i++;
+    } else {
+      int e=i;
+      while (e<n && !StringSplitter.isperlspace(list.charAt(e))
+	     && ",[]\"'=".indexOf(list.charAt(e))<0) { e++; }
+      if (e==i) { e++; }
+      tokens.add(new Token(list.substring(i,e),true));
+      i=e;
+    }
+  }
+  return tokens;
+}
+
+
+// pair up keys and values, and collect list values
+static Hashtable parseTable(ArrayList tokens)
+{
+  Hashtable table=new Hashtable();
+  String key=null;
+  ArrayList listval=null;
+  for (int i=0; i<tokens.size(); i++) {
+    Token t=(Token)tokens.get(i);
+    if (listval!=null) {
+      if (t.isvalue) {
+        listval.add(t.str);
+      } else if (t.str.equals("]")) {
+        String[] l=new String[listval.size()];
+        listval.toArray(l);
+        if (key!=null) { table.put(key,l); }
+        key=null;
+        listval=null;
+      }
+    } else if (t.str.equals("[")) {
+      listval=new ArrayList();
+    } else if (t.isvalue) {
+      if (key==null) {
+        key=t.str;
+      } else {
+        table.put(key,t.str);
+        key=null;
+      }
+    }
+  }
+  return table;
+}
+
+
+
+public static void main(String[] args)
+{
+  boolean cyto=false;
+  int a=0;
+  if (a<args.length && args[a].equals("-c")) { cyto=true; a++; }
+  if (args.length-a!=1 && args.length-a!=3) {
+    printUsage();
+    System.exit(1);
+  }
+  String conffile=args[a];
+  if (!(new File(conffile)).isFile()) {
+    System.err.println("Can't find config file ("+conffile+")");
+    System.exit(1);
+  }
+  ConvToJBits conv=new ConvToJBits(conffile);
+  if (args.length-a==1) {		// just list the versions used
+    String[] res=new String[conv.versions.size()];
+    conv.versions.keySet().toArray(res);
+    Arrays.sort(res);
+    for (int i=0; i<res.length; i++) {
+      System.out.println(res[i]+": "+VERSIONS[conv.getVersion(res[i])]);
+    }
+    return;
+  }
+  String outfname=args[a+1];
+  String outfext=args[a+2];
+
+  try {
+    BufferedReader in=new BufferedReader(new InputStreamReader(System.in));
+    ArrayList lines=new ArrayList();
+    String line;
+    while ((line=in.readLine())!=null) {
+      String trimmed=line.trim();
+      if (trimmed.length()==0 || trimmed.startsWith("#")) { continue; }
+      lines.add(line);
+    }
+
+    if (cyto) {
+      String[] cytolines=new String[lines.size()];
+      lines.toArray(cytolines);
+      writeLines(outfname+"."+outfext,conv.convertCyto(cytolines));
+      return;
+    }
+
+    // lines of: chromno: geneno,gstart: feat,+/-offset,length: details
+    long ocno=1;
+    ArrayList chrom=new ArrayList();
+    for (int i=0; i<lines.size(); i++) {
+      line=(String)lines.get(i);
+      int c=line.indexOf(':');
+      long cno=StringSplitter.perlnum((c<0) ? line : line.substring(0,c));
+      if (cno>ocno) {
+        writeChrom(conv,outfname,outfext,ocno,chrom);
+        ocno=cno;
+        chrom.clear();
+      }
+      c++;
+      while (c>0 && c<line.length() && StringSplitter.isperlspace(line.charAt(c))) { c++; }
+      chrom.add((c<=0) ? "" : line.substring(c));
+    }
+    // as resattrset2bitsval.pl, the last chromosome is only written if
+    // some of it is converted
+    String[] last=new String[chrom.size()];
+    chrom.toArray(last);
+    last=conv.convertChrom(last);
+    if (last.length>0) { writeLines(outfname+"_"+ocno+"."+outfext,last); }
+  } catch (Exception e) {
+    System.err.println(e.getMessage());
+    System.exit(1);
+  }
+}
+
+
+static void writeChrom(ConvToJBits conv, String outfname, String outfext, long cno, ArrayList chrom) throws Exception
+{
+  String[] lines=new String[chrom.size()];
+  chrom.toArray(lines);
+  writeLines(outfname+"_"+cno+"."+outfext,conv.convertChrom(lines));
+}
+
+
+static void writeLines(String fname, String[] lines) throws IOException
+{
+  PrintWriter out;
+  try {
+    out=new PrintWriter(new BufferedWriter(new FileWriter(fname)));
+  } catch (IOException e) {
+    throw new IOException("Unable to create file '"+fname+"'");
+  }
+  for (int i=0; i<lines.length; i++) {
+    out.print(lines[i]+"\n");
+  }
+  // as resattrset2bitsval.pl, there is always a newline at the end
+  if (lines.length==0) { out.print("\n"); }
+  out.close();
+}
+
+
+static void printUsage()
+{
+  System.err.println(
+  "  Synopsis:\n"+
+  "  java ConvToJBits [-c] resToJBitsConf [outfilename outfext]\n"+
+  "  Args:\n"+
+  "  		-c		- input/output is cytoplasmic determinants\n"+
+  "		conv2JBitsConf	- configuration file that contains the\n"+
+  "      				  conv2jbits_ functions for converting from\n"+
+  "      				  resources with attributes and settings, into\n"+
+  "      				  JBits bits and value constants\n"+
+  "		outfilename	- the basename for the output converted chrom.\n"+
+  "		outfext		- the extension for the output converted chrom\n"+
+  "				  output files will have names of:\n"+
+  "				  	outfilename_CHROMOSOME#.outfext\n"+
+  "  		if only the config file is given, the version of each\n"+
+  "  		conv2jbits_ function that it defines is listed\n"+
+  "  Inputs: (stdin)\n"+
+  "  		- as for resattrset2bitsval.pl (without -n option)\n");
+}
+
+
+
+public boolean hasConvFn(String res)
+{
+  return versions.containsKey(res);
+}
+
+
+// the version of the conv2jbits_ function for res, or -1 if none
+public int getVersion(String res)
+{
+  Integer v=(Integer)versions.get(res);
+  return (v==null) ? -1 : v.intValue();
+}
+
+
+// convert a decoded chromosome, given as lines (without the chromosome
+// number) of:
+// 	geneno,gstart: feat,+/-offset,length: details
+// giving lines of:
+// 	geneno,gstart:feat,+/-offset,length:jbitsdetails
+// where details that can't be converted are dropped, as are genes that
+// have no converted details, along with their promoters and binding sites.
+// the genes that are left are renumbered
+public String[] convertChrom(String[] decoded) throws Exception
+{
+  ArrayList chrom=new ArrayList();
+  int dg=0;			// number of deleted genes in this chrom
+  long delgene=-1;		// to remove deleted gene's promoter & bindsites
+  for (int i=0; i<decoded.length; i++) {
+    String[] dets=StringSplitter.perlsplitspaced(decoded[i],":");
+    String genedet=field(dets,0);
+    String featdet=field(dets,1);
+    String details=field(dets,2);
+    String[] gene=StringSplitter.perlsplitspaced(genedet,",");
+    long geneno=StringSplitter.perlnum(field(gene,0));
+    String[] fd=StringSplitter.perlsplitspaced(featdet,",");
+    String feat=field(fd,0);
+
+    String convdets="";
+    if (geneno!=delgene) { convdets=convert(feat,details,geneno); }
+    if (convdets.length()>0) {
+      if (dg>0) { genedet=(geneno-dg)+","+field(gene,1); }
+      chrom.add(genedet+":"+featdet+":"+convdets);
+    } else if (feat.equals("gene")) {
+      dg++;
+      delgene=geneno;
+    }
+  }
+  String[] lines=new String[chrom.size()];
+  chrom.toArray(lines);
+  return lines;
+}
+
+
+// convert a feature's details, a list of semicolon delimited elements of:
+// offset,len,resource,attribute,setting1,setting2,... (promoter details
+// are left as they are)
+String convert(String feat, String details, long gno) throws Exception
+{
+  if (feat.equals("prom")) { return details; }
+  if (!feat.equals("gene") && !feat.equals("enhb") && !feat.equals("repb")) {
+    throw new Exception("Invalid feature type ("+feat+") in gene "+gno);
+  }
+  String[] elems=StringSplitter.perlsplit(details,";");
+  StringBuffer sb=new StringBuffer();
+  for (int i=0; i<elems.length; i++) {
+    String[] f=StringSplitter.perlsplit(elems[i],",");
+    String[] settings=new String[Math.max(f.length-4,0)];
+    for (int k=0; k<settings.length; k++) { settings[k]=f[k+4]; }
+    String conv=conv(field(f,2),field(f,3),settings);
+    if (conv.length()>0) {
+      if (sb.length()>0) { sb.append(';'); }
+      sb.append(field(f,0)).append(',').append(field(f,1)).append(',').append(conv);
+    }
+  }
+  return sb.toString();
+}
+
+
+// convert cytoplasmic determinants, given as lines of:
+// 	cellrow, cellcol: resource,attribute,setting1,setting2,...
+// giving lines of: cellrow,cellcol:jbitsdetails
+public String[] convertCyto(String[] cytolines) throws Exception
+{
+  ArrayList cytodets=new ArrayList();
+  for (int i=0; i<cytolines.length; i++) {
+    String[] cd=StringSplitter.perlsplitspaced(cytolines[i],":");
+    String[] f=StringSplitter.perlsplitspaced(field(cd,1),",");
+    String[] settings=new String[Math.max(f.length-2,0)];
+    for (int k=0; k<settings.length; k++) { settings[k]=f[k+2]; }
+    String conv=conv(field(f,0),field(f,1),settings);
+    if (conv.length()>0) { cytodets.add(field(cd,0)+":"+conv); }
+  }
+  String[] lines=new String[cytodets.size()];
+  cytodets.toArray(lines);
+  return lines;
+}
+
+
+static String field(String[] fields, int i) { return (i<fields.length && fields[i]!=null) ? fields[i] : ""; }
+
+
+
+// convert a resource's attribute and settings to JBits bits and values,
+// as the conf file's conv2jbits_ function for the resource does. an empty
+// string is returned if the resource isn't completely specified
+public String conv(String res, String attr, String[] settings) throws Exception
+{
+  int version=getVersion(res);
+  if (version<0) {
+    throw new Exception("Error: Unable to convert "+res+" - '"+CONVJBITS_FN_PREFIX+res+"' not found!");
+  }
+  if (attr==null) { attr=""; }
+  Hashtable t=(Hashtable)tables.get(res);
+
+  if (res.equals("SliceIn")) {
+    return sliceIn(version,t,attr,settings);
+  } else if (res.equals("SliceToOut")) {
+    return sliceToOut(version,t,attr,settings);
+  } else if (res.equals("OutToSingleBus")) {
+    return outToSingleBus(version,t,attr,settings);
+  } else if (res.equals("OutToSingleDir")) {
+    return outToSingleDir(version,t,attr,settings);
+  } else if (res.equals("SliceRAM")) {
+    return sliceRAM(version,t,attr,settings);
+  } else if (res.equals("LUTBitFN")) {
+    return lutBitFN(version,attr,settings);
+  } else if (res.equals("LUTIncrFN")) {
+    return lutIncrFN(version,attr,settings);
+  } else if (res.equals("LUTActiveFN")) {
+    return lutActiveFN(version,attr,settings);
+  }
+  return tf(attr,settings);
+}
+
+
+
+// these are used by the conversion functions, to look up their tables
+// with perl's handling of missing entries (as empty strings)
+
+// table{key}, where the value is a string
+static String lookup(Hashtable t, String table, String key)
+{
+  Hashtable tbl=(Hashtable)t.get(table);
+  Object v=(tbl==null) ? null : tbl.get(key);
+  return (v instanceof String) ? (String)v : "";
+}
+
+
+// the number of lines in the list table{key}
+static int nlines(Hashtable t, String table, String key)
+{
+  Hashtable tbl=(Hashtable)t.get(table);
+  Object v=(tbl==null) ? null : tbl.get(key);
+  return (v instanceof String[]) ? ((String[])v).length : 0;
+}
+
+
+// table{key}->[lineno % nlines], where a zero nlines is an error, as perl
+// dies on a modulus of zero
+static String line(Hashtable t, String table, String key, long lineno, int nlines) throws Exception
+{
+  if (nlines==0) {
+    throw new Exception("Illegal modulus zero converting "+key+" with "+table);
+  }
+  Hashtable tbl=(Hashtable)t.get(table);
+  Object v=(tbl==null) ? null : tbl.get(key);
+  if (!(v instanceof String[])) { return ""; }
+  String[] l=(String[])v;
+  long m=lineno%nlines;
+  if (m<0) { m+=nlines; }
+  return (m<l.length) ? l[(int)m] : "";
+}
+
+
+// the lineno'th line of table{key}, wrapping around
+static String line(Hashtable t, String table, String key, long lineno) throws Exception
+{
+  return line(t,table,key,lineno,nlines(t,table,key));
+}
+
+
+static String setting(String[] settings, int i)
+{
+  return (i<settings.length && settings[i]!=null) ? settings[i] : "";
+}
+
+
+// remove a connect_ prefix from the attribute
+static String unconnected(String attr)
+{
+  return (attr.startsWith("connect_")) ? attr.substring(8) : attr;
+}
+
+
+// swap 0's and 1's
+static String invert(String bits)
+{
+  char[] b=bits.toCharArray();
+  for (int i=0; i<b.length; i++) {
+    if (b[i]=='0') {
+      b[i]='1';
+    } else if (b[i]=='1') {
+      b[i]='0';
+    }
+  }
+  return new String(b);
+}
+
+
+
+static String sliceIn(int version, Hashtable t, String attr, String[] settings) throws Exception
+{
+  boolean connect=attr.startsWith("connect_");
+  attr=unconnected(attr);
+  String[] res;
+
+  if (version==LE) {
+    attr=lookup(t,"toLE",attr);
+    long a=StringSplitter.perlnum(attr);
+    if (a<1 || a>3) { a=4; }
+    res=new String[] { "S0G"+a, "S0F"+a, "S1G"+a, "S1F"+a };
+  } else if (version==LESLIM) {
+    if (attr.startsWith("F") || attr.startsWith("G")) {
+      attr=attr.substring(0,1);
+    } else {
+      attr=lookup(t,"toslim",attr);
+    }
+    res=new String[] { "S0G4", "S0F4", "S1G1", "S1F1" };
+  } else if (version==SLIM) {
+    if (attr.startsWith("F") || attr.startsWith("G")) {
+      attr=attr.substring(0,1);
+    } else {
+      attr=lookup(t,"toslim",attr);
+    }
+    res=new String[] { "S0"+attr+"4", "S1"+attr+"1" };
+  } else {
+    res=new String[] { "S0"+attr, "S1"+attr };
+  }
+  if (attr.length()==0 || settings.length<1) { return ""; }
+
+  long lineno=StringSplitter.perlnum(settings[0]);
+  StringBuffer bitsval=new StringBuffer((connect) ? "connect=jbits," : "jbits=");
+  for (int i=0; i<res.length; i++) {
+    int n=nlines(t,"jtable",res[i]);
+    String line=line(t,"jtable",res[i],lineno,n);
+    String offset=(connect) ? line(t,"connect_offsets",res[i],lineno,n) : "";
+    if (version==LESLIM && i==2 && line.equals("-")) {
+      line="-";			// a non-existent resource
+    } else {
+      line=res[i]+"."+res[i]+","+res[i]+"."+line;
+    }
+    if (i>0) { bitsval.append('/'); }
+    if (connect) { bitsval.append(offset).append(','); }
+    bitsval.append(line);
+  }
+  return bitsval.toString();
+}
+
+
+static String sliceToOut(int version, Hashtable t, String attr, String[] settings) throws Exception
+{
+  if (attr.length()==0 || settings.length<1) { return ""; }
+  long lineno=StringSplitter.perlnum(settings[0]);
+  long a=StringSplitter.perlnum(attr);
+
+  if (version==LESLIM || version==LETRIM) {
+    String[] outs=(a==0 || a==2 || a==4 || a==3)
+		? new String[] { "OUT0", "OUT2", "OUT4", "OUT3" }
+		: new String[] { "OUT1", "OUT5", "OUT6", "OUT7" };
+    return outs(true,outs,new String[] { "S0_YQ", "S0_XQ", "S1_YQ", "S1_XQ" },lineno);
+  } else if (version==SLIM) {
+    if (a==0 || a==4) {
+      return outs(true,new String[] { "OUT0", "OUT4" },new String[] { "S0_YQ", "S1_YQ" },lineno);
+    } else if (a==1 || a==6) {
+      return outs(true,new String[] { "OUT1", "OUT6" },new String[] { "S0_YQ", "S1_YQ" },lineno);
+    } else if (a==2 || a==3) {
+      return outs(false,new String[] { "OUT2", "OUT3" },new String[] { "S0_XQ", "S1_XQ" },lineno);
+    }
+    return outs(false,new String[] { "OUT5", "OUT7" },new String[] { "S0_XQ", "S1_XQ" },lineno);
+  }
+
+  String jattr="OUT"+attr;
+  String[] keys;
+  if (version==STD) {
+    keys=new String[] { "S0_"+jattr, "S1_"+jattr };
+  } else if (version==NFF) {
+    keys=new String[] { "S0_OUT", "S1_OUT" };
+  } else {
+    keys=new String[] { "S0G_OUT", "S0F_OUT", "S1G_OUT", "S1F_OUT" };
+  }
+  String[] lines=new String[keys.length];
+  for (int i=0; i<keys.length; i++) {
+    lines[i]=line(t,"jtable",keys[i],lineno);
+  }
+  StringBuffer bitsval=new StringBuffer("jbits=");
+  for (int i=0; i<keys.length; i++) {
+    if (lines[i].equals("NOP")) { return ""; }
+    if (i>0) { bitsval.append('/'); }
+    bitsval.append(jattr+"."+jattr+","+jattr+"."+lines[i]);
+  }
+  return bitsval.toString();
+}
+
+
+// the OUT's set to OFF for lineno 0, or to the given lines for lineno 1-6
+static String outs(boolean jbits, String[] outs, String[] lines, long lineno)
+{
+  if (lineno>=7) { return ""; }
+  StringBuffer bitsval=new StringBuffer((jbits) ? "jbits=" : "");
+  for (int i=0; i<outs.length; i++) {
+    if (i>0) { bitsval.append('/'); }
+    bitsval.append(outs[i]+"."+outs[i]+","+outs[i]+"."+((lineno==0) ? "OFF" : lines[i]));
+  }
+  return bitsval.toString();
+}
+
+
+static String outToSingleBus(int version, Hashtable t, String attr, String[] settings) throws Exception
+{
+  boolean connect=attr.startsWith("connect_");
+  attr=unconnected(attr);
+  String lineno=setting(settings,0);
+  String onoff=(setting(settings,1).length()>0) ? lookup(t,"onofftable",settings[1]) : DEFAULT_ON_OFF;
+  if (lineno.length()==0) { return ""; }
+  long l=StringSplitter.perlnum(lineno)-1;
+
+  String[] jattrs;
+  if (version==LESLIM || version==LETRIM) {
+    jattrs=new String[] { "OUT"+lookup(t,"tos0gy",attr), "OUT"+lookup(t,"tos0fx",attr),
+			  "OUT"+lookup(t,"tos1gy",attr), "OUT"+lookup(t,"tos1fx",attr) };
+  } else if (version==SLIM) {
+    jattrs=new String[] { "OUT"+lookup(t,"tos0",attr), "OUT"+lookup(t,"tos1",attr) };
+  } else {
+    jattrs=new String[] { "OUT"+attr };
+  }
+
+  StringBuffer bitsval=new StringBuffer((connect) ? "connect=jbits," : "jbits=");
+  for (int i=0; i<jattrs.length; i++) {
+    int n=nlines(t,"jtable",jattrs[i]);
+    String single=line(t,"jtable",jattrs[i],l,n);
+    String offset=(connect) ? line(t,"connect_offsets",jattrs[i],l,n) : "";
+    String bv=",";
+    if (version!=LESLIM || single.length()>0) {
+      bv="OutMuxToSingle."+jattrs[i]+"_TO_"+single+",OutMuxToSingle."+onoff;
+    }
+    if (i>0) { bitsval.append('/'); }
+    if (connect) { bitsval.append(offset).append(','); }
+    bitsval.append(bv);
+  }
+  return bitsval.toString();
+}
+
+
+static String outToSingleDir(int version, Hashtable t, String attr, String[] settings) throws Exception
+{
+  boolean connect=attr.startsWith("connect_");
+  attr=unconnected(attr);
+  String lineno=setting(settings,0);
+  String onoff=(setting(settings,1).length()>0) ? lookup(t,"onofftable",settings[1]) : DEFAULT_ON_OFF;
+  if (lineno.length()==0) { return ""; }
+  long l=StringSplitter.perlnum(lineno)-1;
+  String jattr=lookup(t,"dirtable",attr);
+
+  String[] jtables;
+  String[] otables;
+  if (version==LESLIM) {
+    jtables=new String[] { "j0gtable", "j0ftable", "j1gtable", "j1ftable" };
+    otables=new String[] { "connect_offs0g", "connect_offs0f", "connect_offs1g", "connect_offs1f" };
+  } else if (version==SLIM) {
+    jtables=new String[] { "j0table", "j1table" };
+    otables=new String[] { "connect_offsets0", "connect_offsets1" };
+  } else {
+    jtables=new String[] { "jtable" };
+    otables=new String[] { "connect_offsets" };
+  }
+
+  String[] offsets=new String[jtables.length];
+  StringBuffer bitsval=new StringBuffer();
+  for (int i=0; i<jtables.length; i++) {
+    int n=nlines(t,jtables[i],jattr);
+    String single=line(t,jtables[i],jattr,l,n);
+    offsets[i]=(connect) ? line(t,otables[i],jattr,l,n) : "";
+    if (version==SLIM && i==1) {
+      // as in the perl, the 2nd offset is looked up from connect_offsets0,
+      // and it overwrites the 1st, leaving the 2nd empty
+      offsets[0]=(connect) ? line(t,otables[0],jattr,l,n) : "";
+      offsets[1]="";
+    }
+    if (i>0) { bitsval.append('/'); }
+    if (version==LESLIM && (i==1 || i==2) && single.equals("-")) {
+      bitsval.append("-");
+    } else {
+      bitsval.append("OutMuxToSingle."+single+",OutMuxToSingle."+onoff);
+    }
+  }
+  if (!connect) { return "jbits="+bitsval.toString(); }
+
+  // insert the offsets before each of the bits & values
+  String[] bvs=StringSplitter.split(bitsval.toString(),"/");
+  StringBuffer cbitsval=new StringBuffer("connect=jbits,");
+  for (int i=0; i<bvs.length; i++) {
+    if (i>0) { cbitsval.append('/'); }
+    cbitsval.append(offsets[i]).append(',').append(bvs[i]);
+  }
+  return cbitsval.toString();
+}
+
+
+static String sliceRAM(int version, Hashtable t, String attr, String[] settings)
+{
+  if (version==NONE || settings.length<1) { return ""; }
+  String bits=lookup(t,"ramtable",settings[0]);
+  if (attr.equals("DUAL_ON")) { bits="DUAL_MODE,"+bits; }
+  return "SliceRAM=S0RAM,"+bits+"/S1RAM,"+bits;
+}
+
+
+static String lutBitFN(int version, String attr, String[] settings)
+{
+  String binstr=setting(settings,0);
+  if (attr.length()==0 || binstr.length()!=16) { return ""; }
+
+  if (version==STD) {
+    String val=invert(binstr);
+    return "LUT=LUT.SLICE0_"+attr+","+val+"/LUT.SLICE1_"+attr+","+val;
+  } else if (version==LE) {
+    String val=invert(binstr);
+    return "LUT=LUT.SLICE0_G,"+val+"/LUT.SLICE0_F,"+val+"/LUT.SLICE1_G,"+val+"/LUT.SLICE1_F,"+val;
+  }
+
+  // the slim layouts only use a single input of each LUT
+  String val0, val1;
+  if (binstr.startsWith("00")) {
+    val0=val1="0000000000000000";
+  } else if (binstr.startsWith("11")) {
+    val0=val1="1111111111111111";
+  } else {
+    boolean zero=binstr.startsWith("0");
+    val0=(zero) ? "0000000011111111" : "1111111100000000";
+    val1=(zero) ? "0101010101010101" : "1010101010101010";
+    if (version==SLIM) {
+      String v=val0;
+      val0=val1;
+      val1=v;
+    }
+  }
+  val0=invert(val0);
+  val1=invert(val1);
+  if (version==SLIM) {
+    return "LUT=LUT.SLICE0_"+attr+","+val0+"/LUT.SLICE1_"+attr+","+val1;
+  }
+  return "LUT=LUT.SLICE0_G,"+val0+"/LUT.SLICE0_F,"+val0+"/LUT.SLICE1_G,"+val1+"/LUT.SLICE1_F,"+val1;
+}
+
+
+static String lutIncrFN(int version, String attr, String[] settings)
+{
+  if (version==NONE || attr.length()==0 || settings.length<3) { return ""; }
+  String op=setting(settings,1);
+  String lines=setting(settings,2);
+
+  if (version==SLIM) {
+    return "LUTIncrFN=LUT.SLICE0_"+attr+",SET,"+op+",---"+substr(lines,3)
+		  +"/LUT.SLICE1_"+attr+",SET,"+op+","+substr(lines,0)+"---";
+  }
+  String val=setting(settings,0)+","+op+","+lines;
+  if (version==LE) {
+    return "LUTIncrFN=LUT.SLICE0_G,"+val+"/LUT.SLICE0_F,"+val+"/LUT.SLICE1_G,"+val+"/LUT.SLICE1_F,"+val;
+  }
+  return "LUTIncrFN=LUT.SLICE0_"+attr+","+val+"/LUT.SLICE1_"+attr+","+val;
+}
+
+
+// the single character at i, or an empty string if there's none
+static String substr(String str, int i)
+{
+  return (i<str.length()) ? str.substring(i,i+1) : "";
+}
+
+
+static String lutActiveFN(int version, String attr, String[] settings)
+{
+  if (attr.length()==0 || settings.length<1) { return ""; }
+  String val=setting(settings,0)+","+((settings.length>1) ? setting(settings,1) : "1111");
+
+  if (version==LE) {
+    return "LUTActiveFN=LUT.SLICE0_G,"+val+"/LUT.SLICE0_F,"+val+"/LUT.SLICE1_G,"+val+"/LUT.SLICE1_F,"+val;
+  }
+  return "LUTActiveFN=LUT.SLICE0_"+attr+","+val+"/LUT.SLICE1_"+attr+","+val;
+}
+
+
+static String tf(String attr, String[] settings)
+{
+  if (attr.length()==0 || settings.length<2) { return ""; }
+  String spread=setting(settings,0);
+  if (spread.equals("-")) { spread=""; }
+  return "TF="+attr+","+spread+","+setting(settings,1);
+}
+
+
+}
+
+
+
+// a token of a perl list, either a value or one of the symbols => , [ ]
+class Token {
+
+	String str;
+	boolean isvalue;
+
+Token(String str, boolean isvalue)
+{
+  this.str=str;
+  this.isvalue=isvalue;
+}
+
+}
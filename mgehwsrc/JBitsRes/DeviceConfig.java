@@ -0,0 +1,51 @@
+//			 DeviceConfig.java
+//
+// this interface is the part of the JBits API that JBitsResources uses to
+// configure and query the FPGA's CLBs, and to read and write the device's
+// configuration, so that JBitsResources can be used either with JBits
+// itself (via JBitsDevice), or with a pure Java model of the device's CLB
+// configuration (PackedDevice), that doesn't need JBits or a bitstream.
+//
+// the bits and value arrays are the same as are used with JBits, that is
+// the constants from the JBits.Virtex.Bits classes (via JBitsLookup), and
+// row and col are JBits CLB coordinates
+//
+// 		written Oct 2026, agent
+
+
+// for IO
+import java.io.*;
+
+// for ConfigurationException
+import com.xilinx.JBits.Virtex.ConfigurationException;
+
+
+
+interface DeviceConfig {
+
+
+// the device (eg XCV50) and its size in CLBs
+public String getDeviceName();
+public int getClbRows();
+public int getClbColumns();
+
+// get the value of the resource's bits, one array entry per bit
+public int[] get(int row, int col, int[][] bits) throws ConfigurationException;
+
+// set the resource's bits to value
+public void set(int row, int col, int[][] bits, int[] value) throws ConfigurationException;
+
+// returns true if the resource's bits are currently set to value. this is
+// the same as comparing the value returned by get(), but doesn't require
+// the intermediate array to be created
+public boolean matches(int row, int col, int[][] bits, int[] value) throws ConfigurationException;
+
+// load the configuration from file, or save the configuration to file
+public void read(String file) throws IOException, ConfigurationException;
+public void write(String file) throws IOException;
+
+// create another (unconfigured) device of the same type and size
+public DeviceConfig newInstance();
+
+
+}
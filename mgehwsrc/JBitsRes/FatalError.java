@@ -0,0 +1,41 @@
+//			 FatalError.java
+//
+// this is used in place of System.exit(), for errors in a chromosome, a
+// cytoplasm file, or the resource settings that they give, so that a long
+// running process that grows many chromosomes (such as EvalServer) can
+// have them thrown instead, failing only the one chromosome. by default,
+// exit() still exits. the error will already have been reported on
+// stderr, where it was found.
+//
+// 		written Oct 2026, agent
+
+
+class FatalError extends RuntimeException {
+
+	// set (once, before any growing) to throw rather than exit
+	static boolean throwErrors=false;
+
+
+FatalError(String msg)
+{
+  super(msg);
+}
+
+
+// exit with status 1, or if throwErrors is set, throw a FatalError
+static void exit(String msg)
+{
+  if (throwErrors) { throw new FatalError(msg); }
+  System.exit(1);
+}
+
+// as above, for an error caught as an exception. a FatalError thrown by a
+// nested call is passed on unchanged
+static void exit(Exception e)
+{
+  if (e instanceof FatalError) { throw (FatalError)e; }
+  exit(e.toString());
+}
+
+
+}
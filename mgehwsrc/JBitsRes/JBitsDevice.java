@@ -0,0 +1,85 @@
+//			 JBitsDevice.java
+//
+// this class implements DeviceConfig using a JBits object, so that the
+// FPGA configuration can be loaded from and saved to Virtex bitstreams,
+// and downloaded to a board or to the VirtexDS simulator (via getJBits)
+//
+// 		written Oct 2026, agent
+
+
+// for Arrays
+import java.util.*;
+
+// for IO
+import java.io.*;
+
+// for low level JBits
+import com.xilinx.JBits.Virtex.ConfigurationException;
+import com.xilinx.JBits.Virtex.Devices;
+import com.xilinx.JBits.Virtex.JBits;
+
+
+
+class JBitsDevice implements DeviceConfig {
+
+	String deviceName;
+	int deviceType;
+	JBits jbits;
+
+
+
+JBitsDevice(String devname)
+{
+  deviceName=devname;
+  deviceType=Devices.getDeviceType(devname);
+  jbits=new JBits(deviceType);
+}
+
+
+// this is used to gain direct access to the JBits object, such as is
+// needed for generating partial bitstreams for the simulator
+public JBits getJBits() { return jbits; }
+
+
+public String getDeviceName() { return deviceName; }
+public int getClbRows() { return Devices.getClbRows(deviceType); }
+public int getClbColumns() { return Devices.getClbColumns(deviceType); }
+
+
+public int[] get(int row, int col, int[][] bits) throws ConfigurationException
+{
+  return jbits.get(row,col,bits);
+}
+
+
+public void set(int row, int col, int[][] bits, int[] value) throws ConfigurationException
+{
+  jbits.set(row,col,bits,value);
+}
+
+
+public boolean matches(int row, int col, int[][] bits, int[] value) throws ConfigurationException
+{
+  return Arrays.equals(jbits.get(row,col,bits),value);
+}
+
+
+public void read(String file) throws IOException, ConfigurationException
+{
+  jbits.read(file);
+}
+
+
+public void write(String file) throws IOException
+{
+  jbits.write(file);
+}
+
+
+public DeviceConfig newInstance()
+{
+  return new JBitsDevice(deviceName);
+}
+
+
+}
@@ -5,8 +5,19 @@
 // supplied with the String representation of the resource, or to do
 // a reverse lookup to return the name of the resource associated with
 // a given bit pattern for a given JBits bits class
+//
+// the reflection is only done the first time that a given resource string
+// is looked up, after which the constant is kept in a (process-wide) symbol
+// table, where it is identified by a small integer handle. the handle can
+// be obtained once, and then used in place of the string for lookups
+//
+// lookups don't lock, so that threads sharing the tables (eg EvalServer's
+// workers) don't wait on each other. only adding a new constant locks, and
+// it publishes a new copy of the symbol table's map, and (if it grows) its
+// arrays, with the count written last, so that readers never see a
+// partially added entry
 // 
-// this class also requires local class: StringSplitter
+// this class also requires local classes: StringSplitter, FatalError
 //
 // 		written December 2003, J.A. Lee
 
@@ -16,6 +27,9 @@
 import java.lang.*;
 import java.lang.reflect.*;
 
+// for HashMap
+import java.util.*;
+
 // for JBits
 import com.xilinx.JBits.Virtex.JBits;
 import com.xilinx.JBits.Virtex.Bits.*;
@@ -26,6 +40,20 @@ import com.xilinx.JBits.Virtex.Util;
 
 class JBitsLookup {
 
+	// the symbol tables map a resource string onto its handle (an
+	// Integer), which is the index of its constant in the table's arrays.
+	// these are shared by all, and a map is never changed once published,
+	// so additions are synchronized on the class, but lookups aren't
+	static volatile Map bitsHandles=new HashMap();
+	static volatile int[][][] bitsTable=new int[64][][];
+	static volatile String[] bitsNames=new String[64];
+	static volatile int numBits=0;
+
+	static volatile Map valueHandles=new HashMap();
+	static volatile int[][] valueTable=new int[64][];
+	static volatile String[] valueNames=new String[64];
+	static volatile int numValues=0;
+
 public static void main(String args[])
 {
 
@@ -84,6 +112,61 @@ public static void main(String args[])
 // for example S0F1.S0F1 or S1Control.YDin.YDin
 // and returns the constant bits associated with that constname
 public static int[][] getBits(String strbits)
+{
+  // the handle must be got first, as getting it may grow the table
+  return getBits(getBitsHandle(strbits));
+}
+
+// returns the handle for the bits constant, adding it to the symbol table
+// if this is the first time that it has been looked up
+public static int getBitsHandle(String strbits)
+{
+  Integer h=(Integer)bitsHandles.get(strbits);
+  return (h!=null) ? h.intValue() : addBits(strbits);
+}
+
+static synchronized int addBits(String strbits)
+{
+  // another thread may have added it while waiting for the lock
+  Integer h=(Integer)bitsHandles.get(strbits);
+  if (h!=null) { return h.intValue(); }
+
+  int n=numBits;
+  if (n==bitsTable.length) {
+    int[][][] bt=new int[n*2][][];
+    String[] bn=new String[n*2];
+    System.arraycopy(bitsTable,0,bt,0,n);
+    System.arraycopy(bitsNames,0,bn,0,n);
+    bitsTable=bt;
+    bitsNames=bn;
+  }
+  bitsTable[n]=resolveBits(strbits);
+  bitsNames[n]=strbits;
+  Map m=new HashMap(bitsHandles);
+  m.put(strbits,new Integer(n));
+  numBits=n+1;
+  bitsHandles=m;
+  return n;
+}
+
+// returns the bits constant for a handle from getBitsHandle()
+public static int[][] getBits(int handle)
+{
+  // the count must be read before the table, to see the table it's for
+  int n=numBits;
+  return bitsTable[validHandle(handle,n)];
+}
+
+// returns the string that the bits handle was obtained from
+public static String getBitsName(int handle)
+{
+  int n=numBits;
+  return bitsNames[validHandle(handle,n)];
+}
+
+
+// this uses reflection to obtain the bits constant
+static int[][] resolveBits(String strbits)
 {
   int[][] bits=null;
 
@@ -112,7 +195,7 @@ public static int[][] getBits(String strbits)
     System.out.println(e);
     e.printStackTrace();
     System.err.println("exiting...");
-    System.exit(1);
+    FatalError.exit(e);
   }
 
   return bits;
@@ -123,6 +206,61 @@ public static int[][] getBits(String strbits)
 // for example SOF1.SINGLE_EAST12 or S1Control.YDin.BY
 // and returns the constant value associated with that constname
 public static int[] getValue(String strval)
+{
+  // the handle must be got first, as getting it may grow the table
+  return getValue(getValueHandle(strval));
+}
+
+// returns the handle for the value constant, adding it to the symbol table
+// if this is the first time that it has been looked up
+public static int getValueHandle(String strval)
+{
+  Integer h=(Integer)valueHandles.get(strval);
+  return (h!=null) ? h.intValue() : addValue(strval);
+}
+
+static synchronized int addValue(String strval)
+{
+  // another thread may have added it while waiting for the lock
+  Integer h=(Integer)valueHandles.get(strval);
+  if (h!=null) { return h.intValue(); }
+
+  int n=numValues;
+  if (n==valueTable.length) {
+    int[][] vt=new int[n*2][];
+    String[] vn=new String[n*2];
+    System.arraycopy(valueTable,0,vt,0,n);
+    System.arraycopy(valueNames,0,vn,0,n);
+    valueTable=vt;
+    valueNames=vn;
+  }
+  valueTable[n]=resolveValue(strval);
+  valueNames[n]=strval;
+  Map m=new HashMap(valueHandles);
+  m.put(strval,new Integer(n));
+  numValues=n+1;
+  valueHandles=m;
+  return n;
+}
+
+// returns the value constant for a handle from getValueHandle()
+public static int[] getValue(int handle)
+{
+  // the count must be read before the table, to see the table it's for
+  int n=numValues;
+  return valueTable[validHandle(handle,n)];
+}
+
+// returns the string that the value handle was obtained from
+public static String getValueName(int handle)
+{
+  int n=numValues;
+  return valueNames[validHandle(handle,n)];
+}
+
+
+// this uses reflection to obtain the value constant
+static int[] resolveValue(String strval)
 {
 
   int[] val=null;
@@ -153,13 +291,30 @@ public static int[] getValue(String strval)
     System.out.println(e);
     e.printStackTrace();
     System.err.println("exiting...");
-    System.exit(1);
+    FatalError.exit(e);
   }
 
   return val;
 }
 
 
+// handles are only valid if they were returned by get*Handle()
+static int validHandle(int handle, int numhandles)
+{
+  try {
+    if (handle<0 || handle>=numhandles) {
+      throw new Exception("Invalid JBits constant handle ("+handle+"), must be from 0 to "+(numhandles-1));
+    }
+  } catch (Exception e) {
+    System.err.println(e);
+    e.printStackTrace();
+    FatalError.exit(e);
+  }
+
+  return handle;
+}
+
+
 // takes a class name, and a bit pattern value
 // returns the name of the constant in the class represented by the bit pattern
 public static String getName(String classname, int[] bits)
@@ -202,7 +357,7 @@ public static String getName(String classname, String bitpattern)
     System.out.println(e);
     e.printStackTrace();
     System.err.println("exiting...");
-    System.exit(1);
+    FatalError.exit(e);
   }
 
   return name;
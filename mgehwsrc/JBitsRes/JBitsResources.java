@@ -5,9 +5,14 @@
 // of contention checking (via ContentionLookup), translation of higher-level
 // constructs to JBits settings (via this class and LUTIncrFN), and conversion
 // of strings to actual JBits parameters (int[][] and int[] via JBitsLookup)
+//
+// the FPGA itself is accessed through a DeviceConfig, which is normally
+// JBits (JBitsDevice), but if the bitstream file is a packed configuration
+// file (.pcfg), then the pure Java model of the CLBs (PackedDevice) is used
 // 
 // this class also requires local classes:
-// 	StringSplitter, JBitsLookup, ContentionLookup, LUTIncrFN
+// 	StringSplitter, JBitsLookup, ContentionLookup, LUTIncrFN,
+// 	DeviceConfig, JBitsDevice, PackedDevice, FatalError
 //
 // 		written December 2003, J.A. Lee
 
@@ -47,7 +52,21 @@ class JBitsResources {
 	ContentionLookup ctable;// for looking up contentious resources
 	Map sramidxtable;	// gives index of S?RAM resource in bitmap
 	String[] allramres;	// gives name of S?RAM resource, given index
-	JBits jbits;		// the FPGA resources
+
+	// the constants for the S?RAM resources and LUT inputs, looked up
+	// once, so that setting and querying these needn't look them up
+	int[][][][] sramBits;	// [slice][S?RAM resource index]
+	int[][] sramOn;		// [slice], S?RAM.ON
+	int[][] sramOff;	// [slice], S?RAM.OFF
+	int[][][][] lutInputBits;// [slice*2+le][input-1], eg S0G1.S0G1
+	int[][][] lutInputOff;	// [slice*2+le][input-1], eg S0G1.OFF
+
+	// the S?RAM resources in the same order as the fields in the javadoc
+	static final String[] sliceRAMres={ "DUAL_MODE", "F_LUT_RAM",
+	  "F_LUT_SHIFTER", "G_LUT_RAM", "G_LUT_SHIFTER", "LUT_MODE",
+	  "RAM_32_X_1" };
+
+	DeviceConfig device;	// the FPGA resources
 	int numRows;
 	int numCols;
 
@@ -77,6 +96,37 @@ class JBitsResources {
 
 	int ACTIVE=0xf;	// should be the same as defined in ActiveInputLEs 
 
+	String deviceName;	// what this instance was created with, so
+	String contentionFile;	// that it can be shared by other classes
+
+	// when a snapshot has been taken, all set() calls log the previous
+	// value of the resource, so that the configuration can be restored
+	// without having to re-read the bitstream from file
+	List undolog=null;		// JBitsUndoEntry's in order of setting
+	String[][] snapActiveFNop=null;	// the active FN state at snapshot
+	String[][] snapActiveFNinv=null;
+	int[][][] snapActiveLines=null;
+	int snapActiveRowOff=0;
+	int snapActiveColOff=0;
+	int snapActiveCode=0xf;
+
+	// every change to the configuration is counted, so that callers can
+	// tell if a CLB has changed since they last looked at it, without
+	// having to compare its settings
+	long modcount=0;		// number of changes made so far
+	long[][] clbModified;		// modcount when each CLB last changed
+	long allModified=0;		// modcount when bitstream last loaded
+
+	long rejected=0;	// settings not made, as they're contentious
+
+	// for each CLB, a bitmask of the contentious resource settings (as
+	// indexed by ctable) that are blocked by a competing resource having
+	// a contentious value. this is created when first needed, after the
+	// bitstream is loaded, and then updated whenever a competing
+	// resource is set, so that checking contention is a bit test
+	long[][][] blocked=null;	// [row][col][setting/64]
+	boolean blockedValid=false;
+
 
 public static void main(String args[])
 {
@@ -87,7 +137,21 @@ public static void main(String args[])
   String outbit=null;
   JBitsResources jbits;
 
-  if (argc>=5 && args[3].equals("load")) { // load settings from recorded file
+  if (argc>=5 && args[3].equals("pack")) { // save as packed configuration
+    jbits=new JBitsResources(args[+0],args[2],args[1]);
+    System.out.print("writing packed configuration to file: "+args[4]+" .. ");
+    try {
+      PackedDevice packed=new PackedDevice(args[0]);
+      packed.copyFrom(jbits.getDevice());
+      packed.write(args[4]);
+    } catch (Exception e) {
+      System.err.println(e);
+      e.printStackTrace();
+      System.exit(1);
+    }
+    System.out.println("done.");
+    System.exit(0);
+  } else if (argc>=5 && args[3].equals("load")) { // load settings from recorded file
     setfile=args[4];
     if (argc>5) { outbit=args[5]; }
     jbits=new JBitsResources(args[+0],args[2],args[1]);
@@ -96,7 +160,7 @@ public static void main(String args[])
     System.out.println("done.");
   } else {
     if (argc<7 || (args[5].equals("isEquiv") && argc<8)) {
-      System.err.println("synopsis: JBitsResources devname bitfile contentionfile  (load setfile [ outbit ]) | (row col (get type=bits | getvname type=bits | set type=bits,val [ outbit ] | isEquiv bits type=bits,equivVal))");
+      System.err.println("synopsis: JBitsResources devname bitfile contentionfile  (pack outfile.pcfg) | (load setfile [ outbit ]) | (row col (get type=bits | getvname type=bits | set type=bits,val [ outbit ] | isEquiv bits type=bits,equivVal))");
       System.exit(1);
     }
 
@@ -166,12 +230,14 @@ JBitsResources(String deviceName, String contentionFile, String bitfile)
   recording=false;
   recordfilename=null;
   bitstreamFile=bitfile;
-  int deviceType = Devices.getDeviceType(deviceName);
-  numCols=Devices.getClbColumns(deviceType);
-  numRows=Devices.getClbRows(deviceType);
+  this.deviceName=deviceName;
+  this.contentionFile=contentionFile;
+  device=createDevice(deviceName,bitfile);
+  numCols=device.getClbColumns();
+  numRows=device.getClbRows();
   activeFNopMatrix=new String[numRows*2][numCols*2]; // 4 LUTs per CLB: 2 LEs
   activeFNinvMatrix=new String[numRows*2][numCols*2];// per row & 2 slice/col
-  jbits = new JBits(deviceType);
+  clbModified=new long[numRows][numCols];
   loadBitstream(bitfile);
   ctable=new ContentionLookup(contentionFile);
   sramidxtable=new HashMap();
@@ -181,7 +247,7 @@ JBitsResources(String deviceName, String contentionFile, String bitfile)
   // 	DUAL_MODE, F_LUT_RAM, F_LUT_SHIFTER, G_LUT_RAM, G_LUT_SHIFTER,
   // 	LUT_MODE, RAM_32_X_1
 
-  allramres=new String[] {"DUAL_MODE","F_LUT_RAM","F_LUT_SHIFTER","G_LUT_RAM","G_LUT_SHIFTER","LUT_MODE","RAM_32_X_1"};
+  allramres=sliceRAMres;
 
   sramidxtable.put("DUAL_MODE",new Integer(0));
   sramidxtable.put("F_LUT_RAM",new Integer(1));
@@ -190,12 +256,204 @@ JBitsResources(String deviceName, String contentionFile, String bitfile)
   sramidxtable.put("G_LUT_SHIFTER",new Integer(4));
   sramidxtable.put("LUT_MODE",new Integer(5));
   sramidxtable.put("RAM_32_X_1",new Integer(6));
+
+  sramBits=new int[2][][][];
+  sramOn=new int[2][];
+  sramOff=new int[2][];
+  lutInputBits=new int[4][4][][];
+  lutInputOff=new int[4][4][];
+  String strclass, inputname;
+  for (int slice=0; slice<2; slice++) {
+    strclass="S"+slice+"RAM";
+    sramBits[slice]=getSliceRAMbits(strclass);
+    sramOn[slice]=JBitsLookup.getValue(strclass+".ON");
+    sramOff[slice]=JBitsLookup.getValue(strclass+".OFF");
+    for (int le=0; le<2; le++) {
+      for (int i=1; i<=4; i++) {
+        inputname="S"+slice+((le==0) ? "G" : "F")+i;
+        lutInputBits[slice*2+le][i-1]=JBitsLookup.getBits(inputname+"."+inputname);
+        lutInputOff[slice*2+le][i-1]=JBitsLookup.getValue(inputname+".OFF");
+      }
+    }
+  }
+}
+
+
+// create another instance with the same device and bitstream as template,
+// that shares its (read-only) contention and S?RAM tables. this is so that
+// separate threads can each have their own FPGA to configure, without each
+// having to parse the contention file. note that only the bitstream file
+// is loaded, any settings made to template since then aren't copied
+JBitsResources(JBitsResources template)
+{
+  recording=false;
+  recordfilename=null;
+  bitstreamFile=template.bitstreamFile;
+  deviceName=template.deviceName;
+  contentionFile=template.contentionFile;
+  numCols=template.numCols;
+  numRows=template.numRows;
+  activeFNopMatrix=new String[numRows*2][numCols*2];
+  activeFNinvMatrix=new String[numRows*2][numCols*2];
+  clbModified=new long[numRows][numCols];
+  device=template.device.newInstance();
+  loadBitstream(bitstreamFile);
+  ctable=template.ctable;
+  sramidxtable=template.sramidxtable;
+  allramres=template.allramres;
+  sramBits=template.sramBits;
+  sramOn=template.sramOn;
+  sramOff=template.sramOff;
+  lutInputBits=template.lutInputBits;
+  lutInputOff=template.lutInputOff;
+}
+
+
+// create a copy of src, with the given device, which is already configured
+// the same as src's. this is used by fork()
+JBitsResources(JBitsResources src, DeviceConfig dev)
+{
+  recording=false;
+  recordfilename=null;
+  bitstreamFile=src.bitstreamFile;
+  deviceName=src.deviceName;
+  contentionFile=src.contentionFile;
+  numCols=src.numCols;
+  numRows=src.numRows;
+  device=dev;
+  activeFNopMatrix=copyMatrix(src.activeFNopMatrix);
+  activeFNinvMatrix=copyMatrix(src.activeFNinvMatrix);
+  activeLinematrix=src.activeLinematrix;
+  activeRowOff=src.activeRowOff;
+  activeColOff=src.activeColOff;
+  ACTIVE=src.ACTIVE;
+  modcount=src.modcount;
+  allModified=src.allModified;
+  clbModified=new long[numRows][];
+  for (int r=0; r<numRows; r++) { clbModified[r]=(long[])src.clbModified[r].clone(); }
+  ctable=src.ctable;
+  sramidxtable=src.sramidxtable;
+  allramres=src.allramres;
+  sramBits=src.sramBits;
+  sramOn=src.sramOn;
+  sramOff=src.sramOff;
+  lutInputBits=src.lutInputBits;
+  lutInputOff=src.lutInputOff;
+}
+
+
+// create a copy of this instance and its current configuration, including
+// the LUT active FNs, which can then be changed independently of this one.
+// a packed configuration is forked copy-on-write, so this is cheap. JBits
+// can't copy a configuration, so with JBits the copy is loaded from the
+// bitstream file and then has each of the CLBs copied to it. set()'s
+// aren't recorded or logged for restoreSnapshot() in the copy
+public JBitsResources fork()
+{
+  DeviceConfig dev=null;
+  try {
+    if (device instanceof PackedDevice) {
+      dev=((PackedDevice)device).fork();
+    } else {
+      dev=device.newInstance();
+      dev.read(bitstreamFile);
+      int[][] all=PackedDevice.tileBits();
+      for (int row=0; row<numRows; row++) {
+	for (int col=0; col<numCols; col++) {
+	  dev.set(row,col,all,device.get(row,col,all));
+	}
+      }
+    }
+  } catch (Exception e) {
+    System.err.println(e);
+    e.printStackTrace();
+    System.exit(1);
+  }
+  return new JBitsResources(this,dev);
+}
+
+
+// make this instance's configuration and LUT active FNs the same as src's,
+// which should be a fork of this, or of the same bitstream. only the CLBs
+// that differ are changed, and these are counted as modified (and logged
+// if a snapshot has been taken), so rewinding to an earlier fork is
+// cheap, and callers that check for changed CLBs see only what differs
+public void copyConfig(JBitsResources src)
+{
+  if (src.numRows!=numRows || src.numCols!=numCols) {
+    System.err.println("can't copy configuration from a different sized device");
+    System.exit(1);
+  }
+
+  boolean packed=(device instanceof PackedDevice && src.device instanceof PackedDevice);
+  int[][] all=PackedDevice.tileBits();
+  int[] value;
+  try {
+    for (int row=0; row<numRows; row++) {
+      for (int col=0; col<numCols; col++) {
+	if (packed) {
+	  if (((PackedDevice)device).sameTile((PackedDevice)src.device,row,col)) { continue; }
+	  if (undolog!=null) {
+	    undolog.add(new JBitsUndoEntry(row,col,all,device.get(row,col,all)));
+	  }
+	  ((PackedDevice)device).shareTile((PackedDevice)src.device,row,col);
+	} else {
+	  value=src.device.get(row,col,all);
+	  if (device.matches(row,col,all,value)) { continue; }
+	  if (undolog!=null) {
+	    undolog.add(new JBitsUndoEntry(row,col,all,device.get(row,col,all)));
+	  }
+	  device.set(row,col,all,value);
+	}
+	clbModified[row][col]=++modcount;
+	if (blockedValid) { updateBlocked(row,col); }
+      }
+    }
+  } catch (Exception e) {
+    System.err.println(e);
+    e.printStackTrace();
+    System.exit(1);
+  }
+
+  activeFNopMatrix=copyMatrix(src.activeFNopMatrix);
+  activeFNinvMatrix=copyMatrix(src.activeFNinvMatrix);
+  ACTIVE=src.ACTIVE;
+}
+
+
+// a packed configuration file is used with the pure Java device model,
+// anything else is assumed to be a bitstream for JBits
+static DeviceConfig createDevice(String deviceName, String bitfile)
+{
+  DeviceConfig dev=null;
+  if (bitfile.endsWith(PackedDevice.FILEEXT)) {
+    try {
+      dev=new PackedDevice(deviceName);
+    } catch (ConfigurationException ce) {
+      System.err.println(ce);
+      ce.printStackTrace();
+      System.exit(1);
+    }
+  } else {
+    dev=new JBitsDevice(deviceName);
+  }
+  return dev;
 }
 
 
 // this is used to gain direct access to the FPGA resources,
-// and so should be used with care
-public JBits getJBits() { return jbits; }
+// and so should be used with care. it returns null if JBits isn't
+// being used for the device (ie with a packed configuration)
+public JBits getJBits()
+{
+  return (device instanceof JBitsDevice) ? ((JBitsDevice)device).getJBits() : null;
+}
+
+public DeviceConfig getDevice() { return device; }
+
+public String getDeviceName() { return deviceName; }
+public String getContentionFile() { return contentionFile; }
+public String getBitstreamFile() { return bitstreamFile; }
 
 public int getCols() { return numCols; }
 public int getRows() { return numRows; }
@@ -226,7 +484,7 @@ public int[] get(int row, int col, String typeNresource)
   } catch (Exception e) {
     System.err.println(e);
     e.printStackTrace();
-    System.exit(1);
+    FatalError.exit(e);
   }
 
   return get(row,col,fields[0],fields[1]);
@@ -250,6 +508,12 @@ public int[] getbits(int row, int col, String strbits)
   return get(row,col,bits);
 }
 
+// as above, but with a bits handle obtained from JBitsLookup.getBitsHandle()
+public int[] getbits(int row, int col, int bitshandle)
+{
+  return get(row,col,JBitsLookup.getBits(bitshandle));
+}
+
 
 
 int[] get(int row, int col, int[][] bits)
@@ -259,16 +523,37 @@ int[] get(int row, int col, int[][] bits)
     if (!inRange(row,col)) {
       throw new ConfigurationException("CLB row or col out of valid range for device");
     }
-    value=jbits.get(row,col,bits);
+    value=device.get(row,col,bits);
   } catch (Exception e) {
     System.err.println(e);
     e.printStackTrace();
-    System.exit(1);
+    FatalError.exit(e);
   }
 
   return value;
 }
 
+
+// returns true if the resource's bits are set to value. this is the same
+// as comparing the value returned by get(), but is cheaper on a device
+// that is able to test the bits in place
+boolean matches(int row, int col, int[][] bits, int[] value)
+{
+  boolean match=false;
+  try {
+    if (!inRange(row,col)) {
+      throw new ConfigurationException("CLB row or col out of valid range for device");
+    }
+    match=device.matches(row,col,bits,value);
+  } catch (Exception e) {
+    System.err.println(e);
+    e.printStackTrace();
+    FatalError.exit(e);
+  }
+
+  return match;
+}
+
 // strclassbits is a string of either S0RAM or S1RAM
 // as we manipulate SliceRAM at a slightly higher level which involves
 // setting a few resources (to ON) in conjunction, need to know which of
@@ -278,36 +563,70 @@ int[] get(int row, int col, int[][] bits)
 // 	LUT_MODE, RAM_32_X_1
 int[] getSliceRAM(int row, int col, String strclassbits)
 {
-  int[] retval=new int[allramres.length];
-  // set all of retval to 0's
-  for (int i=0; i<retval.length;i++) { retval[i]=0; }
+  // query all the associated resources, using the constants for this
+  // slice's S?RAM class, that were looked up when loaded
+  int slice=getSliceRAMslice(strclassbits);
+  return getSliceRAM(row,col,sramBits[slice],sramOn[slice]);
+}
 
-  Integer idx;
-  int[][] bits;
-  int[] currentvalue;
-  String on=strclassbits+".ON";		// S0RAM.ON, or S1RAM.ON
-  int[] onvalue=JBitsLookup.getValue(on);
-//System.err.println(on+"="+Util.IntArrayToString(onvalue));
-  String strbits;
-  // now we query all the associated resources
-  for (int i=1; i<allramres.length;i++) {
-    // prepend the class name to the resource
-    strbits=strclassbits+"."+allramres[i];
-    // check resource's current value
-    bits=JBitsLookup.getBits(strbits);
-    currentvalue=get(row,col,bits);
-//System.err.println("strbits="+strbits+" current value="+Util.IntArrayToString(currentvalue));
-    // if current value is ON
-    if (Arrays.equals(currentvalue,onvalue)) {
-      // set the appropriate bit for that resource
+
+
+// this does the same as getSliceRAM(row,col,strclassbits) but with the
+// S?RAM resource bits and S?RAM.ON value already looked up, as is done
+// by getSliceRAMbits(), so that no string handling is required
+int[] getSliceRAM(int row, int col, int[][][] rambits, int[] onvalue)
+{
+  int[] retval=new int[rambits.length];
+  for (int i=1; i<rambits.length;i++) {
+    if (Arrays.equals(get(row,col,rambits[i]),onvalue)) {
       retval[i]=1;
     }
   }
 
-  // return int[] with 1's for each resource that is ON, and 0's otherwise
   return retval;
 }
 
+// look up the bits of all of the S?RAM (strclass) resources, indexed in
+// the same order as is used for the getSliceRAM() bitmap
+static int[][][] getSliceRAMbits(String strclass)
+{
+  int[][][] rambits=new int[sliceRAMres.length][][];
+  for (int i=0; i<sliceRAMres.length;i++) {
+    rambits[i]=JBitsLookup.getBits(strclass+"."+sliceRAMres[i]);
+  }
+  return rambits;
+}
+
+// return the slice of the S?RAM class (S0RAM or S1RAM)
+static int getSliceRAMslice(String strclass)
+{
+  int slice=-1;
+  try {
+    if (strclass.equals("S0RAM")) {
+      slice=0;
+    } else if (strclass.equals("S1RAM")) {
+      slice=1;
+    } else {
+      throw new Exception("Invalid SliceRAM class ("+strclass+") should be S0RAM or S1RAM!");
+    }
+  } catch (Exception e) {
+    System.err.println(e);
+    e.printStackTrace();
+    FatalError.exit(e);
+  }
+
+  return slice;
+}
+
+// return the index of the named S?RAM resource in the bitmap, or -1
+static int getSliceRAMidx(String res)
+{
+  for (int i=0; i<sliceRAMres.length;i++) {
+    if (sliceRAMres[i].equals(res)) { return i; }
+  }
+  return -1;
+}
+
 
 
 // this is for returning the value as a named constant, if type=jbits
@@ -324,7 +643,7 @@ public String getvname(int row, int col, String typeNresource)
   } catch (Exception e) {
     System.err.println(e);
     e.printStackTrace();
-    System.exit(1);
+    FatalError.exit(e);
   }
 
   return getvname(row,col,fields[0],fields[1]);
@@ -401,7 +720,7 @@ public void set(int row, int col, String typeNresourceset)
   } catch (Exception e) {
     System.err.println(e);
     e.printStackTrace();
-    System.exit(1);
+    FatalError.exit(e);
   }
 
   set(row,col,fields[0],fields[1]);
@@ -417,7 +736,7 @@ public void set(int row, int col, String type, String bitsvalstr)
   } catch (Exception e) {
     System.err.println(e);
     e.printStackTrace();
-    System.exit(1);
+    FatalError.exit(e);
   }
 
   if (recording) { record(row,col,type,bitsvalstr); }
@@ -466,16 +785,29 @@ public void setJBits(int row, int col, String strbits, String strval)
     value=LUTIncrFN.binStringToIntArray(strval);
     set(row,col,bits,value);
   } else {
-    // need to do contention checking before setting resources
-    if (!isContentious(row,col,strbits,strval)) {
-      bits=JBitsLookup.getBits(strbits);
-      value=JBitsLookup.getValue(strval);
-      set(row,col,bits,value);
-    }
+    // look up the handles once, for both contention checking and setting
+    setJBits(row,col,JBitsLookup.getBitsHandle(strbits),JBitsLookup.getValueHandle(strval));
+  }
+}
+
+// this is for JBits resources (not LUTs), using the handles obtained from
+// JBitsLookup.getBitsHandle() and getValueHandle()
+public void setJBits(int row, int col, int bitshandle, int valuehandle)
+{
+  // need to do contention checking before setting resources
+  if (!isContentious(row,col,bitshandle,valuehandle)) {
+    set(row,col,JBitsLookup.getBits(bitshandle),JBitsLookup.getValue(valuehandle));
+  } else {
+    rejected++;
   }
 }
 
 
+// the number of settings that setJBits hasn't made, as they would have
+// caused contention
+public long getRejectedCount() { return rejected; }
+
+
 // this is the interface to use to add the matrix from ActiveInputLEs
 // so as to be able to determine which lines are actually active
 // because the matrix usually only covers the evolvable region of the FPGA
@@ -525,7 +857,7 @@ public void setLUTActiveFN(int row, int col, String bitsnexpr)
   } catch (Exception e) {
     System.err.println(e);
     e.printStackTrace();
-    System.exit(1);
+    FatalError.exit(e);
   }
 
 //System.err.println("LUT="+fields[0]+", boolop="+fields[1]+", linesinv="+fields[2]);
@@ -558,7 +890,7 @@ public void setLUTIncrFN(int row, int col, String bitsnexpr)
   } catch (Exception e) {
     System.err.println(e);
     e.printStackTrace();
-    System.exit(1);
+    FatalError.exit(e);
   }
 
   int[][] bits=JBitsLookup.getBits(fields[0]);
@@ -573,11 +905,16 @@ void set(int row, int col, int[][] bits, int[] value)
 {
   try {
     if (!inRange(row,col)) { throw new ConfigurationException("CLB row or col out of valid range for device"); }
-    jbits.set(row,col,bits,value);
+    if (undolog!=null) {
+      undolog.add(new JBitsUndoEntry(row,col,bits,device.get(row,col,bits)));
+    }
+    device.set(row,col,bits,value);
+    clbModified[row][col]=++modcount;
+    if (blockedValid) { updateBlocked(row,col,bits); }
   } catch (Exception e) {
     System.err.println(e);
     e.printStackTrace();
-    System.exit(1);
+    FatalError.exit(e);
   }
 }
 
@@ -592,29 +929,29 @@ void set(int row, int col, int[][] bits, int[] value)
 // 	LUT_MODE, RAM_32_X_1
 public void setSliceRAM(int row, int col, String strclassbits)
 {
-  int[][] bits;
-  int[] value;
   String[] fields=StringSplitter.trimsplit(strclassbits,",");
-  // fields[0] is the classname (S0RAM or S1RAM)
-  String strclass=fields[0];
-  String on=strclass+".ON";		// S0RAM.ON, or S1RAM.ON
-  String off=strclass+".OFF";		// S0RAM.OFF, or S1RAM.OFF
-  String strbits;
+  // fields[0] is the classname (S0RAM or S1RAM), whose resources' constants
+  // were looked up when loaded
+  int slice=getSliceRAMslice(fields[0]);
+  int[][][] rambits=sramBits[slice];
 
   // reset all S?RAM resources to OFF
-  for (int i=0; i<allramres.length;i++) {
-    strbits=strclass+"."+allramres[i];
-    bits=JBitsLookup.getBits(strbits);
-    value=JBitsLookup.getValue(off);
-    set(row,col,bits,value);
+  for (int i=0; i<rambits.length;i++) {
+    set(row,col,rambits[i],sramOff[slice]);
   }
 
   // set all selected resources to ON
+  int idx=-1;
   for (int i=1; i<fields.length;i++) {
-    strbits=strclass+"."+fields[i];
-    bits=JBitsLookup.getBits(strbits);
-    value=JBitsLookup.getValue(on);
-    set(row,col,bits,value);
+    try {
+      idx=getSliceRAMidx(fields[i]);
+      if (idx<0) { throw new Exception("Invalid SliceRAM resource ("+fields[i]+") in: "+strclassbits); }
+    } catch (Exception e) {
+      System.err.println(e);
+      e.printStackTrace();
+      FatalError.exit(e);
+    }
+    set(row,col,rambits[idx],sramOn[slice]);
   }
 }
 
@@ -680,41 +1017,114 @@ public void loadRecordFile(String file)
 public boolean isContentious(int row, int col, String strbits, String strval)
 {
   // possibly contentious resource & setting
-  int[][] bits=JBitsLookup.getBits(strbits);
-  int[] value=JBitsLookup.getValue(strval);
+  int bitshandle=JBitsLookup.getBitsHandle(strbits);
+  int valuehandle=JBitsLookup.getValueHandle(strval);
 
-  ContentionEntry ce;
-  int[][] cbits;
-  int[] cval;
-  int[] currentval;
-  boolean contentious=false;
+  return isContentious(row,col,bitshandle,valuehandle);
+}
 
+// as above, but using the resource's bits and value handles
+public boolean isContentious(int row, int col, int bitshandle, int valuehandle)
+{
   // check for an entry for this resource & setting
-  List clist=ctable.getList(strbits, strval);
-  if (clist!=null) {
-    // iterate through the list of possible contentious settings
-    ListIterator iter = clist.listIterator();
-    while (iter.hasNext()) {
-      // get an entry for a competing resource
-      ce=(ContentionEntry)iter.next();
-      // if on FPGA borders, need to check that don't exceed them to check
-      // contentious values on a out-of-range CLB
-      if (row+ce.rowOffset>=0 && row+ce.rowOffset<=numRows-1 &&
-	  col+ce.colOffset>=0 && row+ce.rowOffset<=numCols-1) {
-        cbits=JBitsLookup.getBits(ce.bitString);
-        cval=JBitsLookup.getValue(ce.valString);
-        // check if this competing resource has a contentious value
-        currentval=get(row+ce.rowOffset,col+ce.colOffset,cbits);
-        if (Arrays.equals(cval,currentval)) {
-	  // current value of this resource will create contention
-          contentious=true;
-          break;
-        }
+  int s=ctable.getSettingIndex(bitshandle,valuehandle);
+  if (s<0 || !inRange(row,col)) { return false; }
+
+  if (!blockedValid) { initBlocked(); }
+  return (blocked[row][col][s>>>6] & (1L<<(s&63)))!=0;
+}
+
+
+// returns true if any of the competing resources for the contentious
+// setting s, in the CLBs around row,col, has a contentious value
+boolean isBlocked(int row, int col, int s)
+{
+  ContentionEntry[] entries=ctable.getEntries(s);
+  ContentionEntry ce;
+  for (int i=0; i<entries.length; i++) {
+    // get an entry for a competing resource
+    ce=entries[i];
+    // if on FPGA borders, need to check that don't exceed them to check
+    // contentious values on a out-of-range CLB
+    if (inRange(row+ce.rowOffset,col+ce.colOffset)) {
+      // check if this competing resource has a contentious value
+      if (matches(row+ce.rowOffset,col+ce.colOffset,ce.bits,ce.value)) {
+        return true;
+      }
+    }
+  }
+  return false;
+}
+
+
+void setBlocked(int row, int col, int s, boolean isblocked)
+{
+  if (isblocked) {
+    blocked[row][col][s>>>6]|=1L<<(s&63);
+  } else {
+    blocked[row][col][s>>>6]&=~(1L<<(s&63));
+  }
+}
+
+
+// work out which settings are blocked in every CLB
+void initBlocked()
+{
+  int nsettings=ctable.getNumSettings();
+  if (blocked==null) {
+    blocked=new long[numRows][numCols][(nsettings+63)/64];
+  }
+  for (int row=0; row<numRows; row++) {
+    for (int col=0; col<numCols; col++) {
+      for (int s=0; s<nsettings; s++) {
+        setBlocked(row,col,s,isBlocked(row,col,s));
       }
     }
   }
+  blockedValid=true;
+}
 
-  return contentious;
+
+// the whole of CLB row,col has been set, so update the settings of all
+// the CLBs that its competing resources compete with
+void updateBlocked(int row, int col)
+{
+  int nsettings=ctable.getNumSettings();
+  ContentionEntry[] entries;
+  int r,c;
+  for (int s=0; s<nsettings; s++) {
+    entries=ctable.getEntries(s);
+    for (int i=0; i<entries.length; i++) {
+      r=row-entries[i].rowOffset;
+      c=col-entries[i].colOffset;
+      if (inRange(r,c)) {
+        setBlocked(r,c,s,isBlocked(r,c,s));
+      }
+    }
+  }
+}
+
+
+// bits have been set in CLB row,col, so update only the settings whose
+// competing resources use them, in the CLBs that those compete with
+void updateBlocked(int row, int col, int[][] bits)
+{
+  int[] pairs;
+  ContentionEntry ce;
+  int s,r,c;
+  for (int b=0; b<bits.length; b++) {
+    pairs=ctable.getCompetitors(bits[b][0],bits[b][1]);
+    if (pairs==null) { continue; }
+    for (int p=0; p<pairs.length; p+=2) {
+      s=pairs[p];
+      ce=ctable.getEntries(s)[pairs[p+1]];
+      r=row-ce.rowOffset;
+      c=col-ce.colOffset;
+      if (inRange(r,c)) {
+        setBlocked(r,c,s,isBlocked(r,c,s));
+      }
+    }
+  }
 }
 
 
@@ -743,7 +1153,7 @@ String getActiveLinesTemplate(int row, int col, String lutname, String linesinv)
   } catch (Exception e) {
     System.err.println(e);
     e.printStackTrace();
-    System.exit(1);
+    FatalError.exit(e);
   }
 
   return getActiveLinesTemplate(row,col,slice,le,linesinv);
@@ -752,16 +1162,8 @@ String getActiveLinesTemplate(int row, int col, String lutname, String linesinv)
 
 String getActiveLinesTemplate(int row, int col, int slice, int le, String linesinv)
 {
-  String inprefix=null;
-  if (slice==0 && le==0) { 
-    inprefix=new String("S0G");
-  } else if (slice==0 && le==1) { 
-    inprefix=new String("S0F");
-  } else if (slice==1 && le==0) { 
-    inprefix=new String("S1G");
-  } else { // if (slice==1 && le==1)
-    inprefix=new String("S1F");
-  }
+  // the LUT's inputs are S0G?, S0F?, S1G? or S1F?
+  int lut=slice*2+le;
 
 
   // NB: order of lines in template is 4,3,2,1
@@ -781,7 +1183,7 @@ String getActiveLinesTemplate(int row, int col, int slice, int le, String linesi
     } catch (Exception e) {
       System.err.println(e);
       e.printStackTrace();
-      System.exit(1);
+      FatalError.exit(e);
     }
 
     for (int i=1; i<=4; i++) {
@@ -790,17 +1192,13 @@ String getActiveLinesTemplate(int row, int col, int slice, int le, String linesi
       }
     }
   } else {
-    String inputname=null;
-    int[][] bits=null;
     int[] inputval=null;
 
     // check each LUT input to see if it is connected or not
     for (int i=1; i<=4; i++) {
-      inputname=new String(inprefix+i);
-      bits=JBitsLookup.getBits(inputname+"."+inputname);
-      inputval=get(row,col,bits);
+      inputval=get(row,col,lutInputBits[lut][i-1]);
       // check that it's not a disconnected input
-      if (!isEquiv(row,col,inputval,inputname+"."+inputname+","+inputname+".OFF")) {
+      if (!Arrays.equals(inputval,lutInputOff[lut][i-1])) {
         // set the corresponding input to be direct or inverted
         active.setCharAt(4-i,linesinv.charAt(4-i));
 //System.err.println("line "+i+" is active. template ->"+active);
@@ -852,7 +1250,7 @@ public boolean isEquiv(int row, int col, int[] currentval, String bitsvalstr)
   } catch (Exception e) {
     System.err.println(e);
     e.printStackTrace();
-    System.exit(1);
+    FatalError.exit(e);
   }
 
   int[] value;
@@ -880,6 +1278,12 @@ public boolean isEquivVal(int row, int col, int[] currentval, String valstr)
   return (Arrays.equals(value,currentval));
 }
 
+// as above, but with a value handle from JBitsLookup.getValueHandle()
+public boolean isEquivVal(int row, int col, int[] currentval, int valuehandle)
+{
+  return (Arrays.equals(JBitsLookup.getValue(valuehandle),currentval));
+}
+
 
 public boolean isLUTIncrFNequiv(int row, int col, int[] currentval, String bitsvalstr)
 {
@@ -891,7 +1295,7 @@ public boolean isLUTIncrFNequiv(int row, int col, int[] currentval, String bitsv
   } catch (Exception e) {
     System.err.println(e);
     e.printStackTrace();
-    System.exit(1);
+    FatalError.exit(e);
   }
 
   // return whether that value equals the current (queried) value
@@ -909,7 +1313,7 @@ public boolean isLUTActiveFNequiv(int row, int col, int[] currentval, String bit
   } catch (Exception e) {
     System.err.println(e);
     e.printStackTrace();
-    System.exit(1);
+    FatalError.exit(e);
   }
 
   // generate lines template based on active lines & line inversion template
@@ -930,7 +1334,7 @@ public boolean isSliceRAMequiv(int row, int col, int[] currentval, String bitsva
   } catch (Exception e) {
     System.err.println(e);
     e.printStackTrace();
-    System.exit(1);
+    FatalError.exit(e);
   }
 
   // get the int[] that represents that value-list
@@ -977,11 +1381,89 @@ public void init()
 }
 
 
+// take an in-memory snapshot of the current configuration. from here on
+// all set()'s are logged so that restoreSnapshot() can undo them. this is
+// much cheaper than re-reading the bitstream when the same (layout)
+// configuration is repeatedly grown from, as the evaluation server does
+public void takeSnapshot()
+{
+  undolog=new ArrayList();
+  snapActiveFNop=copyMatrix(activeFNopMatrix);
+  snapActiveFNinv=copyMatrix(activeFNinvMatrix);
+  snapActiveLines=activeLinematrix;
+  snapActiveRowOff=activeRowOff;
+  snapActiveColOff=activeColOff;
+  snapActiveCode=ACTIVE;
+}
+
+
+// return the configuration to its state when takeSnapshot() was called,
+// undoing the logged set()'s in reverse order. the snapshot is retained
+public void restoreSnapshot()
+{
+  try {
+    if (undolog==null) { throw new Exception("takeSnapshot() must be called first!"); }
+    JBitsUndoEntry u;
+    for (int i=undolog.size()-1; i>=0; i--) {
+      u=(JBitsUndoEntry)undolog.get(i);
+      device.set(u.row,u.col,u.bits,u.value);
+      clbModified[u.row][u.col]=++modcount;
+      if (blockedValid) { updateBlocked(u.row,u.col,u.bits); }
+    }
+  } catch (Exception e) {
+    System.err.println(e);
+    e.printStackTrace();
+    System.exit(1);
+  }
+  undolog.clear();
+
+  activeFNopMatrix=copyMatrix(snapActiveFNop);
+  activeFNinvMatrix=copyMatrix(snapActiveFNinv);
+  activeLinematrix=snapActiveLines;
+  activeRowOff=snapActiveRowOff;
+  activeColOff=snapActiveColOff;
+  ACTIVE=snapActiveCode;
+}
+
+
+// the change count of the most recent change to the configuration
+public long getModCount() { return modcount; }
+
+// the change count of the most recent change to any of the CLBs within
+// radius (rows and cols) of row,col. a CLB is considered unchanged since
+// a given count if this is no more than that count
+public long getModCount(int row, int col, int radius)
+{
+  long last=allModified;
+  int rmin=Math.max(row-radius,0), rmax=Math.min(row+radius,numRows-1);
+  int cmin=Math.max(col-radius,0), cmax=Math.min(col+radius,numCols-1);
+  for (int r=rmin; r<=rmax; r++) {
+    for (int c=cmin; c<=cmax; c++) {
+      if (clbModified[r][c]>last) { last=clbModified[r][c]; }
+    }
+  }
+  return last;
+}
+
+
+String[][] copyMatrix(String[][] m)
+{
+  String[][] c=new String[m.length][];
+  for (int i=0; i<m.length; i++) {
+    c[i]=new String[m[i].length];
+    System.arraycopy(m[i],0,c[i],0,m[i].length);
+  }
+  return c;
+}
+
+
 public void loadBitstream(String bitfile)
 {
 //System.err.println("reading bitstream from file "+bitfile+" ...");
   try {
-    jbits.read(bitfile);
+    device.read(bitfile);
+    allModified=++modcount;
+    blockedValid=false;
   } catch (FileNotFoundException fe) {
     System.err.println("File "+bitfile+" not found!");
     System.err.println(fe);
@@ -1002,17 +1484,90 @@ public void loadBitstream(String bitfile)
 
 
 
+// write the configuration, and the LUT active FN settings, to a state
+// snapshot. a packed configuration goes in the snapshot itself, but JBits
+// can only write the whole bitstream to a file, so then it is written to
+// bitfile, and the snapshot just records its name
+public void writeConfig(DataOutputStream out, String bitfile) throws IOException
+{
+  if (device instanceof PackedDevice) {
+    out.writeBoolean(true);
+    ((PackedDevice)device).writeConfig(out);
+  } else {
+    writeBitstream(bitfile);
+    out.writeBoolean(false);
+    out.writeUTF(bitfile);
+  }
+  writeMatrix(out,activeFNopMatrix);
+  writeMatrix(out,activeFNinvMatrix);
+  out.writeInt(ACTIVE);
+}
+
+
+// read back the configuration written by writeConfig()
+public void readConfig(DataInputStream in) throws IOException
+{
+  if (in.readBoolean()) {
+    if (!(device instanceof PackedDevice)) {
+      throw new IOException("snapshot has a packed configuration, but "+bitstreamFile+" isn't one");
+    }
+    try {
+      ((PackedDevice)device).readConfig(in,"snapshot");
+    } catch (ConfigurationException ce) {
+      throw new IOException(ce.toString());
+    }
+    allModified=++modcount;
+    blockedValid=false;
+  } else {
+    loadBitstream(in.readUTF());
+  }
+  activeFNopMatrix=readMatrix(in);
+  activeFNinvMatrix=readMatrix(in);
+  ACTIVE=in.readInt();
+}
+
+
+void writeMatrix(DataOutputStream out, String[][] m) throws IOException
+{
+  if (m==null) { out.writeInt(-1); return; }
+  out.writeInt(m.length);
+  for (int i=0; i<m.length; i++) {
+    out.writeInt(m[i].length);
+    for (int j=0; j<m[i].length; j++) {
+      out.writeBoolean(m[i][j]!=null);
+      if (m[i][j]!=null) { out.writeUTF(m[i][j]); }
+    }
+  }
+}
+
+
+String[][] readMatrix(DataInputStream in) throws IOException
+{
+  int rows=in.readInt();
+  if (rows<0) { return null; }
+  String[][] m=new String[rows][];
+  for (int i=0; i<rows; i++) {
+    m[i]=new String[in.readInt()];
+    for (int j=0; j<m[i].length; j++) {
+      if (in.readBoolean()) { m[i][j]=in.readUTF(); }
+    }
+  }
+  return m;
+}
+
+
+
 public void writeBitstream(String outfilename)
 {
 //System.err.println("writing bitstream to file "+outfilename+" ...");
   // Write the Bitstream to a file
   try {
-    jbits.write(outfilename);
+    device.write(outfilename);
   } catch (IOException ioe) {
     System.err.println("Error writing file "+ outfilename + ". Exiting");
     System.err.println(ioe);
     ioe.printStackTrace();
-    System.exit(1);
+    FatalError.exit(ioe);
   }
 }
 
@@ -1118,3 +1673,24 @@ void processReadLine(String line)
 
 
 
+// stores the value of a resource before it was set, for undoing the setting
+class JBitsUndoEntry {
+	int row;
+	int col;
+	int[][] bits;
+	int[] value;
+
+JBitsUndoEntry(int r, int c, int[][] b, int[] v)
+{
+  row=r;
+  col=c;
+  bits=b;
+  value=v;
+}
+
+}
+
+
+
+
+
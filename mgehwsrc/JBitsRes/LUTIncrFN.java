@@ -26,18 +26,44 @@
 //		  input, with 0 indicating invert input, 1 direct input, and
 //		  a '-' indicating ignore input.
 //		  note that the inputs are in order 4,3,2,1
+//
+// as there are only 4 setops, 8 boolops and 81 lines templates, the truth
+// table for each boolop and lines, and the truth table entries in each of
+// the groups that isEquiv() tests for each lines template, are created
+// when the class is loaded, and stored as 16-bit masks (bit i is entry i).
+// isEquiv() and newValue() then just combine these masks with the LUT, which
+// can be given as a 16-bit word (see lutWord()), and the setop, boolop and
+// lines as indexes into the tables (see setopIndex() etc)
 
 
 // for String's etc
 import java.lang.*;
 import java.util.*;
 
-// this class also requires local class: StringSplitter
+// this class also requires local classes: StringSplitter, FatalError
 
 
 
 class LUTIncrFN {
 
+	static final String[] SETOPS={ "SET", "AND", "OR", "XOR" };
+	static final String[] BOOLOPS={ "AND", "NAND", "OR", "NOR",
+					"XOR", "XNOR", "MJR0", "MJR1" };
+	static final int NUMLINES=81;		// 3^4 lines templates
+
+	// the setop indexes
+	static final int SETOP_SET=0;
+	static final int SETOP_AND=1;
+	static final int SETOP_OR=2;
+	static final int SETOP_XOR=3;
+
+	static int[][] truthMasks;	// [boolop][lines] truth table
+	static int[][] groupMasks;	// [lines][group] entries in group
+
+	static {
+	  compileTables();
+	}
+
 
 public static void main(String args[])
 {
@@ -87,25 +113,32 @@ public static int[] newValue(int[] currentval, String setop, String boolop, Stri
   // first verify that args are correct so don't get unforeseeable behaviour
   exitOnInvalidArgs(currentval,setop,boolop,lines);
 
+  return lutArray(newValue(lutWord(currentval),setopIndex(setop),boolopIndex(boolop),linesIndex(lines)));
+}
+
+
+// this is the same as above, with the LUT as a 16-bit word, and the setop,
+// boolop and lines given by their indexes, which must be valid
+
+public static int newValue(int currentval, int setop, int boolop, int lines)
+{
   // LUT's are stored inverted, so need to uninvert to combine with exprn
-  int[] oldlut=invert(currentval);
-
-  // create new LUT by applying boolean operation to the desired lines
-  int[] newlut=makeTruthTable(boolop,lines);
-
-  if (!setop.equals("SET")) {		// ie if combining with old LUT
-    int[] lbits=new int[2];
-    // for each truth table entry, combine the old and the new
-    for (int i=0; i<16; i++) {
-      lbits[0]=oldlut[i];
-      lbits[1]=newlut[i];
-      // make the new LUT combo of old & new
-      newlut[i]=booleanOp(setop,lbits);
-    }
+  int oldlut=~currentval & 0xffff;
+
+  // the new LUT from applying the boolean operation to the desired lines
+  int newlut=truthMasks[boolop][lines];
+
+  // combine the old and the new, unless SET which ignores the old
+  if (setop==SETOP_AND) {
+    newlut=oldlut & newlut;
+  } else if (setop==SETOP_OR) {
+    newlut=oldlut | newlut;
+  } else if (setop==SETOP_XOR) {
+    newlut=oldlut ^ newlut;
   }
 
   // need to invert LUT for storage
-  return invert(newlut);
+  return ~newlut & 0xffff;
 }
 
 
@@ -129,56 +162,159 @@ public static boolean isEquiv(int[] currentval, String setop, String boolop, Str
   // first verify that args are correct so don't get unforeseeable behaviour
   exitOnInvalidArgs(currentval,setop,boolop,lines);
 
-  // LUT's are stored inverted, so need to uninvert to combine with exprn
-  int[] lut=invert(currentval);
+  return isEquiv(lutWord(currentval),setopIndex(setop),boolopIndex(boolop),linesIndex(lines));
+}
 
-  // create truth table for this boolean operation applied to specified lines
-  int[] truthtable=makeTruthTable(boolop,lines);
 
-  // create a table indicating which elements are the same in the 2 LUTs
-  int[] equivtable=new int[16];
-  for (int i=0; i<16; i++) {
-    equivtable[i]=(truthtable[i]==lut[i]) ? 1 : 0;
+// this is the same as above, with the LUT as a 16-bit word, and the setop,
+// boolop and lines given by their indexes, which must be valid
+
+public static boolean isEquiv(int currentval, int setop, int boolop, int lines)
+{
+  // LUT's are stored inverted, so need to uninvert to compare with exprn
+  int lut=~currentval & 0xffff;
+
+  // the entries that are the same in the LUT and the boolop's truth table
+  int equiv=~(truthMasks[boolop][lines] ^ lut) & 0xffff;
+
+  // there are 2^nal groups (nal=number of active lines), each of which
+  // represents a combination of the active lines. for SET, all the group's
+  // entries must match, otherwise only 1 entry needs to match
+  int[] groups=groupMasks[lines];
+  boolean all=true;
+  boolean any=false;
+  boolean match;
+  for (int i=0; i<groups.length; i++) {
+    if (setop==SETOP_SET) {
+      match=((equiv & groups[i])==groups[i]);
+    } else {
+      match=((equiv & groups[i])!=0);
+    }
+    all=all && match;
+    any=any || match;
+  }
+
+  // check if the generated truth table is a component of the existing LUT
+  // by applying the set operator to the groups
+  if (setop==SETOP_SET || setop==SETOP_AND) {
+    // for AND or SET, all groups must have a match
+    return all;
+  } else if (setop==SETOP_XOR) {
+    // XOR acts as a NAND, ie there must be at least 1 non-matching group
+    return !all;
+  } else {
+    // for OR, at least one group must have a match
+    return any;
+  }
+}
+
+
+
+// create the truth table and group masks for each boolop and lines. these
+// are done with the original (string-based) functions for building them
+
+static void compileTables()
+{
+  truthMasks=new int[BOOLOPS.length][NUMLINES];
+  groupMasks=new int[NUMLINES][];
+
+  String lines;
+  int nal, ngrps, mask;
+  int[] truthtable, grpelems;
+  for (int l=0; l<NUMLINES; l++) {
+    lines=linesTemplate(l);
+    for (int b=0; b<BOOLOPS.length; b++) {
+      truthtable=makeTruthTable(BOOLOPS[b],lines);
+      mask=0;
+      for (int i=0; i<16; i++) {
+        if (truthtable[i]==1) { mask|=1<<i; }
+      }
+      truthMasks[b][l]=mask;
+    }
+
+    // count the number of active lines, ie those that are not ignored
+    nal=0;
+    for (int i=0; i<4; i++) {
+      if (lines.charAt(i)!='-') { nal++; }	// '-' indicates line not used
+    }
+    ngrps=1<<nal;
+    groupMasks[l]=new int[ngrps];
+    for (int g=0; g<ngrps; g++) {
+      grpelems=getGroupElements(makeGroupTemplate(lines,nal,g),nal);
+      mask=0;
+      for (int i=0; i<grpelems.length; i++) { mask|=1<<grpelems[i]; }
+      groupMasks[l][g]=mask;
+    }
+  }
+}
+
+
+// the index of the setop or boolop, or -1 if not a valid op
+public static int setopIndex(String setop)
+{
+  for (int i=0; i<SETOPS.length; i++) {
+    if (SETOPS[i].equals(setop)) { return i; }
   }
+  return -1;
+}
+
+public static int boolopIndex(String boolop)
+{
+  for (int i=0; i<BOOLOPS.length; i++) {
+    if (BOOLOPS[i].equals(boolop)) { return i; }
+  }
+  return -1;
+}
 
-//System.out.println("equivtable=["+intArrayToBinString(equivtable)+"] .. ");
 
-  // count the number of active lines, ie those that are not ignored
-  int nal=0;
-  for (int i=0; i<lines.length(); i++) {
-    if (lines.charAt(i)!='-') { nal++; }	// '-' indicates line not used
+// the index of the lines template, treating it as a base 3 number, with
+// digits '-'=0, '0'=1, '1'=2, or -1 if it isn't a valid template
+public static int linesIndex(String lines)
+{
+  if (lines.length()!=4) { return -1; }
+  int idx=0;
+  char t;
+  for (int j=0; j<4; j++) {
+    t=lines.charAt(j);
+    if (t=='-') { idx=idx*3; }
+    else if (t=='0') { idx=idx*3+1; }
+    else if (t=='1') { idx=idx*3+2; }
+    else { return -1; }
   }
+  return idx;
+}
 
-  int[] grpelems;
-  String grptemplate;
-  // there will be 2^nal groups, each of which represents a combination
-  // of active lines.
-  int ngrps=(int)Math.round(Math.pow(2,nal));
-//System.out.println("num groups="+ngrps);
-  int[] groups=new int[ngrps];
-  for (int i=0; i<ngrps;i++) {
-    grptemplate=makeGroupTemplate(lines,nal,i);
-    grpelems=getGroupElements(grptemplate,nal);
-    groups[i]=evalGroup(grpelems,equivtable,setop);
-//System.out.println("group i="+i+", group template="+grptemplate+", grpelems=["+intArrayToString(grpelems)+"].. "+setop+" evaluates to "+groups[i]);
+// the lines template with the given index
+static String linesTemplate(int idx)
+{
+  char[] t=new char[4];
+  for (int j=3; j>=0; j--) {
+    t[j]="-01".charAt(idx%3);
+    idx/=3;
   }
+  return new String(t);
+}
 
-  // check if the generated truth table is a component of the existing LUT
-  // by applying the set operator to the groups, and return true or false
 
-  int result;
-  if (setop.equals("SET") || setop.equals("AND")) {
-    // for AND or SET, all groups must have a match
-    result=booleanOp("AND",groups);
-  } else if (setop.equals("XOR")) {
-    // XOR acts as a NAND, ie there must be at least 1 non-matching group
-    result=booleanOp("NAND",groups);
-  } else { // if ((setop.equals("OR")) {
-    // for OR, at least one group must have a match
-    result=booleanOp("OR",groups);
+// convert between a LUT array and a 16-bit word, with bit i of the word
+// being array entry i. both are as stored on the FPGA, ie inverted
+
+public static int lutWord(int[] lut)
+{
+  int word=0;
+  for (int i=0; i<16; i++) {
+    if (lut[i]!=0) { word|=1<<i; }
   }
+  return word;
+}
 
-  return (result==1);
+public static int[] lutArray(int word)
+{
+  int[] lut=new int[16];
+  for (int i=0; i<16; i++) {
+    lut[i]=(word>>>i)&1;
+  }
+  return lut;
 }
 
 
@@ -191,7 +327,7 @@ public static int[] strLUTtoIntLUT(String value)
   if (fields.length<16) {
     System.err.print("Error in class LUTIncrFN: ");
     System.err.println("too few entries for LUT, have "+fields.length+", need 16!");
-    System.exit(1);
+    FatalError.exit("too few entries for LUT, have "+fields.length+", need 16!");
   }
 
   int[] lut=new int[fields.length];
@@ -213,7 +349,7 @@ public static String[] strExprToSetOpLines(String exprn)
   if (fields.length<3) {
     System.err.print("Error in class LUTIncrFN: ");
     System.err.println("too few fields in exprn ("+exprn+"), was "+fields.length+", need 3!");
-    System.exit(1);
+    FatalError.exit("too few fields in exprn ("+exprn+"), was "+fields.length+", need 3!");
   }
 
   return fields;
@@ -332,13 +468,13 @@ static void exitOnInvalidArgs(int[] lut, String setop, String boolop, String lin
     System.err.print("Error in class LUTIncrFN: ");
     System.err.println("LUT array is wrong size, "+lut.length+", should be 16!");
     System.err.println("exiting...");
-    System.exit(1);
+    FatalError.exit("LUT array is wrong size, "+lut.length+", should be 16!");
   } else if (!(setop.equals("SET") || setop.equals("AND") || setop.equals("OR")
 				   || setop.equals("XOR"))) {
     System.err.print("Error in class LUTIncrFN: ");
     System.err.println("Invalid setop ("+setop+"), must be one of SET,AND,OR,XOR!");
     System.err.println("exiting...");
-    System.exit(1);
+    FatalError.exit("Invalid setop ("+setop+"), must be one of SET,AND,OR,XOR!");
   } else if (!(boolop.equals("MJR0") || boolop.equals("MJR1") ||
 	       boolop.equals("AND") || boolop.equals("NAND") ||
 	       boolop.equals("OR") || boolop.equals("NOR") ||
@@ -346,12 +482,12 @@ static void exitOnInvalidArgs(int[] lut, String setop, String boolop, String lin
     System.err.print("Error in class LUTIncrFN: ");
     System.err.println("Invalid boolop ("+boolop+"), must be one of MJR0,MJR1,AND,NAND,OR,NOR,XOR,XNOR!");
     System.err.println("exiting...");
-    System.exit(1);
+    FatalError.exit("Invalid boolop ("+boolop+"), must be one of MJR0,MJR1,AND,NAND,OR,NOR,XOR,XNOR!");
   } else if (lines.length()!=4) {
     System.err.print("Error in class LUTIncrFN: ");
     System.err.println("lines template is wrong size, "+lines.length()+", should be 4!");
     System.err.println("exiting...");
-    System.exit(1);
+    FatalError.exit("lines template is wrong size, "+lines.length()+", should be 4!");
   }
 
   for (int i=0;i<16;i++) {
@@ -359,7 +495,7 @@ static void exitOnInvalidArgs(int[] lut, String setop, String boolop, String lin
       System.err.print("Error in class LUTIncrFN: ");
       System.err.println("LUT["+i+"] has invalid non-boolean value "+lut[i]+"!"); 
       System.err.println("exiting...");
-      System.exit(1);
+      FatalError.exit("LUT["+i+"] has invalid non-boolean value "+lut[i]+"!");
     }
   }
 
@@ -368,7 +504,7 @@ static void exitOnInvalidArgs(int[] lut, String setop, String boolop, String lin
       System.err.print("Error in class LUTIncrFN: ");
       System.err.println("lines template has invalid value at char "+i+" ("+lines.charAt(i)+"),\n\tmust be one of '-','0','1'!");
       System.err.println("exiting...");
-      System.exit(1);
+      FatalError.exit("lines template has invalid value at char "+i+" ("+lines.charAt(i)+"),\n\tmust be one of '-','0','1'!");
     }
   }
 
@@ -511,7 +647,7 @@ static int booleanOp(String boolop, int[] boolnum)
 
   if (boolnum==null) {
     System.err.println("Invalid empty boolnum in LUTIncrFN:booleanOp("+boolop+")!");
-    System.exit(1);
+    FatalError.exit("Invalid empty boolnum in LUTIncrFN:booleanOp("+boolop+")!");
   } else if (boolnum.length<1) { // a no-input function
     // all non-inverted functions return 1, the rest 0
     result=(boolop.equals("AND") || boolop.equals("OR") ||
@@ -540,7 +676,7 @@ static int booleanOp(String boolop, int[] boolnum)
     if (boolop.equals("XNOR"))  { result=invert(result); }
   } else {
     System.err.println("Invalid boolop ("+boolop+") in LUTIncrFN:booleanOp()!");
-    System.exit(1);
+    FatalError.exit("Invalid boolop ("+boolop+") in LUTIncrFN:booleanOp()!");
   }
 
 //System.out.println(".. boolop="+boolop+", boolnum=["+intArrayToBinString(boolnum)+"], result="+result);
@@ -0,0 +1,265 @@
+//			 OutBusRoutes.java
+//
+// this class holds the routes by which a CLB's OUT bus lines can drive the
+// LUT inputs of the neighbouring CLBs, either through a single line that
+// the OUT line drives (via OutMuxToSingle), or through a direct connection
+// (OUT_WEST0/1 to the CLB to the east, OUT_EAST6/7 to the CLB to the west).
+// it is used by ActiveInputLEs and TestInToOutRecurse to find which LEs an
+// OUT bus line is connected to.
+//
+// the routes are given as a table of strings, which is compiled when the
+// class is loaded into arrays of the JBits bits and value constants to
+// test, so that finding the connected LUT inputs only needs a few bit
+// comparisons for each route
+//
+// 		written Oct 2026, agent
+//
+// this class also requires the local classes:
+// 			JBitsResources, JBitsLookup, StringSplitter, LEcoord
+
+
+
+class OutBusRoutes {
+
+	// each route is given as: the OUT bus line, the single line (by its
+	// direction & number), or direct out line, that it drives, and the
+	// LUT inputs in the neighbouring CLB that can connect to this. these
+	// are in the order that connected LEs are reported in
+	//
+	//  LUT-input			single & direct connect lines
+	//
+	//  S0G1/S0F1/S1G4/S1F4:
+	//	OFF N15 S6 W5 N19 S12 W17 N22 S13 W18 S21 OUT_WEST1
+	//
+	//  S0G2/S0F2/S1G3/S1F3:
+	//	OFF E11 N12 S1 W2 E23 N17 W20 OUT_WEST0
+	//
+	//  S0G3/S0F3/S1G2/S1F2:
+	//	OFF E5 N13 S0 W6 E7 S14 W8 E9 S20 W15 E10 W23 E21 OUT_EAST7
+	//
+	//  S0G4/S0F4/S1G1/S1F1:
+	//	OFF E4 N0 S2 W3 E16 N1 S8 W11 E17 N3 S9 W14 E19 N5 S18 E22 N7
+	//	    N10 OUT_EAST6
+	//
+	// note that the single is named from the driving CLB's side, so eg
+	// OUT0's EAST2 is seen as WEST2 by the LUT inputs of the CLB to the east
+	static final String[] ROUTES={
+	  "0 OUT_WEST0 S0G2 S0F2 S1G3 S1F3",
+	  "0 EAST2 S0G2 S0F2 S1G3 S1F3",
+	  "0 NORTH0 S0G3 S0F3 S1G2 S1F2",
+	  "0 NORTH1 S0G2 S0F2 S1G3 S1F3",
+	  "0 SOUTH1 S0G4 S0F4 S1G1 S1F1",
+	  "0 SOUTH3 S0G4 S0F4 S1G1 S1F1",
+	  "0 WEST7 S0G3 S0F3 S1G2 S1F2",
+	  "1 OUT_WEST1 S0G1 S0F1 S1G4 S1F4",
+	  "1 EAST3 S0G4 S0F4 S1G1 S1F1",
+	  "1 EAST5 S0G1 S0F1 S1G4 S1F4",
+	  "1 NORTH2 S0G4 S0F4 S1G1 S1F1",
+	  "1 SOUTH0 S0G4 S0F4 S1G1 S1F1",
+	  "1 WEST4 S0G4 S0F4 S1G1 S1F1",
+	  "1 WEST5 S0G3 S0F3 S1G2 S1F2",
+	  "2 EAST6 S0G3 S0F3 S1G2 S1F2",
+	  "2 NORTH6 S0G1 S0F1 S1G4 S1F4",
+	  "2 NORTH8 S0G4 S0F4 S1G1 S1F1",
+	  "2 SOUTH5 S0G4 S0F4 S1G1 S1F1",
+	  "2 SOUTH7 S0G4 S0F4 S1G1 S1F1",
+	  "2 WEST9 S0G3 S0F3 S1G2 S1F2",
+	  "3 EAST8 S0G3 S0F3 S1G2 S1F2",
+	  "3 EAST11 S0G4 S0F4 S1G1 S1F1",
+	  "3 NORTH9 S0G4 S0F4 S1G1 S1F1",
+	  "3 SOUTH10 S0G4 S0F4 S1G1 S1F1",
+	  "3 WEST10 S0G3 S0F3 S1G2 S1F2",
+	  "3 WEST11 S0G2 S0F2 S1G3 S1F3",
+	  "4 EAST14 S0G4 S0F4 S1G1 S1F1",
+	  "4 NORTH12 S0G1 S0F1 S1G4 S1F4",
+	  "4 NORTH13 S0G1 S0F1 S1G4 S1F4",
+	  "4 SOUTH13 S0G3 S0F3 S1G2 S1F2",
+	  "4 SOUTH15 S0G1 S0F1 S1G4 S1F4",
+	  "4 WEST19 S0G4 S0F4 S1G1 S1F1",
+	  "5 EAST15 S0G3 S0F3 S1G2 S1F2",
+	  "5 EAST17 S0G1 S0F1 S1G4 S1F4",
+	  "5 NORTH14 S0G3 S0F3 S1G2 S1F2",
+	  "5 SOUTH12 S0G2 S0F2 S1G3 S1F3",
+	  "5 WEST16 S0G4 S0F4 S1G1 S1F1",
+	  "5 WEST17 S0G4 S0F4 S1G1 S1F1",
+	  "6 EAST18 S0G1 S0F1 S1G4 S1F4",
+	  "6 NORTH18 S0G4 S0F4 S1G1 S1F1",
+	  "6 NORTH20 S0G3 S0F3 S1G2 S1F2",
+	  "6 SOUTH17 S0G2 S0F2 S1G3 S1F3",
+	  "6 SOUTH19 S0G1 S0F1 S1G4 S1F4",
+	  "6 WEST21 S0G3 S0F3 S1G2 S1F2",
+	  "6 OUT_EAST6 S0G4 S0F4 S1G1 S1F1",
+	  "7 EAST20 S0G2 S0F2 S1G3 S1F3",
+	  "7 EAST23 S0G3 S0F3 S1G2 S1F2",
+	  "7 NORTH21 S0G1 S0F1 S1G4 S1F4",
+	  "7 SOUTH22 S0G1 S0F1 S1G4 S1F4",
+	  "7 WEST22 S0G4 S0F4 S1G1 S1F1",
+	  "7 WEST23 S0G2 S0F2 S1G3 S1F3",
+	  "7 OUT_EAST7 S0G3 S0F3 S1G2 S1F2"
+	};
+
+	// the compiled routes, indexed by route number
+	static String[] routeName;	// eg OUT0->EAST2
+	static int[][][] routeSwitch;	// OutMuxToSingle bits, null if direct
+	static int[] routeRowOff;	// offset to CLB with the LUT inputs
+	static int[] routeColOff;
+	static int[] routeFirst;	// targets are routeFirst[r]..[r+1]-1
+	static int[][] busRoutes;	// the routes from each OUT bus line
+
+	// and the LUT inputs that each route can connect to, by target number
+	static int[] targetRoute;
+	static int[][][] targetBits;	// LUT input's bits
+	static int[][] targetValue;	// its value when connected to route
+	static int[] targetSlice;
+	static int[] targetLE;		// 0 is G-Y LE, 1 is F-X LE
+	static int[] targetLine;	// LUT input line 1-4
+
+	static int[] onValue;		// OutMuxToSingle.ON
+
+	// the most LUT inputs that a single OUT bus line can connect to
+	static int maxTargets;
+
+
+	static {
+	  compile();
+	}
+
+
+
+// returns the number of LUT inputs that the OUT bus line of the CLB at
+// row,col is connected to, and puts their target numbers in found, which
+// needs to be at least maxTargets long. the targets are given in the
+// same order as the routes table. direct connections are ignored unless
+// usedirect is true
+static int connected(JBitsResources jbr, int row, int col, int outline, boolean usedirect, int[] found)
+{
+  int[] routes=busRoutes[outline];
+  int n=0;
+  int r,nrow,ncol;
+
+  for (int i=0; i<routes.length; i++) {
+    r=routes[i];
+    if (routeSwitch[r]==null) {
+      if (!usedirect) { continue; }
+    } else if (!jbr.matches(row,col,routeSwitch[r],onValue)) {
+      continue;
+    }
+    nrow=row+routeRowOff[r];
+    ncol=col+routeColOff[r];
+    for (int t=routeFirst[r]; t<routeFirst[r+1]; t++) {
+      if (jbr.matches(nrow,ncol,targetBits[t],targetValue[t])) {
+	found[n++]=t;
+      }
+    }
+  }
+
+  return n;
+}
+
+
+// the LE that the target LUT input is in, when driven from the CLB at
+// row,col, with its input line
+static LEcoord getTarget(int row, int col, int t)
+{
+  int r=targetRoute[t];
+  return new LEcoord(row+routeRowOff[r],col+routeColOff[r],targetSlice[t],targetLE[t],targetLine[t]);
+}
+
+
+static String getRouteName(int t)
+{
+  return routeName[targetRoute[t]];
+}
+
+
+
+// parse the routes table, and look up the JBits constants for each route
+static void compile()
+{
+  int numroutes=ROUTES.length;
+  String[][] fields=new String[numroutes][];
+  int numtargets=0;
+  int[] nbus=new int[8];
+
+  for (int r=0; r<numroutes; r++) {
+    fields[r]=StringSplitter.split(ROUTES[r]," ");
+    numtargets+=fields[r].length-2;
+    nbus[Integer.parseInt(fields[r][0])]++;
+  }
+
+  routeName=new String[numroutes];
+  routeSwitch=new int[numroutes][][];
+  routeRowOff=new int[numroutes];
+  routeColOff=new int[numroutes];
+  routeFirst=new int[numroutes+1];
+  busRoutes=new int[8][];
+  for (int o=0; o<8; o++) { busRoutes[o]=new int[nbus[o]]; nbus[o]=0; }
+
+  targetRoute=new int[numtargets];
+  targetBits=new int[numtargets][][];
+  targetValue=new int[numtargets][];
+  targetSlice=new int[numtargets];
+  targetLE=new int[numtargets];
+  targetLine=new int[numtargets];
+
+  onValue=JBitsLookup.getValue("OutMuxToSingle.ON");
+
+  int t=0;
+  int bus;
+  String line,lutvalue,mux;
+  int[] ntargets=new int[8];
+
+  for (int r=0; r<numroutes; r++) {
+    bus=Integer.parseInt(fields[r][0]);
+    line=fields[r][1];
+    routeName[r]="OUT"+bus+"->"+line;
+    busRoutes[bus][nbus[bus]++]=r;
+
+    if (line.startsWith("OUT_")) {	// direct connection
+      routeColOff[r]=(line.startsWith("OUT_WEST")) ? 1 : -1;
+      lutvalue=line;
+    } else {				// singles are seen from other side
+      String num;
+      if (line.startsWith("EAST")) {
+	routeColOff[r]=1;
+	num=line.substring(4);
+	lutvalue="SINGLE_WEST"+num;
+      } else if (line.startsWith("WEST")) {
+	routeColOff[r]=-1;
+	num=line.substring(4);
+	lutvalue="SINGLE_EAST"+num;
+      } else if (line.startsWith("NORTH")) {
+	routeRowOff[r]=1;
+	num=line.substring(5);
+	lutvalue="SINGLE_SOUTH"+num;
+      } else { // SOUTH
+	routeRowOff[r]=-1;
+	num=line.substring(5);
+	lutvalue="SINGLE_NORTH"+num;
+      }
+      routeSwitch[r]=JBitsLookup.getBits("OutMuxToSingle.OUT"+bus+"_TO_SINGLE_"+line);
+    }
+
+    routeFirst[r]=t;
+    for (int i=2; i<fields[r].length; i++) {
+      mux=fields[r][i];			// eg S0G2
+      targetRoute[t]=r;
+      targetBits[t]=JBitsLookup.getBits(mux+"."+mux);
+      targetValue[t]=JBitsLookup.getValue(mux+"."+lutvalue);
+      targetSlice[t]=(mux.charAt(1)=='0') ? 0 : 1;
+      targetLE[t]=(mux.charAt(2)=='G') ? 0 : 1;
+      targetLine[t]=mux.charAt(3)-'0';
+      t++;
+    }
+    ntargets[bus]+=fields[r].length-2;
+  }
+  routeFirst[numroutes]=t;
+
+  maxTargets=0;
+  for (int o=0; o<8; o++) {
+    if (ntargets[o]>maxTargets) { maxTargets=ntargets[o]; }
+  }
+}
+
+
+}
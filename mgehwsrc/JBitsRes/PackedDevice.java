@@ -0,0 +1,334 @@
+//			 PackedDevice.java
+//
+// this class implements DeviceConfig with a pure Java model of the CLB
+// configuration of a Virtex device, so that circuits can be grown and
+// queried without JBits having to maintain the full device bitstream (or
+// be able to read one).
+//
+// each CLB's configuration is stored as a packed array of bits, in long
+// words, with a bit for each of the (row,col) positions in the CLB's tile.
+// as the JBits Bits constants are arrays of these positions, getting or
+// setting a resource is just a matter of indexing into the CLB's words.
+// only the CLB tiles are modelled, IOBs, BRAM, etc aren't
+//
+// the configuration can't be read from, or written to, a Virtex bitstream,
+// it uses its own (binary) file format instead, that is a header of:
+// 	"PCFG", device name, CLB rows, CLB columns, words per CLB
+// followed by the words for each CLB, in row then column order.
+// a packed configuration file (.pcfg) can be created from a bitstream,
+// using JBitsResources' pack command (which needs JBits)
+//
+// a device can be forked, giving a copy that shares the CLBs' words with
+// the original, copy-on-write. a shared CLB is only copied when one of the
+// devices sets a resource in it, so forking costs a reference per CLB
+//
+// 		written Oct 2026, agent
+
+
+// for Arrays
+import java.util.*;
+
+// for IO
+import java.io.*;
+
+// for ConfigurationException
+import com.xilinx.JBits.Virtex.ConfigurationException;
+
+
+
+class PackedDevice implements DeviceConfig {
+
+	// the size of a Virtex CLB tile in configuration bits
+	static final int TILEROWS=18;
+	static final int TILECOLS=48;
+	static final int TILEBITS=TILEROWS*TILECOLS;
+	static final int WORDS=(TILEBITS+63)/64;	// longs per CLB
+
+	static final String MAGIC="PCFG";
+	static final String FILEEXT=".pcfg";	// for packed config files
+
+	// the Virtex devices, and their CLB rows and columns
+	static final String[] deviceNames={ "XCV50", "XCV100", "XCV150",
+	  "XCV200", "XCV300", "XCV400", "XCV600", "XCV800", "XCV1000" };
+	static final int[][] deviceSizes={ {16,24}, {20,30}, {24,36},
+	  {28,42}, {32,48}, {40,60}, {48,72}, {56,84}, {64,96} };
+
+	// every bit in the CLB tile, in the same order as the words' bits,
+	// for copying from another device. created when first needed
+	static int[][] allTileBits=null;
+
+	String deviceName;
+	int numRows;
+	int numCols;
+	long[][] config;	// the words for each CLB, row*numCols+col
+	boolean[] shared;	// true if CLB's words may be used by a fork
+
+
+
+// the device must be one of the Virtex devices, eg XCV50
+PackedDevice(String devname) throws ConfigurationException
+{
+  int d=0;
+  while (d<deviceNames.length && !deviceNames[d].equalsIgnoreCase(devname)) { d++; }
+  if (d==deviceNames.length) {
+    throw new ConfigurationException("unknown device for packed configuration: "+devname);
+  }
+
+  init(deviceNames[d],deviceSizes[d][0],deviceSizes[d][1]);
+}
+
+
+PackedDevice(String devname, int rows, int cols)
+{
+  init(devname,rows,cols);
+}
+
+
+// create a fork of src, that shares its configuration until changed
+PackedDevice(PackedDevice src)
+{
+  deviceName=src.deviceName;
+  numRows=src.numRows;
+  numCols=src.numCols;
+  config=new long[src.config.length][];
+  System.arraycopy(src.config,0,config,0,config.length);
+  shared=new boolean[config.length];
+  Arrays.fill(shared,true);
+  Arrays.fill(src.shared,true);
+}
+
+
+void init(String devname, int rows, int cols)
+{
+  deviceName=devname;
+  numRows=rows;
+  numCols=cols;
+  config=new long[numRows*numCols][WORDS];
+  shared=new boolean[numRows*numCols];
+}
+
+
+
+public String getDeviceName() { return deviceName; }
+public int getClbRows() { return numRows; }
+public int getClbColumns() { return numCols; }
+
+
+
+public int[] get(int row, int col, int[][] bits) throws ConfigurationException
+{
+  long[] words=tile(row,col);
+  int[] value=new int[bits.length];
+  int b;
+  for (int i=0; i<bits.length; i++) {
+    b=bitIndex(bits[i]);
+    value[i]=(int)(words[b>>>6]>>>(b&63))&1;
+  }
+  return value;
+}
+
+
+public void set(int row, int col, int[][] bits, int[] value) throws ConfigurationException
+{
+  if (value.length!=bits.length) {
+    throw new ConfigurationException("value doesn't match the number of bits for resource");
+  }
+  long[] words=writableTile(row,col);
+  int b;
+  for (int i=0; i<bits.length; i++) {
+    b=bitIndex(bits[i]);
+    if (value[i]==0) {
+      words[b>>>6]&=~(1L<<(b&63));
+    } else {
+      words[b>>>6]|=1L<<(b&63);
+    }
+  }
+}
+
+
+public boolean matches(int row, int col, int[][] bits, int[] value) throws ConfigurationException
+{
+  if (value==null || value.length!=bits.length) { return false; }
+  long[] words=tile(row,col);
+  int b;
+  for (int i=0; i<bits.length; i++) {
+    b=bitIndex(bits[i]);
+    if (((int)(words[b>>>6]>>>(b&63))&1)!=value[i]) { return false; }
+  }
+  return true;
+}
+
+
+long[] tile(int row, int col) throws ConfigurationException
+{
+  if (row<0 || col<0 || row>=numRows || col>=numCols) {
+    throw new ConfigurationException("CLB row or col out of valid range for device");
+  }
+  return config[row*numCols+col];
+}
+
+
+// as for tile(), but if the CLB's words are shared with a fork, then this
+// device is first given its own copy of them
+long[] writableTile(int row, int col) throws ConfigurationException
+{
+  long[] words=tile(row,col);
+  int c=row*numCols+col;
+  if (shared[c]) {
+    words=(long[])words.clone();
+    config[c]=words;
+    shared[c]=false;
+  }
+  return words;
+}
+
+
+// bit is the (row,col) position of the bit within the CLB tile
+int bitIndex(int[] bit) throws ConfigurationException
+{
+  if (bit[0]<0 || bit[1]<0 || bit[0]>=TILEROWS || bit[1]>=TILECOLS) {
+    throw new ConfigurationException("bit ("+bit[0]+","+bit[1]+") out of range for CLB tile");
+  }
+  return bit[0]*TILECOLS+bit[1];
+}
+
+
+
+// set this device's CLB configuration from another device, of the same
+// size, such as one that has had a bitstream loaded by JBits
+public void copyFrom(DeviceConfig src) throws ConfigurationException
+{
+  if (src.getClbRows()!=numRows || src.getClbColumns()!=numCols) {
+    throw new ConfigurationException("can't copy configuration from a different sized device");
+  }
+
+  int[][] all=tileBits();
+  for (int row=0; row<numRows; row++) {
+    for (int col=0; col<numCols; col++) {
+      set(row,col,all,src.get(row,col,all));
+    }
+  }
+}
+
+
+// every bit in a CLB tile, for getting or setting a CLB's whole
+// configuration
+static int[][] tileBits()
+{
+  if (allTileBits==null) {
+    int[][] all=new int[TILEBITS][];
+    for (int b=0; b<TILEBITS; b++) {
+      all[b]=new int[] { b/TILECOLS, b%TILECOLS };
+    }
+    allTileBits=all;
+  }
+  return allTileBits;
+}
+
+
+
+// create a copy of this device, that shares the configuration with it
+// until either of them changes a CLB
+public PackedDevice fork()
+{
+  return new PackedDevice(this);
+}
+
+
+// returns true if the CLB at row,col has the same configuration in src
+boolean sameTile(PackedDevice src, int row, int col) throws ConfigurationException
+{
+  long[] words=tile(row,col);
+  long[] srcwords=src.tile(row,col);
+  return (words==srcwords || Arrays.equals(words,srcwords));
+}
+
+
+// make the CLB at row,col the same as it is in src, by sharing its words
+void shareTile(PackedDevice src, int row, int col) throws ConfigurationException
+{
+  int c=row*numCols+col;
+  config[c]=src.tile(row,col);
+  shared[c]=true;
+  src.shared[c]=true;
+}
+
+
+
+public void read(String file) throws IOException, ConfigurationException
+{
+  DataInputStream in=new DataInputStream(new BufferedInputStream(new FileInputStream(file)));
+  try {
+    byte[] magic=new byte[MAGIC.length()];
+    if (in.read(magic)!=magic.length || !new String(magic).equals(MAGIC)) {
+      throw new IOException(file+" isn't a packed configuration file (a bitstream requires JBits)");
+    }
+    readConfig(in,file);
+  } finally {
+    in.close();
+  }
+}
+
+
+// read the configuration header and words from a stream, such as from
+// within an MhwMatrix snapshot. source is the file, for error messages
+void readConfig(DataInputStream in, String source) throws IOException, ConfigurationException
+{
+  try {
+    String devname=in.readUTF();
+    int rows=in.readInt();
+    int cols=in.readInt();
+    int words=in.readInt();
+    if (!devname.equalsIgnoreCase(deviceName) || rows!=numRows || cols!=numCols || words!=WORDS) {
+      throw new ConfigurationException(source+" is for a different device ("+devname+")");
+    }
+    for (int c=0; c<config.length; c++) {
+      if (shared[c]) {
+        config[c]=new long[WORDS];
+        shared[c]=false;
+      }
+      for (int w=0; w<WORDS; w++) {
+        config[c][w]=in.readLong();
+      }
+    }
+  } catch (EOFException e) {
+    throw new IOException(source+" is truncated");
+  }
+}
+
+
+public void write(String file) throws IOException
+{
+  DataOutputStream out=new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file)));
+  try {
+    out.writeBytes(MAGIC);
+    writeConfig(out);
+  } finally {
+    out.close();
+  }
+}
+
+
+// write the configuration header and words, without the file's MAGIC
+void writeConfig(DataOutputStream out) throws IOException
+{
+  out.writeUTF(deviceName);
+  out.writeInt(numRows);
+  out.writeInt(numCols);
+  out.writeInt(WORDS);
+  for (int c=0; c<config.length; c++) {
+    for (int w=0; w<WORDS; w++) {
+      out.writeLong(config[c][w]);
+    }
+  }
+}
+
+
+
+public DeviceConfig newInstance()
+{
+  return new PackedDevice(deviceName,numRows,numCols);
+}
+
+
+}
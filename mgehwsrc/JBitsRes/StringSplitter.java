@@ -6,6 +6,8 @@
 // this split() is needed as JBits uses jdk 1.2.2 and String.split() isn't
 // supported before jdk 1.4
 //
+// this class also requires local class: FatalError
+//
 // 		written December 2003, J.A. Lee
 
 
@@ -168,7 +170,7 @@ public static int parseint(String str)
     if (sign=='-') { result=result*-1; }
   } catch (Exception e) {
     e.printStackTrace();
-    System.exit(1);
+    FatalError.exit(e);
   }
 
   return result;
@@ -219,12 +221,127 @@ public static long parselong(String str)
     if (sign=='-') { result=result*-1; }
   } catch (Exception e) {
     e.printStackTrace();
-    System.exit(1);
+    FatalError.exit(e);
   }
 
   return result;
 }
 
 
+
+// these are for mimicking the perl scripts that the chromosome is decoded
+// with, when this is done in java (see GEPP's ChromDecoder, and ConvToJBits)
+
+
+// split like perl's split(/delim/,str), which unlike split() above, drops
+// all the trailing empty fields, not just the last one
+public static String[] perlsplit(String str, String delim)
+{
+  return droptrailing(split(str,delim));
+}
+
+
+// split like perl's split(/\s*delim\s*/,str), so the whitespace around each
+// delimiter is removed, but not that at the start or end of the string
+public static String[] perlsplitspaced(String str, String delim)
+{
+  String[] fields=split(str,delim);
+  int n=fields.length;
+  for (int i=0; i<n; i++) {
+    int s=0;
+    int e=fields[i].length();
+    if (i>0) {
+      while (s<e && isperlspace(fields[i].charAt(s))) { s++; }
+    }
+    if (i<n-1 || str.endsWith(delim)) {
+      while (e>s && isperlspace(fields[i].charAt(e-1))) { e--; }
+    }
+    fields[i]=fields[i].substring(s,e);
+  }
+  return droptrailing(fields);
+}
+
+
+static String[] droptrailing(String[] fields)
+{
+  int n=fields.length;
+  while (n>0 && fields[n-1].length()==0) { n--; }
+  if (n==fields.length) { return fields; }
+  String[] f=new String[n];
+  for (int i=0; i<n; i++) { f[i]=fields[i]; }
+  return f;
+}
+
+
+// perl's substr(str,pos,len), or substr(str,pos) when len is omitted,
+// with a negative pos counting back from the end, and a negative len
+// leaving that many characters off the end. returns null (perl's undef)
+// if pos is outside the string
+public static String perlsubstr(String str, long pos)
+{
+  return perlsubstr(str,pos,0,false);
+}
+
+public static String perlsubstr(String str, long pos, long len)
+{
+  return perlsubstr(str,pos,len,true);
+}
+
+static String perlsubstr(String str, long pos, long len, boolean haslen)
+{
+  long cur=str.length();
+  if (pos<0 && cur>0) { pos+=cur; }
+  if (pos>cur) { return null; }
+  long pos2=cur;
+  if (haslen) {
+    if (len<0) {
+      pos2=cur+len;
+    } else if (pos<0) {
+      pos2=pos+len;
+    } else {
+      pos2=Math.min(cur,pos+len);
+    }
+  }
+  if (pos2<0) {
+    if (pos<0) { return null; }
+    pos2=0;
+  } else if (pos<0) {
+    pos=0;
+  }
+  if (pos2<pos) { pos2=pos; }
+  if (pos2>cur) { pos2=cur; }
+  return str.substring((int)pos,(int)pos2);
+}
+
+
+static boolean isperlspace(char c)
+{
+  return (c==' ' || c=='\t' || c=='\n' || c=='\r' || c=='\f');
+}
+
+
+// the value that perl gives a string used as a number: any leading
+// whitespace and sign, followed by as many digits as there are, with no
+// digits (or a null, perl's undefined value) giving 0
+public static long perlnum(String str)
+{
+  if (str==null) { return 0; }
+  int i=0;
+  int n=str.length();
+  while (i<n && isperlspace(str.charAt(i))) { i++; }
+  boolean neg=false;
+  if (i<n && (str.charAt(i)=='+' || str.charAt(i)=='-')) {
+    neg=(str.charAt(i)=='-');
+    i++;
+  }
+  long v=0;
+  while (i<n && str.charAt(i)>='0' && str.charAt(i)<='9') {
+    v=v*10+(str.charAt(i)-'0');
+    i++;
+  }
+  return (neg) ? -v : v;
+}
+
+
 }
 
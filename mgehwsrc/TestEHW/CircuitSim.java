@@ -0,0 +1,403 @@
+//			 CircuitSim.java
+//
+// this class is a cycle-based simulator of the evolvable region of the FPGA,
+// that can be used by TestFnInToOut in place of the VirtexDS simulator. as
+// it runs in-process and only models the evolvable region, signals can be
+// passed through the circuit far more quickly than by stepping VirtexDS.
+//
+// the current configuration is compiled (by compile()) into a flat netlist
+// of the LEs in the evolvable region. each LE has a LUT, and a flip-flop
+// that is clocked from the LUT's output. each LUT input line is driven by
+// either an input bus line, another LE's unregistered (LUT) or registered
+// (flip-flop) output, or is undriven, and so held high. the connections are
+// found using the same routing (OUT bus line to single to LUT input) as is
+// used by TestInToOutRecurse's connectivity test, with the input bus being
+// driven from the routing CLB next to each input CLB, and each output bus
+// line being driven by the LE of its output CLB that connects towards the
+// output routing CLB.
+//
+// LEs whose LUTs only depend on inputs, flip-flops, and LEs before them
+// are evaluated once, in dependency order. if there are loops of
+// unregistered connections, then LEs in or after the loops are evaluated
+// repeatedly until they settle. if they don't settle, the circuit is
+// oscillating (which is when VirtexDS would hang), and a SimulationException
+// is thrown, rather than having to wait for a timeout. TestFnInToOut then
+// gives the circuit a fitness of 0
+//
+// this class also requires the local classes:
+// 			TestInToOutRecurse, JBitsResources, LEcoord
+//
+// 		written Oct 2026, agent
+
+
+// for String's etc
+import java.lang.*;
+// for collection classes (eg List)
+import java.util.*;
+// for the exception thrown when the circuit won't settle
+import com.xilinx.DeviceSimulator.Virtex.SimulationException;
+
+
+
+class CircuitSim {
+
+	// what drives a LUT input or output bus line
+	static final int UNDRIVEN=0;	// nothing, so held high
+	static final int INPUT=1;	// an input bus line
+	static final int LUT=2;		// an LE's unregistered output
+	static final int FF=3;		// an LE's registered output
+
+	JBitsResources jbitsres;
+	TestInToOutRecurse routing;	// used to find the connections
+
+	int minrow;			// bounds of evolvable region
+	int mincol;
+	int maxrow;
+	int maxcol;
+	int direction;			// of growth, from inputs to outputs
+
+	LEcoord[] inlocs;		// coords of input & output CLBS
+	LEcoord[] outlocs;
+
+	// LEs are numbered as in TestFnInToOut's probe matrices, with 2 rows
+	// (LEs) per CLB row, and 2 cols (slices) per CLB col. that is:
+	// 	(((row-minrow)*2+LE)*numcols)+((col-mincol)*2)+slice
+	int numrows;
+	int numcols;
+	int numLEs;
+
+	// the compiled netlist
+	int[] lut;		// bit i is the LUT's output for inputs i (4321)
+	int[] srctype;		// what drives each LE's input lines, indexed
+	int[] srcidx;		// by (LE number * 4) + (LUT line - 1)
+	int[] outtype;		// what drives each output bus line
+	int[] outidx;
+	int[] order;		// the order that LEs are evaluated in
+	int numordered;		// LEs in order that aren't affected by loops
+
+	// the state of the circuit
+	int[] inputs;
+	int[] lutout;
+	int[] ffout;
+
+
+
+CircuitSim(JBitsResources jbr, String mincoord, String maxcoord, String[] inClbLEs, String[] outClbLEs, int dir)
+{
+  jbitsres=jbr;
+  direction=dir;
+
+  // the connectivity test gives us the routing between LEs
+  routing=new TestInToOutRecurse(jbr,mincoord,maxcoord,inClbLEs,outClbLEs,true,true,false);
+  routing.direction=dir;
+
+  LEcoord coord=new LEcoord(mincoord+",0,0");
+  minrow=coord.row;
+  mincol=coord.col;
+
+  coord=new LEcoord(maxcoord+",0,0");
+  maxrow=coord.row;
+  maxcol=coord.col;
+
+  inlocs=new LEcoord[inClbLEs.length];
+  for (int i=0; i<inClbLEs.length; i++) { inlocs[i]=new LEcoord(inClbLEs[i]); }
+  outlocs=new LEcoord[outClbLEs.length];
+  for (int i=0;i<outClbLEs.length;i++){ outlocs[i]=new LEcoord(outClbLEs[i]); }
+
+  numrows=(maxrow-minrow+1)*2;
+  numcols=(maxcol-mincol+1)*2;
+  numLEs=numrows*numcols;
+
+  lut=new int[numLEs];
+  srctype=new int[numLEs*4];
+  srcidx=new int[numLEs*4];
+  outtype=new int[outlocs.length];
+  outidx=new int[outlocs.length];
+  order=new int[numLEs];
+
+  inputs=new int[inlocs.length];
+  lutout=new int[numLEs];
+  ffout=new int[numLEs];
+}
+
+
+
+// the LE number of loc, or -1 if it's outside the evolvable region
+int leIndex(LEcoord loc)
+{
+  if (loc.row<minrow || loc.row>maxrow || loc.col<mincol || loc.col>maxcol) {
+    return -1;
+  }
+  return ((((loc.row-minrow)*2)+loc.LE)*numcols)+((loc.col-mincol)*2)+loc.slice;
+}
+
+
+LEcoord leCoord(int n)
+{
+  int i=n/numcols;
+  int j=n%numcols;
+  return new LEcoord(minrow+(i/2),mincol+(j/2),j%2,i%2);
+}
+
+
+
+// build the netlist from the current configuration. the circuit's state is
+// kept, and the LUT outputs are then updated to the new configuration
+
+public void compile() throws SimulationException
+{
+  LEcoord loc;
+  LEcoord[] nbours;
+  int type, m;
+
+  for (int i=0; i<srctype.length; i++) { srctype[i]=UNDRIVEN; }
+
+  // the LUTs, and the connections from each LE to its neighbours
+  for (int n=0; n<numLEs; n++) {
+    loc=leCoord(n);
+    lut[n]=lutTable(loc);
+    for (int out=0; out<8; out++) {
+      type=outSource(loc,out);
+      if (type==UNDRIVEN) { continue; }
+      nbours=routing.OUTtoSingleConnectedLE(loc,out);
+      for (int k=0; k<nbours.length; k++) {
+        m=leIndex(nbours[k]);
+	if (m>=0) {
+	  srctype[(m*4)+nbours[k].line-1]=type;
+	  srcidx[(m*4)+nbours[k].line-1]=n;
+	}
+      }
+    }
+  }
+
+  // the input bus connects via the routing CLB next to each in CLB, with
+  // slice 0 of the routing CLB using OUT lines 0-3, and slice 1, 4-7
+  for (int i=0; i<inlocs.length; i++) {
+    loc=new LEcoord(inlocs[i]);
+    if (direction==routing.LtoR) { loc.col--; }
+    else if (direction==routing.RtoL) { loc.col++; }
+    else if (direction==routing.BtoT) { loc.row--; }
+    else { loc.row++; }
+    for (int out=loc.slice*4; out<(loc.slice*4)+4; out++) {
+      nbours=routing.OUTtoSingleConnectedLE(loc,out);
+      for (int k=0; k<nbours.length; k++) {
+        m=leIndex(nbours[k]);
+	if (m>=0) {
+	  srctype[(m*4)+nbours[k].line-1]=INPUT;
+	  srcidx[(m*4)+nbours[k].line-1]=i;
+	}
+      }
+    }
+  }
+
+  // each output bus line is driven by the first LE in its out CLB that
+  // drives an OUT line that connects towards the output routing CLB
+  for (int i=0; i<outlocs.length; i++) {
+    outtype[i]=UNDRIVEN;
+    loc=new LEcoord(outlocs[i]);
+    for (int j=0; j<4 && outtype[i]==UNDRIVEN; j++) {
+      loc.slice=j/2;
+      loc.LE=j%2;
+      for (int out=0; out<8; out++) {
+        type=outSource(loc,out);
+        if (type!=UNDRIVEN && routing.hasDirNbour(loc,direction,routing.OUTtoSingleConnectedLE(loc,out))) {
+	  outtype[i]=type;
+	  outidx[i]=leIndex(loc);
+	  break;
+	}
+      }
+    }
+  }
+
+  orderLEs();
+  settle();
+}
+
+
+// the LUT's truth table, with bit i being the output for input lines 4321
+// having the value i. LUT values are stored inverted on the FPGA
+int lutTable(LEcoord loc)
+{
+  String lutstr=new String("LUT.SLICE"+loc.slice+"_"+((loc.LE==0)?"G":"F"));
+  int[] lutval=jbitsres.get(loc.row,loc.col,"LUT",lutstr);
+  int table=0;
+  for (int i=0; i<16; i++) {
+    if (lutval[i]==0) { table|=1<<i; }
+  }
+  return table;
+}
+
+
+// returns LUT or FF if the LE's unregistered or registered output drives
+// the OUT bus line, otherwise UNDRIVEN
+int outSource(LEcoord loc, int out)
+{
+  String outstr="OUT"+out;
+  String lestr="S"+loc.slice+"_"+((loc.LE==0)?"Y":"X");
+  int[] val=jbitsres.getbits(loc.row,loc.col,outstr+"."+outstr);
+  if (jbitsres.isEquivVal(loc.row,loc.col,val,outstr+"."+lestr+"Q")) {
+    return FF;
+  } else if (jbitsres.isEquivVal(loc.row,loc.col,val,outstr+"."+lestr)) {
+    return LUT;
+  }
+  return UNDRIVEN;
+}
+
+
+
+// put the LEs in the order that they need to be evaluated, so that each
+// LE comes after any LEs that drive it through unregistered connections.
+// LEs that are part of, or are driven by, a loop of unregistered
+// connections can't be ordered, and are put at the end
+
+void orderLEs()
+{
+  int[] ndrivers=new int[numLEs];	// unordered LEs driving each LE
+  int[] nfanout=new int[numLEs];	// LEs each LE drives
+  int[][] fanout=new int[numLEs][];
+  int n, m;
+
+  for (int i=0; i<srctype.length; i++) {
+    if (srctype[i]==LUT) {
+      ndrivers[i/4]++;
+      nfanout[srcidx[i]]++;
+    }
+  }
+  for (n=0; n<numLEs; n++) {
+    fanout[n]=new int[nfanout[n]];
+    nfanout[n]=0;
+  }
+  for (int i=0; i<srctype.length; i++) {
+    if (srctype[i]==LUT) {
+      m=srcidx[i];
+      fanout[m][nfanout[m]++]=i/4;
+    }
+  }
+
+  // start with the LEs that have no unregistered drivers, and add each
+  // LE that they drive once all of its drivers have been added
+  numordered=0;
+  for (n=0; n<numLEs; n++) {
+    if (ndrivers[n]==0) { order[numordered++]=n; }
+  }
+  for (int i=0; i<numordered; i++) {
+    n=order[i];
+    for (int k=0; k<fanout[n].length; k++) {
+      m=fanout[n][k];
+      if (--ndrivers[m]==0) { order[numordered++]=m; }
+    }
+  }
+
+  // and any left over are in or after a loop
+  int j=numordered;
+  for (n=0; n<numLEs; n++) {
+    if (ndrivers[n]>0) { order[j++]=n; }
+  }
+}
+
+
+// returns true if there are any loops of unregistered connections
+public boolean hasCombLoops() { return numordered<numLEs; }
+
+
+
+int lineValue(int type, int idx)
+{
+  if (type==INPUT) {
+    return inputs[idx];
+  } else if (type==LUT) {
+    return lutout[idx];
+  } else if (type==FF) {
+    return ffout[idx];
+  }
+  return 1;	// undriven lines are held high
+}
+
+
+int evalLUT(int n)
+{
+  int i=0;
+  for (int k=0; k<4; k++) {
+    i|=lineValue(srctype[(n*4)+k],srcidx[(n*4)+k])<<k;
+  }
+  return (lut[n]>>>i)&1;
+}
+
+
+// update the LUT outputs for the current inputs and flip-flop states
+
+void settle() throws SimulationException
+{
+  int n, v;
+  for (int i=0; i<numordered; i++) {
+    n=order[i];
+    lutout[n]=evalLUT(n);
+  }
+
+  if (numordered<numLEs) {
+    // the LEs affected by loops need to be evaluated until they stop
+    // changing, which takes at most one pass per LE if they do settle
+    boolean changed=true;
+    for (int pass=0; changed && pass<=numLEs-numordered; pass++) {
+      changed=false;
+      for (int i=numordered; i<numLEs; i++) {
+	n=order[i];
+	v=evalLUT(n);
+	if (v!=lutout[n]) {
+	  lutout[n]=v;
+	  changed=true;
+	}
+      }
+    }
+    if (changed) {
+      throw new SimulationException("loop in circuit is oscillating and won't settle");
+    }
+  }
+}
+
+
+
+// the flip-flops are cleared, as they are when the board is reset
+public void reset() throws SimulationException
+{
+  for (int i=0; i<inputs.length; i++) { inputs[i]=0; }
+  for (int n=0; n<numLEs; n++) { ffout[n]=0; }
+  settle();
+}
+
+
+// apply signals (starting at offset) to the input bus lines
+public void stimulate(int[] stimulus, int offset) throws SimulationException
+{
+  for (int i=0; i<inputs.length; i++) { inputs[i]=stimulus[offset+i]; }
+  settle();
+}
+
+
+// clock the flip-flops, and then propogate their new outputs
+public void clockStep() throws SimulationException
+{
+  int[] t=ffout;
+  ffout=lutout;
+  lutout=t;
+  settle();
+}
+
+
+
+// the value on output bus line i
+public int getOutput(int i)
+{
+  return lineValue(outtype[i],outidx[i]);
+}
+
+
+// the registered output of the LE, given its row and column in the probe
+// matrix (2 rows per CLB row, and 2 cols per CLB col)
+public int getRegistered(int i, int j)
+{
+  return ffout[(i*numcols)+j];
+}
+
+
+}
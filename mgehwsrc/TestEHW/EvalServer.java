@@ -0,0 +1,475 @@
+//			 EvalServer.java
+//
+// this class implements a long running fitness evaluation server for the
+// morphogenesis system, so that the cost of starting the JVM, loading the
+// bitstream and contention information, and connecting to the VirtexDS
+// simulator, is only incurred once, rather than for every chromosome.
+//
+// evaluation requests are read a line at a time, either from stdin or from
+// a connection to a (local) socket, and are in the form:
+//
+//   [-s outbit] dchromfile cytofile numTestIter nGrowthStepsPerTest
+//   	[ transcriptionRate npoly2gene polyThreshold ] [ seed ]
+//
+// these are the same as the trailing arguments to TestFnInToOut, when used
+// for morphogenesis. the reply is the same line that TestFnInToOut outputs:
+//
+//   fitness @ iteration : seed ; numgenes
+//
+// or a line beginning with "error:" if the request couldn't be parsed, its
+// chromosome or cytoplasm file is missing or invalid, or its evaluation
+// failed with an exception. the chromosome is loaded, and the cytoplasm
+// file read, before anything is grown. while serving, the errors that
+// would otherwise exit (when loading a chromosome or cytoplasm file, or
+// setting the resources they give) are thrown as a FatalError instead
+// (see FatalError), so these only fail that request, the server carrying
+// on with the rest. a request of "quit" shuts down the server.
+//
+// if the server has been given a chromosome decoder (see setDecoder), then
+// the (undecoded) base 4 chromosome can be given in place of dchromfile,
+// preceded by -c, in which case it is decoded and converted to JBits
+// settings here, using the cytofile for the cytoplasmic TFs that bind to
+// it, as decodechrom.pl & resattrset2bitsval.pl do. if the chromosome has
+// no genes left after conversion, then there is nothing to grow, and the
+// reply is "nogenes".
+//
+// if the server has a fitness cache (see setFitnessCache), then the result
+// of a request that gives a seed is cached, keyed on the decoded genes and
+// the other arguments. a later request that decodes to the same genes,
+// with the same arguments, is given the cached result instead of being
+// grown and tested again. requests that save bitstreams (-s) are always
+// grown and tested, as the bitstreams are needed, but their results are
+// still cached.
+//
+// before each circuit is grown, the FPGA configuration is restored from the
+// in-memory snapshot taken (by the caller) when the server was created, and
+// the simulated board is reset and fully reconfigured from this.
+//
+// if the server is given more than one test (each with its own JBits
+// resources and simulator connection), then requests are evaluated
+// concurrently, by a worker thread per test. requests are queued as they
+// are read, and the replies are written in the same order as the requests
+// were received, so a client can send a batch of requests and then read
+// the replies. as each request is grown from the same initial state using
+// its own seed, results don't depend on which worker evaluated them.
+//
+// this class also requires the local classes:
+// 			TestFnInToOut, MhwMatrix, ActiveInputLEs,
+// 			JBitsResources, EvalWorker, ChromInfo,
+// 			ChromDecoder, ConvToJBits, FitnessCache,
+// 			FatalError
+//
+// 		written Oct 2026, agent
+
+
+// for String's etc
+import java.lang.*;
+// for StringTokenizer
+import java.util.*;
+// for IO
+import java.io.*;
+// for ServerSocket's
+import java.net.*;
+
+
+
+class EvalServer {
+
+	boolean VERBOSE;
+	boolean DEBUG;
+
+	// one of each of these per worker
+	TestFnInToOut[] sims;	// the circuit test, connected to the simulator
+	JBitsResources[] jbrs;	// resources with snapshot of initial config
+
+	String minCLB;		// these are the fixed parameters that are
+	String maxCLB;		// used for every chromosome that is grown
+	String[] inCLBslices;
+	String[] outCLBslices;
+	int vgran;
+	boolean strictiterlimit;
+	int maxdelay;
+
+	// for decoding requests' chromosomes, if these are given
+	ChromDecoder decoder;
+	ConvToJBits converter;
+
+	// for reusing the results of previously grown chromosomes
+	FitnessCache cache;
+	String cachesettings;	// the test's settings, as part of the key
+
+	// the defaults, as used by TestFnInToOut
+	static final int defaultTranscriptionRate=4;
+	static final double defaultPolyToGene=0.3;
+	static final double defaultPolyThreshold=0.8;
+
+	boolean quit;		// set when a quit request is received
+
+	// for when there are multiple workers
+	LinkedList pending;	// requests waiting to be evaluated
+	Map results;		// completed results, keyed on request number
+	int numrequested;	// number of requests queued so far
+	int numtaken;		// number taken from the queue by workers
+	int numreplied;		// number of results written so far
+	PrintWriter replyto;	// where results are written
+
+
+
+EvalServer(TestFnInToOut test, JBitsResources jbits, String mincoord, String maxcoord, String[] inClbLEs, String[] outClbLEs, int vg, boolean sil, int md, boolean vb, boolean dbg)
+{
+  this(new TestFnInToOut[] { test },new JBitsResources[] { jbits },mincoord,maxcoord,inClbLEs,outClbLEs,vg,sil,md,vb,dbg);
+}
+
+// each test should use the corresponding JBits resources
+EvalServer(TestFnInToOut[] tests, JBitsResources[] jbits, String mincoord, String maxcoord, String[] inClbLEs, String[] outClbLEs, int vg, boolean sil, int md, boolean vb, boolean dbg)
+{
+  sims=tests;
+  jbrs=jbits;
+  minCLB=mincoord;
+  maxCLB=maxcoord;
+  inCLBslices=inClbLEs;
+  outCLBslices=outClbLEs;
+  vgran=vg;
+  strictiterlimit=sil;
+  maxdelay=md;
+  VERBOSE=vb;
+  DEBUG=dbg;
+  quit=false;
+
+  decoder=null;
+  converter=null;
+  cache=null;
+
+  pending=new LinkedList();
+  results=new HashMap();
+  numrequested=numtaken=numreplied=0;
+
+  // with only one test, requests are evaluated as they are read in
+  if (sims.length>1) {
+    Thread t;
+    for (int i=0; i<sims.length; i++) {
+      t=new Thread(new EvalWorker(this,i));
+      t.setDaemon(true);	// so don't prevent exit when finished
+      t.start();
+    }
+  }
+}
+
+
+
+// enable requests to give a chromosome to decode (with -c), rather than a
+// decoded chromosome file. both decoder and converter are only read from
+// when decoding, and so are shared between workers
+public void setDecoder(ChromDecoder dcoder, ConvToJBits conv)
+{
+  decoder=dcoder;
+  converter=conv;
+}
+
+
+
+// cache results (for requests with seeds). settings should include all of
+// the test's settings that affect a circuit's fitness, as the cache may be
+// kept between runs
+public void setFitnessCache(FitnessCache fc, String settings)
+{
+  cache=fc;
+  cachesettings=settings;
+}
+
+
+
+// if port is 0, then requests are read from stdin, and replies written to
+// stdout, otherwise listen for connections on the local port. connections
+// are handled one at a time, as there is only the one simulator
+public void serve(int port)
+{
+  // a bad request should only fail itself, not exit the server
+  FatalError.throwErrors=true;
+
+  try {
+    if (port==0) {
+      if (VERBOSE) { System.err.println("reading evaluation requests from stdin.."); }
+      serve(new BufferedReader(new InputStreamReader(System.in)),
+            new PrintWriter(System.out,true));
+    } else {
+      ServerSocket listener=new ServerSocket(port,1,InetAddress.getByName("localhost"));
+      if (VERBOSE) { System.err.println("listening for evaluation requests on port "+port+".."); }
+      while (!quit) {
+        Socket client=listener.accept();
+        if (VERBOSE) { System.err.println("accepted connection from "+client.getInetAddress()); }
+        serve(new BufferedReader(new InputStreamReader(client.getInputStream())),
+              new PrintWriter(client.getOutputStream(),true));
+        client.close();
+      }
+      listener.close();
+    }
+  } catch (IOException e) {
+    System.err.println(e);
+    e.printStackTrace();
+    System.exit(1);
+  }
+}
+
+
+// read requests until end of input, or until a quit request
+void serve(BufferedReader in, PrintWriter out) throws IOException
+{
+  String line;
+  replyto=out;
+  while (!quit && (line=in.readLine())!=null) {
+    line=line.trim();
+    if (line.length()==0) { continue; }
+    if (line.equals("quit")) {
+      quit=true;
+    } else if (sims.length==1) {
+      out.println(safeEvaluate(0,line));
+    } else {
+      submit(line);
+    }
+  }
+  // don't return until all the results have been sent
+  waitForResults();
+}
+
+
+
+// add a request to the queue, for the next free worker to evaluate
+synchronized void submit(String request)
+{
+  pending.addLast(request);
+  numrequested++;
+  notifyAll();
+}
+
+
+// called by a worker to get the next request (waiting until there is one),
+// and the request number, that its result is to be returned with
+synchronized String nextRequest(EvalWorker worker)
+{
+  while (pending.size()==0) {
+    try {
+      wait();
+    } catch (InterruptedException e) { // if thread was interrupted
+      // do nothing, and keep on waiting
+    }
+  }
+  worker.requestnum=numtaken++;
+  return (String)pending.removeFirst();
+}
+
+
+// called by a worker when it has the result for request number n. the
+// results are written in request order, so this may need to be held on to
+// until earlier requests have completed
+synchronized void addResult(int n, String result)
+{
+  results.put(new Integer(n),result);
+  Integer next=new Integer(numreplied);
+  while (results.containsKey(next)) {
+    replyto.println((String)results.remove(next));
+    numreplied++;
+    next=new Integer(numreplied);
+  }
+  notifyAll();
+}
+
+
+synchronized void waitForResults()
+{
+  while (numreplied<numrequested) {
+    try {
+      wait();
+    } catch (InterruptedException e) { // if thread was interrupted
+      // do nothing, and keep on waiting
+    }
+  }
+}
+
+
+
+// evaluate the request, replying with an error if the evaluation throws an
+// exception, so that a single bad circuit doesn't take down the worker,
+// and leave this and every later reply unwritten
+String safeEvaluate(int w, String request)
+{
+  try {
+    return evaluate(w,request);
+  } catch (Throwable e) {		// including stack overflows etc
+    System.err.println(e);
+    e.printStackTrace();
+    return new String("error: evaluating - "+e+", in request: "+request);
+  }
+}
+
+
+// grow and test the circuit specified by the request, using worker w's
+// test and JBits resources, and return the result
+public String evaluate(int w, String request)
+{
+  TestFnInToOut sim=sims[w];
+  JBitsResources jbr=jbrs[w];
+
+  String outbit=null;
+  String chrom=null;
+  ChromInfo chrominfo=null;
+  String dchromfile;
+  String cytofile;
+  int numIter;
+  int ngrowthsteps;
+  int transcriptionrate=defaultTranscriptionRate;
+  double npoly2gene=defaultPolyToGene;
+  double polythreshold=defaultPolyThreshold;
+  long seed=System.currentTimeMillis();
+  boolean seeded=false;		// only seeded results can be cached
+  String cachekey=null;
+
+  StringTokenizer st=new StringTokenizer(request);
+  String[] args=new String[st.countTokens()];
+  for (int i=0; i<args.length; i++) { args[i]=st.nextToken(); }
+
+  int a=0;
+  if (args.length>1 && args[0].equals("-s")) {
+    outbit=args[1];
+    a=2;
+  }
+  // the chromosome takes the place of the dchromfile argument
+  if (args.length>a+1 && args[a].equals("-c")) {
+    if (decoder==null) {
+      return new String("error: server has no chromosome decoder, in request: "+request);
+    }
+    chrom=args[a+1];
+    a++;
+  }
+
+  int argc=args.length-a;
+  if (argc!=4 && argc!=5 && argc!=7 && argc!=8) {
+    return new String("error: wrong number of arguments ("+argc+") in request: "+request);
+  }
+
+  try {
+    dchromfile=args[a+0];
+    cytofile=args[a+1];
+    numIter=Integer.parseInt(args[a+2]);
+    ngrowthsteps=Integer.parseInt(args[a+3]);
+    if (argc==5) {
+      seed=Long.parseLong(args[a+4]);
+      seeded=true;
+    } else if (argc>5) {
+      transcriptionrate=Integer.parseInt(args[a+4]);
+      npoly2gene=Double.parseDouble(args[a+5]);
+      polythreshold=Double.parseDouble(args[a+6]);
+      if (argc==8) {
+        seed=Long.parseLong(args[a+7]);
+        seeded=true;
+      }
+    }
+  } catch (NumberFormatException e) {
+    return new String("error: "+e+" in request: "+request);
+  }
+
+  if (VERBOSE) { System.err.println("evaluating (worker "+w+"): "+request); }
+
+  if (chrom==null && !new File(dchromfile).isFile()) {
+    return new String("error: no chromosome file "+dchromfile+", in request: "+request);
+  }
+  if (!new File(cytofile).isFile()) {
+    return new String("error: no cytoplasm file "+cytofile+", in request: "+request);
+  }
+
+  if (chrom!=null) {
+    try {
+      String[] dchrom=converter.convertChrom(decoder.decode(chrom,cytofile));
+      if (dchrom.length==0) {
+        if (VERBOSE) { System.err.println("no genes, nothing to grow"); }
+        return new String("nogenes");
+      }
+      chrominfo=new ChromInfo(dchrom,0);
+      dchromfile="chromosome"+w;	// saved in place of chrom file name
+    } catch (Exception e) {
+      return new String("error: decoding chromosome - "+e.getMessage()+", in request: "+request);
+    }
+  } else {
+    try {
+      chrominfo=new ChromInfo(dchromfile,0);
+    } catch (FatalError e) {
+      return new String("error: loading chromosome - "+e.getMessage()+", in request: "+request);
+    }
+  }
+
+  if (cache!=null && seeded) {
+    cachekey=FitnessCache.key(chrominfo,cachesettings+" "+
+		FitnessCache.fileSignature(cytofile)+" "+
+		numIter+" "+ngrowthsteps+" "+transcriptionrate+" "+
+		npoly2gene+" "+polythreshold+" "+seed);
+    if (outbit==null) {
+      String result=cache.get(cachekey);
+      if (result!=null) {
+        if (VERBOSE) { System.err.println("using cached result: "+result); }
+        return result;
+      }
+    }
+  }
+
+  // return the FPGA to its initial configuration before growing
+  jbr.restoreSnapshot();
+
+  if (VERBOSE) { System.err.println("creating growable HW using seed "+seed+"...\n"); }
+  MhwMatrix cells;
+  try {				// this reads the cytoplasm file
+    cells=new MhwMatrix(seed,jbr,minCLB,maxCLB,
+          inCLBslices,outCLBslices,chrominfo,dchromfile,cytofile,
+	  npoly2gene,polythreshold,transcriptionrate,
+	  TestFnInToOut.mglifespan,TestFnInToOut.tflifespan,
+	  TestFnInToOut.ageratefree,TestFnInToOut.ageratebound,
+	  TestFnInToOut.morphogenPropDelay,vgran,DEBUG);
+  } catch (FatalError e) {
+    return new String("error: loading cytoplasm file - "+e.getMessage()+", in request: "+request);
+  }
+  if (VERBOSE) { System.err.println("chromosome contains "+cells.numGenes()+" genes...\n"); }
+
+  // the simulated board needs to start from the same state, with the
+  // (restored) configuration, as it would have when first connected
+  sim.resetDevice();
+
+  if (outbit!=null) {
+    if (VERBOSE) { System.err.print("saving initial circuit to "+outbit+"."+0+" .. "); }
+    cells.writeBitstream(outbit+"."+0);
+    if (VERBOSE) { System.err.println("Done."); }
+  }
+
+  ActiveInputLEs activeLEs=sim.createActiveInputLEs(inCLBslices,minCLB,maxCLB,DEBUG);
+
+  String result=TestFnInToOut.growAndTest(sim,cells,activeLEs,vgran,numIter,ngrowthsteps,strictiterlimit,maxdelay,seed,outbit,VERBOSE);
+  if (cachekey!=null) {
+    cache.put(cachekey,result);
+  }
+
+  return result;
+}
+
+
+}
+
+
+
+
+// a worker thread, that repeatedly takes the next request from the server's
+// queue, evaluates it with its own test and JBits resources, and returns
+// the result to the server
+class EvalWorker implements Runnable {
+  EvalServer server;
+  int worker;		// index of this worker's test and resources
+  int requestnum;	// set by the server when a request is taken
+
+  EvalWorker(EvalServer s, int w) { server=s; worker=w; }
+
+  public void run()
+  {
+    String request;
+    while (true) {
+      request=server.nextRequest(this);
+      server.addResult(requestnum,server.safeEvaluate(worker,request));
+    }
+  }
+}
@@ -0,0 +1,449 @@
+//			 FitnessCache.java
+//
+// this class caches the results of evaluating (growing and testing)
+// circuits, keyed on the content of the decoded chromosome, so that a
+// chromosome that decodes to exactly the same genes as one that has already
+// been evaluated (such as an offspring whose mutations are all in non-coding
+// regions) doesn't need to be grown and tested again.
+//
+// the key is an MD5 digest of the chromosome's genes, that being each
+// gene's loci, promoter, transcript (resource settings by end locus), and
+// enhancer and repressor bind sites (their distance to the promoter, and
+// resource settings and loci, in the order these are queried), along with
+// a string giving everything else that the result depends on: the test's
+// settings, the growth parameters, and the seed. as the cache is kept
+// between runs, files named in these (the bitstream, contention and cyto
+// files) are given by a digest of their contents (see fileSignature), not
+// just their names, so that editing one invalidates the results that
+// depend on it. so two chromosomes with the same key will grow
+// identically, and give the same result.
+//
+// the cache is kept in memory, and limited to a maximum number of entries,
+// with the least recently used being discarded when it is full. it is also
+// backed by a file, so that it persists between runs (eg an evaluation
+// server started for each generation). each result and each use of a
+// result is appended to the file, as a line of:
+//
+//	key result
+//
+// so that when the file is read back in, the later lines are the more
+// recently used. lines that aren't a valid key and result (eg partly
+// written) are skipped, and the file is rewritten without them. when the
+// file has grown to twice the size of the cache, or entries have been
+// discarded, it is also rewritten with only the current entries, from
+// least to most recently used.
+//
+// 		written Oct 2026, agent
+//
+// this class also requires the local classes:
+// 			ChromInfo, GeneInfo, BindQuery
+
+
+// for String's etc
+import java.lang.*;
+// for collection classes (eg Hashtable)
+import java.util.*;
+// for IO
+import java.io.*;
+// for MessageDigest
+import java.security.*;
+
+
+class FitnessCache {
+
+	static final int DEFAULT_MAXENTRIES=10000;
+
+	String cachefile;
+	int maxentries;
+	Hashtable entries;		// key => CacheEntry
+	long clock;			// incremented on each use, for LRU order
+	int loglines;			// number of lines in the cache file
+	PrintWriter log;		// for appending to the cache file
+
+	int hits;			// stats for this run
+	int misses;
+
+	// file name => FileDigest, so files are only read again if changed
+	static Hashtable fileDigests=new Hashtable();
+
+
+
+FitnessCache(String file) throws IOException
+{
+  this(file,DEFAULT_MAXENTRIES);
+}
+
+
+// load the cache from file, if it exists, and open it for adding to
+FitnessCache(String file, int max) throws IOException
+{
+  cachefile=file;
+  maxentries=(max>0) ? max : DEFAULT_MAXENTRIES;
+  entries=new Hashtable();
+  clock=0;
+  loglines=0;
+  hits=misses=0;
+
+  if (new File(cachefile).exists()) {
+    // lines that aren't a valid entry (eg partly written, when a server
+    // was killed) are skipped. a partly written last line has no newline,
+    // and is always skipped, as a truncated result can still look valid
+    boolean partial=!endsWithNewline(cachefile);
+    boolean skipped=partial;
+    BufferedReader in=new BufferedReader(new FileReader(cachefile));
+    String line=in.readLine();
+    String next;
+    int sp;
+    while (line!=null) {
+      next=in.readLine();
+      loglines++;
+      sp=line.indexOf(' ');
+      if (sp>0 && (next!=null || !partial) && validEntry(line.substring(0,sp),line.substring(sp+1))) {
+        use(line.substring(0,sp),line.substring(sp+1));
+      } else {
+        skipped=true;
+      }
+      line=next;
+    }
+    in.close();
+    // rewrite the file without them, so nothing is appended to a partial line
+    if (skipped) { compact(); }
+  }
+
+  checkSize();
+  if (log==null) {
+    log=new PrintWriter(new FileWriter(cachefile,true),true);
+  }
+}
+
+
+
+// returns true if key is an MD5 digest (32 hex digits), and result has the
+// form given by growAndTest: fitness [ @ iter : seed ; numgenes ]
+static boolean validEntry(String key, String result)
+{
+  char c;
+  if (key.length()!=32) { return false; }
+  for (int i=0; i<key.length(); i++) {
+    c=key.charAt(i);
+    if (!((c>='0' && c<='9') || (c>='a' && c<='f'))) { return false; }
+  }
+
+  String fit=result;
+  String rest=null;
+  int at=result.indexOf('@');
+  if (at>=0) {
+    fit=result.substring(0,at);
+    rest=result.substring(at+1);
+  }
+  try {
+    // the fitness is from String.valueOf(double), so a truncated one (eg 12
+    // or 12. for 12.5) won't be the same when converted back
+    fit=fit.trim();
+    if (!String.valueOf(Double.parseDouble(fit)).equals(fit)) { return false; }
+    if (rest!=null) {
+      int colon=rest.indexOf(':');
+      int semi=rest.indexOf(';');
+      if (colon<0 || semi<colon) { return false; }
+      Integer.parseInt(rest.substring(0,colon).trim());
+      Long.parseLong(rest.substring(colon+1,semi).trim());
+      Integer.parseInt(rest.substring(semi+1).trim());
+    }
+  } catch (NumberFormatException e) {
+    return false;
+  }
+  return true;
+}
+
+
+// returns true if the file is empty or its last line ends with a newline
+static boolean endsWithNewline(String file) throws IOException
+{
+  RandomAccessFile f=new RandomAccessFile(file,"r");
+  long len=f.length();
+  boolean nl=true;
+  if (len>0) {
+    f.seek(len-1);
+    nl=(f.read()=='\n');
+  }
+  f.close();
+  return nl;
+}
+
+
+
+// the key for the chromosome, when grown and tested with the given
+// settings. the settings need to include everything other than the
+// chromosome that affects the result
+public static String key(ChromInfo chrom, String settings)
+{
+  StringBuffer sb=new StringBuffer(settings);
+  GeneInfo[] genes=chrom.getGenes();
+  for (int i=0; i<genes.length; i++) {
+    GeneInfo g=genes[i];
+    sb.append("\ngene:").append(g.glocus).append(',').append(g.gendloc);
+    sb.append(",prom:").append(g.plocus).append(',').append(g.promseq);
+    // the transcript's order doesn't affect growth, so sort it
+    TreeMap transcript=new TreeMap(g.transcript);
+    Iterator iter=transcript.entrySet().iterator();
+    sb.append("\ntranscript:");
+    while (iter.hasNext()) {
+      Map.Entry e=(Map.Entry)iter.next();
+      sb.append(e.getKey()).append('=').append(e.getValue()).append(';');
+    }
+    appendBindSites(sb,"\nenhb:",g.enhbq,g.enhSiteDistMetric);
+    appendBindSites(sb,"\nrepb:",g.repbq,g.repSiteDistMetric);
+  }
+
+  byte[] digest=null;
+  try {
+    digest=newDigest().digest(sb.toString().getBytes("UTF8"));
+  } catch (UnsupportedEncodingException e) { // no UTF8, which shouldn't happen
+    System.err.println("FitnessCache: unable to create key - "+e);
+    System.exit(1);
+  }
+  return hex(digest);
+}
+
+
+// the file name, with a digest of its contents, for including in the
+// settings that a key is made with. the digest is kept, and only
+// recalculated if the file's size or modification time has changed. if
+// the file can't be read, then only its name is given
+public static String fileSignature(String filename)
+{
+  File f=new File(filename);
+  long length=f.length();
+  long modified=f.lastModified();
+
+  synchronized (fileDigests) {
+    FileDigest fd=(FileDigest)fileDigests.get(filename);
+    if (fd!=null && fd.length==length && fd.modified==modified) {
+      return filename+":"+fd.digest;
+    }
+  }
+
+  MessageDigest md=newDigest();
+  try {
+    InputStream in=new BufferedInputStream(new FileInputStream(f));
+    byte[] buf=new byte[4096];
+    int n;
+    while ((n=in.read(buf))>0) {
+      md.update(buf,0,n);
+    }
+    in.close();
+  } catch (IOException e) {
+    return filename;
+  }
+
+  FileDigest fd=new FileDigest(length,modified,hex(md.digest()));
+  synchronized (fileDigests) {
+    fileDigests.put(filename,fd);
+  }
+  return filename+":"+fd.digest;
+}
+
+
+static MessageDigest newDigest()
+{
+  try {
+    return MessageDigest.getInstance("MD5");
+  } catch (NoSuchAlgorithmException e) { // which shouldn't happen
+    System.err.println("FitnessCache: unable to create key - "+e);
+    System.exit(1);
+  }
+  return null;
+}
+
+
+static String hex(byte[] digest)
+{
+  StringBuffer hex=new StringBuffer();
+  for (int i=0; i<digest.length; i++) {
+    hex.append(Character.forDigit((digest[i]>>4)&0xf,16));
+    hex.append(Character.forDigit(digest[i]&0xf,16));
+  }
+  return hex.toString();
+}
+
+
+// the bind sites are queried in the order given, so this is kept
+static void appendBindSites(StringBuffer sb, String label, List sitequeries, List dists)
+{
+  for (int s=0; s<sitequeries.size(); s++) {
+    BindQuery[] queries=(BindQuery[])sitequeries.get(s);
+    sb.append(label).append(dists.get(s)).append(':');
+    for (int q=0; q<queries.length; q++) {
+      sb.append(queries[q].resource).append('@').append(queries[q].locus).append(';');
+    }
+  }
+}
+
+
+
+// returns the cached result for key, or null if there isn't one
+public synchronized String get(String key)
+{
+  CacheEntry e=(CacheEntry)entries.get(key);
+  if (e==null) {
+    misses++;
+    return null;
+  }
+  hits++;
+  e.lastused=clock++;
+  append(key,e.result);		// so this use is remembered between runs
+  checkSize();
+  return e.result;
+}
+
+
+public synchronized void put(String key, String result)
+{
+  use(key,result);
+  append(key,result);
+  checkSize();
+}
+
+
+// discard entries if there are too many, or rewrite the file if it has
+// grown too long, which can happen from hits alone, as each is appended
+void checkSize()
+{
+  if (entries.size()>maxentries) {
+    discardOldest();
+  } else if (loglines>2*maxentries) {
+    compact();
+  }
+}
+
+
+// add or update the entry, as the most recently used
+void use(String key, String result)
+{
+  CacheEntry e=(CacheEntry)entries.get(key);
+  if (e==null) {
+    entries.put(key,new CacheEntry(result,clock++));
+  } else {
+    e.result=result;
+    e.lastused=clock++;
+  }
+}
+
+
+void append(String key, String result)
+{
+  if (log!=null) {
+    log.println(key+" "+result);
+    loglines++;
+  }
+}
+
+
+
+// discard the least recently used entries, leaving 90% of the maximum, so
+// that this doesn't need to be done on every put, and rewrite the file
+void discardOldest()
+{
+  CacheEntry[] byuse=sortedEntries();
+  int ndiscard=entries.size()-(maxentries-maxentries/10);
+  for (int i=0; i<ndiscard && i<byuse.length; i++) {
+    entries.remove(byuse[i].key);
+  }
+  compact();
+}
+
+
+// the entries, ordered from least to most recently used
+CacheEntry[] sortedEntries()
+{
+  CacheEntry[] byuse=new CacheEntry[entries.size()];
+  int i=0;
+  Enumeration keys=entries.keys();
+  while (keys.hasMoreElements()) {
+    String key=(String)keys.nextElement();
+    byuse[i]=(CacheEntry)entries.get(key);
+    byuse[i++].key=key;
+  }
+  Arrays.sort(byuse,new CacheEntryOrder());
+  return byuse;
+}
+
+
+// rewrite the file with only the current entries, in order of use. this
+// is written to a temp file first, so that if it fails, the cache isn't
+// lost
+void compact()
+{
+  CacheEntry[] byuse=sortedEntries();
+  File tmp=new File(cachefile+".tmp");
+  try {
+    if (log!=null) { log.close(); }
+    PrintWriter out=new PrintWriter(new BufferedWriter(new FileWriter(tmp)));
+    for (int i=0; i<byuse.length; i++) {
+      out.println(byuse[i].key+" "+byuse[i].result);
+    }
+    out.close();
+    File f=new File(cachefile);
+    f.delete();
+    if (!tmp.renameTo(f)) {
+      throw new IOException("unable to rename "+tmp+" to "+cachefile);
+    }
+    loglines=byuse.length;
+    log=new PrintWriter(new FileWriter(cachefile,true),true);
+  } catch (IOException e) {
+    // carry on without saving to file, the cache still works in memory
+    System.err.println("FitnessCache: unable to rewrite "+cachefile+" - "+e);
+    log=null;
+  }
+}
+
+
+
+public synchronized int size() { return entries.size(); }
+public synchronized int getHits() { return hits; }
+public synchronized int getMisses() { return misses; }
+
+
+public synchronized void close()
+{
+  if (log!=null) {
+    log.close();
+    log=null;
+  }
+}
+
+
+}
+
+
+
+class FileDigest {
+  long length;			// of the file when the digest was made
+  long modified;
+  String digest;
+
+  FileDigest(long l, long m, String d) { length=l; modified=m; digest=d; }
+}
+
+
+
+class CacheEntry {
+  String key;			// only set when sorting
+  String result;
+  long lastused;
+
+  CacheEntry(String r, long used) { result=r; lastused=used; }
+}
+
+
+
+// orders cache entries from least to most recently used
+class CacheEntryOrder implements Comparator {
+
+  public int compare(Object a, Object b)
+  {
+    long ua=((CacheEntry)a).lastused;
+    long ub=((CacheEntry)b).lastused;
+    return (ua<ub) ? -1 : ((ua>ub) ? 1 : 0);
+  }
+}
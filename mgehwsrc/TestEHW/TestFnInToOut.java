@@ -39,9 +39,14 @@
 //
 // 		written August 2004, J.A. Lee
 //
+// the circuit can be simulated either by the VirtexDS simulator, or by
+// the native simulator (CircuitSim), which only models the evolvable region
+// but doesn't need to poll a simulator thread for each clock step.
+//
 // this class also requires the local classes:
-// 			TestInToOutRecurse, MhwMatrix, BuildEhw,
-// 			JBitsResources, StringSplitter, LEcoord
+// 			TestInToOutRecurse, MhwMatrix, MhwHistory, BuildEhw,
+// 			CircuitSim, JBitsResources, StringSplitter, LEcoord,
+// 			ChromDecoder, ConvToJBits
 
 // for thread support (needed for SafeBitstreamLoader)
 import java.lang.Thread;
@@ -107,6 +112,8 @@ public class TestFnInToOut {
 	static String synchboardName = "VirtexDS@GCLK=1:xcv50";
 	XHWIF board;
 	SimulatorClient client;
+	CircuitSim nativesim=null;	// used instead of VirtexDS if not null
+	boolean oscillating=false;	// nativesim found an oscillating loop
 
 	boolean SYNCHONLY=false;	// set true if only allow synch signals
 
@@ -168,6 +175,18 @@ public class TestFnInToOut {
 	// for limiting number of decimal places in output float/doubles
 	DecimalFormat df;
 
+	// the direction to shift the active LE count matrix for display,
+	// so as to remove the input routing CLBs. set by createActiveInputLEs
+	int mrshift=0;
+	int mcshift=0;
+
+	// these are arbitrary values for the morphogenesis system!
+	static final int mglifespan=8;
+	static final int tflifespan=8;
+	static final int ageratefree=3;
+	static final int ageratebound=5;
+	static final int morphogenPropDelay=1;
+
 
 public static void main (String[] args)
 {
@@ -200,7 +219,18 @@ public static void main (String[] args)
 
   boolean inoutfn=false;		// for in-out fn
 
-  String usage = "Usage: TestFnInToOut [-v | -d] [-le] [-sil] [-norecurse] [-activelutfnsonly] [-synchonly] [-maxdelay D] [-incrhamming | -consechamming] [ -inout | -onebitadder | -twobitadder | -fnseq iii.. ooo.. ] [ -s outbit | -sr outbit ] [-load clbSettingsRecord.txt] XCV50CLK1.bit inIOB outIOB inCLBslice outCLBslice minCLB maxCLB contentionFile [ dchromfilelist | dchromfile cytofile numTestIter nGrowthStepsPerTest [ transcriptionRate npoly2gene polyThreshold ] [ seed ] ]";
+  boolean server=false;		// run as an evaluation server
+  int serverport=0;		// and if not 0 listen on this port
+  int numworkers=1;		// number of circuits server evaluates at once
+  boolean usenativesim=false;	// simulate with CircuitSim, not VirtexDS
+  String statsfile=null;	// log growth statistics to this CSV file
+  String genecodefile=null;	// server decodes chromosomes with this code
+  String conv2bitsfile=null;	// and converts them to JBits with this
+  boolean notfbind=false;	// if decoding, don't bind TFs
+  String fitcachefile=null;	// server caches results in this file
+  int fitcachesize=FitnessCache.DEFAULT_MAXENTRIES;
+
+  String usage = "Usage: TestFnInToOut [-v | -d] [-le] [-sil] [-norecurse] [-activelutfnsonly] [-synchonly] [-maxdelay D] [-incrhamming | -consechamming] [ -inout | -onebitadder | -twobitadder | -fnseq iii.. ooo.. ] [ -s outbit | -sr outbit ] [-load clbSettingsRecord.txt] [ -server | -serverport P ] [-workers N] [-decode geneticcode.conf conv2jbits.conf [-notfbind]] [-fitcache cachefile [-fitcachesize N]] [-nativesim] [-stats statsfile.csv] XCV50CLK1.bit inIOB outIOB inCLBslice outCLBslice minCLB maxCLB contentionFile [ dchromfilelist | dchromfile cytofile numTestIter nGrowthStepsPerTest [ transcriptionRate npoly2gene polyThreshold ] [ seed ] ]";
 
   // Check the arguments
   int argc=args.length;
@@ -296,6 +326,35 @@ public static void main (String[] args)
     } else if (argc>1 && args[0+flags].equals("-load")) {
       clbSettingsRecord=args[1+flags];
       flags+=2; argc-=2;
+    } else if (args[0+flags].equals("-server")) {
+      server=true;		// requests on stdin, results to stdout
+      flags++; argc--;
+    } else if (argc>1 && args[0+flags].equals("-serverport")) {
+      server=true;		// requests and results via a local socket
+      serverport=Integer.parseInt(args[1+flags]);
+      flags+=2; argc-=2;
+    } else if (argc>1 && args[0+flags].equals("-workers")) {
+      numworkers=Integer.parseInt(args[1+flags]);
+      flags+=2; argc-=2;
+    } else if (argc>2 && args[0+flags].equals("-decode")) {
+      genecodefile=args[1+flags];	// server decodes requests' chroms
+      conv2bitsfile=args[2+flags];
+      flags+=3; argc-=3;
+    } else if (args[0+flags].equals("-notfbind")) {
+      notfbind=true;
+      flags++; argc--;
+    } else if (argc>1 && args[0+flags].equals("-fitcache")) {
+      fitcachefile=args[1+flags];	// server reuses results from here
+      flags+=2; argc-=2;
+    } else if (argc>1 && args[0+flags].equals("-fitcachesize")) {
+      fitcachesize=Integer.parseInt(args[1+flags]);
+      flags+=2; argc-=2;
+    } else if (args[0+flags].equals("-nativesim")) {
+      usenativesim=true;	// use native simulator instead of VirtexDS
+      flags++; argc--;
+    } else if (argc>1 && args[0+flags].equals("-stats")) {
+      statsfile=args[1+flags];	// time & count growth, step by step
+      flags+=2; argc-=2;
     } else {
       System.err.println("\nunknown switch ("+args[0+flags]+")!\n"+usage);
       System.exit(1);
@@ -311,6 +370,15 @@ public static void main (String[] args)
   } else if (argc>16) {
     System.err.println("\ntoo many arguments ("+args.length+")!\n"+usage);
     System.exit(1);
+  } else if (server && (argc!=8 || save>0)) {
+    System.err.println("\nin server mode, the chromosome and growth parameters, and the save option, are\nsupplied with each evaluation request!\n"+usage);
+    System.exit(1);
+  } else if (numworkers<1 || (numworkers>1 && !server)) {
+    System.err.println("\n-workers requires a server mode switch, and at least 1 worker!\n"+usage);
+    System.exit(1);
+  } else if ((genecodefile!=null || notfbind || fitcachefile!=null) && !server) {
+    System.err.println("\n-decode, -notfbind and -fitcache require a server mode switch!\n"+usage);
+    System.exit(1);
   }
 
   String bitfile=args[0+flags];
@@ -380,9 +448,7 @@ public static void main (String[] args)
   String cytofile=null;
   int numIter=0;
   int ngrowthsteps=1;
-  int numgenes=-1;
   long seed=System.currentTimeMillis(); 	// for morphogenesis only
-  int[][] geneActivationMatrix=null;		//  "      "          "
 
   // this is for use with the non-developmental approach - for getting
   // the start locations for the build instructions
@@ -508,13 +574,6 @@ public static void main (String[] args)
       }
     }
 
-    // these are arbitrary values!
-    int mglifespan=8;
-    int tflifespan=8;
-    int ageratefree=3;
-    int ageratebound=5;
-    int morphogenPropDelay=1;
-
     // create morphogenesis object
     if (verbose) { System.err.println("creating growable HW using seed "+seed+"...\n"); }
 
@@ -525,14 +584,10 @@ public static void main (String[] args)
 	  npoly2gene,polythreshold,transcriptionrate,mglifespan,tflifespan,
 	  ageratefree,ageratebound,morphogenPropDelay,vgran,debug);
 
-    numgenes=cells.numGenes();
+    if (verbose) { System.err.println("chromosome contains "+cells.numGenes()+" genes...\n"); }
 
-    // to keep track of how many genes are currently active in each cell
-    // if slice granularity, then still create as many rows as for LE gran
-    // so that can use same matrix display routines as for LE states
-    // but here we just double up on the activations
-    geneActivationMatrix=new int[cells.getCellRows()*vgran][cells.getCellCols()];
-    if (verbose) { System.err.println("chromosome contains "+numgenes+" genes...\n"); }
+    // optionally keep statistics of growth, logging each growth step
+    if (statsfile!=null) { cells.enableStats().logSteps(statsfile); }
 
     // so we can share/access the same JBitsResources instance wherever needed
     jbr=cells.getJBitsResources();
@@ -565,85 +620,140 @@ public static void main (String[] args)
 
 
   if (verbose) { System.err.println("creating circuit test...\n"); }
-  TestFnInToOut sim = new TestFnInToOut(jbr,minCLB,maxCLB,inIOBs,outIOBs,inCLBslices,outCLBslices,inputseq,outputseq,recurse,activefnsonly,synchsigsonly,hammingtype,verbose);
+  TestFnInToOut sim = new TestFnInToOut(jbr,minCLB,maxCLB,inIOBs,outIOBs,inCLBslices,outCLBslices,inputseq,outputseq,recurse,activefnsonly,synchsigsonly,hammingtype,verbose,usenativesim);
+
+  // in server mode, rather than growing and testing a single circuit, we
+  // take a snapshot of the current configuration, and then for each of the
+  // evaluation requests that are received, grow and test it from this
+  // with multiple workers, each is given its own JBits resources, created
+  // from the first's bitstream and contention table, and its own test
+  if (server) {
+    JBitsResources[] jbrs=new JBitsResources[numworkers];
+    TestFnInToOut[] sims=new TestFnInToOut[numworkers];
+    jbrs[0]=jbr;
+    sims[0]=sim;
+    for (int i=1; i<numworkers; i++) {
+      if (verbose) { System.err.println("creating circuit test for worker "+i+"...\n"); }
+      jbrs[i]=new JBitsResources(jbr);
+      if (clbSettingsRecord!=null) { jbrs[i].loadRecordFile(clbSettingsRecord); }
+      sims[i]=new TestFnInToOut(jbrs[i],minCLB,maxCLB,inIOBs,outIOBs,inCLBslices,outCLBslices,inputseq,outputseq,recurse,activefnsonly,synchsigsonly,hammingtype,verbose,usenativesim);
+    }
+    for (int i=0; i<numworkers; i++) { jbrs[i].takeSnapshot(); }
+
+    EvalServer evalserver=new EvalServer(sims,jbrs,minCLB,maxCLB,inCLBslices,outCLBslices,vgran,strictiterlimit,maxdelay,verbose,debug);
+    // requests can then give the chromosome itself, to decode in-process
+    if (genecodefile!=null) {
+      if (verbose) { System.err.println("loading genetic code "+genecodefile+" and JBits conversions "+conv2bitsfile+"...\n"); }
+      ChromDecoder decoder=new ChromDecoder(genecodefile);
+      decoder.setNoTFBind(notfbind);
+      evalserver.setDecoder(decoder,new ConvToJBits(conv2bitsfile));
+    }
+    FitnessCache fitcache=null;
+    if (fitcachefile!=null) {
+      try {
+        fitcache=new FitnessCache(fitcachefile,fitcachesize);
+      } catch (IOException e) {
+        System.err.println("unable to load fitness cache "+fitcachefile+" - "+e);
+        System.exit(1);
+      }
+      if (verbose) { System.err.println("loaded "+fitcache.size()+" cached results from "+fitcachefile+"...\n"); }
+      evalserver.setFitnessCache(fitcache,fitnessSettings(args));
+    }
+    evalserver.serve(serverport);
+    if (fitcache!=null) {
+      fitcache.close();
+      if (verbose) { System.err.println("fitness cache: "+fitcache.getHits()+" hits, "+fitcache.getMisses()+" misses"); }
+    }
+    for (int i=0; i<numworkers; i++) { sims[i].disconnect(); }
+    if (verbose) { System.err.println("exiting."); }
+    return;
+  }
 
   // this provides a means of preventing inactive inputs from dominating
   // LUT functions, by only using inputs from active LEs in boolean FNs
-  // active LEs are determined by starting from the input routing CLBs
-  // and tracing from these into the evolvable region.
+  activeLEs=sim.createActiveInputLEs(inCLBslices,minCLB,maxCLB,debug);
 
-  LEcoord[] activeinlocs=new LEcoord[inCLBslices.length];
-  for (int i=0; i<inCLBslices.length; i++) {
-    activeinlocs[i]=new LEcoord(inCLBslices[i]);
-    // we actually need the input routing LE, as this is active
-    if (sim.direction==sim.LtoR) {
-      activeinlocs[i].col--;
-    } else if (sim.direction==sim.RtoL) {
-      activeinlocs[i].col++;
-    } else if (sim.direction==sim.BtoT) {
-      activeinlocs[i].row++;
-    } else { // if (sim.direction==sim.TtoB)
-      activeinlocs[i].row--;
-    }
-    // and we need the specific input on this LE that is active..
-    // IOBs are routed to inputs:  S0_F4, S1_F1, S0_G4, S1_G1
-    activeinlocs[i].line=(activeinlocs[i].slice==0) ? 4 : 1;
+  if (verbose) {
+    System.err.println("initial active LUT input counts...\n");
+    System.err.println(sim.getMatrix(activeLEs.getActiveCntMatrix(sim.mrshift,sim.mcshift),false));
   }
 
-  // need to include the input routing CLBs (outside evolvable region) in the
-  // matrix used by ActiveInputLEs class, but all other CLBs in that row/col
-  // should be ommitted, and for printing we need to remove them, so record
-  // the direction of shift needed to remove them
-  LEcoord[] inactivelocs=null;
-  List inactivelist=new ArrayList();
-  LEcoord mncoord=new LEcoord(minCLB+",0,0");
-  LEcoord mxcoord=new LEcoord(maxCLB+",0,0");
-  int mrshift=0;
-  int mcshift=0;
-  if (sim.direction==sim.LtoR || sim.direction==sim.RtoL) {
-    mcshift=(sim.direction==sim.LtoR) ? 1 : -1;
-    mncoord.col=activeinlocs[0].col;
-    // inactivate the rest of the LEs in the 'in' column
-    for (int r=mncoord.row; r<=mxcoord.row; r++) {
-      inactivelist.add(new LEcoord(r,mncoord.col,0,0));
-      inactivelist.add(new LEcoord(r,mncoord.col,0,1));
-      inactivelist.add(new LEcoord(r,mncoord.col,1,0));
-      inactivelist.add(new LEcoord(r,mncoord.col,1,1));
-    }
-  } else {
-    mrshift=(sim.direction==sim.BtoT) ? 1 : -1;
-    mncoord.row=activeinlocs[0].row;
-    // inactivate the rest of the LEs in the 'in' row
-    for (int c=mncoord.col; c<=mxcoord.col; c++) {
-      inactivelist.add(new LEcoord(mncoord.row,c,0,0));
-      inactivelist.add(new LEcoord(mncoord.row,c,0,1));
-      inactivelist.add(new LEcoord(mncoord.row,c,1,0));
-      inactivelist.add(new LEcoord(mncoord.row,c,1,1));
-    }
+//System.exit(0); // just to test active LE connectivity
+
+  String result=growAndTest(sim,cells,activeLEs,vgran,numIter,ngrowthsteps,strictiterlimit,maxdelay,seed,(save>0)?outbit:null,verbose);
+
+  if (recordfile!=null && numIter>0) {
+    // close the set() transcript file
+    jbr.closeRecordFile();
+    if (verbose) { System.err.println("closed set() transcript file: "+recordfile+"."); }
   }
 
-  // now we need to remove the (active) input locations from the list
-  // of inactive elements
-  for (int i=0; i<activeinlocs.length; i++) {
-    for (int j=0; j<inactivelist.size(); j++) {
-      if (activeinlocs[i].equals((LEcoord)inactivelist.get(j))) {
-        inactivelist.remove(j);
-	break;
-      }
-    }
+  if (cells!=null && cells.getStats()!=null) {
+    if (verbose) { System.err.println("growth statistics...\n"+cells.getStats()); }
+    cells.disableStats();		// closes the step log
   }
 
-  // note use of empty array param to the ArrayList.toArray() method
-  inactivelocs=(LEcoord[])inactivelist.toArray(new LEcoord[0]);
+  System.out.println(result);
 
-  activeLEs=new ActiveInputLEs(jbr,mncoord,mxcoord,activeinlocs,inactivelocs,debug);
+  if (verbose) { System.err.println("\nDone."); }
 
-  if (verbose) {
-    System.err.println("initial active LUT input counts...\n");
-    System.err.println(sim.getMatrix(activeLEs.getActiveCntMatrix(mrshift,mcshift),false));
+  sim.disconnect();
+  if (verbose) { System.err.println("exiting."); }
+
+} // end main
+
+
+
+// the command line arguments that can affect a circuit's fitness, for the
+// fitness cache's keys. those that only affect how the server is run, or
+// how chromosomes are decoded (the decoded genes are part of the key), are
+// left out, so they can be changed without losing the cached results.
+// those that are files (eg the bitstream and contention file) are given
+// with a digest of their contents, so editing one isn't missed
+static String fitnessSettings(String[] args)
+{
+  StringBuffer sb=new StringBuffer();
+  for (int i=0; i<args.length; i++) {
+    if (args[i].equals("-v") || args[i].equals("-d") ||
+        args[i].equals("-server") || args[i].equals("-notfbind")) {
+      continue;
+    } else if (args[i].equals("-serverport") || args[i].equals("-workers") ||
+               args[i].equals("-stats") || args[i].equals("-fitcache") ||
+               args[i].equals("-fitcachesize")) {
+      i++;
+    } else if (args[i].equals("-decode")) {
+      i+=2;
+    } else if (new File(args[i]).isFile()) {
+      sb.append(FitnessCache.fileSignature(args[i])).append(' ');
+    } else {
+      sb.append(args[i]).append(' ');
+    }
   }
+  return sb.toString();
+}
 
-//System.exit(0); // just to test active LE connectivity
+
+// grow (if performing morphogenesis) and test the circuit, returning the
+// highest fitness achieved, and when it occured, in the form:
+// 	fitness [ @ growth iteration : seed ; numgenes ]
+// if outbit is not null, then the circuit with the highest fitness is saved
+// to outbit.iter#. while growing, each circuit with a higher fitness than
+// any before it is kept as a fork in memory, rather than being written out,
+// and only the last of these is written, once growth has finished
+
+static String growAndTest(TestFnInToOut sim, MhwMatrix cells, ActiveInputLEs activeLEs, int vgran, int numIter, int ngrowthsteps, boolean strictiterlimit, int maxdelay, long seed, String outbit, boolean verbose)
+{
+  int numgenes=-1;
+  int[][] geneActivationMatrix=null;
+
+  if (cells!=null) {
+    numgenes=cells.numGenes();
+    // to keep track of how many genes are currently active in each cell
+    // if slice granularity, then still create as many rows as for LE gran
+    // so that can use same matrix display routines as for LE states
+    // but here we just double up on the activations
+    geneActivationMatrix=new int[cells.getCellRows()*vgran][cells.getCellCols()];
+  }
 
   DecimalFormat df = new DecimalFormat("0.0##");
   //Random rand=new Random(seed+101); // for creating signal sequence 
@@ -674,6 +784,8 @@ public static void main (String[] args)
   long iterstarttime=0; // for profiling info (set to 0 to avoid compiler cr@p)
   int giter=0;
   int maxfititer=0;		// iteration that highest fitness occured at
+  // the circuit with the highest fitness, when saving it
+  MhwHistory best=(outbit!=null && numIter>0) ? new MhwHistory(1) : null;
   double maxfitness=fitness;	// highest fitness achieved during growth
   double prevfit=fitness;
   // now do the growth steps if performing morphogenesis
@@ -697,7 +809,7 @@ public static void main (String[] args)
     if (verbose) { System.err.println("completed growth phase "+giter+"..."); }
     if (verbose) { 
       System.err.println("active LUT input counts...");
-      System.err.println(sim.getMatrix(activeLEs.getActiveCntMatrix(mrshift,mcshift),false));
+      System.err.println(sim.getMatrix(activeLEs.getActiveCntMatrix(sim.mrshift,sim.mcshift),false));
     }
 
     fitness=sim.testCCT(maxdelay); // and now test the circuit
@@ -719,14 +831,10 @@ public static void main (String[] args)
     }
 
     // if found a better cct, then record its fitness and when it occurred
-    // and if save flag is set, then save it with growth iteration as ext
+    // and if save flag is set, then keep it, to save once growth is done
     if (fitness>maxfitness) {
       maxfitness=fitness; maxfititer=giter;
-      if (save>0) {
-        if (verbose) { System.err.print("saving circuit with highest tested fitness to "+outbit+"."+giter+" .. "); }
-	cells.writeBitstream(outbit+"."+giter);
-        if (verbose) { System.err.println("Done."); }
-      }
+      if (best!=null) { best.record(giter,cells); }
     }
     if (verbose) { System.err.println("iter time taken="+(System.currentTimeMillis()-iterstarttime)+" ms ...\n"); } // profiling
   }
@@ -736,10 +844,13 @@ public static void main (String[] args)
     if (numIter>0) { System.err.println("finished growth...\n"); }
   }
 
-  if (recordfile!=null && numIter>0) {
-    // close the set() transcript file
-    jbr.closeRecordFile();
-    if (verbose) { System.err.println("closed set() transcript file: "+recordfile+"."); }
+  // save the circuit with the highest fitness, with growth iteration as
+  // ext (the initial circuit, iteration 0, has already been saved)
+  if (best!=null && best.contains(maxfititer)) {
+    if (verbose) { System.err.print("saving circuit with highest tested fitness to "+outbit+"."+maxfititer+" .. "); }
+    best.get(maxfititer).writeBitstream(outbit+"."+maxfititer);
+    if (verbose) { System.err.println("Done."); }
+    best.clear();
   }
 
   // output highest fitness achieved, and when it occured
@@ -752,18 +863,90 @@ public static void main (String[] args)
     System.err.println();
   }
   
-  System.out.print(maxfitness);
+  String result=String.valueOf(maxfitness);
   if (numIter>0) {
-    System.out.print(" @ "+maxfititer+" : "+seed+" ; "+numgenes); 
+    result+=" @ "+maxfititer+" : "+seed+" ; "+numgenes; 
   }
-  System.out.println();
 
-  if (verbose) { System.err.println("\nDone."); }
+  return result;
+}
 
-  sim.disconnect();
-  if (verbose) { System.err.println("exiting."); }
 
-} // end main
+
+// this provides a means of preventing inactive inputs from dominating
+// LUT functions, by only using inputs from active LEs in boolean FNs
+// active LEs are determined by starting from the input routing CLBs
+// and tracing from these into the evolvable region.
+// this also sets mrshift and mcshift, for displaying the active counts
+
+ActiveInputLEs createActiveInputLEs(String[] inCLBslices, String minCLB, String maxCLB, boolean debug)
+{
+  LEcoord[] activeinlocs=new LEcoord[inCLBslices.length];
+  for (int i=0; i<inCLBslices.length; i++) {
+    activeinlocs[i]=new LEcoord(inCLBslices[i]);
+    // we actually need the input routing LE, as this is active
+    if (direction==LtoR) {
+      activeinlocs[i].col--;
+    } else if (direction==RtoL) {
+      activeinlocs[i].col++;
+    } else if (direction==BtoT) {
+      activeinlocs[i].row++;
+    } else { // if (direction==TtoB)
+      activeinlocs[i].row--;
+    }
+    // and we need the specific input on this LE that is active..
+    // IOBs are routed to inputs:  S0_F4, S1_F1, S0_G4, S1_G1
+    activeinlocs[i].line=(activeinlocs[i].slice==0) ? 4 : 1;
+  }
+
+  // need to include the input routing CLBs (outside evolvable region) in the
+  // matrix used by ActiveInputLEs class, but all other CLBs in that row/col
+  // should be ommitted, and for printing we need to remove them, so record
+  // the direction of shift needed to remove them
+  LEcoord[] inactivelocs=null;
+  List inactivelist=new ArrayList();
+  LEcoord mncoord=new LEcoord(minCLB+",0,0");
+  LEcoord mxcoord=new LEcoord(maxCLB+",0,0");
+  mrshift=0;
+  mcshift=0;
+  if (direction==LtoR || direction==RtoL) {
+    mcshift=(direction==LtoR) ? 1 : -1;
+    mncoord.col=activeinlocs[0].col;
+    // inactivate the rest of the LEs in the 'in' column
+    for (int r=mncoord.row; r<=mxcoord.row; r++) {
+      inactivelist.add(new LEcoord(r,mncoord.col,0,0));
+      inactivelist.add(new LEcoord(r,mncoord.col,0,1));
+      inactivelist.add(new LEcoord(r,mncoord.col,1,0));
+      inactivelist.add(new LEcoord(r,mncoord.col,1,1));
+    }
+  } else {
+    mrshift=(direction==BtoT) ? 1 : -1;
+    mncoord.row=activeinlocs[0].row;
+    // inactivate the rest of the LEs in the 'in' row
+    for (int c=mncoord.col; c<=mxcoord.col; c++) {
+      inactivelist.add(new LEcoord(mncoord.row,c,0,0));
+      inactivelist.add(new LEcoord(mncoord.row,c,0,1));
+      inactivelist.add(new LEcoord(mncoord.row,c,1,0));
+      inactivelist.add(new LEcoord(mncoord.row,c,1,1));
+    }
+  }
+
+  // now we need to remove the (active) input locations from the list
+  // of inactive elements
+  for (int i=0; i<activeinlocs.length; i++) {
+    for (int j=0; j<inactivelist.size(); j++) {
+      if (activeinlocs[i].equals((LEcoord)inactivelist.get(j))) {
+        inactivelist.remove(j);
+	break;
+      }
+    }
+  }
+
+  // note use of empty array param to the ArrayList.toArray() method
+  inactivelocs=(LEcoord[])inactivelist.toArray(new LEcoord[0]);
+
+  return new ActiveInputLEs(jbitsres,mncoord,mxcoord,activeinlocs,inactivelocs,debug);
+}
 
 
 
@@ -780,6 +963,13 @@ TestFnInToOut(JBitsResources jbr, String mincoord, String maxcoord, String[] inI
 }
 
 TestFnInToOut(JBitsResources jbr, String mincoord, String maxcoord, String[] inIOBsites, String[] outIOBsites, String[] inClbLEs, String[] outClbLEs, int[] inseq, int[] outseq, boolean recurse, boolean onlyactivefns, boolean synchsigsonly, int hammingtype, boolean vb)
+{
+  this(jbr,mincoord,maxcoord,inIOBsites,outIOBsites,inClbLEs,outClbLEs,inseq,outseq,recurse,onlyactivefns,synchsigsonly,hammingtype,vb,false);
+}
+
+// if usenativesim is true, then the circuit is simulated with CircuitSim,
+// and no connection is made to VirtexDS
+TestFnInToOut(JBitsResources jbr, String mincoord, String maxcoord, String[] inIOBsites, String[] outIOBsites, String[] inClbLEs, String[] outClbLEs, int[] inseq, int[] outseq, boolean recurse, boolean onlyactivefns, boolean synchsigsonly, int hammingtype, boolean vb, boolean usenativesim)
 {
   VERBOSE=vb;
 
@@ -926,7 +1116,18 @@ TestFnInToOut(JBitsResources jbr, String mincoord, String maxcoord, String[] inI
   layerchangecnt=new int[numlayers+1];
   propogationfromin=0;
 
-  startUpVirtexDS();
+  if (usenativesim) {
+    if (VERBOSE) { System.err.println("using native circuit simulator"); }
+    nativesim=new CircuitSim(jbr,mincoord,maxcoord,inClbLEs,outClbLEs,direction);
+    try {
+      nativesim.compile();
+      nativesim.reset();
+    } catch (SimulationException e) {
+      circuitOscillating(e);
+    }
+  } else {
+    startUpVirtexDS();
+  }
 
   // initialise the probe values
   updateProbes();
@@ -1010,8 +1211,58 @@ int cntNonZero(int[] x)
 }
 
 
+// return the board to the state it was in after start up, by resetting it
+// and doing a full reconfiguration from the bitstream, which the caller
+// should already have restored. this allows the one simulator connection
+// to be used for testing many circuits
+public void resetDevice()
+{
+  try {
+    if (nativesim!=null) {
+      // the reset clears the flip-flops, as it does on the board
+      try {
+        nativesim.compile();
+        nativesim.reset();
+      } catch (SimulationException e) {
+        circuitOscillating(e);
+      }
+    } else {
+      if (VERBOSE) { System.err.print("reseting board ... "); }
+      resetBoard();
+      if (VERBOSE) { System.err.println("done"); }
+
+      board.clockOn();
+
+      // resets the partial reconfiguration flag to force a full reconfig
+      jbits.clearPartial();
+      reconfig();
+    }
+  } catch (Exception e) {
+    System.err.println(e);
+    e.printStackTrace();
+    System.exit(1);
+  }
+
+  updateProbes();
+  resetChangeCounters();
+}
+
+
+// the native simulator has found a loop that won't settle. these are
+// common in evolved circuits, so rather than ending the program (and any
+// evaluation server with it), the circuit is failed, and given a fitness
+// of 0 by testCCT(). the simulation carries on, but its outputs mean
+// nothing until the next circuit is tested
+void circuitOscillating(SimulationException e)
+{
+  if (VERBOSE) { System.err.println(e.getMessage()+" - circuit failed"); }
+  oscillating=true;
+}
+
+
 public void disconnect()
 {
+  if (nativesim!=null) { return; }	// nothing to disconnect from
   board.disconnect();
   client.close();
 }
@@ -1026,7 +1277,14 @@ public void stimulate(int[] stimulus, int offset)
 //long stimulatetimestart=System.currentTimeMillis(); // for profiling info
 //System.err.print("applying stimulus.. ");
   // apply the stimulus to the inbus
-  if (SYNCHONLY) {
+  if (nativesim!=null) {
+    // an oscillating circuit is detected as soon as the stimulus is applied
+    try {
+      nativesim.stimulate(stimulus,offset);
+    } catch (SimulationException e) {
+      circuitOscillating(e);
+    }
+  } else if (SYNCHONLY) {
     for (int i=0; i<numPins; i++) {
       client.setPinValue(inbusPins[i],stimulus[offset+i]);
     }
@@ -1036,13 +1294,11 @@ public void stimulate(int[] stimulus, int offset)
       SafeStimulate stim=new SafeStimulate(client,inbusPins,stimulus,offset);
       Thread t=new Thread(stim);
       t.start();
-      // wait upto 5 sec x input bus width
-      for (int i=0; i<numPins*5*100 && !stim.finished; i++) {
-        try {
-          Thread.sleep(10); // wait 10 msec between checks
-        } catch (InterruptedException e) { // if thread was interrupted
-          // do nothing probably *shrug*
-        }
+      // wait upto 5 sec x input bus width, returning as soon as it's done
+      try {
+        t.join(numPins*5000);
+      } catch (InterruptedException e) { // if thread was interrupted
+        // do nothing probably *shrug*
       }
       if (!stim.finished) {
         throw new SimulationException("applying stimulus caused simulator to hang");
@@ -1110,7 +1366,13 @@ public void updateProbes()
 
 public void signalStep() throws ConfigurationException
 {
-  if (SYNCHONLY) {
+  if (nativesim!=null) {
+    try {
+      nativesim.clockStep();
+    } catch (SimulationException e) {
+      circuitOscillating(e);
+    }
+  } else if (SYNCHONLY) {
     board.clockStep(1);		// step the (simulator) board clock
   } else {
     // VirtexDS can hang on some asynchronous configurations, so we use
@@ -1119,12 +1381,10 @@ public void signalStep() throws ConfigurationException
     SafeClockStep stepper = new SafeClockStep(board,1);
     Thread t=new Thread(stepper);
     t.start();
-    for (int i=0; i<3000 && !stepper.finished; i++) { // wait up to 30 secs
-      try {
-        Thread.sleep(10); // wait .025 seconds between checks
-      } catch (InterruptedException e) { // if thread was interrupted
-        // do nothing probably *shrug*
-      }
+    try {
+      t.join(30000); // wait up to 30 secs, or until the step is done
+    } catch (InterruptedException e) { // if thread was interrupted
+      // do nothing probably *shrug*
     }
     if (!stepper.finished) {
       throw new ConfigurationException("stepping board caused simulator to hang");
@@ -1226,6 +1486,9 @@ double testCCT(int maxdelay)
   double propogatefitness=0;
   double functionfitness=0;
 
+  // set if this circuit oscillates while it is being tested
+  oscillating=false;
+
   // if we don't use the recursive connectivity test, or we use not just
   // active LUT functions (which guarantee that each LE's output will be a
   // function only of its inputs that are receiving changing signal values,
@@ -1286,6 +1549,11 @@ double testCCT(int maxdelay)
     System.err.println();
   }
 
+  if (oscillating) {
+    if (VERBOSE) { System.err.println("circuit oscillated, fitness=0"); }
+    return 0;
+  }
+
   // if all outputs ignored, then fitness is based solely on signal propogation
   if (ignorefunction) { return propogatefitness; }
 
@@ -1582,6 +1850,16 @@ double calcFnFitness(int[] truthtableseq, int[] responseseq, int maxdelay)
   int mini=-1; // if no signals match this will remain unchanged
   int h;
 
+  // for the standard Hamming distance, the truth table and response are
+  // packed into a bitset per output, so that each delay only needs a few
+  // word operations, rather than comparing every signal
+  PackedSignals packedtt=null;
+  PackedSignals packedresp=null;
+  if (HAMMINGTYPE==0) {
+    packedtt=new PackedSignals(truthtableseq,outputwidth);
+    packedresp=new PackedSignals(responseseq,outputwidth);
+  }
+
   if (VERBOSE) { System.err.println("\ncalculating Hamming distances of sampled signals to truthtable..\n"); }
   // find delay with smallest number of unmatching signals
   // where more than one with same number, we keep the closest to minprop
@@ -1605,7 +1883,7 @@ double calcFnFitness(int[] truthtableseq, int[] responseseq, int maxdelay)
       System.err.println();
     }
     if (HAMMINGTYPE==0) {
-      h=calcHammingDistance(truthtableseq,responseseq,siglen,0,i*outputwidth);
+      h=packedtt.hammingDistance(packedresp,i);
       if (VERBOSE) { System.err.println("hamming dist="+h); }
     } else if (HAMMINGTYPE==1) {
       h=calcConsecHammingDistance(truthtableseq,responseseq,siglen/outputwidth,outputwidth,0,i*outputwidth);
@@ -1941,7 +2219,7 @@ void probeOutbusPins()
 {
   int r;
   for (int i=0; i<outbusPins.length; i++) {
-    r=probePin(outbusPins[i]);
+    r=(nativesim!=null) ? nativesim.getOutput(i) : probePin(outbusPins[i]);
     if(r!=response[i]) { responseChange[i]++; }
     response[i]=r;
   }
@@ -1959,7 +2237,7 @@ void probeGrowthPins()
   for (int i=0; i<numrows*2; i++) {
 //System.err.print("row "+i+"[");
     for (int j=0; j<numcols*2; j++) {
-      r=probePin(growthProbes[i][j]);
+      r=(nativesim!=null) ? nativesim.getRegistered(i,j) : probePin(growthProbes[i][j]);
 //System.err.print(" "+r+" ");
       if (r!=responseMatrix[i][j]) {
 	changeMatrix[i][j]++;
@@ -2071,6 +2349,11 @@ void startUpVirtexDS()
   String boardName=(SYNCHONLY) ? synchboardName : asynchboardName;
 
   try {
+    // the simulator is configured from the JBits bitstream
+    if (jbits==null) {
+      throw new ConfigurationException("the simulator requires a JBits bitstream, not a packed device configuration");
+    }
+
     // Connect to the VirtexDS
     board = XHWIF.Get(boardName);
     if (board == null) {
@@ -2146,6 +2429,16 @@ void resetBoard() throws ConfigurationException
 // upload updated bitstream to board
 void reconfig() throws ConfigurationException
 {
+  // the native simulator just needs to rebuild its netlist
+  if (nativesim!=null) {
+    try {
+      nativesim.compile();
+    } catch (SimulationException e) {
+      circuitOscillating(e);
+    }
+    return;
+  }
+
   // generate partial bitstream (doesnt support BRAM partial reconfig packets)
   byte[] configBitstream = jbits.getPartial();
   // if no changes were made to the bitstream, it will be empty, and would
@@ -2194,6 +2487,83 @@ void reconfig() throws ConfigurationException
 
 
 
+// a sequence of interleaved output signals, packed into a bitset per output,
+// with one bit per signal in the sequence. signals can be 0, 1, X (>1, don't
+// care) or Z (<0, never matches), so 3 bits are used for each signal: care
+// (it isn't X), hi (it's Z) and lo (it's 1). this is used for calculating
+// the Hamming distance 64 signals at a time, as is done by
+// TestFnInToOut.calcHammingDistance
+
+class PackedSignals {
+  int width;		// number of interleaved outputs
+  int len;		// number of signals on each output
+  int words;		// longs per output
+  long[][] care;	// [output][word]
+  long[][] hi;
+  long[][] lo;
+
+  PackedSignals(int[] seq, int sigwidth)
+  {
+    width=sigwidth;
+    len=seq.length/width;
+    words=(len+63)/64;
+    care=new long[width][words];
+    hi=new long[width][words];
+    lo=new long[width][words];
+
+    int v;
+    long b;
+    for (int j=0; j<len; j++) {
+      b=1L<<(j&63);
+      for (int i=0; i<width; i++) {
+	v=seq[(j*width)+i];
+	if (v<2) { care[i][j>>>6]|=b; }
+	if (v<0) { hi[i][j>>>6]|=b; }
+	if (v==1) { lo[i][j>>>6]|=b; }
+      }
+    }
+  }
+
+  // the Hamming distance of this sequence to the signals in resp starting
+  // at signal delay, ignoring X's, with the length being that of this
+  // sequence. resp should have at least len+delay signals
+  int hammingDistance(PackedSignals resp, int delay)
+  {
+    int h=0;
+    long diff;
+    for (int i=0; i<width; i++) {
+      for (int w=0; w<words; w++) {
+	diff=(hi[i][w]^resp.shifted(resp.hi[i],w,delay)) |
+	     (lo[i][w]^resp.shifted(resp.lo[i],w,delay));
+	h+=bitCount(diff & care[i][w] & resp.shifted(resp.care[i],w,delay));
+      }
+    }
+    return h;
+  }
+
+  // word w of the bitset, when it starts at bit delay
+  long shifted(long[] bits, int w, int delay)
+  {
+    int sw=w+(delay>>>6);
+    int sb=delay&63;
+    long word=(sw<words) ? bits[sw]>>>sb : 0;
+    if (sb>0 && sw+1<words) { word|=bits[sw+1]<<(64-sb); }
+    return word;
+  }
+
+  // count the set bits, by summing adjacent bit fields in parallel
+  static int bitCount(long x)
+  {
+    x=x-((x>>>1) & 0x5555555555555555L);
+    x=(x & 0x3333333333333333L) + ((x>>>2) & 0x3333333333333333L);
+    x=(x+(x>>>4)) & 0x0f0f0f0f0f0f0f0fL;
+    return (int)((x*0x0101010101010101L)>>>56);
+  }
+}
+
+
+
+
 // this implements the downloading of the bitstream to the VirtexDS simulator
 // board as a separate thread, if it hangs the calling thread can kill it
 class SafeBitstreamLoader implements Runnable {
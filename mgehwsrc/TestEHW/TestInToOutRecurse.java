@@ -13,7 +13,7 @@
 //
 // this class also requires the local classes:
 // 			MhwMatrix, BuildEhw, JBitsResources,
-// 			StringSplitter, LEcoord
+// 			StringSplitter, LEcoord, OutBusRoutes
 //
 // Known Bugs: doesn't seem to work properly if CLB region is not square
 // unsure if this occurs in the fitness function (always generates 0) or
@@ -52,6 +52,9 @@ public class TestInToOutRecurse {
 	boolean USEDIRECTOUT; // whether to allow routing via direct outputs
 	boolean SHAREDOUTS; // true if each LE doesn't have specific OUT lines
 
+	// for the LUT inputs found by OutBusRoutes
+	int[] routeTargets=new int[OutBusRoutes.maxTargets];
+
 	JBits jbits;
 	JBitsResources jbitsres;
 	static String deviceName1="XCV50";
@@ -98,6 +101,35 @@ public class TestInToOutRecurse {
 	// uses 4 bits to indicate if a given input line has been tested yet
 	int[][] lineTestedMatrix;
 
+	// the connectivity found for each LE is kept between evaluations, and
+	// is only looked up again for LEs in or next to a CLB that has changed
+	// since. if nothing that the evaluation looks at has changed, then the
+	// states from the last evaluation still stand
+	boolean incremental=true;	// false to re-evaluate from scratch
+	boolean evaluated=false;	// states are from the last evalCCT
+	long evalModCount=0;		// jbitsres' change count at that time
+	int evalDirection=-1;		// and the direction of growth used
+	int[][] evalSignalChange=null;	// and a copy of signalChangeMatrix
+
+	// LEs are indexed by their position in the state matrix, that is
+	// (row*leCols)+col, where leCols is the number of columns in it
+	int numLEs;
+	int leCols;
+
+	static final int UNTRACED=-1;	// connectivity not known yet
+
+	int[] ignoreMemo;	// bitmask of input lines the LUT FN ignores
+	int[] outbusMemo;	// bitmask of OUT bus lines driven by each LE
+	int[][] targetMemo;	// LE*8+outline: LUT inputs in region connected
+	boolean[] nbourMemo;	// LE*8+outline: if any LUT inputs connected
+
+	// the stack of LEs being traversed, which can't be deeper than there
+	// are LEs, as each LE only gets a frame when its state goes past 1
+	int[] stkLE;
+	int[] stkStep;		// OUT bus line being traversed
+	int[] stkSub;		// target within OUT line
+	int sp=0;
+
 	// these give the number of slice (or LE) layers from in CLBs to out
 	// and the number of LE (or slice) entries per layer (ie other axis)
 	public int numlayers;
@@ -557,6 +589,17 @@ TestInToOutRecurse(JBitsResources jbr, String mincoord, String maxcoord, String[
   // input line test state, to stop lines being tested more than once
   lineTestedMatrix=new int[numrows*2][numcols*2];
 
+  leCols=numcols*2;
+  numLEs=numrows*2*leCols;
+  ignoreMemo=new int[numLEs];
+  outbusMemo=new int[numLEs];
+  targetMemo=new int[numLEs*8][];
+  nbourMemo=new boolean[numLEs*8];
+  stkLE=new int[numLEs+1];
+  stkStep=new int[numLEs+1];
+  stkSub=new int[numLEs+1];
+  forgetAll();
+
   // now determine what the direction of growth should be ...
   direction=-1;
 
@@ -826,6 +869,7 @@ public void resetState()
 
   for (int i=0; i<instates.length; i++) { instates[i]=0; }
   for (int i=0; i<outstates.length; i++) { outstates[i]=0; }
+  evaluated=false;
 }
 
 // there are 2 slices to each col, and 2 LEs to each row
@@ -845,18 +889,38 @@ int getState(LEcoord loc)
 }
 
 // linenum is 1-4
-void setInLineIsTested(LEcoord loc, int linenum)
+void setInLineIsTested(int le, int linenum)
 {
-  int r=loc.row-minrow;
-  int c=loc.col-mincol;
-  lineTestedMatrix[(r*2)+loc.LE][(c*2)+loc.slice] |= (int)Math.round(Math.pow(2,linenum-1));
+  lineTestedMatrix[le/leCols][le%leCols] |= 1<<(linenum-1);
 }
 
-boolean isInLineTested(LEcoord loc, int linenum)
+// note that this counts a line as tested if any higher line has been
+boolean isInLineTested(int le, int linenum)
 {
-  int r=loc.row-minrow;
-  int c=loc.col-mincol;
-  return lineTestedMatrix[(r*2)+loc.LE][(c*2)+loc.slice] >= (int)Math.round(Math.pow(2,linenum-1));
+  return lineTestedMatrix[le/leCols][le%leCols] >= 1<<(linenum-1);
+}
+
+// LEs are numbered in the same order as the state matrix' entries
+int leIndex(LEcoord loc)
+{
+  return ((((loc.row-minrow)*2)+loc.LE)*leCols)+((loc.col-mincol)*2)+loc.slice;
+}
+
+LEcoord leCoord(int le)
+{
+  int i=le/leCols;
+  int j=le%leCols;
+  return new LEcoord((i/2)+minrow,(j/2)+mincol,j%2,i%2);
+}
+
+int stateAt(int le)
+{
+  return stateMatrix[le/leCols][le%leCols];
+}
+
+void setState(int le, int state)
+{
+  stateMatrix[le/leCols][le%leCols]=state;
 }
 
 
@@ -907,6 +971,18 @@ public int getBestOutState(LEcoord loc, int outidx)
 // a single from the neighbouring routed CLB
 public double evalCCT()
 {
+  // if the circuit hasn't changed, then neither has its connectivity
+  if (incremental && evaluated && direction==evalDirection &&
+      !regionChanged() && !signalChanged()) {
+    return calcFitness();
+  }
+
+  if (incremental) {
+    forgetChanged();
+  } else {
+    forgetAll();
+  }
+
   resetState();
   LEcoord[] nbours=null;
   LEcoord routingLE=null;
@@ -1001,10 +1077,109 @@ public double evalCCT()
 
   }
 
+  setEvaluated();
   return calcFitness();
 }
 
 
+// incremental evaluation can be turned off, so that the connectivity is
+// found from scratch each evaluation, as a check of the incremental one
+public void setIncremental(boolean incr)
+{
+  incremental=incr;
+}
+
+
+// note what the states were evaluated from. evalCCT only reads the
+// configuration, so its change count is the same as when it started
+void setEvaluated()
+{
+  evaluated=true;
+  evalModCount=jbitsres.getModCount();
+  evalDirection=direction;
+
+  if (signalChangeMatrix==null) {
+    evalSignalChange=null;
+    return;
+  }
+  if (evalSignalChange==null || evalSignalChange.length!=signalChangeMatrix.length) {
+    evalSignalChange=new int[signalChangeMatrix.length][];
+  }
+  for (int i=0; i<signalChangeMatrix.length; i++) {
+    if (evalSignalChange[i]==null || evalSignalChange[i].length!=signalChangeMatrix[i].length) {
+      evalSignalChange[i]=new int[signalChangeMatrix[i].length];
+    }
+    System.arraycopy(signalChangeMatrix[i],0,evalSignalChange[i],0,signalChangeMatrix[i].length);
+  }
+}
+
+
+// returns true if any CLB that the evaluation may have looked at has
+// changed since. besides the evolvable region, this includes the routing
+// CLBs bordering it, and the CLBs that their OUT bus lines can drive
+boolean regionChanged()
+{
+  for (int r=minrow-2; r<=maxrow+2; r++) {
+    for (int c=mincol-2; c<=maxcol+2; c++) {
+      if (jbitsres.getModCount(r,c,0)>evalModCount) { return true; }
+    }
+  }
+  return false;
+}
+
+
+// the simulator may have changed the contents of the signal change matrix,
+// as well as replacing it, since the last evaluation
+boolean signalChanged()
+{
+  if (signalChangeMatrix==null || evalSignalChange==null) {
+    return signalChangeMatrix!=evalSignalChange;
+  }
+  if (signalChangeMatrix.length!=evalSignalChange.length) { return true; }
+  for (int i=0; i<signalChangeMatrix.length; i++) {
+    if (signalChangeMatrix[i].length!=evalSignalChange[i].length) { return true; }
+    for (int j=0; j<signalChangeMatrix[i].length; j++) {
+      if (signalChangeMatrix[i][j]!=evalSignalChange[i][j]) { return true; }
+    }
+  }
+  return false;
+}
+
+
+// forget the connectivity of any LEs whose CLB, or a neighbouring CLB, has
+// changed since the last evaluation
+void forgetChanged()
+{
+  for (int r=minrow; r<=maxrow; r++) {
+    for (int c=mincol; c<=maxcol; c++) {
+      if (jbitsres.getModCount(r,c,1)>evalModCount) { forgetCLB(r,c); }
+    }
+  }
+}
+
+
+void forgetAll()
+{
+  for (int r=minrow; r<=maxrow; r++) {
+    for (int c=mincol; c<=maxcol; c++) { forgetCLB(r,c); }
+  }
+}
+
+
+void forgetCLB(int row, int col)
+{
+  int le;
+  for (int l=0; l<2; l++) {
+    for (int s=0; s<2; s++) {
+      le=((((row-minrow)*2)+l)*leCols)+((col-mincol)*2)+s;
+      ignoreMemo[le]=UNTRACED;
+      outbusMemo[le]=UNTRACED;
+      for (int o=0; o<8; o++) { targetMemo[le*8+o]=null; }
+    }
+  }
+}
+
+
 // logic element state is given by adding the following:
 //	- LUT input(s) connected to neighbour output(s)		=> 1
 //	- LUT function uses a connected input		     }	=> 1 (or 2)
@@ -1016,96 +1191,210 @@ public double evalCCT()
 
 // lutinput line is 1-4, which is which line the input is connecting to
 // so can tell whether LUT fn ignores this line
+//
+// rather than recursing, which can go as deep as there are LEs in the
+// evolvable region, each LE that has OUT bus lines to follow is given a
+// frame on an explicit stack. the frame steps through the LE's OUT lines,
+// and the LUT inputs that each connects to, and resumes where it left off
+// once the frame pushed for a neighbour is popped. so LEs are visited in
+// the same order, and given the same states, as when this recursed
 void traverseCCT(LEcoord loc, int lutinputline)
 {
-  int state=getState(loc);
-  
+  // only LEs in the evolvable region have a state to set
+  if (loc.row<minrow || loc.row>maxrow || loc.col<mincol || loc.col>maxcol) {
+    return;
+  }
+
+  if (!enterLE(leIndex(loc),lutinputline)) { return; }
+
+  int f,le,out;
+  int[] targets;
+
+  while (sp>0) {
+    f=sp-1;
+    le=stkLE[f];
+    out=stkStep[f];
+
+    if (out>7) {			// finished with this LE
+      sp--;
+      continue;
+    }
+
+    if ((outBuses(le)&(1<<out))!=0) {
+      if (stkSub[f]==0) {
+        if (VERBOSE) { System.err.println("FF -> OUT "+out+" .. "); }
+	targets=outlineTargets(le,out);
+	if (!nbourMemo[le*8+out]) {
+	  stkStep[f]++;
+	  continue;
+	}
+	if (VERBOSE) { System.err.println("single(s) connected to nbour(s).. "); }
+	setState(le,0xF);
+      } else {
+	targets=outlineTargets(le,out);
+      }
+
+      // traverse each connected single to its neighbour's LUT input
+      while (stkSub[f]<targets.length) {
+	int t=targets[stkSub[f]++];
+        if (VERBOSE) { System.err.println("connection from "+leCoord(le)+" to "+leCoord(t>>>2)+" .. "); }
+	if (enterLE(t>>>2,(t&3)+1)) { break; }
+      }
+      if (sp-1!=f) { continue; }
+    }
+    stkSub[f]=0;
+    stkStep[f]++;
+  }
+}
+
+
+// an LE is only traversed if the input line hasn't been tested yet, and
+// no other input line has got it past an input connected. this sets the
+// LE's state as far as it can be found from the LE itself, and returns
+// true if a frame was pushed to traverse the LEs its OUT bus lines drive
+boolean enterLE(int le, int lutinputline)
+{
+  int state=stateAt(le);
+
   // if this input line has already been evaluated (a line from another LE
   // connected here, but this input isn't used by the LUT), or another
   // input line evaluation has proceeded to a valid LUT FN
   // then nothing more to do for this LE
-  if (isInLineTested(loc,lutinputline) || state>1) { return; }
+  if (isInLineTested(le,lutinputline) || state>1) { return false; }
 
-  if (VERBOSE) { System.err.print("\nchecking state of "+loc+" from connected input line "+lutinputline+" .. "); }
+  if (VERBOSE) { System.err.print("\nchecking state of "+leCoord(le)+" from connected input line "+lutinputline+" .. "); }
 
   state=1;	// has to be 1 (an input line connected) to have reached here
-  setState(loc,state);
-  setInLineIsTested(loc,lutinputline); // mark this line as tested
+  setState(le,state);
+  setInLineIsTested(le,lutinputline); // mark this line as tested
+
+  if ((ignoredInputs(le)&(1<<(lutinputline-1)))!=0) { return false; }
+
+  if (VERBOSE) { System.err.print("LUT fn uses input.. "); }
+  state+=2;
+  setState(le,state);
+
+  // WARNING KLUDGE ALERT!!!
+  // even though we know the LUT uses the appropriate input line in its Fn
+  // however, it may have unconnected inputs that influence the LUT output
+  // thus, we optionally incorporate some extra information if available
+  // (from running with simulator) to test if output signals change when
+  // varying signals are applied to the inputs. If no signal changes occur
+  // on the output, then we can deduce the LUT functionally ignores its
+  // inputs, so go no further
+  if (signalChangeMatrix!=null && signalChangeMatrix[le/leCols][le%leCols]<=0) {
+    state=2;
+    setState(le,state);
+    if (VERBOSE) { System.err.println("but output has no signal change!"); }
+    return false;
+  }
+  if (VERBOSE) { System.err.println(); }
 
-  int[] outlines=null;
-  LEcoord[] nbours=null;
-  if (!LUTignoresInputs(loc,lutinputline)) {
-    if (VERBOSE) { System.err.print("LUT fn uses input.. "); }
-    state+=2;
-    setState(loc,state);
-
-    // WARNING KLUDGE ALERT!!!
-    // even though we know the LUT uses the appropriate input line in its Fn
-    // however, it may have unconnected inputs that influence the LUT output
-    // thus, we optionally incorporate some extra information if available
-    // (from running with simulator) to test if output signals change when
-    // varying signals are applied to the inputs. If no signal changes occur
-    // on the output, then we can deduce the LUT functionally ignores its
-    // inputs, so go no further
-    if (signalChangeMatrix!=null && !LUThasChangingSignalOutput(loc)) {
-      state=2;
-      setState(loc,state);
-      if (VERBOSE) { System.err.println("but output has no signal change!"); }
-      return;
-    }
-    if (VERBOSE) { System.err.println(); }
+  if (outBuses(le)==0) { return false; }
+
+  state+=4;
+  setState(le,state);
+
+  stkLE[sp]=le;
+  stkStep[sp]=0;
+  stkSub[sp]=0;
+  sp++;
+  return true;
+}
+
+
+// the connectivity of each LE is found as it is needed, and is then kept
+// until one of the CLBs around it is changed
+
+// returns a bitmask of the LUT input lines (line 1 is bit 0) that the LE's
+// LUT FN ignores
+int ignoredInputs(int le)
+{
+  int m=ignoreMemo[le];
+  if (m==UNTRACED) {
+    m=LUTignoredInputs(leCoord(le));
+    ignoreMemo[le]=m;
+  }
+  return m;
+}
 
-    outlines=connectedOUTbuses(loc);
+
+// returns a bitmask of the OUT bus lines that the LE's output drives
+int outBuses(int le)
+{
+  int m=outbusMemo[le];
+  if (m==UNTRACED) {
+    m=0;
+    int[] outlines=connectedOUTbuses(leCoord(le));
     if (outlines!=null) {
-      state+=4;
-      setState(loc,state);
-      for (int out=0; out<outlines.length; out++) {
-        if (VERBOSE) { System.err.println("FF -> OUT "+outlines[out]+" .. "); }
-	nbours=OUTtoSingleConnectedLE(loc,outlines[out]);
-	if (nbours!=null && nbours.length>0) {
-	  if (VERBOSE) {
-            System.err.println("single(s) connected to nbour(s).. ");
-            for (int k=0; k<nbours.length;k++) { System.err.print(nbours[k]+" "); } System.err.println();
-	  }
-	  state=0xF;
-          setState(loc,state);
-	  for (int i=0; i<nbours.length; i++) {
-	    // don't go outside evolvable region
-	    if (nbours[i].row>=minrow && nbours[i].row<=maxrow &&
-		nbours[i].col>=mincol && nbours[i].col<=maxcol) {
-              if (VERBOSE) { System.err.println("connection from "+loc+" to "+nbours[i]+" .. "); }
-	      traverseCCT(nbours[i],nbours[i].line);
-	    }
-	  }
-	}
-      }
+      for (int o=0; o<outlines.length; o++) { m|=1<<outlines[o]; }
     }
+    outbusMemo[le]=m;
+  }
+  return m;
+}
+
+
+// returns the LUT inputs in the evolvable region that the OUT bus line
+// connects to, each as leIndex*4+(lutline-1). whether it connects to
+// any LUT inputs at all, including those outside the region, is kept in
+// nbourMemo
+int[] outlineTargets(int le, int outline)
+{
+  int[] t=targetMemo[le*8+outline];
+  if (t==null) {
+    LEcoord[] nbours=OUTtoSingleConnectedLE(leCoord(le),outline);
+    int n=0;
+    for (int i=0; i<nbours.length; i++) {
+      // don't go outside evolvable region
+      if (nbours[i].row>=minrow && nbours[i].row<=maxrow &&
+	  nbours[i].col>=mincol && nbours[i].col<=maxcol) {
+	n++;
+      }
+    }
+    t=new int[n];
+    n=0;
+    for (int i=0; i<nbours.length; i++) {
+      if (nbours[i].row>=minrow && nbours[i].row<=maxrow &&
+	  nbours[i].col>=mincol && nbours[i].col<=maxcol) {
+	t[n++]=(leIndex(nbours[i])<<2)|(nbours[i].line-1);
+      }
+    }
+    targetMemo[le*8+outline]=t;
+    nbourMemo[le*8+outline]=(nbours.length>0);
   }
+  return t;
 }
 
 
-boolean LUTignoresInputs(LEcoord loc, int lutinputline)
+// returns a bitmask of the input lines (line 1 is bit 0) that the LUT
+// ignores, that is, where its output is the same whatever the line's value
+int LUTignoredInputs(LEcoord loc)
 {
   String lutstr=new String("LUT.SLICE"+loc.slice+"_"+((loc.LE==0)?"G":"F"));
   int[] lutval=jbitsres.get(loc.row,loc.col,"LUT",lutstr);
-//System.err.print("(testing "+lutstr+" line "+lutinputline+" [");
-//for (int i=0;i<16;i++) {System.err.print(lutval[i]);}
-//System.err.print("] ");
+  int mask=0;
+  for (int line=1; line<=4; line++) {
+    if (LUTignoresInput(lutval,line)) { mask|=1<<(line-1); }
+  }
+  return mask;
+}
+
+
+boolean LUTignoresInput(int[] lutval, int lutinputline)
+{
   boolean ignor=true;
   for (int i=0; i<8 && ignor; i++) { // there are 8 equivalences to check
     if (lutinputline==1) {
       ignor=ignor && lutval[i*2]==lutval[(i*2)+1];
-//System.err.print("lutval["+(i*2)+"]==lutval["+((i*2)+1)+"]="+ignor+" ");
     } else if (lutinputline==2) {
       ignor=ignor && lutval[(i%2)+((i/2)*4)]==lutval[(i%2)+((i/2)*4)+2];
     } else if (lutinputline==3) {
       ignor=ignor && (lutval[(i%4)+((i/4)*8)]==lutval[(i%4)+((i/4)*8)+4]);
     } else { // if (lutinputline==4)
       ignor=ignor && (lutval[i]==lutval[i+8]);
-//System.err.print("lutval["+(i)+"]==lutval["+(i+8)+"]="+ignor+" ");
     }
   }
-//System.err.print("ignor="+ignor+")");
 
   // if all 8 comparisons come out to be true, then line is ignored
   return ignor;
@@ -1270,856 +1559,21 @@ int[] connectedUnsharedOUTbuses(LEcoord loc)
 }
 
 
+// the LEs whose LUT inputs are connected to the OUT bus line, through a
+// single or direct connection, as found from the routes in OutBusRoutes
 // note that in LEcoord's LE==0 is G-Y LE, and LE==1 is F-X
 // NB. one line may drive multiple LUT inputs
 LEcoord[] OUTtoSingleConnectedLE(LEcoord loc, int outline)
 {
-  List nbours=new ArrayList();
-  int row=loc.row;
-  int col=loc.col;
-  int cnt=0;
-
-  if (outline==0) {
-
-    // OUT0 ->          OUT_WEST0 -> S0G2 S0F2 S1G3 S1F3
-    if (USEDIRECTOUT) {
-      if (outlineToLUTConnected(row,col,0,"OUT_WEST0","S0G2")) {
-        nbours.add(new LEcoord(row,col+1,0,0,2));
-      }
-      if (outlineToLUTConnected(row,col,0,"OUT_WEST0","S0F2")) {
-        nbours.add(new LEcoord(row,col+1,0,1,2));
-      }
-      if (outlineToLUTConnected(row,col,0,"OUT_WEST0","S1G3")) {
-        nbours.add(new LEcoord(row,col+1,1,0,3));
-      }
-      if (outlineToLUTConnected(row,col,0,"OUT_WEST0","S1F3")) {
-        nbours.add(new LEcoord(row,col+1,1,1,3));
-      }
-    }
-    if (VERBOSE && nbours.size()>cnt) { System.err.println("OUT0->OUT_WEST0"); cnt++; }
-
-    // OUT0 -> EAST2 -> WEST2     -> S0G2 S0F2 S1G3 S1F3
-    if (outlineToLUTConnected(row,col,0,"EAST",2,"S0G2")) {
-      nbours.add(new LEcoord(row,col+1,0,0,2));
-    }
-    if (outlineToLUTConnected(row,col,0,"EAST",2,"S0F2")) {
-      nbours.add(new LEcoord(row,col+1,0,1,2));
-    }
-    if (outlineToLUTConnected(row,col,0,"EAST",2,"S1G3")) {
-      nbours.add(new LEcoord(row,col+1,1,0,3));
-    }
-    if (outlineToLUTConnected(row,col,0,"EAST",2,"S1F3")) {
-      nbours.add(new LEcoord(row,col+1,1,1,3));
-    }
-    if (VERBOSE && nbours.size()>cnt) { System.err.println("OUT0->EAST2"); cnt++; }
-
-    // OUT0 -> NORTH0 -> SOUTH0 -> S0G3 S0F3 S1G2 S1F2
-    if (outlineToLUTConnected(row,col,0,"NORTH",0,"S0G3")) {
-      nbours.add(new LEcoord(row+1,col,0,0,3));
-    }
-    if (outlineToLUTConnected(row,col,0,"NORTH",0,"S0F3")) {
-      nbours.add(new LEcoord(row+1,col,0,1,3));
-    }
-    if (outlineToLUTConnected(row,col,0,"NORTH",0,"S1G2")) {
-      nbours.add(new LEcoord(row+1,col,1,0,2));
-    }
-    if (outlineToLUTConnected(row,col,0,"NORTH",0,"S1F2")) {
-      nbours.add(new LEcoord(row+1,col,1,1,2));
-    }
-    if (VERBOSE && nbours.size()>cnt) { System.err.println("OUT0->NORTH0"); cnt++; }
-
-    // OUT0 -> NORTH1 -> SOUTH1 -> S0G2 S0F2 S1G3 S1F3
-    if (outlineToLUTConnected(row,col,0,"NORTH",1,"S0G2")) {
-      nbours.add(new LEcoord(row+1,col,0,0,2));
-    }
-    if (outlineToLUTConnected(row,col,0,"NORTH",1,"S0F2")) {
-      nbours.add(new LEcoord(row+1,col,0,1,2));
-    }
-    if (outlineToLUTConnected(row,col,0,"NORTH",1,"S1G3")) {
-      nbours.add(new LEcoord(row+1,col,1,0,3));
-    }
-    if (outlineToLUTConnected(row,col,0,"NORTH",1,"S1F3")) {
-      nbours.add(new LEcoord(row+1,col,1,1,3));
-    }
-    if (VERBOSE && nbours.size()>cnt) { System.err.println("OUT0->NORTH1"); cnt++; }
-
-    // OUT0 -> SOUTH1 -> NORTH1 -> S0G4 S0F4 S1G1 S1F1
-    if (outlineToLUTConnected(row,col,0,"SOUTH",1,"S0G4")) {
-      nbours.add(new LEcoord(row-1,col,0,0,4));
-    }
-    if (outlineToLUTConnected(row,col,0,"SOUTH",1,"S0F4")) {
-      nbours.add(new LEcoord(row-1,col,0,1,4));
-    }
-    if (outlineToLUTConnected(row,col,0,"SOUTH",1,"S1G1")) {
-      nbours.add(new LEcoord(row-1,col,1,0,1));
-    }
-    if (outlineToLUTConnected(row,col,0,"SOUTH",1,"S1F1")) {
-      nbours.add(new LEcoord(row-1,col,1,1,1));
-    }
-    if (VERBOSE && nbours.size()>cnt) { System.err.println("OUT0->SOUTH1"); cnt++; }
-
-    // OUT0 -> SOUTH3 -> NORTH3 -> S0G4 S0F4 S1G1 S1F1
-    if (outlineToLUTConnected(row,col,0,"SOUTH",3,"S0G4")) {
-      nbours.add(new LEcoord(row-1,col,0,0,4));
-    }
-    if (outlineToLUTConnected(row,col,0,"SOUTH",3,"S0F4")) {
-      nbours.add(new LEcoord(row-1,col,0,1,4));
-    }
-    if (outlineToLUTConnected(row,col,0,"SOUTH",3,"S1G1")) {
-      nbours.add(new LEcoord(row-1,col,1,0,1));
-    }
-    if (outlineToLUTConnected(row,col,0,"SOUTH",3,"S1F1")) {
-      nbours.add(new LEcoord(row-1,col,1,1,1));
-    }
-    if (VERBOSE && nbours.size()>cnt) { System.err.println("OUT0->SOUTH3"); cnt++; }
-
-    // OUT0 -> WEST7 -> EAST7 -> S0G3 S0F3 S1G2 S1F2
-    if (outlineToLUTConnected(row,col,0,"WEST",7,"S0G3")) {
-      nbours.add(new LEcoord(row,col-1,0,0,3));
-    }
-    if (outlineToLUTConnected(row,col,0,"WEST",7,"S0F3")) {
-      nbours.add(new LEcoord(row,col-1,0,1,3));
-    }
-    if (outlineToLUTConnected(row,col,0,"WEST",7,"S1G2")) {
-      nbours.add(new LEcoord(row,col-1,1,0,2));
-    }
-    if (outlineToLUTConnected(row,col,0,"WEST",7,"S1F2")) {
-      nbours.add(new LEcoord(row,col-1,1,1,2));
-    }
-    if (VERBOSE && nbours.size()>cnt) { System.err.println("OUT0->WEST7"); cnt++; }
-
-  } else if (outline==1) {
-
-    // OUT1     ->	OUT_WEST1 -> SOG1 S0F1 S1G4 S1F4
-    if (USEDIRECTOUT) {
-      if (outlineToLUTConnected(row,col,1,"OUT_WEST1","S0G1")) {
-        nbours.add(new LEcoord(row,col+1,0,0,1));
-      }
-      if (outlineToLUTConnected(row,col,1,"OUT_WEST1","S0F1")) {
-        nbours.add(new LEcoord(row,col+1,0,1,1));
-      }
-      if (outlineToLUTConnected(row,col,1,"OUT_WEST1","S1G4")) {
-        nbours.add(new LEcoord(row,col+1,1,0,4));
-      }
-      if (outlineToLUTConnected(row,col,1,"OUT_WEST1","S1F4")) {
-        nbours.add(new LEcoord(row,col+1,1,1,4));
-      }
-    }
-    if (VERBOSE && nbours.size()>cnt) { System.err.println("OUT1->WEST_1"); cnt++; }
-
-    // OUT1 -> EAST3 -> WEST3     -> S0G4 S0F4 S1G1 S1F1
-    if (outlineToLUTConnected(row,col,1,"EAST",3,"S0G4")) {
-      nbours.add(new LEcoord(row,col+1,0,0,4));
-    }
-    if (outlineToLUTConnected(row,col,1,"EAST",3,"S0F4")) {
-      nbours.add(new LEcoord(row,col+1,0,1,4));
-    }
-    if (outlineToLUTConnected(row,col,1,"EAST",3,"S1G1")) {
-      nbours.add(new LEcoord(row,col+1,1,0,1));
-    }
-    if (outlineToLUTConnected(row,col,1,"EAST",3,"S1F1")) {
-      nbours.add(new LEcoord(row,col+1,1,1,1));
-    }
-    if (VERBOSE && nbours.size()>cnt) { System.err.println("OUT1->EAST3"); cnt++; }
-
-    // OUT1 -> EAST5 -> WEST5     -> SOG1 S0F1 S1G4 S1F4
-    if (outlineToLUTConnected(row,col,1,"EAST",5,"S0G1")) {
-      nbours.add(new LEcoord(row,col+1,0,0,1));
-    }
-    if (outlineToLUTConnected(row,col,1,"EAST",5,"S0F1")) {
-      nbours.add(new LEcoord(row,col+1,0,1,1));
-    }
-    if (outlineToLUTConnected(row,col,1,"EAST",5,"S1G4")) {
-      nbours.add(new LEcoord(row,col+1,1,0,4));
-    }
-    if (outlineToLUTConnected(row,col,1,"EAST",5,"S1F4")) {
-      nbours.add(new LEcoord(row,col+1,1,1,4));
-    }
-    if (VERBOSE && nbours.size()>cnt) { System.err.println("OUT1->EAST5"); cnt++; }
-
-    // OUT1 -> NORTH2 -> SOUTH2     -> S0F4 S0G4 S1F1 S1G1
-    if (outlineToLUTConnected(row,col,1,"NORTH",2,"S0G4")) {
-      nbours.add(new LEcoord(row+1,col,0,0,4));
-    }
-    if (outlineToLUTConnected(row,col,1,"NORTH",2,"S0F4")) {
-      nbours.add(new LEcoord(row+1,col,0,1,4));
-    }
-    if (outlineToLUTConnected(row,col,1,"NORTH",2,"S1G1")) {
-      nbours.add(new LEcoord(row+1,col,1,0,1));
-    }
-    if (outlineToLUTConnected(row,col,1,"NORTH",2,"S1F1")) {
-      nbours.add(new LEcoord(row+1,col,1,1,1));
-    }
-    if (VERBOSE && nbours.size()>cnt) { System.err.println("OUT1->NORTH2"); cnt++; }
-
-    // OUT1 -> SOUTH0 -> NORTH0     -> S0G4 S0F4 S1G1 S1F1
-    if (outlineToLUTConnected(row,col,1,"SOUTH",0,"S0G4")) {
-      nbours.add(new LEcoord(row-1,col,0,0,4));
-    }
-    if (outlineToLUTConnected(row,col,1,"SOUTH",0,"S0F4")) {
-      nbours.add(new LEcoord(row-1,col,0,1,4));
-    }
-    if (outlineToLUTConnected(row,col,1,"SOUTH",0,"S1G1")) {
-      nbours.add(new LEcoord(row-1,col,1,0,1));
-    }
-    if (outlineToLUTConnected(row,col,1,"SOUTH",0,"S1F1")) {
-      nbours.add(new LEcoord(row-1,col,1,1,1));
-    }
-    if (VERBOSE && nbours.size()>cnt) { System.err.println("OUT1->SOUTH0"); cnt++; }
-
-    // OUT1 -> WEST4 -> EAST4     -> S0G4 S0F4 S1G1 S1F1
-    if (outlineToLUTConnected(row,col,1,"WEST",4,"S0G4")) {
-      nbours.add(new LEcoord(row,col-1,0,0,4));
-    }
-    if (outlineToLUTConnected(row,col,1,"WEST",4,"S0F4")) {
-      nbours.add(new LEcoord(row,col-1,0,1,4));
-    }
-    if (outlineToLUTConnected(row,col,1,"WEST",4,"S1G1")) {
-      nbours.add(new LEcoord(row,col-1,1,0,1));
-    }
-    if (outlineToLUTConnected(row,col,1,"WEST",4,"S1F1")) {
-      nbours.add(new LEcoord(row,col-1,1,1,1));
-    }
-    if (VERBOSE && nbours.size()>cnt) { System.err.println("OUT1->WEST4"); cnt++; }
-
-    // OUT1 -> WEST5 -> EAST5 -> S0G3 S0F3 S1G2 S1F2
-    if (outlineToLUTConnected(row,col,1,"WEST",5,"S0G3")) {
-      nbours.add(new LEcoord(row,col-1,0,0,3));
-    }
-    if (outlineToLUTConnected(row,col,1,"WEST",5,"S0F3")) {
-      nbours.add(new LEcoord(row,col-1,0,1,3));
-    }
-    if (outlineToLUTConnected(row,col,1,"WEST",5,"S1G2")) {
-      nbours.add(new LEcoord(row,col-1,1,0,2));
-    }
-    if (outlineToLUTConnected(row,col,1,"WEST",5,"S1F2")) {
-      nbours.add(new LEcoord(row,col-1,1,1,2));
-    }
-    if (VERBOSE && nbours.size()>cnt) { System.err.println("OUT1->WEST5"); cnt++; }
-
-  } else if (outline==2) {
-
-    // OUT2 -> EAST6 -> WEST6 -> S0G3 S0F3 S1G2 S1F2
-    if (outlineToLUTConnected(row,col,2,"EAST",6,"S0G3")) {
-      nbours.add(new LEcoord(row,col+1,0,0,3));
-    }
-    if (outlineToLUTConnected(row,col,2,"EAST",6,"S0F3")) {
-      nbours.add(new LEcoord(row,col+1,0,1,3));
-    }
-    if (outlineToLUTConnected(row,col,2,"EAST",6,"S1G2")) {
-      nbours.add(new LEcoord(row,col+1,1,0,2));
-    }
-    if (outlineToLUTConnected(row,col,2,"EAST",6,"S1F2")) {
-      nbours.add(new LEcoord(row,col+1,1,1,2));
-    }
-    if (VERBOSE && nbours.size()>cnt) { System.err.println("OUT2->EAST6"); cnt++; }
-
-    // OUT2 -> NORTH6 -> SOUTH6     -> S0G1 S0F1 S1G4 S1F4
-    if (outlineToLUTConnected(row,col,2,"NORTH",6,"S0G1")) {
-      nbours.add(new LEcoord(row+1,col,0,0,1));
+  int n=OutBusRoutes.connected(jbitsres,loc.row,loc.col,outline,USEDIRECTOUT,routeTargets);
+  LEcoord[] nbours=new LEcoord[n];
+  for (int i=0; i<n; i++) {
+    if (VERBOSE && (i==0 || OutBusRoutes.targetRoute[routeTargets[i]]!=OutBusRoutes.targetRoute[routeTargets[i-1]])) {
+      System.err.println(OutBusRoutes.getRouteName(routeTargets[i]));
     }
-    if (outlineToLUTConnected(row,col,2,"NORTH",6,"S0F1")) {
-      nbours.add(new LEcoord(row+1,col,0,1,1));
-    }
-    if (outlineToLUTConnected(row,col,2,"NORTH",6,"S1G4")) {
-      nbours.add(new LEcoord(row+1,col,1,0,4));
-    }
-    if (outlineToLUTConnected(row,col,2,"NORTH",6,"S1F4")) {
-      nbours.add(new LEcoord(row+1,col,1,1,4));
-    }
-    if (VERBOSE && nbours.size()>cnt) { System.err.println("OUT2->NORTH6"); cnt++; }
-
-    // OUT2 -> NORTH8 -> SOUTH8     -> S0G4 S0F4 S1G1 S1F1
-    if (outlineToLUTConnected(row,col,2,"NORTH",8,"S0G4")) {
-      nbours.add(new LEcoord(row+1,col,0,0,4));
-    }
-    if (outlineToLUTConnected(row,col,2,"NORTH",8,"S0F4")) {
-      nbours.add(new LEcoord(row+1,col,0,1,4));
-    }
-    if (outlineToLUTConnected(row,col,2,"NORTH",8,"S1G1")) {
-      nbours.add(new LEcoord(row+1,col,1,0,1));
-    }
-    if (outlineToLUTConnected(row,col,2,"NORTH",8,"S1F1")) {
-      nbours.add(new LEcoord(row+1,col,1,1,1));
-    }
-    if (VERBOSE && nbours.size()>cnt) { System.err.println("OUT2->NORTH8"); cnt++; }
-
-    // OUT2 -> SOUTH5 -> NORTH5     -> S0G4 S0F4 S1G1 S1G1
-    if (outlineToLUTConnected(row,col,2,"SOUTH",5,"S0G4")) {
-      nbours.add(new LEcoord(row-1,col,0,0,4));
-    }
-    if (outlineToLUTConnected(row,col,2,"SOUTH",5,"S0F4")) {
-      nbours.add(new LEcoord(row-1,col,0,1,4));
-    }
-    if (outlineToLUTConnected(row,col,2,"SOUTH",5,"S1G1")) {
-      nbours.add(new LEcoord(row-1,col,1,0,1));
-    }
-    if (outlineToLUTConnected(row,col,2,"SOUTH",5,"S1F1")) {
-      nbours.add(new LEcoord(row-1,col,1,1,1));
-    }
-    if (VERBOSE && nbours.size()>cnt) { System.err.println("OUT2->SOUTH5"); cnt++; }
-
-    // OUT2 -> SOUTH7 -> NORTH7     -> S0G4 S0F4 S1G1 S1G1
-    if (outlineToLUTConnected(row,col,2,"SOUTH",7,"S0G4")) {
-      nbours.add(new LEcoord(row-1,col,0,0,4));
-    }
-    if (outlineToLUTConnected(row,col,2,"SOUTH",7,"S0F4")) {
-      nbours.add(new LEcoord(row-1,col,0,1,4));
-    }
-    if (outlineToLUTConnected(row,col,2,"SOUTH",7,"S1G1")) {
-      nbours.add(new LEcoord(row-1,col,1,0,1));
-    }
-    if (outlineToLUTConnected(row,col,2,"SOUTH",7,"S1F1")) {
-      nbours.add(new LEcoord(row-1,col,1,1,1));
-    }
-    if (VERBOSE && nbours.size()>cnt) { System.err.println("OUT2->SOUTH7"); cnt++; }
-
-    // OUT2 -> WEST9 -> EAST6 -> S0G3 S0F3 S1G2 S1F2
-    if (outlineToLUTConnected(row,col,2,"WEST",9,"S0G3")) {
-      nbours.add(new LEcoord(row,col-1,0,0,3));
-    }
-    if (outlineToLUTConnected(row,col,2,"WEST",9,"S0F3")) {
-      nbours.add(new LEcoord(row,col-1,0,1,3));
-    }
-    if (outlineToLUTConnected(row,col,2,"WEST",9,"S1G2")) {
-      nbours.add(new LEcoord(row,col-1,1,0,2));
-    }
-    if (outlineToLUTConnected(row,col,2,"WEST",9,"S1F2")) {
-      nbours.add(new LEcoord(row,col-1,1,1,2));
-    }
-    if (VERBOSE && nbours.size()>cnt) { System.err.println("OUT2->WEST9"); cnt++; }
-
-  } else if (outline==3) {
-
-    // OUT3 -> EAST8 -> WEST8     -> S0G3 S0F3 S1G2 S1F2
-    if (outlineToLUTConnected(row,col,3,"EAST",8,"S0G3")) {
-      nbours.add(new LEcoord(row,col+1,0,0,3));
-    }
-    if (outlineToLUTConnected(row,col,3,"EAST",8,"S0F3")) {
-      nbours.add(new LEcoord(row,col+1,0,1,3));
-    }
-    if (outlineToLUTConnected(row,col,3,"EAST",8,"S1G2")) {
-      nbours.add(new LEcoord(row,col+1,1,0,2));
-    }
-    if (outlineToLUTConnected(row,col,3,"EAST",8,"S1F2")) {
-      nbours.add(new LEcoord(row,col+1,1,1,2));
-    }
-    if (VERBOSE && nbours.size()>cnt) { System.err.println("OUT3->EAST8"); cnt++; }
-
-    // OUT3 -> EAST11 -> WEST11     -> S0G4 S0F4 S1G1 S1F1
-    if (outlineToLUTConnected(row,col,3,"EAST",11,"S0G4")) {
-      nbours.add(new LEcoord(row,col+1,0,0,4));
-    }
-    if (outlineToLUTConnected(row,col,3,"EAST",11,"S0F4")) {
-      nbours.add(new LEcoord(row,col+1,0,1,4));
-    }
-    if (outlineToLUTConnected(row,col,3,"EAST",11,"S1G1")) {
-      nbours.add(new LEcoord(row,col+1,1,0,1));
-    }
-    if (outlineToLUTConnected(row,col,3,"EAST",11,"S1F1")) {
-      nbours.add(new LEcoord(row,col+1,1,1,1));
-    }
-    if (VERBOSE && nbours.size()>cnt) { System.err.println("OUT3->EAST11"); cnt++; }
-
-    // OUT3 -> NORTH9 -> SOUTH9     -> S0F4 S0G4 S1F1 S1G1
-    if (outlineToLUTConnected(row,col,3,"NORTH",9,"S0G4")) {
-      nbours.add(new LEcoord(row+1,col,0,0,4));
-    }
-    if (outlineToLUTConnected(row,col,3,"NORTH",9,"S0F4")) {
-      nbours.add(new LEcoord(row+1,col,0,1,4));
-    }
-    if (outlineToLUTConnected(row,col,3,"NORTH",9,"S1G1")) {
-      nbours.add(new LEcoord(row+1,col,1,0,1));
-    }
-    if (outlineToLUTConnected(row,col,3,"NORTH",9,"S1F1")) {
-      nbours.add(new LEcoord(row+1,col,1,1,1));
-    }
-    if (VERBOSE && nbours.size()>cnt) { System.err.println("OUT3->NORTH9"); cnt++; }
-
-    // OUT3 -> SOUTH10 -> NORTH10     -> S0G4 S0F4 S1G1 S1F1
-    if (outlineToLUTConnected(row,col,3,"SOUTH",10,"S0G4")) {
-      nbours.add(new LEcoord(row-1,col,0,0,4));
-    }
-    if (outlineToLUTConnected(row,col,3,"SOUTH",10,"S0F4")) {
-      nbours.add(new LEcoord(row-1,col,0,1,4));
-    }
-    if (outlineToLUTConnected(row,col,3,"SOUTH",10,"S1G1")) {
-      nbours.add(new LEcoord(row-1,col,1,0,1));
-    }
-    if (outlineToLUTConnected(row,col,3,"SOUTH",10,"S1F1")) {
-      nbours.add(new LEcoord(row-1,col,1,1,1));
-    }
-    if (VERBOSE && nbours.size()>cnt) { System.err.println("OUT3->SOUTH10"); cnt++; }
-
-    // OUT3 -> WEST10 -> EAST10 -> S0G3 S0F3 S1G2 S1F2
-    if (outlineToLUTConnected(row,col,3,"WEST",10,"S0G3")) {
-      nbours.add(new LEcoord(row,col-1,0,0,3));
-    }
-    if (outlineToLUTConnected(row,col,3,"WEST",10,"S0F3")) {
-      nbours.add(new LEcoord(row,col-1,0,1,3));
-    }
-    if (outlineToLUTConnected(row,col,3,"WEST",10,"S1G2")) {
-      nbours.add(new LEcoord(row,col-1,1,0,2));
-    }
-    if (outlineToLUTConnected(row,col,3,"WEST",10,"S1F2")) {
-      nbours.add(new LEcoord(row,col-1,1,1,2));
-    }
-    if (VERBOSE && nbours.size()>cnt) { System.err.println("OUT3->WEST10"); cnt++; }
-
-    // OUT3 -> WEST11 -> EAST11 -> S0G2 S0F2 S1G3 S1F3
-    if (outlineToLUTConnected(row,col,3,"WEST",11,"S0G2")) {
-      nbours.add(new LEcoord(row,col-1,0,0,2));
-    }
-    if (outlineToLUTConnected(row,col,3,"WEST",11,"S0F2")) {
-      nbours.add(new LEcoord(row,col-1,0,1,2));
-    }
-    if (outlineToLUTConnected(row,col,3,"WEST",11,"S1G3")) {
-      nbours.add(new LEcoord(row,col-1,1,0,3));
-    }
-    if (outlineToLUTConnected(row,col,3,"WEST",11,"S1F3")) {
-      nbours.add(new LEcoord(row,col-1,1,1,3));
-    }
-    if (VERBOSE && nbours.size()>cnt) { System.err.println("OUT3->WEST11"); cnt++; }
-
-  } else if (outline==4) {
-
-    // OUT4 -> EAST14 -> WEST14     -> S0G4 S0F4 S1G1 S1F1
-    if (outlineToLUTConnected(row,col,4,"EAST",14,"S0G4")) {
-      nbours.add(new LEcoord(row,col+1,0,0,4));
-    }
-    if (outlineToLUTConnected(row,col,4,"EAST",14,"S0F4")) {
-      nbours.add(new LEcoord(row,col+1,0,1,4));
-    }
-    if (outlineToLUTConnected(row,col,4,"EAST",14,"S1G1")) {
-      nbours.add(new LEcoord(row,col+1,1,0,1));
-    }
-    if (outlineToLUTConnected(row,col,4,"EAST",14,"S1F1")) {
-      nbours.add(new LEcoord(row,col+1,1,1,1));
-    }
-    if (VERBOSE && nbours.size()>cnt) { System.err.println("OUT4->EAST14"); cnt++; }
-
-    // OUT4 -> NORTH12 -> SOUTH12     -> S0G1 S0F1 S1G4 S1F4
-    if (outlineToLUTConnected(row,col,4,"NORTH",12,"S0G1")) {
-      nbours.add(new LEcoord(row+1,col,0,0,1));
-    }
-    if (outlineToLUTConnected(row,col,4,"NORTH",12,"S0F1")) {
-      nbours.add(new LEcoord(row+1,col,0,1,1));
-    }
-    if (outlineToLUTConnected(row,col,4,"NORTH",12,"S1G4")) {
-      nbours.add(new LEcoord(row+1,col,1,0,4));
-    }
-    if (outlineToLUTConnected(row,col,4,"NORTH",12,"S1F4")) {
-      nbours.add(new LEcoord(row+1,col,1,1,4));
-    }
-    if (VERBOSE && nbours.size()>cnt) { System.err.println("OUT4->NORTH12"); cnt++; }
-
-    // OUT4 -> NORTH13 -> SOUTH13     -> S0G1 S0F1 S1G4 S1F4
-    if (outlineToLUTConnected(row,col,4,"NORTH",13,"S0G1")) {
-      nbours.add(new LEcoord(row+1,col,0,0,1));
-    }
-    if (outlineToLUTConnected(row,col,4,"NORTH",13,"S0F1")) {
-      nbours.add(new LEcoord(row+1,col,0,1,1));
-    }
-    if (outlineToLUTConnected(row,col,4,"NORTH",13,"S1G4")) {
-      nbours.add(new LEcoord(row+1,col,1,0,4));
-    }
-    if (outlineToLUTConnected(row,col,4,"NORTH",13,"S1F4")) {
-      nbours.add(new LEcoord(row+1,col,1,1,4));
-    }
-    if (VERBOSE && nbours.size()>cnt) { System.err.println("OUT4->NORTH13"); cnt++; }
-
-    // OUT4 -> SOUTH13 -> NORTH13     -> S0G3 S0F3 S1G2 S1F2
-    if (outlineToLUTConnected(row,col,4,"SOUTH",13,"S0G3")) {
-      nbours.add(new LEcoord(row-1,col,0,0,3));
-    }
-    if (outlineToLUTConnected(row,col,4,"SOUTH",13,"S0F3")) {
-      nbours.add(new LEcoord(row-1,col,0,1,3));
-    }
-    if (outlineToLUTConnected(row,col,4,"SOUTH",13,"S1G2")) {
-      nbours.add(new LEcoord(row-1,col,1,0,2));
-    }
-    if (outlineToLUTConnected(row,col,4,"SOUTH",13,"S1F2")) {
-      nbours.add(new LEcoord(row-1,col,1,1,2));
-    }
-    if (VERBOSE && nbours.size()>cnt) { System.err.println("OUT4->SOUTH13"); cnt++; }
-
-    // OUT4 -> SOUTH15 -> NORTH15     -> S0G1 S0F1 S1G4 S1F4
-    if (outlineToLUTConnected(row,col,4,"SOUTH",15,"S0G1")) {
-      nbours.add(new LEcoord(row-1,col,0,0,1));
-    }
-    if (outlineToLUTConnected(row,col,4,"SOUTH",15,"S0F1")) {
-      nbours.add(new LEcoord(row-1,col,0,1,1));
-    }
-    if (outlineToLUTConnected(row,col,4,"SOUTH",15,"S1G4")) {
-      nbours.add(new LEcoord(row-1,col,1,0,4));
-    }
-    if (outlineToLUTConnected(row,col,4,"SOUTH",15,"S1F4")) {
-      nbours.add(new LEcoord(row-1,col,1,1,4));
-    }
-    if (VERBOSE && nbours.size()>cnt) { System.err.println("OUT4->SOUTH15"); cnt++; }
-
-    // OUT4 -> WEST19 -> EAST19     -> S0G4 S0F4 S1G1 S1F1
-    if (outlineToLUTConnected(row,col,4,"WEST",19,"S0G4")) {
-      nbours.add(new LEcoord(row,col-1,0,0,4));
-    }
-    if (outlineToLUTConnected(row,col,4,"WEST",19,"S0F4")) {
-      nbours.add(new LEcoord(row,col-1,0,1,4));
-    }
-    if (outlineToLUTConnected(row,col,4,"WEST",19,"S1G1")) {
-      nbours.add(new LEcoord(row,col-1,1,0,1));
-    }
-    if (outlineToLUTConnected(row,col,4,"WEST",19,"S1F1")) {
-      nbours.add(new LEcoord(row,col-1,1,1,1));
-    }
-    if (VERBOSE && nbours.size()>cnt) { System.err.println("OUT4->WEST19"); cnt++; }
-
-  } else if (outline==5) {
-
-    // OUT5 -> EAST15 -> WEST15     -> S0G3 S0F3 S1G2 S1F2
-    if (outlineToLUTConnected(row,col,5,"EAST",15,"S0G3")) {
-      nbours.add(new LEcoord(row,col+1,0,0,3));
-    }
-    if (outlineToLUTConnected(row,col,5,"EAST",15,"S0F3")) {
-      nbours.add(new LEcoord(row,col+1,0,1,3));
-    }
-    if (outlineToLUTConnected(row,col,5,"EAST",15,"S1G2")) {
-      nbours.add(new LEcoord(row,col+1,1,0,2));
-    }
-    if (outlineToLUTConnected(row,col,5,"EAST",15,"S1F2")) {
-      nbours.add(new LEcoord(row,col+1,1,1,2));
-    }
-    if (VERBOSE && nbours.size()>cnt) { System.err.println("OUT5->EAST15"); cnt++; }
-
-    // OUT5 -> EAST17 -> WEST17     -> S0G1 S0F1 S1G4 S1F4
-    if (outlineToLUTConnected(row,col,5,"EAST",17,"S0G1")) {
-      nbours.add(new LEcoord(row,col+1,0,0,1));
-    }
-    if (outlineToLUTConnected(row,col,5,"EAST",17,"S0F1")) {
-      nbours.add(new LEcoord(row,col+1,0,1,1));
-    }
-    if (outlineToLUTConnected(row,col,5,"EAST",17,"S1G4")) {
-      nbours.add(new LEcoord(row,col+1,1,0,4));
-    }
-    if (outlineToLUTConnected(row,col,5,"EAST",17,"S1F4")) {
-      nbours.add(new LEcoord(row,col+1,1,1,4));
-    }
-    if (VERBOSE && nbours.size()>cnt) { System.err.println("OUT5->EAST17"); cnt++; }
-
-    // OUT5 -> NORTH14 -> SOUTH14     -> S0G3 S0F3 S1G2 S1F2
-    if (outlineToLUTConnected(row,col,5,"NORTH",14,"S0G3")) {
-      nbours.add(new LEcoord(row+1,col,0,0,3));
-    }
-    if (outlineToLUTConnected(row,col,5,"NORTH",14,"S0F3")) {
-      nbours.add(new LEcoord(row+1,col,0,1,3));
-    }
-    if (outlineToLUTConnected(row,col,5,"NORTH",14,"S1G2")) {
-      nbours.add(new LEcoord(row+1,col,1,0,2));
-    }
-    if (outlineToLUTConnected(row,col,5,"NORTH",14,"S1F2")) {
-      nbours.add(new LEcoord(row+1,col,1,1,2));
-    }
-    if (VERBOSE && nbours.size()>cnt) { System.err.println("OUT5->NORTH14"); cnt++; }
-
-    // OUT5 -> SOUTH12 -> NORTH12     -> S0G2 S0F2 S1G3 S1F3
-    if (outlineToLUTConnected(row,col,5,"SOUTH",12,"S0G2")) {
-      nbours.add(new LEcoord(row-1,col,0,0,2));
-    }
-    if (outlineToLUTConnected(row,col,5,"SOUTH",12,"S0F2")) {
-      nbours.add(new LEcoord(row-1,col,0,1,2));
-    }
-    if (outlineToLUTConnected(row,col,5,"SOUTH",12,"S1G3")) {
-      nbours.add(new LEcoord(row-1,col,1,0,3));
-    }
-    if (outlineToLUTConnected(row,col,5,"SOUTH",12,"S1F3")) {
-      nbours.add(new LEcoord(row-1,col,1,1,3));
-    }
-    if (VERBOSE && nbours.size()>cnt) { System.err.println("OUT5->SOUTH12"); cnt++; }
-
-    // OUT5 -> WEST16 -> EAST16     -> S0G4 S0F4 S1G1 S1F1
-    if (outlineToLUTConnected(row,col,5,"WEST",16,"S0G4")) {
-      nbours.add(new LEcoord(row,col-1,0,0,4));
-    }
-    if (outlineToLUTConnected(row,col,5,"WEST",16,"S0F4")) {
-      nbours.add(new LEcoord(row,col-1,0,1,4));
-    }
-    if (outlineToLUTConnected(row,col,5,"WEST",16,"S1G1")) {
-      nbours.add(new LEcoord(row,col-1,1,0,1));
-    }
-    if (outlineToLUTConnected(row,col,5,"WEST",16,"S1F1")) {
-      nbours.add(new LEcoord(row,col-1,1,1,1));
-    }
-    if (VERBOSE && nbours.size()>cnt) { System.err.println("OUT5->WEST16"); cnt++; }
-
-    // OUT5 -> WEST17 -> EAST17     -> S0G4 S0F4 S1G1 S1F1
-    if (outlineToLUTConnected(row,col,5,"WEST",17,"S0G4")) {
-      nbours.add(new LEcoord(row,col-1,0,0,4));
-    }
-    if (outlineToLUTConnected(row,col,5,"WEST",17,"S0F4")) {
-      nbours.add(new LEcoord(row,col-1,0,1,4));
-    }
-    if (outlineToLUTConnected(row,col,5,"WEST",17,"S1G1")) {
-      nbours.add(new LEcoord(row,col-1,1,0,1));
-    }
-    if (outlineToLUTConnected(row,col,5,"WEST",17,"S1F1")) {
-      nbours.add(new LEcoord(row,col-1,1,1,1));
-    }
-    if (VERBOSE && nbours.size()>cnt) { System.err.println("OUT5->WEST17"); cnt++; }
-
-  } else if (outline==6) {
-
-    // OUT6 -> EAST18 -> WEST18     -> S0G1 S0F1 S1G4 S1F4
-    if (outlineToLUTConnected(row,col,6,"EAST",18,"S0G1")) {
-      nbours.add(new LEcoord(row,col+1,0,0,1));
-    }
-    if (outlineToLUTConnected(row,col,6,"EAST",18,"S0F1")) {
-      nbours.add(new LEcoord(row,col+1,0,1,1));
-    }
-    if (outlineToLUTConnected(row,col,6,"EAST",18,"S1G4")) {
-      nbours.add(new LEcoord(row,col+1,1,0,4));
-    }
-    if (outlineToLUTConnected(row,col,6,"EAST",18,"S1F4")) {
-      nbours.add(new LEcoord(row,col+1,1,1,4));
-    }
-    if (VERBOSE && nbours.size()>cnt) { System.err.println("OUT6->EAST18"); cnt++; }
-
-    // OUT6 -> NORTH18 -> SOUTH18     -> S0G4 S0F4 S1G1 S1F1
-    if (outlineToLUTConnected(row,col,6,"NORTH",18,"S0G4")) {
-      nbours.add(new LEcoord(row+1,col,0,0,4));
-    }
-    if (outlineToLUTConnected(row,col,6,"NORTH",18,"S0F4")) {
-      nbours.add(new LEcoord(row+1,col,0,1,4));
-    }
-    if (outlineToLUTConnected(row,col,6,"NORTH",18,"S1G1")) {
-      nbours.add(new LEcoord(row+1,col,1,0,1));
-    }
-    if (outlineToLUTConnected(row,col,6,"NORTH",18,"S1F1")) {
-      nbours.add(new LEcoord(row+1,col,1,1,1));
-    }
-    if (VERBOSE && nbours.size()>cnt) { System.err.println("OUT6->NORTH18"); cnt++; }
-
-    // OUT6 -> NORTH20 -> SOUTH20     -> S0G3 S0F3 S1G2 S1F2
-    if (outlineToLUTConnected(row,col,6,"NORTH",20,"S0G3")) {
-      nbours.add(new LEcoord(row+1,col,0,0,3));
-    }
-    if (outlineToLUTConnected(row,col,6,"NORTH",20,"S0F3")) {
-      nbours.add(new LEcoord(row+1,col,0,1,3));
-    }
-    if (outlineToLUTConnected(row,col,6,"NORTH",20,"S1G2")) {
-      nbours.add(new LEcoord(row+1,col,1,0,2));
-    }
-    if (outlineToLUTConnected(row,col,6,"NORTH",20,"S1F2")) {
-      nbours.add(new LEcoord(row+1,col,1,1,2));
-    }
-    if (VERBOSE && nbours.size()>cnt) { System.err.println("OUT6->NORTH20"); cnt++; }
-
-    // OUT6 -> SOUTH17 -> NORTH17     -> S0G2 S0F2 S1G3 S1F3
-    if (outlineToLUTConnected(row,col,6,"SOUTH",17,"S0G2")) {
-      nbours.add(new LEcoord(row-1,col,0,0,2));
-    }
-    if (outlineToLUTConnected(row,col,6,"SOUTH",17,"S0F2")) {
-      nbours.add(new LEcoord(row-1,col,0,1,2));
-    }
-    if (outlineToLUTConnected(row,col,6,"SOUTH",17,"S1G3")) {
-      nbours.add(new LEcoord(row-1,col,1,0,3));
-    }
-    if (outlineToLUTConnected(row,col,6,"SOUTH",17,"S1F3")) {
-      nbours.add(new LEcoord(row-1,col,1,1,3));
-    }
-    if (VERBOSE && nbours.size()>cnt) { System.err.println("OUT6->SOUTH17"); cnt++; }
-
-    // OUT6 -> SOUTH19 -> NORTH19     -> S0G1 S0F1 S1G4 S1F4
-    if (outlineToLUTConnected(row,col,6,"SOUTH",19,"S0G1")) {
-      nbours.add(new LEcoord(row-1,col,0,0,1));
-    }
-    if (outlineToLUTConnected(row,col,6,"SOUTH",19,"S0F1")) {
-      nbours.add(new LEcoord(row-1,col,0,1,1));
-    }
-    if (outlineToLUTConnected(row,col,6,"SOUTH",19,"S1G4")) {
-      nbours.add(new LEcoord(row-1,col,1,0,4));
-    }
-    if (outlineToLUTConnected(row,col,6,"SOUTH",19,"S1F4")) {
-      nbours.add(new LEcoord(row-1,col,1,1,4));
-    }
-    if (VERBOSE && nbours.size()>cnt) { System.err.println("OUT6->SOUTH19"); cnt++; }
-
-    // OUT6 -> WEST21 -> EAST21 -> S0G3 S0F3 S1G2 S1F2
-    if (outlineToLUTConnected(row,col,6,"WEST",21,"S0G3")) {
-      nbours.add(new LEcoord(row,col-1,0,0,3));
-    }
-    if (outlineToLUTConnected(row,col,6,"WEST",21,"S0F3")) {
-      nbours.add(new LEcoord(row,col-1,0,1,3));
-    }
-    if (outlineToLUTConnected(row,col,6,"WEST",21,"S1G2")) {
-      nbours.add(new LEcoord(row,col-1,1,0,2));
-    }
-    if (outlineToLUTConnected(row,col,6,"WEST",21,"S1F2")) {
-      nbours.add(new LEcoord(row,col-1,1,1,2));
-    }
-    if (VERBOSE && nbours.size()>cnt) { System.err.println("OUT6->WEST21"); cnt++; }
-
-    // OUT6 	-> OUT_EAST6     -> S0G4 S0F4 S1G1 S1F1
-    if (USEDIRECTOUT) {
-      if (outlineToLUTConnected(row,col,6,"OUT_EAST6","S0G4")) {
-        nbours.add(new LEcoord(row,col-1,0,0,4));
-      }
-      if (outlineToLUTConnected(row,col,6,"OUT_EAST6","S0F4")) {
-        nbours.add(new LEcoord(row,col-1,0,1,4));
-      }
-      if (outlineToLUTConnected(row,col,6,"OUT_EAST6","S1G1")) {
-        nbours.add(new LEcoord(row,col-1,1,0,1));
-      }
-      if (outlineToLUTConnected(row,col,6,"OUT_EAST6","S1F1")) {
-        nbours.add(new LEcoord(row,col-1,1,1,1));
-      }
-      if (VERBOSE && nbours.size()>cnt) { System.err.println("OUT6->OUT_EAST6"); cnt++; }
-    }
-
-  } else { // (outline==7)
-
-    // OUT7 -> EAST20 -> WEST20     -> S0G2 S0F2 S1G3 S1F3
-    if (outlineToLUTConnected(row,col,7,"EAST",20,"S0G2")) {
-      nbours.add(new LEcoord(row,col+1,0,0,2));
-    }
-    if (outlineToLUTConnected(row,col,7,"EAST",20,"S0F2")) {
-      nbours.add(new LEcoord(row,col+1,0,1,2));
-    }
-    if (outlineToLUTConnected(row,col,7,"EAST",20,"S1G3")) {
-      nbours.add(new LEcoord(row,col+1,1,0,3));
-    }
-    if (outlineToLUTConnected(row,col,7,"EAST",20,"S1F3")) {
-      nbours.add(new LEcoord(row,col+1,1,1,3));
-    }
-    if (VERBOSE && nbours.size()>cnt) { System.err.println("OUT7->EAST20"); cnt++; }
-
-    // OUT7 -> EAST23 -> WEST23     -> S0G3 S0F3 S1G2 S1F2
-    if (outlineToLUTConnected(row,col,7,"EAST",23,"S0G3")) {
-      nbours.add(new LEcoord(row,col+1,0,0,3));
-    }
-    if (outlineToLUTConnected(row,col,7,"EAST",23,"S0F3")) {
-      nbours.add(new LEcoord(row,col+1,0,1,3));
-    }
-    if (outlineToLUTConnected(row,col,7,"EAST",23,"S1G2")) {
-      nbours.add(new LEcoord(row,col+1,1,0,2));
-    }
-    if (outlineToLUTConnected(row,col,7,"EAST",23,"S1F2")) {
-      nbours.add(new LEcoord(row,col+1,1,1,2));
-    }
-    if (VERBOSE && nbours.size()>cnt) { System.err.println("OUT7->EAST23"); cnt++; }
-
-    // OUT7 -> NORTH21 -> SOUTH21     -> S0G1 S0F1 S1G4 S1F4
-    if (outlineToLUTConnected(row,col,7,"NORTH",21,"S0G1")) {
-      nbours.add(new LEcoord(row+1,col,0,0,1));
-    }
-    if (outlineToLUTConnected(row,col,7,"NORTH",21,"S0F1")) {
-      nbours.add(new LEcoord(row+1,col,0,1,1));
-    }
-    if (outlineToLUTConnected(row,col,7,"NORTH",21,"S1G4")) {
-      nbours.add(new LEcoord(row+1,col,1,0,4));
-    }
-    if (outlineToLUTConnected(row,col,7,"NORTH",21,"S1F4")) {
-      nbours.add(new LEcoord(row+1,col,1,1,4));
-    }
-    if (VERBOSE && nbours.size()>cnt) { System.err.println("OUT7->NORTH21"); cnt++; }
-
-    // OUT7 -> SOUTH22 -> NORTH22     -> S0G1 S0F1 S1G4 S1F4
-    if (outlineToLUTConnected(row,col,7,"SOUTH",22,"S0G1")) {
-      nbours.add(new LEcoord(row-1,col,0,0,1));
-    }
-    if (outlineToLUTConnected(row,col,7,"SOUTH",22,"S0F1")) {
-      nbours.add(new LEcoord(row-1,col,0,1,1));
-    }
-    if (outlineToLUTConnected(row,col,7,"SOUTH",22,"S1G4")) {
-      nbours.add(new LEcoord(row-1,col,1,0,4));
-    }
-    if (outlineToLUTConnected(row,col,7,"SOUTH",22,"S1F4")) {
-      nbours.add(new LEcoord(row-1,col,1,1,4));
-    }
-    if (VERBOSE && nbours.size()>cnt) { System.err.println("OUT7->SOUTH22"); cnt++; }
-
-    // OUT7 -> WEST22 -> EAST22     -> S0G4 S0F4 S1G1 S1F1
-    if (outlineToLUTConnected(row,col,7,"WEST",22,"S0G4")) {
-      nbours.add(new LEcoord(row,col-1,0,0,4));
-    }
-    if (outlineToLUTConnected(row,col,7,"WEST",22,"S0F4")) {
-      nbours.add(new LEcoord(row,col-1,0,1,4));
-    }
-    if (outlineToLUTConnected(row,col,7,"WEST",22,"S1G1")) {
-      nbours.add(new LEcoord(row,col-1,1,0,1));
-    }
-    if (outlineToLUTConnected(row,col,7,"WEST",22,"S1F1")) {
-      nbours.add(new LEcoord(row,col-1,1,1,1));
-    }
-    if (VERBOSE && nbours.size()>cnt) { System.err.println("OUT7->WEST22"); cnt++; }
-
-    // OUT7 -> WEST23 -> EAST23 -> S0G2 S0F2 S1G3 S1F3
-    if (outlineToLUTConnected(row,col,7,"WEST",23,"S0G2")) {
-      nbours.add(new LEcoord(row,col-1,0,0,2));
-    }
-    if (outlineToLUTConnected(row,col,7,"WEST",23,"S0F2")) {
-      nbours.add(new LEcoord(row,col-1,0,1,2));
-    }
-    if (outlineToLUTConnected(row,col,7,"WEST",23,"S1G3")) {
-      nbours.add(new LEcoord(row,col-1,1,0,3));
-    }
-    if (outlineToLUTConnected(row,col,7,"WEST",23,"S1F3")) {
-      nbours.add(new LEcoord(row,col-1,1,1,3));
-    }
-    if (VERBOSE && nbours.size()>cnt) { System.err.println("OUT7->WEST23"); cnt++; }
-
-    // OUT7 	-> OUT_EAST7     -> S0G3 S0F3 S1G2 S1F2
-    if (USEDIRECTOUT) {
-      if (outlineToLUTConnected(row,col,7,"OUT_EAST7","S0G3")) {
-        nbours.add(new LEcoord(row,col-1,0,0,3));
-      }
-      if (outlineToLUTConnected(row,col,7,"OUT_EAST7","S0F3")) {
-        nbours.add(new LEcoord(row,col-1,0,1,3));
-      }
-      if (outlineToLUTConnected(row,col,7,"OUT_EAST7","S1G2")) {
-        nbours.add(new LEcoord(row,col-1,1,0,2));
-      }
-      if (outlineToLUTConnected(row,col,7,"OUT_EAST7","S1F2")) {
-        nbours.add(new LEcoord(row,col-1,1,1,2));
-      }
-      if (VERBOSE && nbours.size()>cnt) { System.err.println("OUT7->OUT_EAST7"); cnt++; }
-    }
-
+    nbours[i]=OutBusRoutes.getTarget(loc.row,loc.col,routeTargets[i]);
   }
-
-//if(nbours.size()>0) { System.err.print("<nbours="+nbours+">"); }
-
-  // note use of empty array param to the ArrayList.toArray() method
-  // this ensures that (from API) "a new array is allocated with the
-  // runtime type of the specified array and the size of this list."
-  // otherwise a java.lang.ClassCastException is thrown
-
-  return (LEcoord[])nbours.toArray(new LEcoord[0]);
-}
-
-
-boolean outlineToLUTConnected(int row, int col, int busline, String singledir, int singlenum, String lutmux) 
-{
-  int roff=0;
-  int coff=0;
-  String lutsingle=null;
-  if (singledir.equals("EAST")) { coff=1; lutsingle="WEST"; }
-  if (singledir.equals("WEST")) { coff=-1; lutsingle="EAST"; }
-  if (singledir.equals("NORTH")) { roff=1; lutsingle="SOUTH"; }
-  if (singledir.equals("SOUTH")) { roff=-1; lutsingle="NORTH"; }
-
-  int[] val=jbitsres.getbits(row,col,"OutMuxToSingle.OUT"+busline+"_TO_SINGLE_"+singledir+singlenum);
-  int[] nbval=jbitsres.getbits(row+roff,col+coff,lutmux+"."+lutmux);
-  return (jbitsres.isEquivVal(row,col,val,"OutMuxToSingle.ON") &&
-	  jbitsres.isEquivVal(row+roff,col+coff,nbval,lutmux+".SINGLE_"+lutsingle+singlenum));
-
-}
-
-
-boolean outlineToLUTConnected(int row, int col, int busline, String directout, String lutmux) 
-{
-  // if OUT_WEST0 || OUT_WEST1: coff=1; if OUT_EAST6 || OUT_EAST7: coff=-1
-  int coff=(busline==0 || busline==1) ? 1 : -1;
-  int[] nbval=jbitsres.getbits(row,col+coff,lutmux+"."+lutmux);
-  return jbitsres.isEquivVal(row,col+coff,nbval,lutmux+"."+directout);
+  return nbours;
 }
 
 
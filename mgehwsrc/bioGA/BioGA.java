@@ -0,0 +1,695 @@
+//			 BioGA.java
+//
+// this class is a java version of genpopn.pl, and the updatepopn.pl,
+// tournament.pl and genetic operator scripts that it uses, being a stable
+// state GA, with tournament selection and replacement, and biologically
+// inspired operators - homologous crossover, mutation (transversions and
+// transitions), inversion, and base insertion/deletion. it implements the
+// same operators and selection scheme as genpopn.pl, and takes most of the
+// same arguments, with some of its own (-seed, -c and -fitclass). as it
+// uses java's random number generator, a run won't give the same results
+// as genpopn.pl would.
+//
+// the difference is that the population is kept in memory, packed 2 bits
+// per base (see PackedChrom), and the operators are applied in memory, a
+// word at a time where possible (see GAOperators), rather than the
+// population being rewritten to files, and scripts being run, for each
+// step of each reproduction event. the fitness evaluator is also called
+// directly (see FitnessEvaluator), either by running the fitness script
+// once for all of a generation's offspring (see ScriptFitness), rather
+// than once for each pair, or by using a java fitness evaluator class
+// (-fitclass), in which case no process needs to be started at all. the
+// common substrings for homologous crossover are found in memory too (see
+// SuffixAutomaton), rather than by lcsstr.
+//
+// at each generation, as in updatepopn.pl, popsize/2 tournaments of size 2
+// divide the population into winners and losers. reprate winning pairs
+// (or reprate/2 pairs with the '+' option) are chosen at random for
+// breeding, and each pair's offspring are produced by applying crossover
+// (with probability xrate), inversion (with probability irate), mutation
+// (with each base's probability mrate) and base insertion/deletion (with
+// each base's probability idrate). the offspring are then all evaluated,
+// and the fittest of each pair (or both with '+') join the population.
+// reprate tournaments of the losers then choose the reprate members that
+// are removed from the population.
+//
+// the population is checkpointed (as genpopn.pl does) every generation, or
+// every -c ngens generations, by a background thread (see PopnCheckpointer),
+// which also generates any population stats, so that evolution needn't
+// wait for these.
+//
+// 		written Oct 2026, agent
+//
+// this class also requires the local classes:
+// 			GAOperators, PackedChrom, SuffixAutomaton,
+// 			FitnessEvaluator, ScriptFitness, PopnCheckpointer
+
+
+// for String's etc
+import java.lang.*;
+// for collection classes (eg ArrayList)
+import java.util.*;
+// for IO
+import java.io.*;
+// for constructing java fitness evaluators
+import java.lang.reflect.*;
+// for formatting fitnesses for output (like printf)
+import java.text.DecimalFormat;
+
+
+class BioGA {
+
+	// modifiable parameters that are unlikely to be changed much from one
+	// run to the next, as in genpopn.pl
+	static final int MINCS=4;		// minimum length of homology for xover
+	static final double IMIN=4;		// minimum inversion length
+	static final double IMAX=0.25;		// max inversion 25% of chromosome
+	static final double DBIAS=0.5;		// 50% delete bias for base ins/del
+
+	static final String TMPPOPNFILE="TMPpop";
+	static final int FWIDTH=18;		// field width for printing
+
+	Random rnd;
+	SuffixAutomaton sa;			// reused for each homologous xover
+	FitnessEvaluator fiteval;
+	boolean standardGA;			// binary fixed length chromosomes
+	boolean verbose;
+
+	int reprate;
+	boolean keepboth;			// keep both offspring of each pair
+	double xrate;
+	double mrate;
+	double irate;
+	double idrate;
+
+	ArrayList popn;				// of GAMember
+
+	DecimalFormat fitfmt=new DecimalFormat("0.0000000000000000");
+
+
+
+BioGA(Random rnd, FitnessEvaluator fiteval, boolean standardGA, boolean verbose)
+{
+  this.rnd=rnd;
+  sa=new SuffixAutomaton();
+  this.fiteval=fiteval;
+  this.standardGA=standardGA;
+  this.verbose=verbose;
+  popn=new ArrayList();
+}
+
+
+void setRates(int reprate, boolean keepboth, double xrate, double mrate, double irate, double idrate)
+{
+  this.reprate=reprate;
+  this.keepboth=keepboth;
+  this.xrate=xrate;
+  this.mrate=mrate;
+  this.irate=irate;
+  this.idrate=idrate;
+}
+
+
+
+public static void main(String[] args)
+{
+  String usage="Usage: BioGA [-v] [[-s|-sg] ngens] [-f] [-ga] [-seed N] [-c ngens] [-fitclass]\n"
+  +"		(-g popsize (len | minlen maxlen) | popfile) outfile fitscript\n"
+  +"		[gen+]numgens [reprate[+] xrate mrate irate [idrate]]";
+
+  boolean verbose=false, fitout=false, standardGA=false, genestats=false;
+  boolean fitclass=false;
+  int genstats=-1;
+  int ckptgens=1;
+  long seed=System.currentTimeMillis();
+  String popfile=null;
+  int popsize=0, minlen=0, maxlen=0;
+  int startgen=0, numgens=0;
+  int reprate=0;
+  boolean keepboth=false;
+  double xrate=0, mrate=0, irate=0, idrate=0;
+  String outfile=null, fitscript=null;
+
+  int i=0, nargs=0;
+  try {
+    for (; i<args.length && args[i].charAt(0)=='-' && !args[i].equals("-g"); i++) {
+      if (args[i].equals("-v")) {
+        verbose=true;
+      } else if (args[i].equals("-s") || args[i].equals("-sg")) {
+        genestats=args[i].equals("-sg");
+        genstats=Integer.parseInt(args[++i]);
+      } else if (args[i].equals("-f")) {
+        fitout=true;
+      } else if (args[i].equals("-ga")) {
+        standardGA=true;
+      } else if (args[i].equals("-seed")) {
+        seed=Long.parseLong(args[++i]);
+      } else if (args[i].equals("-c")) {
+        ckptgens=Integer.parseInt(args[++i]);
+      } else if (args[i].equals("-fitclass")) {
+        fitclass=true;
+      } else {
+        System.err.println(usage);
+        System.exit(1);
+      }
+    }
+
+    if (args[i].equals("-g")) {
+      popsize=Integer.parseInt(args[++i]);
+      minlen=maxlen=Integer.parseInt(args[++i]);
+      if (!standardGA && isUnsigned(args[i+1])) {
+        maxlen=Integer.parseInt(args[++i]);
+      }
+    } else {
+      popfile=args[i];
+    }
+    i++;
+
+    nargs=args.length-i;
+    if (nargs!=3 && nargs!=7 && !(nargs==8 && !standardGA)) {
+      System.err.println(usage);
+      System.exit(1);
+    }
+
+    outfile=args[i++];
+    fitscript=args[i++];
+    String gens=args[i++];
+    int plus=gens.indexOf('+');
+    if (plus>-1) {
+      startgen=Integer.parseInt(gens.substring(0,plus));
+      numgens=Integer.parseInt(gens.substring(plus+1));
+    } else {
+      numgens=Integer.parseInt(gens);
+    }
+
+    if (nargs>3) {
+      String rep=args[i++];
+      if (rep.endsWith("+")) {
+        keepboth=true;
+        rep=rep.substring(0,rep.length()-1);
+      }
+      reprate=Integer.parseInt(rep);
+      xrate=Double.parseDouble(args[i++]);
+      mrate=Double.parseDouble(args[i++]);
+      irate=Double.parseDouble(args[i++]);
+      if (nargs==8) {
+        idrate=Double.parseDouble(args[i++]);
+      }
+    }
+  } catch (ArrayIndexOutOfBoundsException e) {
+    System.err.println(usage);
+    System.exit(1);
+  } catch (NumberFormatException e) {
+    System.err.println(usage);
+    System.exit(1);
+  }
+
+  if (numgens!=0 && (reprate<1 || (!standardGA && nargs!=8))) {
+    System.err.println(usage);
+    System.exit(1);
+  }
+  if (popfile==null) {
+    if (popsize<4) {
+      System.err.println("BioGA: invalid 'popsize' parameter ("+popsize+") - must be >= 4!");
+      System.exit(1);
+    }
+    if (minlen>maxlen) {
+      System.err.println("BioGA: 'minlen' ("+minlen+") can't be greater than 'maxlen' ("+maxlen+")!");
+      System.exit(1);
+    }
+  }
+  if (keepboth && reprate%2!=0) {
+    System.err.println("BioGA: the reprate parameter must be an even number if the '+' option is selected");
+    System.exit(1);
+  }
+  if (numgens>0 && (xrate>1 || mrate>1 || irate>1 || idrate>1)) {
+    System.err.println("BioGA: operator rate parameters must lie between 0 - 1!");
+    System.exit(1);
+  }
+  if (ckptgens<1) {
+    System.err.println("BioGA: checkpoint interval (-c) must be at least 1");
+    System.exit(1);
+  }
+  if (verbose && genstats<0) {
+    genstats=1;				// stats every generation, unless -s
+  }
+
+  FitnessEvaluator fiteval=(fitclass) ? newFitClass(fitscript) : new ScriptFitness(fitscript);
+  BioGA ga=new BioGA(new Random(seed),fiteval,standardGA,verbose);
+  ga.setRates(reprate,keepboth,xrate,mrate,irate,idrate);
+
+  // when stats are generated, they are also stored in a file with the same
+  // name as the outfile + "_stats.txt"
+  String statsfile=null;
+  if (genstats>0) {
+    int ri=outfile.lastIndexOf('.');
+    statsfile=((ri>-1) ? outfile.substring(0,ri) : outfile)+"_stats.txt";
+  }
+
+  PopnCheckpointer ckpt=null;
+  try {
+    if (verbose) { System.err.println("BioGA using fitness evaluator: "+fiteval+", and seed "+seed); }
+
+    if (popfile!=null) {
+      ga.loadPopn(popfile,startgen);
+    } else {
+      ga.generatePopn(popsize,minlen,maxlen,startgen);
+    }
+    if (verbose) { System.err.println("generated initial population and calculated fitness"); }
+
+    if (numgens>0 && ga.reprate>ga.popn.size()/4) {
+      System.err.println("BioGA: reprate ("+reprate+") argument too large for population of size "+ga.popn.size()+"!\nUnable to replace more than 1/4 the population at one time.");
+      System.exit(1);
+    }
+
+    ckpt=new PopnCheckpointer(TMPPOPNFILE+System.currentTimeMillis(),statsfile,verbose,standardGA,genestats);
+    ckpt.start();
+
+    if (genstats>0) {
+      new File(statsfile).delete();	// so that only stats from this run
+      if (verbose) { System.err.println("generated stats will also be stored in "+statsfile); }
+      ckpt.checkpoint(ga.snapshot(),startgen,true);
+    }
+
+    int gen=startgen;
+    while (gen<startgen+numgens) {
+      gen++;
+      if (verbose) { System.err.println("\nEntering generation "+gen+" at "+new Date()+".."); }
+      ga.update(gen);
+      boolean stats=(genstats>0 && gen%genstats==0);
+      if (stats || gen%ckptgens==0) {
+        ckpt.checkpoint(ga.snapshot(),gen,stats);
+      }
+    }
+    // in case didn't generate stats for this the last generation, do it now
+    if (genstats>0 && numgens>0 && gen%genstats!=0) {
+      ckpt.checkpoint(ga.snapshot(),gen,true);
+    }
+    ckpt.finish();
+
+    if (verbose) { System.err.println("\nevolution complete at "+new Date()+".. outputting resulting popn to "+outfile+".."); }
+    ga.savePopn(outfile,fitout);
+    ckpt.cleanup();
+    if (verbose) { System.err.println("done!!!"); }
+  } catch (IOException e) {
+    System.err.println("BioGA: "+e.getMessage());
+    // the checkpointer is a daemon thread, so wait for it to write any
+    // queued checkpoints, so that evolution can be continued from the last
+    if (ckpt!=null) {
+      try {
+        ckpt.finish();
+      } catch (IOException ce) {
+        if (ce!=e) { System.err.println("BioGA: "+ce.getMessage()); }
+      }
+    }
+    // and pass on the exit value of a fitness script that stopped evolution (eg 100 for EHWfitness.pl's EXITONSUCCESS)
+    int exitval=1;
+    if (fiteval instanceof ScriptFitness && ((ScriptFitness)fiteval).exitval!=0) {
+      exitval=((ScriptFitness)fiteval).exitval;
+    }
+    System.exit(exitval);
+  }
+
+  System.exit(0);
+}
+
+
+static boolean isUnsigned(String s)
+{
+  if (s.length()==0) { return false; }
+  for (int i=0; i<s.length(); i++) {
+    if (!Character.isDigit(s.charAt(i))) { return false; }
+  }
+  return true;
+}
+
+
+// creates the java fitness evaluator, given as the class name followed
+// by the arguments to pass to its constructor
+static FitnessEvaluator newFitClass(String fitclass)
+{
+  StringTokenizer st=new StringTokenizer(fitclass);
+  String classname=st.nextToken();
+  String[] fitargs=new String[st.countTokens()];
+  for (int i=0; i<fitargs.length; i++) { fitargs[i]=st.nextToken(); }
+
+  try {
+    Class c=Class.forName(classname);
+    Constructor cons=c.getDeclaredConstructor(new Class[] { String[].class });
+    return (FitnessEvaluator)cons.newInstance(new Object[] { fitargs });
+  } catch (InvocationTargetException e) {
+    System.err.println("BioGA: unable to create fitness evaluator "+classname+" - "+e.getTargetException());
+  } catch (Exception e) {
+    System.err.println("BioGA: unable to create fitness evaluator "+classname+" - "+e);
+  }
+  System.exit(1);
+  return null;
+}
+
+
+
+// read in a population of lines of [fitness '>'] chromosome, and evaluate
+// those without fitness, which are placed after those that have it
+void loadPopn(String popfile, int gen) throws IOException
+{
+  BufferedReader in=new BufferedReader(new FileReader(popfile));
+  ArrayList unevaluated=new ArrayList();
+  String line;
+  while ((line=in.readLine())!=null) {
+    int gt=line.indexOf('>');
+    if (gt<0) {
+      if (line.length()>0) { unevaluated.add(line); }
+    } else if (gt>0 && gt<line.length()-1) {
+      double fitness;
+      try {
+        fitness=Double.parseDouble(line.substring(0,gt).trim());
+      } catch (NumberFormatException e) {
+        throw new IOException("invalid fitness in population file "+popfile+": "+line);
+      }
+      popn.add(new GAMember(pack(line.substring(gt+1),popfile),fitness));
+    }
+    // ignore lines w/out genes
+  }
+  in.close();
+
+  PackedChrom[] chroms=new PackedChrom[unevaluated.size()];
+  for (int i=0; i<chroms.length; i++) {
+    chroms[i]=pack((String)unevaluated.get(i),popfile);
+  }
+  addEvaluated(chroms,gen);
+}
+
+
+static PackedChrom pack(String chrom, String popfile) throws IOException
+{
+  try {
+    return new PackedChrom(chrom);
+  } catch (IllegalArgumentException e) {
+    throw new IOException(e.getMessage()+", in population file "+popfile);
+  }
+}
+
+
+// generate a population of random chromosomes, as genchroms.pl does
+void generatePopn(int popsize, int minlen, int maxlen, int gen) throws IOException
+{
+  PackedChrom[] chroms=new PackedChrom[popsize];
+  int base=(standardGA) ? 2 : 4;
+  for (int i=0; i<popsize; i++) {
+    chroms[i]=GAOperators.randomChrom(minlen,maxlen,base,rnd);
+  }
+  addEvaluated(chroms,gen);
+}
+
+
+void addEvaluated(PackedChrom[] chroms, int gen) throws IOException
+{
+  double[] fitness=evaluate(chroms,gen);
+  for (int i=0; i<chroms.length; i++) {
+    popn.add(new GAMember(chroms[i],fitness[i]));
+  }
+}
+
+
+void savePopn(String outfile, boolean fitout) throws IOException
+{
+  PrintWriter out=new PrintWriter(new BufferedWriter(new FileWriter(outfile)));
+  for (int i=0; i<popn.size(); i++) {
+    GAMember m=(GAMember)popn.get(i);
+    out.println((fitout) ? m.toString() : m.chrom.toString());
+  }
+  out.close();
+  if (out.checkError()) {
+    throw new IOException("unable to write resulting population file "+outfile);
+  }
+}
+
+
+// the population as lines of fitness '>' chromosome, for checkpointing
+String[] snapshot()
+{
+  String[] lines=new String[popn.size()];
+  for (int i=0; i<lines.length; i++) {
+    lines[i]=popn.get(i).toString();
+  }
+  return lines;
+}
+
+
+
+// the fitness evaluator is given the chromosomes as strings of bases
+double[] evaluate(PackedChrom[] chroms, int gen) throws IOException
+{
+  String[] strs=new String[chroms.length];
+  for (int i=0; i<chroms.length; i++) {
+    strs[i]=chroms[i].toString();
+  }
+  return fiteval.evaluate(strs,gen);
+}
+
+
+
+// one update of the population, as updatepopn.pl does
+void update(int gen) throws IOException
+{
+  // divide the population into winners (for breeding) and losers (for
+  // replacing), with popsize/2 tournaments of size 2
+  ArrayList winners=new ArrayList();
+  ArrayList losers=new ArrayList();
+  ArrayList others=new ArrayList();
+  ArrayList rest=new ArrayList();
+  tournament(popn,popn.size()/2,2,winners,losers,others,rest);
+
+  // choose the breeders from the winners, and mate each pair
+  int nbreeders=(keepboth) ? reprate : reprate*2;
+  int[] breedidx=randIdxs(nbreeders,winners.size());
+  GAMember[] parents=new GAMember[nbreeders];
+  PackedChrom[] children=new PackedChrom[nbreeders];
+  StringBuffer[] opinfo=(verbose) ? new StringBuffer[nbreeders] : null;
+  for (int i=0; i<nbreeders; i+=2) {
+    parents[i]=(GAMember)winners.get(breedidx[i]);
+    parents[i+1]=(GAMember)winners.get(breedidx[i+1]);
+    StringBuffer[] info=null;
+    if (verbose) {
+      info=new StringBuffer[] { opinfo[i]=new StringBuffer(), opinfo[i+1]=new StringBuffer() };
+    }
+    PackedChrom[] c=mate(parents[i].chrom,parents[i+1].chrom,info);
+    children[i]=c[0];
+    children[i+1]=c[1];
+  }
+
+  // evaluate all the offspring together, and keep the fittest of each pair
+  // (or randomly if equal), or both
+  double[] cfit=evaluate(children,gen);
+  ArrayList bred=new ArrayList();
+  StringBuffer bredinfo=(verbose) ? new StringBuffer() : null;
+  for (int i=0; i<nbreeders; i+=2) {
+    int choice;
+    if (cfit[i]!=cfit[i+1]) {
+      choice=(cfit[i]>cfit[i+1]) ? 0 : 1;
+    } else {
+      choice=rnd.nextInt(2);
+    }
+    for (int c=0; c<2; c++) {
+      if (choice==c || keepboth) {
+        bred.add(new GAMember(children[i+c],cfit[i+c]));
+        if (verbose) { bredinfo.append(opinfo[i+c]); }
+      }
+    }
+  }
+
+  // merge non-losers from breeding tournament with new offspring, and
+  // remove reprate losers, chosen by reprate tournaments of the losers
+  ArrayList newpopn=new ArrayList(bred);
+  newpopn.addAll(winners);
+  newpopn.addAll(rest);
+  newpopn.addAll(others);
+
+  ArrayList lwinners=new ArrayList();
+  ArrayList llosers=new ArrayList();
+  ArrayList lothers=new ArrayList();
+  ArrayList lrest=new ArrayList();
+  tournament(losers,reprate,losers.size()/reprate,lwinners,llosers,lothers,lrest);
+  newpopn.addAll(lwinners);
+  newpopn.addAll(lrest);
+  newpopn.addAll(lothers);
+
+  if (verbose) {
+    printUpdateInfo(parents,bredinfo,bred,llosers);
+  }
+
+  popn=newpopn;
+}
+
+
+// produce 2 offspring from the parents, applying crossover, inversion,
+// mutation, and base insertion/deletion, according to their probabilities.
+// as in updatepopn.pl, crossover and inversion are applied to both
+// offspring or neither
+PackedChrom[] mate(PackedChrom p1, PackedChrom p2, StringBuffer[] info)
+{
+  PackedChrom[] c={ p1, p2 };
+
+  if (rnd.nextDouble()<xrate) {
+    PackedChrom[] xc;
+    if (standardGA) {
+      xc=GAOperators.onePointXover(c[0],c[1],rnd,info);
+    } else {
+      xc=GAOperators.homXover(c[0],c[1],MINCS,sa,rnd,info);
+    }
+    if (xc!=null) { c=xc; }		// otherwise no common substring
+  }
+
+  if (rnd.nextDouble()<irate) {
+    for (int i=0; i<2; i++) {
+      c[i]=GAOperators.invert(c[i],IMIN,IMAX,rnd,(info!=null) ? info[i] : null);
+    }
+  }
+
+  for (int i=0; i<2; i++) {
+    if (standardGA) {
+      c[i]=GAOperators.mutateBase2(c[i],mrate,rnd,(info!=null) ? info[i] : null);
+    } else {
+      c[i]=GAOperators.mutateBase4(c[i],mrate,rnd,(info!=null) ? info[i] : null);
+      c[i]=GAOperators.insDel(c[i],idrate,DBIAS,rnd,(info!=null) ? info[i] : null);
+    }
+  }
+
+  return c;
+}
+
+
+
+// conduct numt tournaments of size tsize, between randomly chosen members,
+// dividing the members into winners, losers, others (that competed without
+// winning or losing), and the rest (that didn't compete), each kept in the
+// same order as the members, as tournament.pl does
+void tournament(List members, int numt, int tsize, List winners, List losers, List others, List rest)
+{
+  int size=members.size();
+  if (numt*tsize>size || tsize<2) {
+    throw new IllegalArgumentException("population too small for numt="+numt+", tsize="+tsize);
+  }
+
+  int[] idx=randIdxs(numt*tsize,size);
+  char[] scored=new char[size];		// 0 for those that didn't compete
+  int[] best=new int[tsize];
+  int[] worst=new int[tsize];
+
+  for (int t=0; t<numt; t++) {
+    int nbest=0, nworst=0;
+    double maxfit=0, minfit=0;
+    for (int j=t*tsize; j<(t+1)*tsize; j++) {
+      double fit=((GAMember)members.get(idx[j])).fitness;
+      if (nbest==0 || fit>maxfit) { maxfit=fit; nbest=0; }
+      if (fit==maxfit) { best[nbest++]=idx[j]; }
+      if (nworst==0 || fit<minfit) { minfit=fit; nworst=0; }
+      if (fit==minfit) { worst[nworst++]=idx[j]; }
+    }
+
+    int bi, wi;
+    do {				// winner & loser can't be same
+      bi=best[rnd.nextInt(nbest)];
+      wi=worst[rnd.nextInt(nworst)];
+    } while (bi==wi);
+
+    for (int j=t*tsize; j<(t+1)*tsize; j++) {
+      scored[idx[j]]=(idx[j]==bi) ? '+' : ((idx[j]==wi) ? '-' : '.');
+    }
+  }
+
+  for (int i=0; i<size; i++) {
+    Object m=members.get(i);
+    switch (scored[i]) {
+      case '+': winners.add(m); break;
+      case '-': losers.add(m); break;
+      case '.': others.add(m); break;
+      default: rest.add(m); break;
+    }
+  }
+}
+
+
+// num randomly chosen distinct indexes from 0..size-1
+int[] randIdxs(int num, int size)
+{
+  int[] idxs=new int[size];
+  for (int i=0; i<size; i++) { idxs[i]=i; }
+  for (int i=0; i<num && i<size; i++) {
+    int r=i+rnd.nextInt(size-i);
+    int tmp=idxs[i];
+    idxs[i]=idxs[r];
+    idxs[r]=tmp;
+  }
+  int[] chosen=new int[Math.min(num,size)];
+  System.arraycopy(idxs,0,chosen,0,chosen.length);
+  return chosen;
+}
+
+
+
+// output to stderr, in the same form as updatepopn.pl -a:
+//   - the fitnesses (and lengths) of pairs of parent chromosomes
+//   - operator info, for all offspring kept
+//   - the fitnesses (and lengths) of the offspring kept
+//   - the fitnesses (and lengths) of those removed from population
+void printUpdateInfo(GAMember[] parents, StringBuffer opinfo, List bred, List removed)
+{
+  String lengths=(standardGA) ? "" : " - lengths";
+  StringBuffer sb=new StringBuffer();
+
+  sb.append("\nmated chromosome pairs with fitness"+lengths+":\n");
+  for (int i=0; i<parents.length; i+=2) {
+    sb.append(fitfmt.format(parents[i].fitness)).append("  ");
+    if (!standardGA) { sb.append(pad(parents[i].chrom.length(),32-FWIDTH)); }
+    sb.append('\t');
+    sb.append(fitfmt.format(parents[i+1].fitness)).append("  ");
+    if (!standardGA) { sb.append(pad(parents[i+1].chrom.length(),32-FWIDTH)); }
+    sb.append('\n');
+  }
+
+  sb.append("\nperformed operations:\n");
+  sb.append(opinfo);
+
+  sb.append("\nbred chromosomes with fitness"+lengths+":\n");
+  appendFitLens(sb,bred);
+  sb.append("\nremoved chromosomes with fitness"+lengths+":\n");
+  appendFitLens(sb,removed);
+
+  System.err.print(sb);
+}
+
+
+void appendFitLens(StringBuffer sb, List members)
+{
+  for (int i=0; i<members.size(); i++) {
+    GAMember m=(GAMember)members.get(i);
+    sb.append(fitfmt.format(m.fitness)).append('\t');
+    if (!standardGA) { sb.append(pad(m.chrom.length(),FWIDTH)); }
+    sb.append('\n');
+  }
+}
+
+
+// right justify n in a field of the given width
+static String pad(int n, int width)
+{
+  StringBuffer sb=new StringBuffer(Integer.toString(n));
+  while (sb.length()<width) { sb.insert(0,' '); }
+  return sb.toString();
+}
+
+
+}
+
+
+
+class GAMember {
+  PackedChrom chrom;
+  double fitness;
+
+  GAMember(PackedChrom c, double f) { chrom=c; fitness=f; }
+
+  // as a line of fitness '>' chromosome
+  public String toString() { return GAOperators.num(fitness)+">"+chrom; }
+}
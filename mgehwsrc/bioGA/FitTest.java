@@ -0,0 +1,57 @@
+//			 FitTest.java
+//
+// this is a java version of the fitest.pl fitness evaluator, for testing
+// purposes, which can be used with BioGA's -fitclass switch. as with
+// fitest.pl, it calculates the fitness of base 4 chromosomes based on the
+// number of promoter sequences (0202) found, and the length of the
+// chromosome (up to 100 bases), and so gives the same fitnesses.
+//
+// it can also serve as a template for writing a proper java fitness
+// evaluator, which can then be called by BioGA without needing to start a
+// process to evaluate each generation's offspring.
+//
+// 		written Oct 2026, agent
+//
+// this class also requires the local classes:
+// 			FitnessEvaluator
+
+
+class FitTest implements FitnessEvaluator {
+
+	static final String PROMOTER="0202";
+
+
+// as used by BioGA -fitclass, there are no arguments
+FitTest(String[] args)
+{
+  if (args.length>0) {
+    throw new IllegalArgumentException("FitTest takes no arguments");
+  }
+}
+
+
+
+public double[] evaluate(String[] chroms, int gen)
+{
+  double[] fitness=new double[chroms.length];
+  for (int i=0; i<chroms.length; i++) {
+    fitness[i]=calcFitness(chroms[i]);
+  }
+  return fitness;
+}
+
+
+static double calcFitness(String chrom)
+{
+  int promcnt=0;
+  int i=0;
+  while ((i=chrom.indexOf(PROMOTER,i))>-1) {	// non-overlapping, as in perl
+    promcnt++;
+    i+=PROMOTER.length();
+  }
+  int chromlen=Math.min(chrom.length(),100);
+  return promcnt * (1-Math.exp(-0.005*((100-chromlen)*(100-chromlen))));
+}
+
+
+}
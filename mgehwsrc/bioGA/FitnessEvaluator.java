@@ -0,0 +1,29 @@
+//			 FitnessEvaluator.java
+//
+// this interface is implemented by the fitness evaluators that BioGA can
+// call directly, to evaluate the fitness of a batch of chromosomes. this
+// is either a fitness script (see ScriptFitness), which is run once for
+// each batch, or a java class that does the evaluation itself (such as
+// FitTest), and so doesn't need a process to be started at all.
+//
+// BioGA gives all of the offspring bred in a generation as a single batch,
+// so an evaluator can evaluate them concurrently if it is able to.
+//
+// a java fitness class, for use with BioGA's -fitclass switch, needs a
+// constructor that takes a String[], which is given the arguments that
+// were supplied along with the class name.
+//
+// 		written Oct 2026, agent
+
+
+// for IO
+import java.io.*;
+
+
+interface FitnessEvaluator {
+
+// returns the fitness of each of the chromosomes, in the same order, with
+// gen being the current generation (for evaluators that use it)
+public double[] evaluate(String[] chroms, int gen) throws IOException;
+
+}
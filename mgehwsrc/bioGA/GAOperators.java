@@ -0,0 +1,254 @@
+//			 GAOperators.java
+//
+// this class provides the genetic operators used by BioGA, working on
+// chromosomes held in memory (packed 2 bits per base, see PackedChrom),
+// rather than piping them through a script for each operation. each does
+// the same as the script of the same purpose:
+//
+//	homXover	homxover.pl	homologous crossover
+//	onePointXover	oneptxover.pl	one point crossover (standard GA)
+//	mutateBase4	mutbase4.pl	transversion & transition mutation
+//	mutateBase2	mutbase2.pl	bit flip mutation (standard GA)
+//	invert		inverop.pl	inversion of a random sub-sequence
+//	insDel		insdelbase4.pl	base insertion and deletion
+//
+// the random numbers are taken from the given Random, so that a run can be
+// repeated by using the same seed. the common substrings for homologous
+// crossover are found with a suffix automaton (see SuffixAutomaton), rather
+// than by running lcsstr, so no process is started for any operator.
+//
+// mutation and base insertion/deletion have a probability for each base,
+// but rather than drawing a random number for every base, as the scripts
+// do, the number of bases until the next one that is changed is drawn
+// (from the geometric distribution that this gives), so only the bases
+// that are changed cost anything, and the rest are copied or left a word
+// at a time.
+//
+// if an operator is given a StringBuffer for info, then it appends a line
+// of information about the operation to it, in the same form as that given
+// by updatepopn.pl's -a switch (see BioGA).
+//
+// 		written Oct 2026, agent
+//
+// this class also requires the local classes:
+// 			PackedChrom, SuffixAutomaton
+
+
+// for String's etc
+import java.lang.*;
+// for collection classes (eg Random)
+import java.util.*;
+
+
+class GAOperators {
+
+	// more bases than any chromosome can have, for skip()
+	static final long NOCHANGE=Integer.MAX_VALUE;
+
+
+
+// crossover the parents on a randomly chosen common substring of at least
+// mincs bases, exchanging the ends of the parents that follow the start of
+// the common substring, to give the 2 children. returns null if there is
+// no sufficiently long common substring (and so the crossover failed).
+// the common substring is chosen as lcsstr does, using sa, which can be
+// reused for each crossover
+static PackedChrom[] homXover(PackedChrom p1, PackedChrom p2, int mincs, SuffixAutomaton sa, Random rnd, StringBuffer[] info)
+{
+  PackedChrom[] children=null;
+  int c1len=0, c2len=0;
+
+  if (sa.commonSubstr(p1,p2,mincs,rnd)) {
+    children=new PackedChrom[2];
+    children[0]=p1.splice(sa.pos1,p2,sa.pos2);
+    children[1]=p2.splice(sa.pos2,p1,sa.pos1);
+    c1len=children[0].length();
+    c2len=children[1].length();
+  }
+
+  if (info!=null) {
+    String common="hxovr\t"+p1.length()+"\t"+p2.length()+"\t"+mincs+"\t"+sa.lcslen+"\t"+sa.cslen+"\t";
+    info[0].append(common).append(c1len).append('\n');
+    info[1].append(common).append(c2len).append('\n');
+  }
+
+  return children;
+}
+
+
+
+// exchange the ends of the parents at a randomly chosen point (within the
+// length of the shorter one)
+static PackedChrom[] onePointXover(PackedChrom p1, PackedChrom p2, Random rnd, StringBuffer[] info)
+{
+  int len=Math.min(p1.length(),p2.length());
+  int xoverpt=(len>0) ? rnd.nextInt(len) : 0;
+  PackedChrom[] children=new PackedChrom[2];
+  children[0]=p1.splice(xoverpt,p2,xoverpt);
+  children[1]=p2.splice(xoverpt,p1,xoverpt);
+
+  if (info!=null) {
+    String common="1xovr\t"+p1.length()+"\t"+p2.length()+"\t"+xoverpt+"\t";
+    info[0].append(common).append(children[0].length()).append('\n');
+    info[1].append(common).append(children[1].length()).append('\n');
+  }
+
+  return children;
+}
+
+
+
+// mutate each base with probability rate, mutations being either
+// transversions 0<->2, 1<->3 or transitions 0<->1, 2<->3 (in DNA: T<->A,
+// C<->G, or T<->C, A<->G), by flipping the high or low bit of the base
+static PackedChrom mutateBase4(PackedChrom chrom, double rate, Random rnd, StringBuffer info)
+{
+  return mutate(chrom,rate,false,rnd,info);
+}
+
+
+// flip each bit (held as the low bit of a base) with probability rate
+static PackedChrom mutateBase2(PackedChrom chrom, double rate, Random rnd, StringBuffer info)
+{
+  return mutate(chrom,rate,true,rnd,info);
+}
+
+
+// the mutations in each word are collected into a mask of the bits to
+// flip, which is then xored with the word
+static PackedChrom mutate(PackedChrom chrom, double rate, boolean lowbitonly, Random rnd, StringBuffer info)
+{
+  PackedChrom c=new PackedChrom(chrom);
+  int len=chrom.length();
+  int mutcnt=0;
+  int w=-1;
+  long mask=0;
+
+  for (long i=skip(rate,rnd); i<len; i+=1+skip(rate,rnd)) {
+    int iw=(int)(i>>>PackedChrom.LOG2BASESPERWORD);
+    if (iw!=w) {
+      if (mask!=0) { c.xorWord(w,mask); }
+      w=iw;
+      mask=0;
+    }
+    int bit=(lowbitonly) ? 0 : rnd.nextInt(2);
+    mask|=(1L<<bit)<<((i&(PackedChrom.BASESPERWORD-1))<<1);
+    mutcnt++;
+  }
+  if (mask!=0) { c.xorWord(w,mask); }
+
+  if (info!=null) {
+    info.append("mutat\t"+len+"\t"+num(rate)+"\t"+mutcnt+"\n");
+  }
+  return c;
+}
+
+
+// the number of bases to skip before the next that is changed, when each
+// base is changed with probability rate (limited, so adding it to a base
+// index can't overflow)
+static long skip(double rate, Random rnd)
+{
+  if (rate>=1) { return 0; }
+  if (rate<=0) { return NOCHANGE; }
+  double n=Math.floor(Math.log(1-rnd.nextDouble())/Math.log(1-rate));
+  return (n<NOCHANGE) ? (long)n : NOCHANGE;
+}
+
+
+
+// reverse a randomly chosen sub-sequence of the chromosome, of a random
+// length between imin and imax. as with inverop.pl, each of these is either
+// a number of bases, or if less than 1, a fraction of the chromosome's
+// length
+static PackedChrom invert(PackedChrom chrom, double imin, double imax, Random rnd, StringBuffer info)
+{
+  int slen=chrom.length();
+  int min=invLen(imin,slen);
+  int max=invLen(imax,slen);
+
+  if (max>slen) { max=slen; }
+  if (min<1) { min=1; }
+  if (max<min) { max=min; }
+  int len=rnd.nextInt(max-min+1)+min;
+  if (len>slen) { len=slen; }		// can't invert more than there is
+  int i1=rnd.nextInt(slen-len+1);
+
+  if (info!=null) {
+    info.append("inver\t"+slen+"\t"+num(imin)+"\t"+num(imax)+"\t"+len+"\n");
+  }
+  return chrom.reverse(i1,i1+len);
+}
+
+
+static int invLen(double spec, int chromlen)
+{
+  if (spec<1) {
+    int len=(int)(chromlen*spec);
+    return (len>0) ? len : 1;
+  }
+  return (int)spec;
+}
+
+
+
+// insert or delete a base at each base with probability rate, with dbias
+// being the probability that it is a deletion. as in insdelbase4.pl, a
+// base can be inserted after the last base, but not deleted from there,
+// and the base following an insertion doesn't get a chance of its own.
+// the bases between insertions and deletions are copied a word at a time
+static PackedChrom insDel(PackedChrom chrom, double rate, double dbias, Random rnd, StringBuffer info)
+{
+  int len=chrom.length();
+  PackedChrom c=new PackedChrom(len+len/16+1);
+  int inscnt=0, delcnt=0;
+  int from=0;				// the next base to copy
+
+  for (long i=skip(rate,rnd); i<=len; i+=1+skip(rate,rnd)) {
+    c.append(chrom,from,(int)i);
+    if (rnd.nextDouble()<dbias && i<len) {
+      delcnt++;
+      from=(int)i+1;
+    } else {				// insert preceding base i
+      inscnt++;
+      c.append(rnd.nextInt(4));
+      from=(int)i;
+    }
+  }
+  c.append(chrom,from,len);
+
+  if (info!=null) {
+    info.append("insdl\t"+len+"\t"+num(rate)+"\t"+num(dbias)+"\t"+c.length()+"\t"+inscnt+"\t"+delcnt+"\n");
+  }
+  return c;
+}
+
+
+
+// a random chromosome, as genchroms.pl generates, with a random length
+// between minlen and maxlen, of bases 0..base-1 (base 2 or 4)
+static PackedChrom randomChrom(int minlen, int maxlen, int base, Random rnd)
+{
+  int len=rnd.nextInt(maxlen-minlen+1)+minlen;
+  PackedChrom c=new PackedChrom(len);
+  for (int i=0; i<len; i+=PackedChrom.BASESPERWORD) {
+    int cnt=Math.min(PackedChrom.BASESPERWORD,len-i);
+    long bits=rnd.nextLong();
+    if (base==2) { bits&=PackedChrom.LOWBITS; }
+    if (cnt<PackedChrom.BASESPERWORD) { bits&=(1L<<(cnt<<1))-1; }
+    c.appendWord(bits,cnt);
+  }
+  return c;
+}
+
+
+
+// numbers as perl prints them, without a trailing .0 on whole numbers
+static String num(double d)
+{
+  if (d==(long)d) { return Long.toString((long)d); }
+  return Double.toString(d);
+}
+
+
+}
@@ -0,0 +1,298 @@
+//			 PackedChrom.java
+//
+// this class holds a base 4 chromosome packed 2 bits per base into an array
+// of longs, 32 bases per long, rather than a character per base (as in a
+// String, which takes 8 times as much memory). base i is held in bits
+// 2*(i%32) and 2*(i%32)+1 of word i/32, with the bases given by the digits
+// [0-3] (equivalent to DNA [TCAG]), so that a transversion (0<->2, 1<->3)
+// flips the high bit of a base, and a transition (0<->1, 2<->3) flips the
+// low bit. binary chromosomes (digits [0-1]) are held the same way.
+//
+// the genetic operators (see GAOperators) work on these a word at a time:
+// mutation by xoring a word with a mask of the bits to flip, and the
+// operators that move bases (crossover, inversion and insertion/deletion)
+// by copying runs of bases, shifting a word at a time, into a new
+// chromosome. codons can also be extracted directly, as a number (of the
+// bases in base 4), for decoding.
+//
+// a chromosome is built by appending bases to it, after which it is only
+// read, so a parent can be shared by its offspring, with the operators
+// returning new chromosomes rather than modifying those they are given.
+//
+// 		written Oct 2026, agent
+
+
+// for String's etc
+import java.lang.*;
+
+
+class PackedChrom {
+
+	static final int BASESPERWORD=32;
+	static final int LOG2BASESPERWORD=5;
+
+	// masks of the low and high bits of every base in a word
+	static final long LOWBITS=0x5555555555555555L;
+	static final long HIGHBITS=0xAAAAAAAAAAAAAAAAL;
+
+	long[] words;
+	int length;			// number of bases
+
+
+
+// an empty chromosome, with room for capacity bases (it grows if needed)
+PackedChrom(int capacity)
+{
+  words=new long[Math.max(1,nwords(capacity))];
+  length=0;
+}
+
+
+// pack a chromosome given as a string of digits [0-3]
+PackedChrom(String chrom)
+{
+  this(chrom.length());
+  for (int i=0; i<chrom.length(); i++) {
+    int b=chrom.charAt(i)-'0';
+    if (b<0 || b>3) {
+      throw new IllegalArgumentException("invalid base ("+chrom.charAt(i)+") in chromosome at "+i);
+    }
+    words[i>>>LOG2BASESPERWORD]|=((long)b)<<((i&(BASESPERWORD-1))<<1);
+  }
+  length=chrom.length();
+}
+
+
+// a copy of the chromosome
+PackedChrom(PackedChrom c)
+{
+  words=new long[Math.max(1,nwords(c.length))];
+  System.arraycopy(c.words,0,words,0,nwords(c.length));
+  length=c.length;
+}
+
+
+static int nwords(int nbases)
+{
+  return (nbases+BASESPERWORD-1)>>>LOG2BASESPERWORD;
+}
+
+
+
+public int length() { return length; }
+
+
+public int base(int i)
+{
+  return (int)(words[i>>>LOG2BASESPERWORD]>>>((i&(BASESPERWORD-1))<<1))&3;
+}
+
+
+// the 32 bases starting at base i, with base i in the low bits, and any
+// bases past the end of the chromosome as 0
+long word(int i)
+{
+  int w=i>>>LOG2BASESPERWORD;
+  int shift=(i&(BASESPERWORD-1))<<1;
+  long bits=words[w]>>>shift;
+  if (shift>0 && w+1<words.length) {
+    bits|=words[w+1]<<(64-shift);
+  }
+  return bits;
+}
+
+
+// the codon (3 bases) starting at base i, as a number, with the first base
+// the most significant digit (base 4), so codon "203" is 2*16+0*4+3 = 35
+public int codon(int i)
+{
+  int b=(int)word(i);
+  return ((b&3)<<4)|(b&0xc)|((b>>>4)&3);
+}
+
+
+// the n (up to 32) bases starting at base i, as a number, with the first
+// base the most significant digit (base 4)
+public long bases(int i, int n)
+{
+  long w=word(i);
+  long val=0;
+  for (int j=0; j<n; j++) {
+    val=(val<<2)|(w&3);
+    w>>>=2;
+  }
+  return val;
+}
+
+
+
+// add a base to the end
+void append(int b)
+{
+  ensureCapacity(length+1);
+  words[length>>>LOG2BASESPERWORD]|=((long)b)<<((length&(BASESPERWORD-1))<<1);
+  length++;
+}
+
+
+// add bases from..to-1 of src to the end, a word at a time
+void append(PackedChrom src, int from, int to)
+{
+  int n=to-from;
+  if (n<=0) { return; }
+  ensureCapacity(length+n);
+  while (n>0) {
+    int cnt=Math.min(n,BASESPERWORD);
+    long bits=src.word(from);
+    if (cnt<BASESPERWORD) { bits&=(1L<<(cnt<<1))-1; }
+    appendWord(bits,cnt);
+    from+=cnt;
+    n-=cnt;
+  }
+}
+
+
+// add the cnt (up to 32) bases held in the low bits of bits to the end
+void appendWord(long bits, int cnt)
+{
+  int w=length>>>LOG2BASESPERWORD;
+  int shift=(length&(BASESPERWORD-1))<<1;
+  words[w]|=bits<<shift;
+  if (shift>0 && shift+(cnt<<1)>64) {
+    words[w+1]|=bits>>>(64-shift);
+  }
+  length+=cnt;
+}
+
+
+void ensureCapacity(int nbases)
+{
+  int nw=nwords(nbases);
+  if (nw>words.length) {
+    long[] newwords=new long[Math.max(nw,words.length*2)];
+    System.arraycopy(words,0,newwords,0,words.length);
+    words=newwords;
+  }
+}
+
+
+// flip the bits given by mask in word w, which is how mutations are made
+// (HIGHBITS bits for transversions, LOWBITS bits for transitions)
+void xorWord(int w, long mask)
+{
+  words[w]^=mask;
+}
+
+
+
+// a new chromosome of bases from..to-1
+public PackedChrom range(int from, int to)
+{
+  PackedChrom c=new PackedChrom(to-from);
+  c.append(this,from,to);
+  return c;
+}
+
+
+// a new chromosome of bases 0..i1-1 of this, followed by bases i2.. of c2,
+// as crossover produces
+public PackedChrom splice(int i1, PackedChrom c2, int i2)
+{
+  PackedChrom c=new PackedChrom(i1+c2.length-i2);
+  c.append(this,0,i1);
+  c.append(c2,i2,c2.length);
+  return c;
+}
+
+
+// a new chromosome with bases from..to-1 reversed, as inversion produces
+public PackedChrom reverse(int from, int to)
+{
+  PackedChrom c=new PackedChrom(length);
+  c.append(this,0,from);
+
+  // reverse the words of the range, and the bases within each word, which
+  // leaves the reversed range starting part way into the first word
+  int n=to-from;
+  int nw=nwords(n);
+  PackedChrom rev=new PackedChrom(nw*BASESPERWORD);
+  for (int w=nw-1; w>=0; w--) {
+    long bits=word(from+w*BASESPERWORD);
+    rev.appendWord(reverseBases(bits),BASESPERWORD);
+  }
+  int pad=nw*BASESPERWORD-n;
+  c.append(rev,pad,pad+n);
+
+  c.append(this,to,length);
+  return c;
+}
+
+
+// reverse the order of the 32 bases in a word
+static long reverseBases(long w)
+{
+  w=((w>>>2)&0x3333333333333333L)|((w&0x3333333333333333L)<<2);
+  w=((w>>>4)&0x0F0F0F0F0F0F0F0FL)|((w&0x0F0F0F0F0F0F0F0FL)<<4);
+  w=((w>>>8)&0x00FF00FF00FF00FFL)|((w&0x00FF00FF00FF00FFL)<<8);
+  w=((w>>>16)&0x0000FFFF0000FFFFL)|((w&0x0000FFFF0000FFFFL)<<16);
+  return (w>>>32)|(w<<32);
+}
+
+
+// a new chromosome with the bases of ins inserted before base pos
+public PackedChrom insert(int pos, PackedChrom ins)
+{
+  PackedChrom c=new PackedChrom(length+ins.length);
+  c.append(this,0,pos);
+  c.append(ins,0,ins.length);
+  c.append(this,pos,length);
+  return c;
+}
+
+
+// a new chromosome with the n bases from pos removed
+public PackedChrom delete(int pos, int n)
+{
+  PackedChrom c=new PackedChrom(length-n);
+  c.append(this,0,pos);
+  c.append(this,pos+n,length);
+  return c;
+}
+
+
+
+public String toString()
+{
+  char[] chars=new char[length];
+  for (int i=0; i<length; i++) {
+    chars[i]=(char)('0'+base(i));
+  }
+  return new String(chars);
+}
+
+
+public boolean equals(Object o)
+{
+  if (!(o instanceof PackedChrom)) { return false; }
+  PackedChrom c=(PackedChrom)o;
+  if (c.length!=length) { return false; }
+  int nw=nwords(length);
+  for (int w=0; w<nw; w++) {
+    if (words[w]!=c.words[w]) { return false; }
+  }
+  return true;
+}
+
+
+public int hashCode()
+{
+  long h=length;
+  int nw=nwords(length);
+  for (int w=0; w<nw; w++) {
+    h=h*31+words[w];
+  }
+  return (int)(h^(h>>>32));
+}
+
+
+}
@@ -0,0 +1,245 @@
+//			 PopnCheckpointer.java
+//
+// this class writes BioGA's population checkpoints, and generates its
+// population statistics, in a background thread, so that evolution can
+// continue while these are being done. BioGA gives it a snapshot of the
+// population (lines of fitness '>' chromosome) after a generation, and it
+// then writes these to the checkpoint population file, along with an info
+// file, as genpopn.pl does:
+//
+//	TMPpopID.gwf		the evaluated & updated population
+//	TMPpopID_info.txt	the last generation that was completed
+//
+// the population file is written to a temporary file first, and then
+// renamed, so that if the program is killed, there is always a complete
+// population to continue from. if snapshots arrive faster than they can
+// be written, only the most recent is written, unless statistics are also
+// needed for a snapshot, in which case the stats scripts (popfstats.pl,
+// poplstats.pl, pophstats.pl, and popgstats.pl) are run on the written
+// population file, and their output printed to stdout, and appended to
+// the stats file.
+//
+// if writing a checkpoint fails, the error is kept, and thrown by the next
+// call to checkpoint() or finish(), so the GA stops.
+//
+// 		written Oct 2026, agent
+//
+// this class also requires the local classes:
+// 			StreamCopier
+
+
+// for String's etc
+import java.lang.*;
+// for collection classes (eg LinkedList)
+import java.util.*;
+// for IO
+import java.io.*;
+
+
+class PopnCheckpointer extends Thread {
+
+	static final String GENPOPFSTATS="popfstats.pl";
+	static final String GENPOPLSTATS="poplstats.pl";
+	static final String GENPOPHSTATS="pophstats.pl";
+	static final String GENPOPGSTATS="popgstats.pl";
+
+	String popfile;			// the checkpoint population file
+	String infofile;
+	String statsfile;		// null for no stats file
+	boolean verbose;		// for verbose stats
+	boolean standardGA;		// only fitness stats with a standard GA
+	boolean genestats;		// also gene count stats
+
+	LinkedList jobs;		// of CheckpointJob, oldest first
+	boolean finished;
+	IOException err;
+
+
+
+PopnCheckpointer(String basename, String statsfile, boolean verbose, boolean standardGA, boolean genestats)
+{
+  popfile=basename+".gwf";
+  infofile=basename+"_info.txt";
+  this.statsfile=statsfile;
+  this.verbose=verbose;
+  this.standardGA=standardGA;
+  this.genestats=genestats;
+  jobs=new LinkedList();
+  finished=false;
+  err=null;
+  setDaemon(true);
+}
+
+
+
+// queue a snapshot of the population, after gen has been completed, and
+// if stats is true, generate its stats once written
+public synchronized void checkpoint(String[] popn, int gen, boolean stats) throws IOException
+{
+  if (err!=null) { throw err; }
+  jobs.addLast(new CheckpointJob(popn,gen,stats));
+  notifyAll();
+}
+
+
+// wait for all the queued snapshots to be written, and end the thread
+public void finish() throws IOException
+{
+  synchronized (this) {
+    finished=true;
+    notifyAll();
+  }
+  try {
+    join();
+  } catch (InterruptedException e) {
+    throw new IOException("interrupted waiting for checkpoint to be written");
+  }
+  if (err!=null) { throw err; }
+}
+
+
+// remove the checkpoint files, once the final population has been saved
+public void cleanup()
+{
+  new File(infofile).delete();
+  new File(popfile).delete();
+}
+
+
+
+public void run()
+{
+  CheckpointJob job;
+  while ((job=nextJob())!=null) {
+    try {
+      writePopn(job);
+      if (job.stats) { writeStats(job); }
+    } catch (IOException e) {
+      synchronized (this) {
+        err=e;
+        jobs.clear();
+      }
+      return;
+    }
+  }
+}
+
+
+// the next job to do, skipping those that have been superseded, or null
+// when finished
+synchronized CheckpointJob nextJob()
+{
+  while (jobs.size()==0 && !finished) {
+    try {
+      wait();
+    } catch (InterruptedException e) {
+      return null;
+    }
+  }
+  CheckpointJob job=null;
+  while (jobs.size()>0) {
+    job=(CheckpointJob)jobs.removeFirst();
+    if (job.stats) { break; }
+  }
+  return job;
+}
+
+
+
+void writePopn(CheckpointJob job) throws IOException
+{
+  File tmp=new File(popfile+".tmp");
+  PrintWriter out=new PrintWriter(new BufferedWriter(new FileWriter(tmp)));
+  for (int i=0; i<job.popn.length; i++) {
+    out.println(job.popn[i]);
+  }
+  out.close();
+  if (out.checkError()) {
+    throw new IOException("unable to write population checkpoint "+tmp);
+  }
+  File f=new File(popfile);
+  f.delete();
+  if (!tmp.renameTo(f)) {
+    throw new IOException("unable to rename "+tmp+" to "+popfile);
+  }
+
+  PrintWriter info=new PrintWriter(new FileWriter(infofile));
+  info.println("evolution checkpoint information:");
+  info.println("last successfully completed generation was "+job.gen);
+  info.println(popfile+" is the evaluated & updated population file");
+  info.println("evolution can safely be continued using this population file..");
+  info.close();
+}
+
+
+
+// run the stats scripts on the population file just written, as genpopn.pl
+// does with getPopStats()
+void writeStats(CheckpointJob job) throws IOException
+{
+  String now=new Date().toString();
+  StringBuffer stats=new StringBuffer();
+
+  stats.append(runStats(GENPOPFSTATS)).append('\n');
+  if (!standardGA) {
+    stats.append(runStats(GENPOPLSTATS)).append('\n');
+    stats.append(runStats(GENPOPHSTATS)).append('\n');
+  }
+  if (genestats) {
+    stats.append(runStats(GENPOPGSTATS)).append('\n');
+  }
+
+  System.out.print("\n\nGeneration "+job.gen+" statistics (generated at "+now+"):\n\n");
+  System.out.print(stats);
+  System.out.flush();
+
+  if (statsfile!=null) {
+    PrintWriter out=new PrintWriter(new FileWriter(statsfile,true));
+    out.print("\n\nGeneration "+job.gen+" (completed at "+now+"):\n");
+    out.print(stats);
+    out.close();
+  }
+}
+
+
+String runStats(String script) throws IOException
+{
+  String[] cmd=(verbose) ? new String[] { "perl", script, "-v", popfile }
+  			 : new String[] { "perl", script, popfile };
+  Process p=Runtime.getRuntime().exec(cmd);
+  StreamCopier errcopier=new StreamCopier(p.getErrorStream(),System.err);
+  errcopier.start();
+  p.getOutputStream().close();
+
+  StringBuffer sb=new StringBuffer();
+  BufferedReader in=new BufferedReader(new InputStreamReader(p.getInputStream()));
+  String line;
+  while ((line=in.readLine())!=null) {
+    sb.append(line).append('\n');
+  }
+  in.close();
+  try {
+    p.waitFor();
+    errcopier.join();
+  } catch (InterruptedException e) {
+    throw new IOException("interrupted waiting for "+script);
+  }
+
+  if (sb.length()==0) {
+    throw new IOException("unable to generate population stats using "+script);
+  }
+  return sb.toString();
+}
+
+
+}
+
+
+
+class CheckpointJob {
+  String[] popn;			// lines of fitness '>' chromosome
+  int gen;
+  boolean stats;
+
+  CheckpointJob(String[] p, int g, boolean s) { popn=p; gen=g; stats=s; }
+}
@@ -0,0 +1,152 @@
+//			 ScriptFitness.java
+//
+// this class evaluates the fitness of chromosomes using a fitness script
+// (eg fitest.pl, viablefitness.pl, EHWfitness.pl), in the same way as
+// updatepopn.pl does, by running:
+//
+//	perl fitscript -gen gen#
+//
+// with the chromosomes given on the script's stdin, one per line, and
+// reading back lines of:
+//
+//	fitness [ '>' chromosome ]
+//
+// in the same order. the whole batch is given to a single run of the
+// script, so that there is only one process started per generation, rather
+// than one for each pair of offspring. the chromosomes are written by a
+// separate thread, so that a script that writes its results as it goes
+// can't fill the pipe and deadlock, and the script's stderr is copied to
+// this program's stderr. if the script exits with a non-zero value (eg
+// EHWfitness.pl when it finds a solution, or stagnates), an IOException is
+// thrown, and the value is left in exitval.
+//
+// 		written Oct 2026, agent
+//
+// this class also requires the local classes:
+// 			FitnessEvaluator, StreamCopier
+
+
+// for String's etc
+import java.lang.*;
+// for collection classes (eg ArrayList)
+import java.util.*;
+// for IO
+import java.io.*;
+
+
+class ScriptFitness implements FitnessEvaluator {
+
+	static final String PERL="perl";
+
+	String[] script;		// script and its switches
+	int exitval;			// exit value of its last run
+
+
+// fitscript is the script, with any switches it needs, as would be given
+// to genpopn.pl (eg "fitest.pl -f")
+ScriptFitness(String fitscript)
+{
+  StringTokenizer st=new StringTokenizer(fitscript);
+  script=new String[st.countTokens()];
+  for (int i=0; i<script.length; i++) {
+    script[i]=st.nextToken();
+  }
+}
+
+
+
+public double[] evaluate(String[] chroms, int gen) throws IOException
+{
+  double[] fitness=new double[chroms.length];
+  if (chroms.length==0) { return fitness; }
+
+  String[] cmd=new String[script.length+3];
+  cmd[0]=PERL;
+  System.arraycopy(script,0,cmd,1,script.length);
+  cmd[cmd.length-2]="-gen";
+  cmd[cmd.length-1]=Integer.toString(gen);
+
+  exitval=0;
+  Process p=Runtime.getRuntime().exec(cmd);
+  StreamCopier errcopier=new StreamCopier(p.getErrorStream(),System.err);
+  ChromWriter writer=new ChromWriter(p.getOutputStream(),chroms);
+  errcopier.start();
+  writer.start();
+
+  BufferedReader in=new BufferedReader(new InputStreamReader(p.getInputStream()));
+  String line;
+  int n=0;
+  IOException err=null;
+  while ((line=in.readLine())!=null) {
+    if (line.length()==0) { continue; }
+    if (n>=chroms.length) {
+      err=new IOException("fitness script returned more than the "+chroms.length+" fitnesses expected");
+      break;
+    }
+    int gt=line.indexOf('>');
+    String fit=(gt>-1) ? line.substring(0,gt) : line;
+    try {
+      fitness[n++]=Double.parseDouble(fit.trim());
+    } catch (NumberFormatException e) {
+      err=new IOException("invalid fitness returned by fitness script: "+line);
+      break;
+    }
+  }
+  in.close();
+
+  try {
+    exitval=p.waitFor();
+    writer.join();
+    errcopier.join();
+  } catch (InterruptedException e) {
+    throw new IOException("interrupted waiting for fitness script");
+  }
+
+  if (err!=null) { throw err; }
+  if (writer.err!=null) { throw writer.err; }
+  if (exitval!=0) {
+    throw new IOException("fitness script exited with value "+exitval);
+  }
+  if (n<chroms.length) {
+    throw new IOException("fitness script returned "+n+" fitnesses for "+chroms.length+" chromosomes");
+  }
+
+  return fitness;
+}
+
+
+public String toString()
+{
+  StringBuffer sb=new StringBuffer(PERL);
+  for (int i=0; i<script.length; i++) { sb.append(' ').append(script[i]); }
+  return sb.toString();
+}
+
+
+}
+
+
+
+// writes the chromosomes to the fitness script's stdin
+class ChromWriter extends Thread {
+
+  OutputStream out;
+  String[] chroms;
+  IOException err;
+
+  ChromWriter(OutputStream o, String[] c) { out=o; chroms=c; }
+
+  public void run()
+  {
+    try {
+      Writer w=new BufferedWriter(new OutputStreamWriter(out));
+      for (int i=0; i<chroms.length; i++) {
+        w.write(chroms[i]);
+        w.write('\n');
+      }
+      w.close();
+    } catch (IOException e) {
+      err=e;
+    }
+  }
+}
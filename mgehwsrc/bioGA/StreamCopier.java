@@ -0,0 +1,36 @@
+//			 StreamCopier.java
+//
+// this class copies everything from a (process's) input stream to an output
+// stream, in its own thread, so that a process can't block on a full pipe
+// (eg its stderr) that nothing else is reading. it is used by ScriptFitness
+// and PopnCheckpointer to pass on the stderr of the scripts they run.
+//
+// 		written Oct 2026, agent
+
+
+// for IO
+import java.io.*;
+
+
+
+class StreamCopier extends Thread {
+
+  InputStream in;
+  OutputStream out;
+
+  StreamCopier(InputStream i, OutputStream o) { in=i; out=o; }
+
+  public void run()
+  {
+    byte[] buf=new byte[4096];
+    int n;
+    try {
+      while ((n=in.read(buf))>0) {
+        out.write(buf,0,n);
+      }
+      out.flush();
+    } catch (IOException e) {
+      // the process has gone, so nothing more to copy
+    }
+  }
+}
@@ -0,0 +1,328 @@
+//			 SuffixAutomaton.java
+//
+// this class finds common substrings of 2 chromosomes, for homologous
+// crossover, in place of lcsstr (which builds a suffix tree of the 2
+// chromosomes). it builds a suffix automaton of the reverse of
+// s1 + '$' + s2 + '#', in time linear in their length, and as the suffix
+// links of the automaton of a reversed string form the suffix tree of the
+// string, gets lcsstr's suffix tree from it, without needing any suffix
+// tree code.
+//
+// the common substrings that can be chosen, and how one is chosen, are the
+// same as in lcsstr -r (so the count and sum of their lengths are the same
+// as lcsstr -a gives). lcsstr only counts a branching node of its tree, of
+// at least mincs bases and occurring in both chromosomes, if of its
+// children (taken in reverse order of their creation by Ukkonen's
+// algorithm), the first leading to s1 is followed by one leading to s2, and
+// the last of those leading to s2 is only in s2. so the node's order of
+// creation in lcsstr's tree is worked out, from where each node's
+// substring first occurs: a branching node is made when its second
+// distinct continuation first occurs, and a leaf when its suffix's
+// longest prefix that also occurs earlier has been passed. lcsstr then
+// walks the tree (children before parents, children in the same order), at
+// each node that has children leading to s1 and only to s2 (which are a
+// few more than are counted), adding its length to a running total, and
+// chooses it with probability (running total / sum of counted lengths).
+// the chosen substring starts in each chromosome where the last child
+// leading to s1, and the last only to s2, first occur.
+//
+// the automaton's states are kept in arrays, which are only reallocated
+// when longer chromosomes are given than before, so one SuffixAutomaton can
+// be reused for every crossover, without creating any garbage. it isn't
+// thread safe, so each thread needs its own.
+//
+// 		written Oct 2026, agent
+//
+// this class also requires the local classes:
+// 			PackedChrom
+
+
+// for collection classes (eg Random)
+import java.util.*;
+
+
+class SuffixAutomaton {
+
+	static final int ALPHABET=6;		// bases 0-3, and:
+	static final int SEP=4;			// '$' between the chromosomes
+	static final int END=5;			// '#' at the end
+
+	// the states, with state 0 the initial (empty string) state. as a
+	// node of the suffix tree, a state's substring is the longest
+	int nstates;
+	int[] len;			// length of the longest substring
+	int[] link;			// suffix link (parent in suffix tree)
+	int[] next;			// transitions, ALPHABET per state, or -1
+	int[] suffix;			// the suffix of a leaf, or -1
+	int[] first;			// first occurrence (index of start)
+	int[] second;			// first occurrence of second child
+	int[] earlier;			// longest prefix also occurring earlier
+	int[] found;			// IN1 and/or IN2
+	int[] phase, start;		// when lcsstr would create the node
+	int[] child, sibling;		// child lists, newest first
+	int[] order, tmp, count, stack;	// for sorting and walking
+
+	static final int IN1=1;		// leads to a suffix in s1 (or '$')
+	static final int IN2=2;		// leads to a suffix in s2 (or '#')
+
+	int n1;				// length of s1
+
+	// results of the last commonSubstr()
+	int lcslen;			// longest common substring
+	int numcs, sumcs;		// count and sum of lengths of candidates
+	int pos1, pos2, cslen;		// the randomly chosen one
+
+
+
+SuffixAutomaton()
+{
+  this(0);
+}
+
+
+// with room for chromosomes totalling n bases, before growing
+SuffixAutomaton(int n)
+{
+  allocate(n);
+}
+
+
+void allocate(int n)
+{
+  int cap=2*(n+2);			// a suffix automaton has < 2n states
+  len=new int[cap];
+  link=new int[cap];
+  next=new int[cap*ALPHABET];
+  suffix=new int[cap];
+  first=new int[cap];
+  second=new int[cap];
+  earlier=new int[cap];
+  found=new int[cap];
+  phase=new int[cap];
+  start=new int[cap];
+  child=new int[cap];
+  sibling=new int[cap];
+  order=new int[cap];
+  tmp=new int[cap];
+  count=new int[cap];
+  stack=new int[cap];
+}
+
+
+
+// build the automaton of the reverse of s1 + '$' + s2 + '#', and from it
+// the suffix tree of s1 + '$' + s2 + '#'
+void build(PackedChrom s1, PackedChrom s2)
+{
+  n1=s1.length();
+  int n2=s2.length();
+  int n=n1+n2+2;
+  if (2*n>len.length) { allocate(n1+n2); }
+
+  nstates=0;
+  int last=newState(0,-1,-1);
+  for (int i=n-1; i>=0; i--) {		// i is where the suffix starts
+    int c;
+    if (i==n-1) { c=END; }
+    else if (i>n1) { c=s2.base(i-n1-1); }
+    else if (i==n1) { c=SEP; }
+    else { c=s1.base(i); }
+
+    int cur=newState(len[last]+1,-1,i);
+    int p=last;
+    while (p!=-1 && next[p*ALPHABET+c]==-1) {
+      next[p*ALPHABET+c]=cur;
+      p=link[p];
+    }
+    if (p==-1) {
+      link[cur]=0;
+    } else {
+      int q=next[p*ALPHABET+c];
+      if (len[p]+1==len[q]) {
+        link[cur]=q;
+      } else {				// split q, by cloning it
+        int clone=newState(len[p]+1,link[q],-1);
+        System.arraycopy(next,q*ALPHABET,next,clone*ALPHABET,ALPHABET);
+        while (p!=-1 && next[p*ALPHABET+c]==q) {
+          next[p*ALPHABET+c]=clone;
+          p=link[p];
+        }
+        link[q]=link[cur]=clone;
+      }
+    }
+    last=cur;
+  }
+
+  // with the unique '#', each suffix is a leaf. working up from the
+  // leaves, find where each node first occurs, and where its second child
+  // does, and which chromosomes it occurs in
+  sortBy(len,n+1,false);
+  for (int k=nstates-1; k>0; k--) {
+    int st=order[k];
+    if (suffix[st]>=0) {
+      first[st]=suffix[st];
+      found[st]=(suffix[st]<=n1) ? IN1 : IN2;
+    }
+    int p=link[st];
+    if (first[st]<first[p]) {
+      second[p]=first[p];
+      first[p]=first[st];
+    } else if (first[st]<second[p]) {
+      second[p]=first[st];
+    }
+    found[p]|=found[st];
+  }
+
+  // working down, find the longest prefix of each leaf's suffix that also
+  // occurs earlier, that being the deepest node above it that does
+  earlier[0]=0;
+  for (int k=1; k<nstates; k++) {
+    int st=order[k];
+    int p=link[st];
+    earlier[st]=(first[p]<first[st]) ? len[p] : earlier[p];
+  }
+
+  // the order lcsstr's tree creates nodes in: by phase (end of the
+  // substring being added), then start of it, then branches before leaves
+  for (int st=1; st<nstates; st++) {
+    if (suffix[st]>=0) {
+      phase[st]=suffix[st]+earlier[st];
+      start[st]=2*suffix[st]+1;
+    } else {
+      phase[st]=second[st]+len[st];
+      start[st]=2*second[st];
+    }
+  }
+  sortBy(start,2*n,false);
+  sortBy(phase,n+1,true);
+
+  // and each node's children, with the newest first
+  for (int st=0; st<nstates; st++) { child[st]=-1; }
+  for (int k=0; k<nstates; k++) {
+    int st=order[k];
+    if (st!=0) {
+      sibling[st]=child[link[st]];
+      child[link[st]]=st;
+    }
+  }
+}
+
+
+int newState(int l, int suffixlink, int suf)
+{
+  int st=nstates++;
+  len[st]=l;
+  link[st]=suffixlink;
+  for (int c=0; c<ALPHABET; c++) { next[st*ALPHABET+c]=-1; }
+  suffix[st]=suf;
+  first[st]=second[st]=Integer.MAX_VALUE;
+  found[st]=0;
+  phase[st]=start[st]=0;
+  return st;
+}
+
+
+// counting sort of the states into order, by key (0..max-1). if stable,
+// ties keep their current order, otherwise states start in number order
+void sortBy(int[] key, int max, boolean stable)
+{
+  if (!stable) {
+    for (int st=0; st<nstates; st++) { order[st]=st; }
+  }
+  for (int k=0; k<max; k++) { count[k]=0; }
+  for (int st=0; st<nstates; st++) { count[key[st]]++; }
+  for (int k=1; k<max; k++) { count[k]+=count[k-1]; }
+  for (int k=nstates-1; k>=0; k--) {
+    int st=order[k];
+    tmp[--count[key[st]]]=st;
+  }
+  System.arraycopy(tmp,0,order,0,nstates);
+}
+
+
+
+// find the longest common substring of s1 and s2, and randomly choose a
+// common substring of at least mincs bases, as lcsstr does. returns false
+// if there is no common substring that long. the results are left in
+// lcslen, numcs and sumcs, and pos1, pos2 (the start of the chosen common
+// substring in each chromosome) and cslen
+boolean commonSubstr(PackedChrom s1, PackedChrom s2, int mincs, Random rnd)
+{
+  build(s1,s2);
+  mincs=Math.max(mincs,1);
+
+  lcslen=numcs=sumcs=0;
+  pos1=pos2=-1;
+  cslen=0;
+  for (int st=1; st<nstates; st++) {
+    if (found[st]==(IN1|IN2) && len[st]>lcslen) { lcslen=len[st]; }
+  }
+  if (lcslen<mincs) { return false; }
+
+  for (int st=1; st<nstates; st++) {
+    if (counted(st,mincs)) {
+      numcs++;
+      sumcs+=len[st];
+    }
+  }
+  return choose(mincs,rnd);
+}
+
+
+// whether lcsstr counts a node as a common substring (in sum_cs_lens)
+boolean counted(int st, int mincs)
+{
+  if (found[st]!=(IN1|IN2) || len[st]<mincs) { return false; }
+  boolean in1=false, only2=false;
+  for (int c=child[st]; c!=-1; c=sibling[c]) {
+    if ((found[c]&IN1)!=0 && !in1) {
+      in1=true;
+    } else if ((found[c]&IN2)!=0) {
+      only2=((found[c]&IN1)==0);
+    }
+  }
+  return in1 && only2;
+}
+
+
+// walk the tree as lcsstr does (in choose_a_cs), choosing a node with
+// probability (running total of lengths / sum of counted lengths). like
+// lcsstr, once one is chosen no more nodes are visited, but those above it
+// are still tried as they are left, and can replace it
+boolean choose(int mincs, Random rnd)
+{
+  double cum=0;
+  int top=0;
+  stack[top++]=0;
+  tmp[0]=child[0];			// next child to visit of each node
+  while (top>0) {
+    int st=stack[top-1];
+    int c=tmp[st];
+    if (c!=-1 && cslen==0) {
+      tmp[st]=sibling[c];
+      tmp[c]=child[c];
+      stack[top++]=c;
+      continue;
+    }
+    top--;
+    if (st==0 || found[st]!=(IN1|IN2) || len[st]<mincs) { continue; }
+
+    int c1=-1, c2=-1;			// last child in s1, and only in s2
+    for (c=child[st]; c!=-1; c=sibling[c]) {
+      if ((found[c]&IN1)!=0) { c1=c; }
+      else if ((found[c]&IN2)!=0) { c2=c; }
+    }
+    if (c1==-1 || c2==-1) { continue; }
+
+    cum+=len[st];
+    if (cum/sumcs>rnd.nextDouble()) {
+      cslen=len[st];
+      pos1=first[c1];
+      pos2=first[c2]-n1-1;
+    }
+  }
+  return cslen>0;
+}
+
+
+}
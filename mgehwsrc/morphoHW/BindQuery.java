@@ -0,0 +1,287 @@
+//			 BindQuery.java
+//
+// this class stores a pre-parsed (compiled) bind site element, that being
+// a resource setting string in the form type=details, and the locus that
+// it is bound at, so that querying whether the resource binds to the site
+// can be done by CellResourcesMatrix without any string processing.
+//
+// instances are created by GeneInfo when the decoded chromosome is loaded.
+// the JBits bits and values are looked up (via JBitsLookup) for each of the
+// CLB, slice or logic element specific details at this time, while for TFs
+// the key used to look up the TFs with the bind site's dist+seq is pre-built.
+//
+// if the resource setting is in a format that can't be compiled, then type
+// is set to UNCOMPILED, and the original string-based query is to be used
+// instead, so that any errors are reported as they would have been before
+//
+// this class also requires local classes:
+// 	StringSplitter, JBitsLookup, JBitsResources, LUTIncrFN
+//
+// 		written Oct 2026, agent
+
+
+// for String's etc
+import java.lang.*;
+
+
+class BindQuery {
+
+	// the query types, that determine how the details are tested
+	static final int UNCOMPILED=-1;	// use the resource string instead
+	static final int JBITS=0;	// jbits, LUT, etc: bits,value
+	static final int LUTINCRFN=1;	// bits,setop,boolop,lines
+	static final int LUTACTIVEFN=2;	// bits,boolop,linesinv
+	static final int SLICERAM=3;	// S?RAM,bitsconst1,bitsconst2,..
+	static final int TF=4;		// TFtype,distfromsrc,bindseq
+	static final int CONNECT=5;	// jbits,rowoffset,coloffset,bits,value
+
+	public String resource;		// the original type=details string
+	public long locus;		// where the element is on the chromosome
+	public int type;
+
+	// for TFs, this is the key used to look up the free and bound TFs
+	public String tfDistNseq;	// distfromsrc "+" bindseq
+
+	// the number of (CLB 1, slice 2, or LE 4) specific details, and
+	// whether each has a corresponding resource
+	public int numdets;
+	public boolean[] hasres;
+
+	// the following are indexed by the CLB/slice/LE specific details index
+
+	public int[][][] bits;		// bits of the resource to query
+	public int[][] value;		// value (or S?RAM bitmap) to test for
+
+	public int[] rowoff;		// CLB offsets for connections
+	public int[] coloff;
+
+	public String[] setop;		// for LUTIncrFN and LUTActiveFN
+	public String[] boolop;
+	public String[] lines;		// lines, or linesinv for LUTActiveFN
+	public int[] setopidx;		// indexes of the above, for using
+	public int[] boolopidx;		// LUTIncrFN's precompiled tables
+	public int[] linesidx;		// (not used for LUTActiveFN)
+
+	public int[] slice;		// the LUT's LE, for LUTActiveFN
+	public int[] le;
+	public int[][][][] rambits;	// bits of each of the S?RAM resources
+	public int[][] onvalue;		// S?RAM.ON value
+
+
+
+// bind site elements are in the form type=details, bound at locus
+BindQuery(String res, long loc)
+{
+  resource=res;
+  locus=loc;
+  type=UNCOMPILED;
+
+  String[] fields=StringSplitter.split(res,"=");
+  if (fields.length>1) {
+    type=compile(fields[0],fields[1]);
+  }
+}
+
+
+
+// this parses the details according to the resource type, returning the
+// query type, or UNCOMPILED if it can't be parsed
+
+int compile(String restype, String details)
+{
+  if (restype.equals("TF")) {
+    return compileTF(details);
+  }
+
+  String alldets=details;
+  String[] typeNalldetails=null;
+  int qtype;
+  if (restype.equals("connect")) {
+    // connecting resource details are: type,rowoffset,coloffset,bits,value
+    typeNalldetails=StringSplitter.split(details,",",1);
+    if (typeNalldetails.length<2 || !typeNalldetails[0].equals("jbits")) {
+      return UNCOMPILED;
+    }
+    alldets=typeNalldetails[1];
+    qtype=CONNECT;
+  } else if (restype.equals("LUTIncrFN")) {
+    qtype=LUTINCRFN;
+  } else if (restype.equals("LUTActiveFN")) {
+    qtype=LUTACTIVEFN;
+  } else if (restype.equals("SliceRAM")) {
+    qtype=SLICERAM;
+  } else {
+    qtype=JBITS;
+  }
+
+  // details may be CLB-wide, slice-specific, or LE-specific
+  String[] sledets=StringSplitter.trimsplit(alldets,"/");
+  numdets=sledets.length;
+  if (numdets!=1 && numdets!=2 && numdets!=4) {
+    return UNCOMPILED;
+  }
+  // CLB-wide details aren't trimmed by CellResourcesMatrix.extractDetails()
+  if (numdets==1) { sledets[0]=alldets; }
+
+  hasres=new boolean[numdets];
+  bits=new int[numdets][][];
+  value=new int[numdets][];
+  if (qtype==CONNECT) {
+    rowoff=new int[numdets];
+    coloff=new int[numdets];
+  } else if (qtype==LUTINCRFN || qtype==LUTACTIVEFN) {
+    setop=new String[numdets];
+    boolop=new String[numdets];
+    lines=new String[numdets];
+    setopidx=new int[numdets];
+    boolopidx=new int[numdets];
+    linesidx=new int[numdets];
+    slice=new int[numdets];
+    le=new int[numdets];
+  } else if (qtype==SLICERAM) {
+    rambits=new int[numdets][][][];
+    onvalue=new int[numdets][];
+  }
+
+  String dets;
+  String[] f;
+  for (int i=0; i<numdets; i++) {
+    dets=sledets[i];
+    // there may be no corresponding resource for this slice or LE
+    if (dets.equals("") || dets.equals("-")) { continue; }
+
+    if (qtype==CONNECT) {
+      f=StringSplitter.trimsplit(dets,",",2);
+      // sometimes there is no connecting resource, eg: "0,0,"
+      if (f.length<3) { continue; }
+      rowoff[i]=StringSplitter.parseint(f[0]);
+      coloff[i]=StringSplitter.parseint(f[1]);
+      // non-connectable non-local resource-settings can't bind
+      if (rowoff[i]==0 && coloff[i]==0) { continue; }
+      dets=f[2];
+    }
+
+    if (qtype==LUTINCRFN) {
+      if (!compileLUTIncrFN(i,dets)) { return UNCOMPILED; }
+    } else if (qtype==LUTACTIVEFN) {
+      if (!compileLUTActiveFN(i,dets)) { return UNCOMPILED; }
+    } else if (qtype==SLICERAM) {
+      if (!compileSliceRAM(i,dets)) { return UNCOMPILED; }
+    } else {
+      if (!compileBitsValue(i,dets)) { return UNCOMPILED; }
+    }
+    hasres[i]=true;
+  }
+
+  return qtype;
+}
+
+
+// TF details is in form: TFtype,distfromsrc,bindseq
+int compileTF(String details)
+{
+  String[] tfdets=StringSplitter.trimsplit(details,",");
+  if (tfdets.length!=3) { return UNCOMPILED; }
+
+  tfDistNseq=new String(tfdets[1]+"+"+tfdets[2]);
+  return TF;
+}
+
+
+// dets is in the form bits,value
+// LUT values are a string of 16 binary digits, rather than a JBits constant
+boolean compileBitsValue(int i, String dets)
+{
+  String[] f=StringSplitter.trimsplit(dets,",",1);
+  if (f.length<2 || f[0].length()<3) { return false; }
+
+  bits[i]=JBitsLookup.getBits(f[0]);
+  if (f[0].substring(0,3).equals("LUT")) {
+    value[i]=LUTIncrFN.binStringToIntArray(f[1]);
+  } else {
+    value[i]=JBitsLookup.getValue(f[1]);
+  }
+  return true;
+}
+
+
+// dets is in the form LUT.SLICE#_F/G,setop,boolop,lines
+boolean compileLUTIncrFN(int i, String dets)
+{
+  String[] f=StringSplitter.trimsplit(dets,",");
+  if (f.length<4) { return false; }
+
+  bits[i]=JBitsLookup.getBits(f[0]);
+  setop[i]=f[1];
+  boolop[i]=f[2];
+  lines[i]=f[3];
+
+  // invalid expressions are left to LUTIncrFN to report
+  setopidx[i]=LUTIncrFN.setopIndex(setop[i]);
+  boolopidx[i]=LUTIncrFN.boolopIndex(boolop[i]);
+  linesidx[i]=LUTIncrFN.linesIndex(lines[i]);
+  return (setopidx[i]>=0 && boolopidx[i]>=0 && linesidx[i]>=0);
+}
+
+
+// dets is in the form LUT.SLICE#_F/G,boolop,linesinv
+boolean compileLUTActiveFN(int i, String dets)
+{
+  String[] f=StringSplitter.trimsplit(dets,",");
+  if (f.length<3) { return false; }
+
+  // the LUT determines which LE's active lines to use
+  if (f[0].equals("LUT.SLICE0_G")) {
+    slice[i]=0; le[i]=0;
+  } else if (f[0].equals("LUT.SLICE0_F")) {
+    slice[i]=0; le[i]=1;
+  } else if (f[0].equals("LUT.SLICE1_G")) {
+    slice[i]=1; le[i]=0;
+  } else if (f[0].equals("LUT.SLICE1_F")) {
+    slice[i]=1; le[i]=1;
+  } else {
+    return false;
+  }
+
+  bits[i]=JBitsLookup.getBits(f[0]);
+  setop[i]="SET";
+  boolop[i]=f[1];
+  lines[i]=f[2];
+
+  setopidx[i]=LUTIncrFN.SETOP_SET;
+  boolopidx[i]=LUTIncrFN.boolopIndex(boolop[i]);
+  return (boolopidx[i]>=0);
+}
+
+
+// dets is in the form S?RAM,bitsconst1,bitsconst2,..
+// value is the bitmap of which S?RAM resources are ON, in the same format
+// as is returned from JBitsResources.getSliceRAM()
+boolean compileSliceRAM(int i, String dets)
+{
+  String[] f=StringSplitter.trimsplit(dets,",",1);
+  if (f.length<2) { return false; }
+
+  String[] resources=StringSplitter.trimsplit(f[1],",");
+  int idx;
+  value[i]=new int[JBitsResources.sliceRAMres.length];
+  for (int j=0; j<resources.length; j++) {
+    idx=JBitsResources.getSliceRAMidx(resources[j]);
+    if (idx<0) { return false; }
+    value[i][idx]=1;
+  }
+
+  // f[0] is the classname (S0RAM or S1RAM)
+  rambits[i]=JBitsResources.getSliceRAMbits(f[0]);
+  onvalue[i]=JBitsLookup.getValue(f[0]+".ON");
+  return true;
+}
+
+
+public String toString()
+{
+  return new String(resource+"@"+locus);
+}
+
+
+}
@@ -6,7 +6,8 @@
 // state of both JBits and TF resources
 //
 // this class also requires the local classes:
-// 		JBitsResources, TFResources, StringSplitter
+// 		JBitsResources, TFResources, StringSplitter, BindQuery,
+// 		FatalError
 //
 // 		written Dec 2003, J.A. Lee
 
@@ -186,7 +187,18 @@ CellResourcesMatrix(String deviceName,
 	int tfageratefree, int tfageratebound, int mgpropdelay,
 	int horizgran, int vertgran, Random rnd)
 {
-  jbits=new JBitsResources(deviceName,contentionFile,bitfile);
+  this (new JBitsResources(deviceName,contentionFile,bitfile),clbrowmin,clbcolmin,clbrowmax,clbcolmax,cytoplasmFile,mglifespan,tflifespan,tfageratefree,tfageratebound,mgpropdelay,horizgran,vertgran,rnd);
+}
+
+// as above, but uses an existing JBitsResources instance, which already
+// has the bitstream and contention information loaded
+CellResourcesMatrix(JBitsResources jbr,
+    	int clbrowmin, int clbcolmin, int clbrowmax, int clbcolmax,
+    	String cytoplasmFile, long mglifespan, long tflifespan,
+	int tfageratefree, int tfageratebound, int mgpropdelay,
+	int horizgran, int vertgran, Random rnd)
+{
+  jbits=jbr;
 
   try {
     if (clbrowmin<0 || clbrowmax>jbits.getRows() || clbcolmin<0 || clbcolmax>jbits.getCols()) {
@@ -212,7 +224,7 @@ CellResourcesMatrix(String deviceName,
   } catch (Exception e) {
     System.err.println(e);
     e.printStackTrace();
-    System.exit(1);
+    FatalError.exit(e);
   }
 
   // now constrain the area of the FPGA that is being used
@@ -232,6 +244,21 @@ CellResourcesMatrix(String deviceName,
 }
 
 
+// create a copy of src, with the given FPGA resources (a fork of src's),
+// and a copy of its TFs that uses rnd. this is used by fork()
+CellResourcesMatrix(CellResourcesMatrix src, JBitsResources jbr, Random rnd)
+{
+  jbits=jbr;
+  cellVGran=src.cellVGran;
+  cellHGran=src.cellHGran;
+  clbRowOffset=src.clbRowOffset;
+  clbColOffset=src.clbColOffset;
+  numCellRows=src.numCellRows;
+  numCellCols=src.numCellCols;
+  tfs=new TFResources(src.tfs,rnd);
+}
+
+
 // this is used to gain direct access to the FPGA resources,
 // and so should be used with care
 public JBits getJBits() { return jbits.getJBits(); }
@@ -263,7 +290,7 @@ void validateCellCoord(int row, int col)
   } catch (Exception e) {
     System.err.println(e);
     e.printStackTrace();
-    System.exit(1);
+    FatalError.exit(e);
   }
 }
 
@@ -319,7 +346,7 @@ void setTFs(int row, int col, String details, long locus)
   } catch (Exception e) {
     System.err.println(e);
     e.printStackTrace();
-    System.exit(1);
+    FatalError.exit(e);
   }
 }
 
@@ -399,7 +426,7 @@ boolean isBoundTF(int row, int col, String details, long locus)
   } catch (Exception e) {
     System.err.println(e);
     e.printStackTrace();
-    System.exit(1);
+    FatalError.exit(e);
   }
 
   String dist=tfdets[1];
@@ -448,7 +475,7 @@ boolean isBoundConnection(int row, int col, String details, long locus)
   } catch (Exception e) {
     System.err.println(e);
     e.printStackTrace();
-    System.exit(1);
+    FatalError.exit(e);
   }
 //System.out.println("isBoundConnection: details="+details+" .. real type="+typeNalldetails[0]+", real details="+typeNalldetails[1]);
   // we don't use/need locus for querying JBits resources
@@ -513,6 +540,101 @@ boolean isBoundJBits(int row, int col, String type, String details, boolean conn
 }
 
 
+// this is the equivalent of isBound(row,col,str,locus) for a bind site
+// element that has been pre-parsed into a BindQuery (by GeneInfo), and so
+// avoids any string processing, unless the element couldn't be compiled
+
+boolean isBound(int row, int col, BindQuery q)
+{
+  if (q.type==BindQuery.UNCOMPILED) {
+    return isBound(row,col,q.resource,q.locus);
+  }
+
+  validateCellCoord(row,col);
+  if (q.type==BindQuery.TF) {
+    return isBoundTF(row,col,q);
+  }
+
+  // get the index of the CLB, slice or LE specific details for this cell
+  int i=detailsIndex(row,col,q.numdets);
+  if (i<0) {
+    // invalid for this granularity, so report the error as usual
+    return isBound(row,col,q.resource,q.locus);
+  }
+  // if no such resource for this cell, then no bind possible
+  if (!q.hasres[i]) { return false; }
+
+  // get CLB coords for this cell (as per cellCoordsToCLBSlice)
+  int clbrow=(cellVGran==2) ? row+clbRowOffset : (row/2)+clbRowOffset;
+  int clbcol=(col/2)+clbColOffset;
+  int[] value;
+
+  if (q.type==BindQuery.CONNECT) {
+    clbrow+=q.rowoff[i];
+    clbcol+=q.coloff[i];
+  }
+
+  if (q.type==BindQuery.SLICERAM) {
+    value=jbits.getSliceRAM(clbrow,clbcol,q.rambits[i],q.onvalue[i]);
+    return Arrays.equals(value,q.value[i]);
+  }
+
+  if (q.type==BindQuery.JBITS || q.type==BindQuery.CONNECT) {
+    // compare in place, rather than getting a copy of the value
+    return jbits.matches(clbrow,clbcol,q.bits[i],q.value[i]);
+  }
+
+  value=jbits.get(clbrow,clbcol,q.bits[i]);
+  if (q.type==BindQuery.LUTINCRFN) {
+    return LUTIncrFN.isEquiv(LUTIncrFN.lutWord(value),q.setopidx[i],q.boolopidx[i],q.linesidx[i]);
+  } else if (q.type==BindQuery.LUTACTIVEFN) {
+    // template based on the active lines & the line inversion template
+    String active=jbits.getActiveLinesTemplate(clbrow,clbcol,q.slice[i],q.le[i],q.lines[i]);
+    int activeidx=LUTIncrFN.linesIndex(active);
+    if (activeidx<0) {	// let LUTIncrFN report the invalid template
+      return LUTIncrFN.isEquiv(value,q.setop[i],q.boolop[i],active);
+    }
+    return LUTIncrFN.isEquiv(LUTIncrFN.lutWord(value),q.setopidx[i],q.boolopidx[i],activeidx);
+  }
+
+  return false;
+}
+
+
+// this is the equivalent of isBoundTF(row,col,details,locus) for a
+// BindQuery, using its pre-built TF key
+boolean isBoundTF(int row, int col, BindQuery q)
+{
+  // check if a TF already bound here
+  if (tfs.hasBoundTF(row,col,q.tfDistNseq,q.locus)) { return true; }
+
+  // otherwise find if any matching free (and close) TFs can bind here
+  if (tfs.hasFreeTF(row,col,q.tfDistNseq)) {
+    // there are matching TFs so bind a free TF to this location
+    return (tfs.bindTF(row,col,q.tfDistNseq,q.locus)!=null);
+  }
+
+  return false;
+}
+
+
+// this gives the index of the details used by this cell, given the number
+// of CLB (1), slice (2) or LE (4) specific details, as per extractDetails()
+// it returns -1 if the details are invalid for the cell's granularity
+
+int detailsIndex(int row, int col, int numdets)
+{
+  if (numdets==1) {
+    return 0;
+  } else if (numdets==2 && cellHGran==1) {
+    return col%2;
+  } else if (numdets==4 && cellVGran==1) {
+    return ((col%2)*2)+(row%2);
+  }
+  return -1;
+}
+
+
 // details is in form:
 //   clbdetails, or
 //   slice0details "/" slice1details, or 
@@ -550,7 +672,7 @@ String extractDetails(int row, int col, String details)
   } catch (Exception e) {
     System.err.println(e);
     e.printStackTrace();
-    System.exit(1);
+    FatalError.exit(e);
   }
 
   // check in case there is no corresponding resource for this LE
@@ -612,6 +734,27 @@ int[] CLBSliceLEToCellCoords(int row, int col, int slice, int le)
 
 
 
+// these are for telling if anything that a cell's bind sites query may have
+// changed. the TF changes are counted per cell, while the configuration
+// changes are counted for the whole FPGA, and recorded for each CLB
+
+long getTFChanges(int row, int col)
+{
+  return tfs.getChanges(row,col);
+}
+
+long getModCount() { return jbits.getModCount(); }
+
+// the count of the last change to the cell's CLB, or to any CLB within
+// radius of it (for connecting resources)
+long getModCount(int row, int col, int radius)
+{
+  int[] clbcoords=cellCoordsToCLBSlice(row,col);
+  return jbits.getModCount(clbcoords[0],clbcoords[1],radius);
+}
+
+
+
 // age all the TFs in the system, release morphogens, & remove dead TFs
 public void updateTFs()
 {
@@ -683,6 +826,42 @@ public void setTFstate(int row, int col, String statestr)
 }
 
 
+// write the TFs of all the cells, and the FPGA's configuration, in binary
+// form for MhwMatrix snapshots. bitfile is only used if the configuration
+// has to be written to a separate bitstream (see JBitsResources)
+public void writeState(DataOutputStream out, String bitfile) throws IOException
+{
+  tfs.writeState(out);
+  jbits.writeConfig(out,bitfile);
+}
+
+public void readState(DataInputStream in) throws IOException
+{
+  tfs.readState(in);
+  jbits.readConfig(in);
+}
+
+// the morphogen spreads use the enclosing system's random number generator
+public void setRandom(Random rnd) { tfs.setRandom(rnd); }
+
+
+// create a copy of the TFs and FPGA configuration, which can be changed
+// independently of this. the configuration is forked copy-on-write, so
+// this is cheap (see JBitsResources.fork)
+public CellResourcesMatrix fork(Random rnd)
+{
+  return new CellResourcesMatrix(this,jbits.fork(),rnd);
+}
+
+// make the TFs and FPGA configuration the same as src's, which should be a
+// fork of this (or this of it). only CLBs that differ are changed
+public void copyState(CellResourcesMatrix src)
+{
+  tfs.copyState(src.tfs);
+  jbits.copyConfig(src.jbits);
+}
+
+
 
 
 
@@ -722,7 +901,7 @@ void loadCytoFile(String cytoplasmFile)
     System.err.println("Error opening " + cytoplasmFile + "\n");
     System.err.println(ioe);
     ioe.printStackTrace();
-    System.exit(1);
+    FatalError.exit(ioe);
   }
 
   try {
@@ -765,11 +944,11 @@ void loadCytoFile(String cytoplasmFile)
     System.err.println(ioe);
     ioe.printStackTrace();
     System.err.println("exiting...");
-    System.exit(1);
+    FatalError.exit(ioe);
   } catch (Exception e) {
     System.err.println(e);
     e.printStackTrace();
-    System.exit(1);
+    FatalError.exit(e);
   }
 
 
@@ -778,7 +957,7 @@ void loadCytoFile(String cytoplasmFile)
     inputstream.close();
   } catch (IOException ioe) {
     System.err.println("Error closing file "+cytoplasmFile+"! exiting...");
-    System.exit(1);
+    FatalError.exit("Error closing file "+cytoplasmFile+"!");
   }
  
 }
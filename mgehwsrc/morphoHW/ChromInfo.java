@@ -7,8 +7,30 @@
 //
 // The decoded chromosome file is in the format of lines of:
 //	geneno,gstart: feat,+/-offset,length: details
+// these lines can also be given directly, eg from ChromDecoder & ConvToJBits
 //
-// this class also requires local classes: StringSplitter, GeneInfo
+// once loaded, a chromosome can be saved in a binary format (writeBinary),
+// usually with a .dchrom extension, so that it doesn't need to be parsed
+// again each time it is grown (eg with different seeds). the file is
+// detected by its magic number, so can be given anywhere a decoded
+// chromosome file can. it is in the form:
+//
+//	DCHROMMAGIC, DCHROMVERSION, number of strings, strings (UTF),
+//	number of genes, gene index, gene records
+//
+// each string (resource setting or promoter sequence) is stored only once,
+// and referred to by its index in the gene records. the gene index gives
+// the position of each gene's record, and the extents of its coding region
+// and bind sites, so that the genes' records only need to be read when a
+// gene is first asked for (with getGene). a gene record holds its locus,
+// coding length, promoter offset and sequence, transcript (endloc =>
+// resource settings), and bind sites, each with its distance to the
+// promoter, and its elements (resource settings, locus) in the order they
+// were compiled to BindQuery's, so a chromosome grows exactly as it would
+// have from the text file.
+//
+// this class also requires local classes: StringSplitter, GeneInfo,
+// FatalError
 //
 // 		written December 2003, J.A. Lee
 
@@ -28,11 +50,21 @@ public static void main (String[] args)
   ChromInfo ci=null;
 
   if (args.length<1) {
-    System.err.println("need to specify decoded chromosome file!");
+    System.err.println("need to specify decoded chromosome file, and optionally a binary file to save it to!");
     System.exit(1);
   }
 
   ci=new ChromInfo(args[0]);
+  if (args.length>1) {
+    try {
+      ci.writeBinary(args[1]);
+    } catch (IOException e) {
+      System.err.println("Error writing binary chromosome to "+args[1]+"\n"+e);
+      System.exit(1);
+    }
+    System.out.println("saved chromosome with "+ci.numGenes()+" genes to "+args[1]);
+    return;
+  }
   System.out.println("loaded decoded chromosome with "+ci.numGenes()+" genes...");
   System.out.println("printing contents...");
   GeneInfo gene;
@@ -48,10 +80,21 @@ public static void main (String[] args)
 
 
 
+	static final String DCHROMMAGIC="MHDC";	// binary chromosome format
+	static final int DCHROMVERSION=1;
+
 	List genes;			// all the genes in the chromosome
 	long firstGeneBsiteStart;
 	long lastGeneCodeRegionStop;
 
+// the following are for a chromosome loaded from the binary format, whose
+// genes (null in the list until then) are created when first asked for
+
+	byte[] dchrom;			// the binary chromosome
+	String[] strings;		// its table of strings
+	int[] generecord;		// where each gene's record starts in it
+	long[] genebsitestart;		// and the locus of its first bind site
+
 // the following are for processing chromosome as read in from file
 
 	int linenum;			// current line of chromosome file
@@ -74,19 +117,47 @@ public ChromInfo(String decodedChromFile, int glimit)
   genes=new ArrayList();
   geneidx=-1;
   geneLimit=glimit;
-  loadChromFromFile(decodedChromFile);
+  if (isBinaryChrom(decodedChromFile)) {
+    loadBinary(readBinaryChrom(decodedChromFile),decodedChromFile);
+  } else {
+    loadChromFromFile(decodedChromFile);
+  }
+}
+
+// the chromosome is given in the binary format, as saved by writeBinary
+public ChromInfo(byte[] binaryChrom, int glimit)
+{
+  firstGeneBsiteStart=lastGeneCodeRegionStop=-1;
+  genes=new ArrayList();
+  geneidx=-1;
+  geneLimit=glimit;
+  loadBinary(binaryChrom,"binary chromosome");
+}
+
+// the decoded chromosome's lines are given, rather than read from file
+public ChromInfo(String[] decodedChrom, int glimit)
+{
+  firstGeneBsiteStart=lastGeneCodeRegionStop=-1;
+  genes=new ArrayList();
+  geneidx=-1;
+  geneLimit=glimit;
+  loadChrom(decodedChrom);
 }
 
 
 public GeneInfo[] getGenes()
 {
-  return (GeneInfo[])genes.toArray(new GeneInfo[0]);
+  GeneInfo[] g=new GeneInfo[genes.size()];
+  for (int i=0; i<g.length; i++) { g[i]=getGene(i); }
+  return g;
 }
 
 
 public GeneInfo getGene(int i)
 {
-  return (GeneInfo)genes.get(i);
+  GeneInfo gene=(GeneInfo)genes.get(i);
+  if (gene==null) { gene=loadGene(i); }
+  return gene;
 }
 
 
@@ -175,7 +246,7 @@ void storeGeneInfo(int gidx, long gloc, String feat, int featoffset, int featlen
     bindsites.add(site);
   } else {
     System.err.println("Invalid feature type ("+feat+") in gene "+gidx+" at line "+linenum+"!\nFeature type must be one of prom, gene, enhb, repb");
-    System.exit(1);
+    FatalError.exit("Invalid feature type ("+feat+") in gene "+gidx+" at line "+linenum+"!\nFeature type must be one of prom, gene, enhb, repb");
   }
 
 }
@@ -193,12 +264,6 @@ void loadChromFromFile(String decodedChromFile)
   BufferedReader bufferedreader=null;
 
   String line=null;
-  String[] fields;
-  int gidx=-1;
-  long gloc;
-  int featoffset,featlen;
-  String featdets,gidxNloc,feat,details;
-  char sign;
 
   try {
     // open the file and create a buffered input stream reader
@@ -207,7 +272,7 @@ void loadChromFromFile(String decodedChromFile)
     bufferedreader = new BufferedReader(inputstreamreader);
   } catch (Exception e) {
     System.err.println("Error opening " + decodedChromFile + "\n" + e);
-    System.exit(1);
+    FatalError.exit("Error opening " + decodedChromFile + "\n" + e);
   }
 
   bindsites=new ArrayList();		// prepare for first gene
@@ -216,6 +281,70 @@ void loadChromFromFile(String decodedChromFile)
     linenum=0;
     while ((line = bufferedreader.readLine()) != null) {
       linenum++;
+      parseLine(line);
+    }
+  } catch (Exception e) {
+    System.err.println("Error reading file!");
+    System.err.println(e);
+    e.printStackTrace();
+    System.err.println("exiting...");
+    FatalError.exit(e);
+  }
+ 
+  // finalise the last unprocessed gene
+  if (promoter!=null) {
+//System.out.println("adding gene...");
+    addGene();
+  }
+
+  try { 
+    // finished with file, so close it
+    inputstream.close();
+  } catch (Exception e) {
+    System.err.println("Error closing file! exiting...");
+    FatalError.exit(e);
+  }
+
+}
+
+
+// as above, but the decoded chromosome is given as an array of its lines,
+// such as from ChromDecoder and ConvToJBits
+
+void loadChrom(String[] decodedChrom)
+{
+  bindsites=new ArrayList();		// prepare for first gene
+
+  try {
+    for (linenum=1; linenum<=decodedChrom.length; linenum++) {
+      parseLine(decodedChrom[linenum-1]);
+    }
+  } catch (Exception e) {
+    System.err.println("Error in decoded chromosome at line "+linenum+"!");
+    System.err.println(e);
+    e.printStackTrace();
+    System.err.println("exiting...");
+    FatalError.exit(e);
+  }
+
+  // finalise the last unprocessed gene
+  if (promoter!=null) {
+    addGene();
+  }
+}
+
+
+// parse a line of the decoded chromosome, and store its details
+
+void parseLine(String line) throws Exception
+{
+  String[] fields;
+  int gidx=-1;
+  long gloc;
+  int featoffset,featlen;
+  String featdets,gidxNloc,feat,details;
+  char sign;
+
       line=line.trim();		// strip leading & trailing whitespace
 //System.out.println("linenum="+linenum);
 //System.out.println(line);
@@ -225,7 +354,7 @@ void loadChromFromFile(String decodedChromFile)
         fields=StringSplitter.trimsplit(line,":");
 	if (fields.length!=3) {
           System.err.println("Invalid format in chromosome at line "+linenum+"! Should be geneno,gstart: feat,+/-offset,length: details");
-	  System.exit(1);
+	  FatalError.exit("Invalid format in chromosome at line "+linenum+"! Should be geneno,gstart: feat,+/-offset,length: details");
 	}
 	gidxNloc=fields[0];
 	featdets=fields[1];
@@ -235,7 +364,7 @@ void loadChromFromFile(String decodedChromFile)
         fields=StringSplitter.trimsplit(gidxNloc,",");
 	if (fields.length!=2) {
           System.err.println("Invalid gene location format on line "+linenum+"! Should be geneno,genestart");
-	  System.exit(1);
+	  FatalError.exit("Invalid gene location format on line "+linenum+"! Should be geneno,genestart");
 	}
 	gidx=Integer.parseInt(fields[0]);
 	gloc=Long.parseLong(fields[1]);
@@ -245,7 +374,7 @@ void loadChromFromFile(String decodedChromFile)
         fields=StringSplitter.trimsplit(featdets,",");
 	if (fields.length!=3) {
           System.err.println("Invalid feature details format on line "+linenum+"! Should be feature,+/-offset,length");
-	  System.exit(1);
+	  FatalError.exit("Invalid feature details format on line "+linenum+"! Should be feature,+/-offset,length");
 	}
 	feat=fields[0];
 	sign=fields[1].charAt(0);
@@ -263,29 +392,258 @@ void loadChromFromFile(String decodedChromFile)
         // now process/store this info
         storeGeneInfo(gidx,gloc,feat,featoffset,featlen,details);
       }
+
+}
+
+
+
+// true if the file is in the binary chromosome format, rather than text
+
+static boolean isBinaryChrom(String file)
+{
+  byte[] magic=new byte[DCHROMMAGIC.length()];
+  DataInputStream in=null;
+
+  try {
+    in=new DataInputStream(new FileInputStream(file));
+    in.readFully(magic);
+    in.close();
+  } catch (IOException e) {
+    // too short, or can't be read - either way loadChromFromFile will
+    // report it if there's a problem
+    try { if (in!=null) { in.close(); } } catch (IOException ce) { }
+    return false;
+  }
+
+  return DCHROMMAGIC.equals(new String(magic));
+}
+
+
+// read the whole of a binary chromosome file. (JBits needs jdk 1.2, so the
+// file can't be memory mapped, but it is read in a single read)
+
+static byte[] readBinaryChrom(String file)
+{
+  byte[] buf=null;
+
+  try {
+    File f=new File(file);
+    buf=new byte[(int)f.length()];
+    DataInputStream in=new DataInputStream(new FileInputStream(f));
+    in.readFully(buf);
+    in.close();
+  } catch (IOException e) {
+    System.err.println("Error reading " + file + "\n" + e);
+    FatalError.exit("Error reading " + file + "\n" + e);
+  }
+
+  return buf;
+}
+
+
+// load the string table and gene index of a binary chromosome, leaving
+// the genes' records to be read by loadGene as they are needed. if there
+// is a limit on the number of genes, then only the first glimit are used
+
+void loadBinary(byte[] buf, String name)
+{
+  int ngenes,nused,version,rec,recstart;
+  long gendloc,bsitestart;
+
+  try {
+    DataInputStream in=new DataInputStream(new ByteArrayInputStream(buf));
+    byte[] magic=new byte[DCHROMMAGIC.length()];
+    in.readFully(magic);
+    if (!DCHROMMAGIC.equals(new String(magic))) {
+      throw new IOException("not a binary chromosome");
     }
-  } catch (Exception e) {
-    System.err.println("Error reading file!");
-    System.err.println(e);
-    e.printStackTrace();
-    System.err.println("exiting...");
-    System.exit(1);
+    version=in.readInt();
+    if (version!=DCHROMVERSION) {
+      throw new IOException("unsupported binary chromosome version ("+version+")");
+    }
+
+    strings=new String[in.readInt()];
+    for (int i=0; i<strings.length; i++) {
+      strings[i]=in.readUTF();
+    }
+
+    ngenes=in.readInt();
+    nused=(geneLimit>0 && ngenes>geneLimit) ? geneLimit : ngenes;
+    generecord=new int[nused];
+    genebsitestart=new long[nused];
+    for (int i=0; i<ngenes; i++) {
+      rec=in.readInt();
+      gendloc=in.readLong();
+      bsitestart=in.readLong();
+      if (i<nused) {
+        generecord[i]=rec;
+        genebsitestart[i]=bsitestart;
+        // the extent of the used part of the chromosome
+        if (gendloc-1>lastGeneCodeRegionStop) {
+          lastGeneCodeRegionStop=gendloc-1;
+        }
+        if (bsitestart>=0 && (firstGeneBsiteStart<0 || bsitestart<firstGeneBsiteStart)) {
+          firstGeneBsiteStart=bsitestart;
+        }
+        genes.add(null);
+      }
+    }
+
+    // gene records follow the index, and are positioned relative to this
+    recstart=buf.length-in.available();
+    for (int i=0; i<nused; i++) {
+      generecord[i]+=recstart;
+      if (generecord[i]<recstart || generecord[i]>=buf.length) {
+        throw new IOException("gene "+i+"'s record is outside of the file");
+      }
+    }
+  } catch (IOException e) {
+    System.err.println("Error loading " + name + "!\n" + e);
+    FatalError.exit("Error loading " + name + "!\n" + e);
   }
- 
-  // finalise the last unprocessed gene
-  if (promoter!=null) {
-//System.out.println("adding gene...");
-    addGene();
+
+  dchrom=buf;
+}
+
+
+// create gene i from its record in the binary chromosome. this may be
+// called by several cells' threads, hence is synchronized
+
+synchronized GeneInfo loadGene(int i)
+{
+  GeneInfo gene=(GeneInfo)genes.get(i);
+  if (gene!=null) { return gene; }	// already loaded by another thread
+
+  try {
+    DataInputStream in=new DataInputStream(new ByteArrayInputStream(dchrom,generecord[i],dchrom.length-generecord[i]));
+    long gloc=in.readLong();
+    int codelen=in.readInt();
+    int poffset=in.readInt();
+    String pseq=strings[in.readInt()];
+
+    // transcript maps endloc (locus+coding len) => resource settings
+    Map transcript=new HashMap();
+    int n=in.readInt();
+    for (int k=0; k<n; k++) {
+      Long endloc=new Long(in.readLong());
+      transcript.put(endloc,strings[in.readInt()]);
+    }
+
+    gene=new GeneInfo(gloc,codelen,transcript,poffset,pseq);
+    gene.bsitestart=genebsitestart[i];
+    readBindSites(in,gene,true);
+    readBindSites(in,gene,false);
+  } catch (Exception e) { // IO, or a bad string index
+    System.err.println("Error loading gene "+i+" of binary chromosome!\n" + e);
+    FatalError.exit("Error loading gene "+i+" of binary chromosome!\n" + e);
   }
 
-  try { 
-    // finished with file, so close it
-    inputstream.close();
-  } catch (Exception e) {
-    System.err.println("Error closing file! exiting...");
-    System.exit(1);
+  genes.set(i,gene);
+  return gene;
+}
+
+
+// read a gene's enhancer or repressor bind sites. each site's elements are
+// in the order that its BindQuery's were compiled in, so the queries are
+// created in the same order here
+
+void readBindSites(DataInputStream in, GeneInfo gene, boolean enhancers) throws IOException
+{
+  int nsites=in.readInt();
+  for (int s=0; s<nsites; s++) {
+    int dist2prom=in.readInt();
+    BindQuery[] queries=new BindQuery[in.readInt()];
+    Map bsite=new HashMap();		// resource settings => locus
+    for (int e=0; e<queries.length; e++) {
+      String res=strings[in.readInt()];
+      long locus=in.readLong();
+      bsite.put(res,new Long(locus));
+      queries[e]=new BindQuery(res,locus);
+    }
+    if (enhancers) {
+      gene.addEnhancerBindSite(bsite,queries,dist2prom);
+    } else {
+      gene.addRepressorBindSite(bsite,queries,dist2prom);
+    }
   }
+}
+
+
+// save the chromosome in the binary format (see top of file). only the
+// genes that were loaded (ie up to any gene limit) are saved
+
+public void writeBinary(String file) throws IOException
+{
+  Hashtable index=new Hashtable();	// string => index in string table
+  List strs=new ArrayList();		// the string table
+  GeneInfo[] g=getGenes();
+  int[] rec=new int[g.length];
+
+  // the gene records are written first, to build up the string table
+  ByteArrayOutputStream recbuf=new ByteArrayOutputStream();
+  DataOutputStream recs=new DataOutputStream(recbuf);
+  for (int i=0; i<g.length; i++) {
+    rec[i]=recs.size();
+    recs.writeLong(g[i].glocus);
+    recs.writeInt((int)(g[i].gendloc-g[i].glocus));
+    recs.writeInt((int)(g[i].plocus-g[i].glocus));
+    recs.writeInt(intern(g[i].promseq,index,strs));
+    recs.writeInt(g[i].transcript.size());
+    Iterator iter=g[i].transcript.entrySet().iterator();
+    while (iter.hasNext()) {
+      Map.Entry e=(Map.Entry)iter.next();
+      recs.writeLong(((Long)e.getKey()).longValue());
+      recs.writeInt(intern((String)e.getValue(),index,strs));
+    }
+    writeBindSites(recs,g[i].enhbq,g[i].enhSiteDistMetric,index,strs);
+    writeBindSites(recs,g[i].repbq,g[i].repSiteDistMetric,index,strs);
+  }
+  recs.flush();
+
+  DataOutputStream out=new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file),65536));
+  out.writeBytes(DCHROMMAGIC);
+  out.writeInt(DCHROMVERSION);
+  out.writeInt(strs.size());
+  for (int i=0; i<strs.size(); i++) {
+    out.writeUTF((String)strs.get(i));
+  }
+  out.writeInt(g.length);
+  for (int i=0; i<g.length; i++) {
+    out.writeInt(rec[i]);
+    out.writeLong(g[i].gendloc);
+    out.writeLong(g[i].bsitestart);
+  }
+  recbuf.writeTo(out);
+  out.close();
+}
 
+
+static void writeBindSites(DataOutputStream out, List sitequeries, List dists, Hashtable index, List strs) throws IOException
+{
+  out.writeInt(sitequeries.size());
+  for (int s=0; s<sitequeries.size(); s++) {
+    BindQuery[] queries=(BindQuery[])sitequeries.get(s);
+    out.writeInt(((Integer)dists.get(s)).intValue());
+    out.writeInt(queries.length);
+    for (int e=0; e<queries.length; e++) {
+      out.writeInt(intern(queries[e].resource,index,strs));
+      out.writeLong(queries[e].locus);
+    }
+  }
+}
+
+
+// the index of str in the string table, adding it if it isn't there yet
+
+static int intern(String str, Hashtable index, List strs)
+{
+  Integer idx=(Integer)index.get(str);
+  if (idx==null) {
+    idx=new Integer(strs.size());
+    index.put(str,idx);
+    strs.add(str);
+  }
+  return idx.intValue();
 }
 
   
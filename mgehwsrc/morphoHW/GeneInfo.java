@@ -13,7 +13,14 @@
 // note that need to know promoter location before can add bind sites
 // hence the requirement for the promoter's details in the constructor
 //
-// this class also requires local classes: StringSplitter
+// each bind site's resource settings are also compiled into an array of
+// BindQuery's, in the same order as that of iterating through the HashMap
+//
+// a gene can also be created from its already parsed transcript and bind
+// sites, as is done when loading a binary decoded chromosome (ChromInfo)
+//
+// this class also requires local classes: StringSplitter, BindQuery,
+// FatalError
 //
 // 		written December 2003, J.A. Lee
 
@@ -35,6 +42,9 @@ class GeneInfo {
 	public long glocus;
 	public long gendloc;
 
+	// locus of the most upstream bind site, or -1 if no bind sites
+	public long bsitestart;
+
 	// transcript maps endloc (locus+coding len) => resource settings
 	public Map transcript;
 
@@ -50,20 +60,34 @@ class GeneInfo {
 
 	// enhb & repb HashMap's: resource settings => locus
 
+	// enhbq and repbq are lists of BindQuery[], one for each bind site
+	public List enhbq;
+	public List repbq;
+
 
 
 // this is the minimum amount of information needed to create a gene entry
 GeneInfo(long gloc, int codelen, String codingregion, int poffset, String pseq)
+{
+  this(gloc,codelen,setRegion("gene",gloc,codelen,codingregion),poffset,pseq);
+}
+
+
+// as above, but with the transcript (endloc => resource settings) given
+GeneInfo(long gloc, int codelen, Map trans, int poffset, String pseq)
 {
   glocus=gloc;
   gendloc=glocus+codelen;
   plocus=gloc+poffset;
   promseq=pseq;			// this also gives promoter length
+  bsitestart=-1;
   enhb=new ArrayList();
+  enhbq=new ArrayList();
   enhSiteDistMetric=new ArrayList();
   repb=new ArrayList();
+  repbq=new ArrayList();
   repSiteDistMetric=new ArrayList();
-  transcript=setRegion("gene",glocus,codelen,codingregion);
+  transcript=trans;
 }
 
 
@@ -81,7 +105,7 @@ public void addBindSite(String type, int featoffset, int featlen, String details
     addRepressorBindSite(featoffset,featlen,details);
   } else {
     System.err.println("Invalid bind site type ("+type+")! type must be enhb or repb");
-    System.exit(1);
+    FatalError.exit("Invalid bind site type ("+type+")! type must be enhb or repb");
   }
 }
 
@@ -90,9 +114,18 @@ public void addEnhancerBindSite(int featoffset, int featlen, String details)
   long locus=glocus+featoffset;
   // repressors lie before promoter, hence closest to promoter start
   int dist2prom=(int)(plocus-(locus+featlen)+1);
-  enhSiteDistMetric.add(new Integer(dist2prom));
   Map bsite=setRegion("enhb",locus,featlen,details);
+  addEnhancerBindSite(bsite,compileBindSite(bsite),dist2prom);
+  if (bsitestart<0 || locus<bsitestart) { bsitestart=locus; }
+}
+
+
+// add an already parsed and compiled bind site
+public void addEnhancerBindSite(Map bsite, BindQuery[] queries, int dist2prom)
+{
+  enhSiteDistMetric.add(new Integer(dist2prom));
   enhb.add(bsite);
+  enhbq.add(queries);
 }
 
 
@@ -101,14 +134,22 @@ public void addRepressorBindSite(int featoffset, int featlen, String details)
   long locus=glocus+featoffset;
   // repressors lie after promoter, hence closest to promoter end
   int dist2prom=(int)(locus-(plocus+promseq.length())+1);
-  repSiteDistMetric.add(new Integer(dist2prom));
   Map bsite=setRegion("repb",locus,featlen,details);
+  addRepressorBindSite(bsite,compileBindSite(bsite),dist2prom);
+  if (bsitestart<0 || locus<bsitestart) { bsitestart=locus; }
+}
+
+
+public void addRepressorBindSite(Map bsite, BindQuery[] queries, int dist2prom)
+{
+  repSiteDistMetric.add(new Integer(dist2prom));
   repb.add(bsite);
+  repbq.add(queries);
 }
 
 
 
-Map setRegion(String type, long featloc, int featlen, String details)
+static Map setRegion(String type, long featloc, int featlen, String details)
 {
   Map region=new HashMap();
 
@@ -131,7 +172,7 @@ Map setRegion(String type, long featloc, int featlen, String details)
     fields=StringSplitter.trimsplit(elems[i],",",2); // details has commas in it
     if (fields.length<3) {
       System.err.println("invalid "+type+" region element ("+elems[i]+") in gene at locus "+featloc);
-      System.exit(1);
+      FatalError.exit("invalid "+type+" region element ("+elems[i]+") in gene at locus "+featloc);
     }
     eoff=Integer.parseInt(fields[0]);
     elen=Integer.parseInt(fields[1]);
@@ -151,6 +192,24 @@ Map setRegion(String type, long featloc, int featlen, String details)
 }
 
 
+// bsite is a HashMap of resource settings => locus
+// this pre-parses each of the bind site's resource settings, so that the
+// morphogenesis system doesn't need to do this on every binding query
+BindQuery[] compileBindSite(Map bsite)
+{
+  BindQuery[] queries=new BindQuery[bsite.size()];
+  int i=0;
+
+  Iterator iter = bsite.entrySet().iterator();
+  while (iter.hasNext()) {
+    Map.Entry e = (Map.Entry)iter.next();
+    queries[i++]=new BindQuery((String)e.getKey(),((Long)e.getValue()).longValue());
+  }
+
+  return queries;
+}
+
+
 public String toString()
 {
   String str=new String("plocus="+plocus+", promseq="+promseq+", glocus="+
@@ -19,6 +19,8 @@
 import java.util.*;
 // for Integer and Math class functions
 import java.lang.*;
+// for binary state snapshots
+import java.io.*;
 
 
 
@@ -181,6 +183,12 @@ public Map getEnhb(int i) { return (Map)ginfo.enhb.get(i); }
 // get this bind site's HashMap of binding-resource-settings => locus
 public Map getRepb(int i) { return (Map)ginfo.repb.get(i); }
 
+// get this bind site's compiled binding-resource-settings
+public BindQuery[] getEnhbQueries(int i) {return (BindQuery[])ginfo.enhbq.get(i);}
+
+// get this bind site's compiled binding-resource-settings
+public BindQuery[] getRepbQueries(int i) {return (BindQuery[])ginfo.repbq.get(i);}
+
 
 // update activation levels of promoter according to binding
 // of resources and TFs to its regulators' bind sites
@@ -300,6 +308,32 @@ void setRbstate(String statestr)
 }
 
 
+// the same state as getState(), in binary form for MhwMatrix snapshots:
+// activation, then the number of enhancer bind sites and their bound
+// flags, then the same for the repressor bind sites
+public void writeState(DataOutputStream out) throws IOException
+{
+  out.writeDouble(activation);
+  out.writeInt(enhbSiteBound.length);
+  for (int i=0; i<enhbSiteBound.length; i++) { out.writeInt(enhbSiteBound[i]); }
+  out.writeInt(repbSiteBound.length);
+  for (int i=0; i<repbSiteBound.length; i++) { out.writeInt(repbSiteBound[i]); }
+}
+
+public void readState(DataInputStream in) throws IOException
+{
+  activation=in.readDouble();
+  if (in.readInt()!=enhbSiteBound.length) {
+    throw new IOException("GeneState snapshot has wrong number of enhancer bind sites for gene");
+  }
+  for (int i=0; i<enhbSiteBound.length; i++) { enhbSiteBound[i]=in.readInt(); }
+  if (in.readInt()!=repbSiteBound.length) {
+    throw new IOException("GeneState snapshot has wrong number of repressor bind sites for gene");
+  }
+  for (int i=0; i<repbSiteBound.length; i++) { repbSiteBound[i]=in.readInt(); }
+}
+
+
 
 } // end class
 
@@ -6,7 +6,8 @@
 // 		written Dec 2003, J.A. Lee
 //
 // this class also requires the local classes:
-// 	CellResourcesMatrix, ChromInfo, GeneInfo, GeneState, Polymerase
+// 	CellResourcesMatrix, ChromInfo, GeneInfo, GeneState, Polymerase,
+// 	BindQuery, MhwStats
 
 
 // for String's etc
@@ -51,6 +52,17 @@ class MhwCell {
 	Random rand;			// random number generator
         boolean DEBUG;
 
+	// binding is only re-evaluated when something the bind sites query
+	// has changed since the last evaluation (see updateBinding)
+	boolean incremental=true;	// false to evaluate every step
+	boolean alwaysBind=false;	// set if depends on untracked state
+	int bindRadius=0;		// CLBs that connections are queried in
+	long bindModCount=-1;		// config change count when evaluated
+	long bindTFChanges=-1;		// TF change count when evaluated
+	boolean[] sitesCurrent;		// if gene was free when evaluated
+
+	MhwStats stats=null;		// if not null, keep growth stats
+
 
 // this is for testing purposes only
 public static void main(String[] args)
@@ -182,14 +194,63 @@ public MhwCell(int r, int c, int nrp2, double pa, int trate,
   for (int i=0; i<numGenes; i++) {
     genes[i]=new GeneState(chrom.getGene(i));
   }
+  sitesCurrent=new boolean[numGenes];
+  findBindDependencies();
 
   totalFreeActivation=0;
 }
 
 
+// find how far away (in CLBs) the bind sites' connecting resources are, and
+// if any bind sites depend on something other than the cell's TFs and the
+// configuration, in which case binding has to be evaluated every step.
+// LUTActiveFNs depend on ActiveInputLEs' active lines, and uncompiled bind
+// site elements may be of any type
+void findBindDependencies()
+{
+  BindQuery[] qs;
+  for (int i=0; i<numGenes; i++) {
+    for (int j=0; j<genes[i].numenhb+genes[i].numrepb; j++) {
+      qs=(j<genes[i].numenhb) ? genes[i].getEnhbQueries(j) :
+      				genes[i].getRepbQueries(j-genes[i].numenhb);
+      for (int k=0; k<qs.length; k++) {
+	if (qs[k].type==BindQuery.UNCOMPILED || qs[k].type==BindQuery.LUTACTIVEFN) {
+	  alwaysBind=true;
+	} else if (qs[k].type==BindQuery.CONNECT) {
+	  for (int d=0; d<qs[k].numdets; d++) {
+	    bindRadius=Math.max(bindRadius,Math.abs(qs[k].rowoff[d]));
+	    bindRadius=Math.max(bindRadius,Math.abs(qs[k].coloff[d]));
+	  }
+	}
+      }
+    }
+  }
+}
+
+
+// turn on or off only re-evaluating binding when it may have changed
+public void setIncremental(boolean incr)
+{
+  incremental=incr;
+  bindModCount=bindTFChanges=-1;
+}
+
+
+// keep statistics of the cell's growth in stats, or stop if it's null
+public void setStats(MhwStats s)
+{
+  stats=s;
+}
+
+
 
 public void step()
 {
+  if (stats!=null) {
+    timedStep();
+    return;
+  }
+
   updateBinding();		// update binding of resources to regulators
   updateActivations();		// update activation levels of promoters
   updatePolymeraseBinding();	// randomly bind some RNApoly2 to promoter
@@ -204,6 +265,27 @@ public void step()
 }
 
 
+// this is the same as step(), but times each of its phases
+void timedStep()
+{
+  stats.startPhases();
+  updateBinding();
+  stats.endPhase(MhwStats.BINDING);
+  updateActivations();
+  stats.endPhase(MhwStats.ACTIVATIONS);
+  updatePolymeraseBinding();
+  stats.endPhase(MhwStats.POLYBINDING);
+  resources.updateTFs(row,col);
+  stats.endPhase(MhwStats.TFS);
+  for (int i=0;i<transcriptionRate;i++) {
+    updateTranscribe();
+  }
+  stats.endPhase(MhwStats.TRANSCRIBE);
+  stats.cellStepped();
+  if (DEBUG) { printState(); }
+}
+
+
 void updateTranscribe()
 {
   if (DEBUG) { System.out.println("updating transcription in cell "+row+","+col+"..."); }
@@ -231,21 +313,65 @@ void transcribe(GeneState g)
   // if there was a product then set the appropriate resource
   if (product!=null) {
     if (DEBUG) { System.out.println("produced product "+product+" at "+g.poly.transloc); }
-    resources.set(row,col,product);
+    if (stats!=null) {
+      // contentious settings are quietly dropped, so count any that were
+      JBitsResources jbr=resources.getJBitsResources();
+      long rejected=jbr.getRejectedCount();
+      resources.set(row,col,product);
+      stats.count(MhwStats.RESOURCESETS);
+      stats.count(MhwStats.CONTENTIONREJECTS,jbr.getRejectedCount()-rejected);
+    } else {
+      resources.set(row,col,product);
+    }
   }
 }
 
 
 // update the binding of resources to bind sites on gene's regulatory regions
+// this is skipped if re-evaluating it would give the same bind site states
+// as last time, and (as TFs that bound then are now already bound) would
+// make no changes to the TFs
 void updateBinding()
 {
+  if (incremental && !bindingMayChange()) {
+    if (DEBUG) { System.out.println("binding unchanged in cell "+row+","+col+"..."); }
+    return;
+  }
+
   if (DEBUG) { System.out.println("updating binding in cell "+row+","+col+"..."); }
+  // these are got before binding, so any TFs bound now will cause binding
+  // to be re-evaluated next step, rather than assuming that this would
+  // have no further effect
+  bindModCount=resources.getModCount();
+  bindTFChanges=resources.getTFChanges(row,col);
+
   int gidx;
   // for each gene that is not being transcribed
   for (int i=0; i<numGenes; ++i) {
+    sitesCurrent[i]=genes[i].isFree();
     if (!genes[i].isFree()) continue;	// ignore transcribing genes
     bindRegulators(genes[i]);		// update binding on regulator sites
   }
+
+  // only binding a free TF to a bind site changes the cell's TFs here
+  if (stats!=null) {
+    stats.count(MhwStats.TFBINDS,resources.getTFChanges(row,col)-bindTFChanges);
+  }
+}
+
+
+// binding may change if the cell's TFs have been added to or removed, if
+// the configuration of the CLB (or CLBs it connects to) has changed, or
+// if a gene that was being transcribed at the last evaluation is now free
+boolean bindingMayChange()
+{
+  if (alwaysBind) { return true; }
+  if (resources.getTFChanges(row,col)!=bindTFChanges) { return true; }
+  if (resources.getModCount(row,col,bindRadius)>bindModCount) { return true; }
+  for (int i=0; i<numGenes; ++i) {
+    if (genes[i].isFree() && !sitesCurrent[i]) { return true; }
+  }
+  return false;
 }
 
 
@@ -254,11 +380,11 @@ void updateBinding()
 void bindRegulators(GeneState g)
 {
   for (int i=0; i<g.numenhb; i++) {
-    g.enhbSiteBound[i]=queryBinds(g.getEnhb(i));
+    g.enhbSiteBound[i]=queryBinds(g.getEnhbQueries(i));
   }
 
   for (int i=0; i<g.numrepb; i++) {
-    g.repbSiteBound[i]=queryBinds(g.getRepb(i));
+    g.repbSiteBound[i]=queryBinds(g.getRepbQueries(i));
   }
 }
 
@@ -277,6 +403,7 @@ int queryBinds(Map bsite)
     res=(String)e.getKey();
     loc=(Long)e.getValue();
     if (DEBUG) { System.out.println("checking binding of "+res+" at "+loc); }
+    if (stats!=null) { stats.count(MhwStats.BINDQUERIES); }
     // check if bound, and in case of TFs, if can bind a matching free TF
     if (resources.isBound(row,col,res,loc.longValue())) {
       binds++;
@@ -288,6 +415,26 @@ int queryBinds(Map bsite)
 }
 
 
+// this does the same as queryBinds(Map) but using the bind site's resource
+// settings as compiled by GeneInfo, which are in the same order as the Map
+int queryBinds(BindQuery[] bsite)
+{
+  int binds=0;
+
+  for (int i=0; i<bsite.length; i++) {
+    if (DEBUG) { System.out.println("checking binding of "+bsite[i].resource+" at "+bsite[i].locus); }
+    if (stats!=null) { stats.count(MhwStats.BINDQUERIES); }
+    // check if bound, and in case of TFs, if can bind a matching free TF
+    if (resources.isBound(row,col,bsite[i])) {
+      binds++;
+      break;	// because we only need to know if ANY bind for this version
+    }
+  }
+
+  return binds;
+}
+
+
 
 // after binding of resources to regulator bind sites
 // can determine activation levels of the genes
@@ -343,6 +490,7 @@ void updatePolymeraseBinding()
         if (gidx>=0) {
           genes[gidx].bindPolymerase(RNApoly2[i],gidx);
           totalFreeActivation-=genes[gidx].activation;
+          if (stats!=null) { stats.count(MhwStats.POLYBINDS); }
           if (DEBUG) { System.out.println("binding polymerase "+i+" to gene "+gidx+" with activation: "+genes[gidx].activation+" @ "+RNApoly2[i].transloc+"..."); }
         }
       }
@@ -468,7 +616,12 @@ void clearCellState()
 {
   // remove all TF's
   resources.clear(row,col);
+  clearGeneState();
+}
 
+// reset the polymerase and genes, but leave the TFs alone
+void clearGeneState()
+{
   // reset all polymerase states
   for (int i=0; i<numRP2; i++) {
     RNApoly2[i].geneidx=-1;
@@ -478,6 +631,7 @@ void clearCellState()
   // reset the state of all the genes
   for (int i=0; i<numGenes; i++) {
     genes[i].clear();
+    sitesCurrent[i]=false;
   }
 }
 
@@ -605,6 +759,56 @@ void setGenestate(String statestr)
 }
 
 
+// the cell's state in binary form, for MhwMatrix snapshots. this is:
+// 	totalFreeActivation, numRP2, each polymerase's transloc & geneidx,
+// 	numGenes, each gene's state
+// the TFs are written separately, by TFResources, for all the cells
+public void writeState(DataOutputStream out) throws IOException
+{
+  out.writeDouble(totalFreeActivation);
+  out.writeInt(numRP2);
+  for (int i=0; i<numRP2; i++) {
+    out.writeLong(RNApoly2[i].transloc);
+    out.writeInt(RNApoly2[i].geneidx);
+  }
+  out.writeInt(numGenes);
+  for (int i=0; i<numGenes; i++) {
+    genes[i].writeState(out);
+  }
+}
+
+
+// set the cell's state from a snapshot written by writeState(). as with
+// setState(), the random number generator needs to be restored as well
+public void readState(DataInputStream in, Random rnd) throws IOException
+{
+  rand=rnd;
+  clearGeneState();	// TFs are restored separately, by TFResources
+
+  totalFreeActivation=in.readDouble();
+  if (in.readInt()!=numRP2) {
+    throw new IOException("MhwCell snapshot for "+row+","+col+" has wrong number of polymerase");
+  }
+  for (int i=0; i<numRP2; i++) {
+    RNApoly2[i].transloc=in.readLong();
+    RNApoly2[i].geneidx=in.readInt();
+  }
+  if (in.readInt()!=numGenes) {
+    throw new IOException("MhwCell snapshot for "+row+","+col+" has wrong number of genes");
+  }
+  for (int i=0; i<numGenes; i++) {
+    genes[i].readState(in);
+  }
+
+  // re-bind the polymerase to the genes they are transcribing
+  for (int i=0; i<numRP2; i++) {
+    if (RNApoly2[i].geneidx>=0) {
+      genes[RNApoly2[i].geneidx].poly=RNApoly2[i];
+    }
+  }
+}
+
+
 } // end class
 
 
@@ -0,0 +1,128 @@
+//			 MhwHistory.java
+//
+// this class keeps forks of a growing MhwMatrix, from the most recent
+// growth iterations, in a ring of fixed size, so that growth can be
+// rewound to, or branched from, any of these without any disk I/O.
+// when the ring is full, recording another iteration drops the oldest
+//
+// as the FPGA configuration of each fork is shared copy-on-write, each
+// entry only holds copies of the CLBs that have changed since (and the
+// cells' and TFs' state), so a ring of a few dozen entries is cheap
+//
+// 		written Oct 2026, agent
+//
+// this class also requires the local classes:
+// 			MhwMatrix
+
+
+
+class MhwHistory {
+
+	MhwMatrix[] states;	// the forks, in a ring
+	int[] iters;		// the growth iteration of each
+	int first;		// index of the oldest
+	int count;		// number of forks in the ring
+
+
+
+MhwHistory(int capacity)
+{
+  if (capacity<1) {
+    System.err.println("MhwHistory needs room for at least 1 growth iteration");
+    System.exit(1);
+  }
+  states=new MhwMatrix[capacity];
+  iters=new int[capacity];
+  first=0;
+  count=0;
+}
+
+
+public int capacity() { return states.length; }
+public int size() { return count; }
+
+
+// keep a fork of mhw, as it is at growth iteration iter
+public void record(int iter, MhwMatrix mhw)
+{
+  int i;
+  if (count<states.length) {
+    i=(first+count)%states.length;
+    count++;
+  } else {				// replace the oldest
+    i=first;
+    first=(first+1)%states.length;
+  }
+  states[i]=mhw.fork();
+  iters[i]=iter;
+}
+
+
+// the growth iteration of the n'th recorded fork, with 0 being the oldest
+public int getIteration(int n)
+{
+  return iters[(first+n)%states.length];
+}
+
+
+// returns true if growth iteration iter is still in the ring
+public boolean contains(int iter)
+{
+  return (find(iter)>=0);
+}
+
+
+// return mhw to its state at growth iteration iter, returning false if
+// this is no longer in the ring. mhw must be the MhwMatrix that was
+// recorded (or a fork of it)
+public boolean rewind(MhwMatrix mhw, int iter)
+{
+  int i=find(iter);
+  if (i<0) { return false; }
+  mhw.rewind(states[i]);
+  return true;
+}
+
+
+// returns the recorded fork of growth iteration iter, eg to save its
+// bitstream, or null if it's no longer in the ring. it mustn't be grown
+// or changed, as that would change the recorded state (see branch())
+public MhwMatrix get(int iter)
+{
+  int i=find(iter);
+  return (i<0) ? null : states[i];
+}
+
+
+// returns a new fork of the state at growth iteration iter, to grow
+// independently, or null if it's no longer in the ring
+public MhwMatrix branch(int iter)
+{
+  int i=find(iter);
+  return (i<0) ? null : states[i].fork();
+}
+
+
+// forget all the recorded forks
+public void clear()
+{
+  for (int i=0; i<states.length; i++) { states[i]=null; }
+  first=0;
+  count=0;
+}
+
+
+// the ring index of growth iteration iter, searching from the most recent,
+// or -1 if it isn't there
+int find(int iter)
+{
+  int i;
+  for (int n=count-1; n>=0; n--) {
+    i=(first+n)%states.length;
+    if (iters[i]==iter) { return i; }
+  }
+  return -1;
+}
+
+
+}
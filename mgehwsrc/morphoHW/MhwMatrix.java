@@ -5,11 +5,17 @@
 // this class implements the EHW morphogenesis process across a matrix
 // of cells
 //
+// the state of the system can be saved and restored either as text (with
+// the FPGA configuration and the random number generator in separate
+// files), which is readable and can be exported, or as a single binary
+// snapshot file, which is much quicker for pausing and resuming growth
+//
 // 		written Dec 2003, J.A. Lee
 //
 // this class also requires the local classes:
 // 	StringSplitter, ChromInfo, GeneInfo, GeneState, Polymerase,
-// 	CellResourcesMatrix, MhwCell, CellOrdering, CellCoords
+// 	CellResourcesMatrix, MhwCell, CellOrdering, CellCoords, MhwStats,
+// 	FatalError
 
 
 // for String's etc
@@ -41,6 +47,10 @@ class MhwMatrix {
     "# note: same order for fields instantiating a MhwMatrix instance,\n"+
     "#       but with randstatefile replacing the random seed\n\n";
 
+	// binary snapshots start with this, and the format's version
+	static final String SNAPMAGIC="MHWS";
+	static final int SNAPVERSION=1;
+
         String randstatefile;		// name of file Random obj stored in
   	String classargs;		// stores args class instantiated w/
         boolean DEBUG;
@@ -53,6 +63,7 @@ class MhwMatrix {
 
 	ChromInfo chromosome;		// the decoded chrom parsed from file
 	CellResourcesMatrix resources;	// all the config/queryable resources
+	JBitsResources sharedres=null;	// if not null, use for the FPGA
 	MhwCell cellmatrix[][];		// the cells
 
 	int numCellRows;		// number of rows of cells
@@ -68,6 +79,8 @@ class MhwMatrix {
 
 	List updateorder;		// cell coords ordered for update
 
+	MhwStats stats=null;		// if not null, cells keep statistics
+
 
 
 // this is for testing purposes only
@@ -143,10 +156,53 @@ public static void main(String[] args)
 }
 
 
-// instantiate class with state of a previously saved object
+// instantiate class with state of a previously saved object, from either
+// a text state file or a binary snapshot
 public MhwMatrix(String statefile)
 {
-  loadState(statefile);
+  if (isSnapshot(statefile)) {
+    loadSnapshot(statefile);
+  } else {
+    loadState(statefile);
+  }
+}
+
+
+// create a copy of src, for fork(). the (read-only) chromosome, IO coords
+// and cell ordering are shared with src, and the resources are forked,
+// but the cells are created with a dummy Random object, and their state
+// is copied from src after this
+MhwMatrix(MhwMatrix src)
+{
+  randstatefile=src.randstatefile;
+  classargs=src.classargs;
+  DEBUG=src.DEBUG;
+  rand=new Random();
+
+  polyToGeneRatio=src.polyToGeneRatio;
+  numRP2=src.numRP2;
+  RP2activationThreshold=src.RP2activationThreshold;
+  transcriptionRate=src.transcriptionRate;
+
+  chromosome=src.chromosome;
+  resources=src.resources.fork(rand);
+  numCellRows=src.numCellRows;
+  numCellCols=src.numCellCols;
+  minCLBrow=src.minCLBrow;
+  maxCLBrow=src.maxCLBrow;
+  minCLBcol=src.minCLBcol;
+  maxCLBcol=src.maxCLBcol;
+  incoords=src.incoords;
+  outcoords=src.outcoords;
+  updateorder=src.updateorder;
+
+  cellmatrix=new MhwCell[numCellRows][numCellCols];
+  for (int i=0; i<numCellRows; i++) {
+    for (int j=0; j<numCellCols; j++) {
+      cellmatrix[i][j]=new MhwCell(i,j,numRP2,RP2activationThreshold,transcriptionRate,chromosome,resources,rand,DEBUG);
+      cellmatrix[i][j].setIncremental(src.cellmatrix[i][j].incremental);
+    }
+  }
 }
 
 
@@ -207,6 +263,45 @@ public MhwMatrix(long seed, String bitFile, String deviceName,
        vgran,glimit,dbg);
 }
 
+// this grows on the FPGA configuration already held by jbr, rather than
+// creating a new one from the bitstream file. this allows a long running
+// process to reuse the one set of JBits resources for many chromosomes
+public MhwMatrix(long seed, JBitsResources jbr,
+          String minCLBcoord, String maxCLBcoord,
+          String[] inputCLBslices, String[] outputCLBslices, 
+          String chromFile, String cytoplasmFile, 
+	  double p2gratio, double pa, int trate, long mglifespan,
+          long tflifespan, int tfageratefree, int tfageratebound,
+	  int mgpropdelay, int vgran, boolean dbg)
+{
+  rand=new Random(seed); // initialise new random number generator
+  sharedres=jbr;
+  init(jbr.getBitstreamFile(),jbr.getDeviceName(),minCLBcoord,maxCLBcoord,
+       inputCLBslices,outputCLBslices,jbr.getContentionFile(),chromFile,
+       cytoplasmFile,p2gratio,pa,trate,mglifespan,tflifespan,tfageratefree,
+       tfageratebound,mgpropdelay,vgran,0,dbg);
+}
+
+// as above, but growing an already decoded chromosome (eg from ChromDecoder
+// and ConvToJBits), rather than one read from file. chromName is saved in
+// place of the chromosome file's name, with saveState() & saveSnapshot()
+public MhwMatrix(long seed, JBitsResources jbr,
+          String minCLBcoord, String maxCLBcoord,
+          String[] inputCLBslices, String[] outputCLBslices, 
+          ChromInfo chrom, String chromName, String cytoplasmFile, 
+	  double p2gratio, double pa, int trate, long mglifespan,
+          long tflifespan, int tfageratefree, int tfageratebound,
+	  int mgpropdelay, int vgran, boolean dbg)
+{
+  rand=new Random(seed); // initialise new random number generator
+  sharedres=jbr;
+  chromosome=chrom;
+  init(jbr.getBitstreamFile(),jbr.getDeviceName(),minCLBcoord,maxCLBcoord,
+       inputCLBslices,outputCLBslices,jbr.getContentionFile(),chromName,
+       cytoplasmFile,p2gratio,pa,trate,mglifespan,tflifespan,tfageratefree,
+       tfageratebound,mgpropdelay,vgran,0,dbg);
+}
+
 
 // initialise the object, except for the random number generator, which
 // is done elsewhere
@@ -223,8 +318,10 @@ void init(String bitFile, String deviceName, String mincoord, String maxcoord,
   // cytoplasmFile may be null (or empty) if there isn't one
   if (cytoplasmFile==null) { cytoplasmFile=""; } // so can store in classargs
 
-  // extract info from decoded chromosome
-  chromosome=new ChromInfo(chromFile,glimit);
+  // extract info from decoded chromosome, unless it was given already
+  if (chromosome==null) {
+    chromosome=new ChromInfo(chromFile,glimit);
+  }
   polyToGeneRatio=p2gratio;
   // use values above 1.0 to explicitly set number of polymerase molecules
   // as values above 1.0 are meaningless, as there will always be enough
@@ -245,13 +342,13 @@ void init(String bitFile, String deviceName, String mincoord, String maxcoord,
   int[] mins=StringSplitter.str2ints(mincoord,",");
   if (mins.length!=2) {
     System.err.println("Invalid number of fields ("+mins.length+") for morphogenesis lower bound CLB coords");
-    System.exit(1);
+    FatalError.exit("Invalid number of fields ("+mins.length+") for morphogenesis lower bound CLB coords");
   }
 
   int[] maxs=StringSplitter.str2ints(maxcoord,",");
   if (maxs.length!=2) {
     System.err.println("Invalid number of fields ("+maxs.length+") for morphogenesis upper bound CLB coords");
-    System.exit(1);
+    FatalError.exit("Invalid number of fields ("+maxs.length+") for morphogenesis upper bound CLB coords");
   }
 
   minCLBrow=mins[0];
@@ -260,7 +357,11 @@ void init(String bitFile, String deviceName, String mincoord, String maxcoord,
   maxCLBcol=maxs[1];
 
   // cells with (horiz) slice granularity, (vert) CLB (2) or LE (1) gran
-  resources=new CellResourcesMatrix(deviceName, mins[0], mins[1], maxs[0], maxs[1], contentionFile, bitFile, cytoplasmFile, mglifespan, tflifespan, tfageratefree, tfageratebound,mgpropdelay,1,vgran,rand);
+  if (sharedres!=null) {
+    resources=new CellResourcesMatrix(sharedres, mins[0], mins[1], maxs[0], maxs[1], cytoplasmFile, mglifespan, tflifespan, tfageratefree, tfageratebound,mgpropdelay,1,vgran,rand);
+  } else {
+    resources=new CellResourcesMatrix(deviceName, mins[0], mins[1], maxs[0], maxs[1], contentionFile, bitFile, cytoplasmFile, mglifespan, tflifespan, tfageratefree, tfageratebound,mgpropdelay,1,vgran,rand);
+  }
 
   numCellRows=resources.getCellRows();
   numCellCols=resources.getCellCols();
@@ -340,6 +441,53 @@ public int getCellCols() { return resources.getCellCols(); }
 // update a specific cell
 public void step(int row, int col) { cellmatrix[row][col].step(); }
 
+// turn on (default) or off only re-evaluating the binding in cells where
+// something that it depends on has changed. growth is the same either way
+public void setIncrementalBinding(boolean incr)
+{
+  for (int i=0; i<numCellRows; i++) {
+    for (int j=0; j<numCellCols; j++) {
+      cellmatrix[i][j].setIncremental(incr);
+    }
+  }
+}
+
+// start keeping statistics of the time spent in each phase of growth,
+// and counts of bindings, resource settings etc, returning the MhwStats
+// that they're kept in (the same one if already enabled). when disabled
+// (the default) the cells skip all of this. a fork doesn't keep stats
+// unless they're enabled on it too
+public MhwStats enableStats()
+{
+  if (stats==null) {
+    stats=new MhwStats();
+    setCellStats(stats);
+  }
+  return stats;
+}
+
+// stop keeping statistics, closing any growth step log
+public void disableStats()
+{
+  if (stats!=null) {
+    stats.closeLog();
+    stats=null;
+    setCellStats(null);
+  }
+}
+
+// the statistics being kept, or null if they're not enabled
+public MhwStats getStats() { return stats; }
+
+void setCellStats(MhwStats s)
+{
+  for (int i=0; i<numCellRows; i++) {
+    for (int j=0; j<numCellCols; j++) {
+      cellmatrix[i][j].setStats(s);
+    }
+  }
+}
+
 // update all cells N times
 public void step(int nsteps) { for (int i=0; i<nsteps; i++) { step(); } }
 
@@ -356,6 +504,7 @@ public void step()
     (cellmatrix[coord.row][coord.col]).step();
   }
 
+  if (stats!=null) { stats.stepped(); }
   if (DEBUG) { System.out.println("updated state: "+getCellStates()); }
 }
 
@@ -432,16 +581,16 @@ public String getCellState(int row, int col)
 // get the state of the system, not including FPGA-state and Random state
 public String getCellStates()
 {
-  String state="";
+  StringBuffer state=new StringBuffer();
 
   // get state of each cell
   for (int i=0; i<numCellRows; i++) {
     for (int j=0; j<numCellCols; j++) {
-      state+=cellmatrix[i][j].getState()+"\n";
+      state.append(cellmatrix[i][j].getState()).append('\n');
     }
   }
 
-  return state;
+  return state.toString();
 }
 
 // this is to allow direct access to the FPGA resources, bypassing the
@@ -458,6 +607,177 @@ public ChromInfo getChrom() { return chromosome; }
 public int numGenes() { return chromosome.numGenes(); }
 
 
+// create a copy of the current state of the system, including the FPGA
+// configuration and the Random object, that can be grown independently of
+// this one, eg to try several seeds (via setSeed()) from the same point.
+// the FPGA configuration is forked copy-on-write (so with a packed
+// configuration this doesn't copy the CLBs), and the cells' and TFs'
+// state is copied in memory in its snapshot form. the copy has its own
+// JBitsResources, so any fitness test needs to be given that
+public MhwMatrix fork()
+{
+  MhwMatrix copy=new MhwMatrix(this);
+  copy.copyCells(this);
+  return copy;
+}
+
+
+// return the system to the state of saved, which must be a fork of this
+// (or this a fork of it), eg to go back to the iteration with the highest
+// fitness. this keeps its own JBitsResources, so that anything using it
+// (eg ActiveInputLEs) continues to work, and only the CLBs whose
+// configuration differs are changed. saved itself is unchanged
+public void rewind(MhwMatrix saved)
+{
+  if (saved.chromosome!=chromosome || !saved.classargs.equals(classargs)) {
+    System.err.println("Error rewinding MhwMatrix: not a fork of the same system");
+    System.exit(1);
+  }
+  copyCells(saved);
+  resources.copyState(saved.resources);
+}
+
+
+// seed the random number generator, eg after forking, so that the copy
+// grows differently. this also affects the spread of morphogens
+public void setSeed(long seed) { rand.setSeed(seed); }
+
+
+// copy the Random object and the cells' state (but not the TFs or FPGA
+// configuration) from src
+void copyCells(MhwMatrix src)
+{
+  try {
+    ByteArrayOutputStream buf=new ByteArrayOutputStream();
+    DataOutputStream out=new DataOutputStream(buf);
+    src.writeCells(out);
+    out.close();
+    readCells(new DataInputStream(new ByteArrayInputStream(buf.toByteArray())));
+  } catch (Exception e) {
+    System.err.println("Error copying MhwMatrix cell states\n" + e);
+    System.exit(1);
+  }
+}
+
+
+// save the current state of the system to a binary snapshot file, which
+// holds the same state as saveState(), plus the LUT active FN settings,
+// in a single file that is much quicker to write and read back. this is:
+// 	SNAPMAGIC, SNAPVERSION, bitstream, classargs, cell rows, cell cols,
+// 	serialised Random object (length, bytes), each cell's state (in row
+// 	then col order), the TF ids and each cell's TFs, FPGA configuration
+// if the FPGA configuration isn't a packed configuration, then JBits has
+// to write it as a bitstream, to snapfile.bit, which needs to be kept
+// with the snapshot
+public void saveSnapshot(String snapfile)
+{
+  try {
+    DataOutputStream out=new DataOutputStream(new BufferedOutputStream(new FileOutputStream(snapfile),65536));
+    out.writeBytes(SNAPMAGIC);
+    out.writeInt(SNAPVERSION);
+    out.writeUTF(resources.getJBitsResources().getBitstreamFile());
+    out.writeUTF(classargs);
+    out.writeInt(numCellRows);
+    out.writeInt(numCellCols);
+    writeCells(out);
+    resources.writeState(out,snapfile+".bit");
+    out.close();
+  } catch (Exception e) {
+    System.err.println("Error writing snapshot " + snapfile + "\n" + e);
+    System.exit(1);
+  }
+}
+
+
+// write the serialised Random object (length, bytes), and then each cell's
+// state, in row then col order. the TFs aren't included
+void writeCells(DataOutputStream out) throws IOException
+{
+  ByteArrayOutputStream randbytes=new ByteArrayOutputStream();
+  ObjectOutputStream oos=new ObjectOutputStream(randbytes);
+  oos.writeObject(rand);
+  oos.close();
+  out.writeInt(randbytes.size());
+  randbytes.writeTo(out);
+
+  for (int i=0; i<numCellRows; i++) {
+    for (int j=0; j<numCellCols; j++) {
+      cellmatrix[i][j].writeState(out);
+    }
+  }
+}
+
+
+// read back what writeCells() wrote. the cells' TFs are left as they are
+void readCells(DataInputStream in) throws IOException, ClassNotFoundException
+{
+  byte[] randbytes=new byte[in.readInt()];
+  in.readFully(randbytes);
+  ObjectInputStream ois=new ObjectInputStream(new ByteArrayInputStream(randbytes));
+  rand=(Random)ois.readObject();
+  ois.close();
+  resources.setRandom(rand);
+
+  for (int i=0; i<numCellRows; i++) {
+    for (int j=0; j<numCellCols; j++) {
+      cellmatrix[i][j].readState(in,rand);
+    }
+  }
+}
+
+
+// returns true if the file starts with SNAPMAGIC
+boolean isSnapshot(String statefile)
+{
+  byte[] magic=new byte[SNAPMAGIC.length()];
+  int n=0;
+  try {
+    FileInputStream in=new FileInputStream(statefile);
+    n=in.read(magic);
+    in.close();
+  } catch (Exception e) {
+    return false;	// let loadState() report it
+  }
+  return (n==magic.length && new String(magic).equals(SNAPMAGIC));
+}
+
+
+// this should only be called by the constructor, that's why its not public
+void loadSnapshot(String snapfile)
+{
+  try {
+    DataInputStream in=new DataInputStream(new BufferedInputStream(new FileInputStream(snapfile),65536));
+    byte[] magic=new byte[SNAPMAGIC.length()];
+    in.readFully(magic);
+    int version=in.readInt();
+    if (version!=SNAPVERSION) {
+      throw new IOException("snapshot is version "+version+", can only read version "+SNAPVERSION);
+    }
+    String bitFile=in.readUTF();
+    String args=in.readUTF();
+
+    // as with loadState(), the cells are created with a dummy Random
+    // object, as their initial states are overwritten by the saved state
+    rand=new Random();
+    initFromArgs(bitFile,args,snapfile);
+
+    if (in.readInt()!=numCellRows || in.readInt()!=numCellCols) {
+      throw new IOException("snapshot has a different number of cells");
+    }
+    readCells(in);
+    resources.readState(in);
+    in.close();
+  } catch (EOFException e) {
+    System.err.println("Error reading snapshot " + snapfile + ": file is truncated");
+    System.exit(1);
+  } catch (Exception e) {
+    System.err.println("Error reading snapshot " + snapfile + "\n" + e);
+    System.exit(1);
+  }
+}
+
+
+
 // save the current state of the system to file
 // requires 3 files: s/w system state file, FPGA configuration bitstream,
 // random object serialised state
@@ -542,67 +862,27 @@ void loadState(String statefile)
   String mhwsettings=(String)statelist.get(0);
   // get rid of the *.*: MHW=
   mhwsettings=mhwsettings.substring(mhwsettings.indexOf('=')+1);
-  // put each setting into a list
-  String[] settings=StringSplitter.trimsplit(mhwsettings,",");
-  if (settings.length<22) {
+  // settings 0-1 are: randstatefile,bitstream, and the rest are classargs
+  String[] settings=StringSplitter.trimsplit(mhwsettings,",",2);
+  if (settings.length<3) {
     System.err.println("Error in parsing MhwMatrix settings: too few settings ("+settings.length+") in " + mhwsettings + " from file "+ statefile +"\n");
     System.exit(1);
   }
-  
-  // settings 0-6 are: randstatefile,bitstream,deviceName,
-  // 			minCLBrow,minCLBcol,maxCLBrow,maxCLBcol
 
   String randstatefile=settings[0];
 
-  String bitFile=settings[1];
-  String deviceName=settings[2];
-  String minCLBcoords=settings[3]+","+settings[4];
-  String maxCLBcoords=settings[5]+","+settings[6];
-  
-  // settings 7 is a space delimited list of inCLBcoords, with
-  // row and col separated by a "/"
-  settings[7]=settings[7].replace('/',',');
-  String[] inputCLBcoords=StringSplitter.split(settings[7]," ");
-  
-  // settings 8 is a space delimited list of outCLBcoords, with
-  // row and col separated by a "/"
-  settings[8]=settings[8].replace('/',',');
-  String[] outputCLBcoords=StringSplitter.split(settings[8]," ");
-
- // settings 9-22 are: contentionFile, chromFile, cytoplasmFile,
- //                    polyToGeneRatio, RP2activationThreshold,
- //                    transcriptionRate, mglifespan, tflifespan,
- //                    tfageratefree, tfageratebound, mgpropdelay,
- //                    vgran, glimit, debugflag
-
-  String contentionFile=settings[9];
-  String chromFile=settings[10];
-  String cytoplasmFile=settings[11];
-  double p2gratio=Double.parseDouble(settings[12]);
-  double pa=Double.parseDouble(settings[13]);
-  int trate=Integer.parseInt(settings[14]);
-  long mglifespan=Long.parseLong(settings[15]);
-  long tflifespan=Long.parseLong(settings[16]);
-  int tfageratefree=Integer.parseInt(settings[17]);
-  int tfageratebound=Integer.parseInt(settings[18]);
-  int mgpropdelay=Integer.parseInt(settings[19]);
-  int vgran=Integer.parseInt(settings[20]);
-  int glimit=Integer.parseInt(settings[21]);
-  boolean dbg=(settings[22].equals("true"));
-
   // create a dummy Random object here, that will be used when generating
   // the cells initial states, but since these states will be overwritten
   // by the saved state, we don't care what this temporary cell states are
   rand=new Random();
 
   // initialise Mhw object with saved state (cell states done after)
-  init(bitFile, deviceName, minCLBcoords, maxCLBcoords,
-            inputCLBcoords, outputCLBcoords, contentionFile, chromFile,
-	    cytoplasmFile, p2gratio, pa, trate, mglifespan, tflifespan,
-	    tfageratefree, tfageratebound, mgpropdelay, vgran, glimit, dbg);
+  initFromArgs(settings[1],settings[2],statefile);
 
-  // we need the old Random object to be passed to all the cells
+  // we need the old Random object to be passed to all the cells, and to
+  // the TFs for spreading morphogens
   rand=readRandomState(randstatefile);
+  resources.setRandom(rand);
 
 if (DEBUG) { System.out.println("MHW state="+(String)statelist.get(0)); }
   int r,c;
@@ -632,6 +912,61 @@ if (DEBUG) { System.out.println("cell state("+i+")="+statestr); }
 }
 
 
+// initialise the object from the settings it was saved with. bitFile is
+// the bitstream to initialise the FPGA with, and args is classargs
+void initFromArgs(String bitFile, String args, String statefile)
+{
+  // put each setting into a list
+  String[] settings=StringSplitter.trimsplit(args,",");
+  if (settings.length<21) {
+    System.err.println("Error in parsing MhwMatrix settings: too few settings ("+settings.length+") in " + args + " from file "+ statefile +"\n");
+    System.exit(1);
+  }
+  
+  // settings 0-4 are: deviceName,minCLBrow,minCLBcol,maxCLBrow,maxCLBcol
+
+  String deviceName=settings[0];
+  String minCLBcoords=settings[1]+","+settings[2];
+  String maxCLBcoords=settings[3]+","+settings[4];
+  
+  // settings 5 is a space delimited list of inCLBcoords, with
+  // row and col separated by a "/"
+  settings[5]=settings[5].replace('/',',');
+  String[] inputCLBcoords=StringSplitter.split(settings[5]," ");
+  
+  // settings 6 is a space delimited list of outCLBcoords, with
+  // row and col separated by a "/"
+  settings[6]=settings[6].replace('/',',');
+  String[] outputCLBcoords=StringSplitter.split(settings[6]," ");
+
+ // settings 7-20 are: contentionFile, chromFile, cytoplasmFile,
+ //                    polyToGeneRatio, RP2activationThreshold,
+ //                    transcriptionRate, mglifespan, tflifespan,
+ //                    tfageratefree, tfageratebound, mgpropdelay,
+ //                    vgran, glimit, debugflag
+
+  String contentionFile=settings[7];
+  String chromFile=settings[8];
+  String cytoplasmFile=settings[9];
+  double p2gratio=Double.parseDouble(settings[10]);
+  double pa=Double.parseDouble(settings[11]);
+  int trate=Integer.parseInt(settings[12]);
+  long mglifespan=Long.parseLong(settings[13]);
+  long tflifespan=Long.parseLong(settings[14]);
+  int tfageratefree=Integer.parseInt(settings[15]);
+  int tfageratebound=Integer.parseInt(settings[16]);
+  int mgpropdelay=Integer.parseInt(settings[17]);
+  int vgran=Integer.parseInt(settings[18]);
+  int glimit=Integer.parseInt(settings[19]);
+  boolean dbg=(settings[20].equals("true"));
+
+  init(bitFile, deviceName, minCLBcoords, maxCLBcoords,
+            inputCLBcoords, outputCLBcoords, contentionFile, chromFile,
+	    cytoplasmFile, p2gratio, pa, trate, mglifespan, tflifespan,
+	    tfageratefree, tfageratebound, mgpropdelay, vgran, glimit, dbg);
+}
+
+
 Random readRandomState(String randstatefile)
 {
   Random rnd=null;
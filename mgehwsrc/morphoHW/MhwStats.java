@@ -0,0 +1,216 @@
+//			 MhwStats.java
+//
+// this class keeps statistics of where the time goes in growing a MhwMatrix:
+// the time spent in each of the phases of a cell's step, and counts of the
+// bind site queries, TFs bound, resources set (and those not set because
+// they would cause contention), and polymerase molecules bound to genes.
+// one of these is shared by all of a MhwMatrix's cells, when enabled with
+// MhwMatrix.enableStats(), otherwise the cells don't keep any statistics.
+//
+// the totals are kept since the statistics were enabled (or reset), and a
+// summary of each growth step (the totals for that step) can be logged to
+// a CSV file as growth proceeds.
+//
+// the phases are timed with System.currentTimeMillis, as each phase is
+// usually much shorter than a millisecond, most only see 0 ms elapse, but
+// when the clock ticks during a phase, it gets the whole tick. the chance
+// of this is in proportion to the phase's length, so over many cell steps
+// the totals are a fair estimate of the time spent in each phase
+//
+// 		written Oct 2026, agent
+
+
+// for IO
+import java.io.*;
+
+
+
+class MhwStats {
+
+	// the phases of a cell step, in the order they are done
+	static final String[] PHASES={ "binding", "activations",
+	  "polybinding", "tfs", "transcribe" };
+	static final int BINDING=0;
+	static final int ACTIVATIONS=1;
+	static final int POLYBINDING=2;
+	static final int TFS=3;
+	static final int TRANSCRIBE=4;
+
+	// the events that are counted
+	static final String[] COUNTS={ "bindqueries", "tfbinds",
+	  "resourcesets", "contentionrejects", "polybinds" };
+	static final int BINDQUERIES=0;
+	static final int TFBINDS=1;
+	static final int RESOURCESETS=2;
+	static final int CONTENTIONREJECTS=3;
+	static final int POLYBINDS=4;
+
+	long steps;			// growth steps of the whole matrix
+	long cellsteps;			// steps of individual cells
+	long[] phasetime;		// total ms in each phase
+	long[] counts;			// total of each event
+
+	// the totals at the end of the last growth step, for the step log
+	long lastcellsteps;
+	long[] lastphasetime;
+	long[] lastcounts;
+
+	PrintWriter steplog=null;	// if not null, log each growth step
+	String steplogfile;
+
+	long phasestart;		// when the current phase started
+
+
+
+MhwStats()
+{
+  phasetime=new long[PHASES.length];
+  counts=new long[COUNTS.length];
+  lastphasetime=new long[PHASES.length];
+  lastcounts=new long[COUNTS.length];
+}
+
+
+// zero the totals. a step log continues, numbering steps from 1 again
+public void reset()
+{
+  steps=cellsteps=lastcellsteps=0;
+  for (int i=0; i<PHASES.length; i++) { phasetime[i]=lastphasetime[i]=0; }
+  for (int i=0; i<COUNTS.length; i++) { counts[i]=lastcounts[i]=0; }
+}
+
+
+public long getSteps() { return steps; }
+public long getCellSteps() { return cellsteps; }
+public long getPhaseTime(int phase) { return phasetime[phase]; }
+public long getCount(int event) { return counts[event]; }
+
+
+
+// these are used by MhwCell as it steps
+
+void startPhases() { phasestart=System.currentTimeMillis(); }
+
+// the phase has finished, and the next starts now
+void endPhase(int phase)
+{
+  long now=System.currentTimeMillis();
+  phasetime[phase]+=now-phasestart;
+  phasestart=now;
+}
+
+void cellStepped() { cellsteps++; }
+
+void count(int event) { counts[event]++; }
+
+void count(int event, long n) { counts[event]+=n; }
+
+
+
+// this is used by MhwMatrix at the end of each growth step
+void stepped()
+{
+  steps++;
+  if (steplog!=null) {
+    StringBuffer row=new StringBuffer();
+    row.append(steps).append(',').append(cellsteps-lastcellsteps);
+    for (int i=0; i<PHASES.length; i++) {
+      row.append(',').append(phasetime[i]-lastphasetime[i]);
+    }
+    for (int i=0; i<COUNTS.length; i++) {
+      row.append(',').append(counts[i]-lastcounts[i]);
+    }
+    steplog.println(row.toString());
+    if (steplog.checkError()) {
+      System.err.println("MhwStats: error writing growth step log to "+steplogfile);
+      System.exit(1);
+    }
+  }
+
+  lastcellsteps=cellsteps;
+  System.arraycopy(phasetime,0,lastphasetime,0,PHASES.length);
+  System.arraycopy(counts,0,lastcounts,0,COUNTS.length);
+}
+
+
+
+// log a summary of each growth step from now on to a CSV file, with the
+// columns given by csvHeader()
+public void logSteps(String file)
+{
+  closeLog();
+  try {
+    steplog=new PrintWriter(new BufferedWriter(new FileWriter(file)));
+  } catch (IOException e) {
+    System.err.println("MhwStats: can't open growth step log "+file+": "+e);
+    System.exit(1);
+  }
+  steplogfile=file;
+  steplog.println(csvHeader());
+}
+
+
+public void closeLog()
+{
+  if (steplog!=null) {
+    steplog.close();
+    steplog=null;
+  }
+}
+
+
+// the CSV columns for a growth step, or for the totals
+public static String csvHeader()
+{
+  StringBuffer hdr=new StringBuffer("step,cellsteps");
+  for (int i=0; i<PHASES.length; i++) { hdr.append(',').append(PHASES[i]).append("_ms"); }
+  for (int i=0; i<COUNTS.length; i++) { hdr.append(',').append(COUNTS[i]); }
+  return hdr.toString();
+}
+
+
+// the totals as a CSV row, with the number of growth steps as the step
+public String csvTotals()
+{
+  StringBuffer row=new StringBuffer();
+  row.append(steps).append(',').append(cellsteps);
+  for (int i=0; i<PHASES.length; i++) { row.append(',').append(phasetime[i]); }
+  for (int i=0; i<COUNTS.length; i++) { row.append(',').append(counts[i]); }
+  return row.toString();
+}
+
+
+// write the totals to a CSV file, with a header
+public void writeCSV(String file)
+{
+  try {
+    PrintWriter out=new PrintWriter(new FileWriter(file));
+    out.println(csvHeader());
+    out.println(csvTotals());
+    out.close();
+  } catch (IOException e) {
+    System.err.println("MhwStats: can't write "+file+": "+e);
+    System.exit(1);
+  }
+}
+
+
+public String toString()
+{
+  long total=0;
+  for (int i=0; i<PHASES.length; i++) { total+=phasetime[i]; }
+
+  StringBuffer sb=new StringBuffer();
+  sb.append("growth steps="+steps+", cell steps="+cellsteps+", time="+total+" ms\n");
+  sb.append("phase times (ms):");
+  for (int i=0; i<PHASES.length; i++) {
+    sb.append(" "+PHASES[i]+"="+phasetime[i]);
+    if (total>0) { sb.append(" ("+(phasetime[i]*100/total)+"%)"); }
+  }
+  sb.append("\ncounts:");
+  for (int i=0; i<COUNTS.length; i++) { sb.append(" "+COUNTS[i]+"="+counts[i]); }
+  return sb.toString();
+}
+
+
+}
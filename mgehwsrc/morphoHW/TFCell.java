@@ -6,6 +6,16 @@
 // querying a bound or unbound TF, and for saving and restoring the state
 // of TFs in a cell.
 //
+// the free and bound TFs are kept in primitive arrays, rather than maps of
+// Long objects, as aging the TFs every step otherwise creates a lot of
+// garbage. each different dist+seq is given an integer id (by a TFSeqTable
+// which is shared by all the cells in a matrix), and the TFs with that
+// dist+seq are stored in a TFLoci, which is sorted by locus so that the
+// closest TF to a bind site can be found with a binary search.
+//
+// this class also requires the local class: TFSeqTable
+// and the local class (in this file): TFLoci
+//
 // 		written Dec 2003, J.A. Lee
 //
 
@@ -21,19 +31,20 @@ import java.io.*;
 
 class TFCell {
 
-	Map freetfs;		// freetfs is a collection of unbound TFs
-				//   key:    dist '+' seq
-				//   value:  (TreeMap) ordered collection of
-				//           TFs with this dist+seq:
-				// 		key:	locus
-				// 		value:	(ArrayList) of ttl's
-				// 			for TFs @ this locus
+	TFSeqTable seqids;	// the ids of each dist '+' seq
+
+	TFLoci[] freetfs;	// freetfs is a collection of unbound TFs
+				//   index:  dist+seq id
+				//   value:  TFs with this dist+seq, ordered by
+				//           locus, and for TFs @ the same locus
+				//           by the order they were added (oldest
+				//           first). null if never any
 
 
-	Map boundtfs;		// boundtfs is a collection of TFs bound to
+	TFLoci[] boundtfs;	// boundtfs is a collection of TFs bound to
 				// regulator sites on the chromosome
-				// 	key:	dist '+' seq '@' bindloc
-				// 	value:	ttl
+				// 	index:	dist+seq id
+				// 	value:	ttl of TF at each bindloc
 
 
 	List releaseList;	// releaseList is a list of morphogen TFs
@@ -46,6 +57,9 @@ class TFCell {
 	int TFagerate_free;	// aging rate for free TFs
 	int TFagerate_bound;	// aging rate for bound Fs
 
+	long changes=0;		// count of TFs being added or removed, so
+				// can tell if free or bound TFs may differ
+
 	public boolean DEBUG=false;
 
 	// this is used for morphogens, where there is no predetermined locus
@@ -174,8 +188,15 @@ TFCell(long lifespan, int ageratef, int agerateb)
 
 TFCell(long mglifespan, long tlifespan, int ageratef, int agerateb)
 {
-  freetfs=new HashMap();
-  boundtfs=new HashMap();
+  this(mglifespan,tlifespan,ageratef,agerateb,new TFSeqTable());
+}
+
+// ids is the table of dist+seq ids, that is shared by the cells
+TFCell(long mglifespan, long tlifespan, int ageratef, int agerateb, TFSeqTable ids)
+{
+  seqids=ids;
+  freetfs=new TFLoci[0];
+  boundtfs=new TFLoci[0];
   releaseList=new ArrayList();
   morpholifespan=mglifespan;
   TFlifespan=tlifespan;
@@ -229,33 +250,69 @@ public void createTF(String seq, String type, String distfromsrc, long locus, lo
 // creates a new free TF
 void addFreeTF(String distNseq, long locus, long ttl)
 {
-  Long loco=new Long(locus);
-  Long ttlo=new Long(ttl);
+  int id=seqids.intern(distNseq);
+  changes++;
 
-  Map m=(TreeMap)freetfs.remove(distNseq);	// remove so can update
-  if (m==null) {
-    m=new TreeMap();
-  }
-
-  List l=(ArrayList)m.remove(loco);		// remove so can update
-  if (l==null) {
-    l=new ArrayList();
-  }
-
-if (DEBUG) { System.out.println("addFreeTF: matching ("+distNseq+") @ locus="+m+", with matching locus ("+locus+") have ttl="+l+"..."); }
-  // now update the collections
-  l.add(ttlo);				// TF's life span
-  m.put(loco,l);
-  freetfs.put(distNseq,m);
-if (DEBUG) { System.out.println("updated freetfs="+freetfs+"..."); }
+  TFLoci tfs=freeLoci(id);
+if (DEBUG) { System.out.println("addFreeTF: matching ("+distNseq+") @ locus="+tfs+", adding TF @ locus ("+locus+") with ttl="+ttl+"..."); }
+  tfs.add(locus,ttl);
+if (DEBUG) { System.out.println("updated freetfs="+tfsToString(freetfs,",")+"..."); }
 }
 
 
 // create a new bound TF
+// distNseqATloc is in the form: dist '+' seq '@' bindloc
 void addBoundTF(String distNseqATloc, long ttl)
 {
-  Long ttlo=new Long(ttl);
-  boundtfs.put(distNseqATloc,ttlo);
+  int at=distNseqATloc.lastIndexOf('@');
+  int id=seqids.intern(distNseqATloc.substring(0,at));
+  long locus=Long.parseLong(distNseqATloc.substring(at+1));
+  boundLoci(id).put(locus,ttl);
+  changes++;
+}
+
+
+// get the free/bound TFs with dist+seq id, creating them if necessary
+TFLoci freeLoci(int id)
+{
+  if (id>=freetfs.length) { freetfs=growLoci(freetfs); }
+  if (freetfs[id]==null) { freetfs[id]=new TFLoci(); }
+  return freetfs[id];
+}
+
+TFLoci boundLoci(int id)
+{
+  if (id>=boundtfs.length) { boundtfs=growLoci(boundtfs); }
+  if (boundtfs[id]==null) { boundtfs[id]=new TFLoci(); }
+  return boundtfs[id];
+}
+
+// the array is grown to have room for every id in the table
+TFLoci[] growLoci(TFLoci[] loci)
+{
+  TFLoci[] grown=new TFLoci[seqids.size()+8];
+  System.arraycopy(loci,0,grown,0,loci.length);
+  return grown;
+}
+
+
+// get the TFs with matching dist & seq, or null if there are none
+TFLoci getFreeLoci(String distNseq)
+{
+  int id=seqids.lookup(distNseq);
+  if (id<0 || id>=freetfs.length || freetfs[id]==null || freetfs[id].size()==0) {
+    return null;
+  }
+  return freetfs[id];
+}
+
+TFLoci getBoundLoci(String distNseq)
+{
+  int id=seqids.lookup(distNseq);
+  if (id<0 || id>=boundtfs.length || boundtfs[id]==null || boundtfs[id].size()==0) {
+    return null;
+  }
+  return boundtfs[id];
 }
 
 
@@ -267,7 +324,7 @@ void addBoundTF(String distNseqATloc, long ttl)
 
 public String getFreeTF(String distNseq, long locus)
 {
-  if (((Map)freetfs.get(distNseq))!=null) {	// get matching dist+seq
+  if (getFreeLoci(distNseq)!=null) {		// get matching dist+seq
     return new String(distNseq + "," + locus);
   } else {
     return null;
@@ -279,6 +336,12 @@ public String getFreeTF(String dist, String seq, long locus)
   return getFreeTF(dist+"+"+seq,locus);
 }
 
+// the same test as getFreeTF()!=null, but without creating the return string
+public boolean hasFreeTF(String distNseq)
+{
+  return (getFreeLoci(distNseq)!=null);
+}
+
 
 // return matching TF in format dist+seq,locus,ttl
 // or null if not bound here
@@ -290,24 +353,39 @@ public String getBoundTF(String dist, String seq, long locus)
 
 public String getBoundTF(String distNseq, long locus)
 {
-  Object t;
-  Long ttlo;
-  String key=new String(distNseq+"@"+locus);
+  TFLoci tfs=getBoundLoci(distNseq);
+  int i;
 
-  if ((ttlo=(Long)boundtfs.get(key))!=null) {
-    return new String(distNseq + "," + locus + "," + ttlo);
+  if (tfs!=null && (i=tfs.indexOf(locus))>=0) {
+    return new String(distNseq + "," + locus + "," + tfs.ttl[i]);
   } else {
     return null;
   }
 }
 
+// the same test as getBoundTF()!=null, but without any new strings
+public boolean hasBoundTF(String distNseq, long locus)
+{
+  TFLoci tfs=getBoundLoci(distNseq);
+  return (tfs!=null && tfs.indexOf(locus)>=0);
+}
+
+// boundkey is in the format of: dist "+" seq "@" locus
+public boolean hasBoundTF(String boundkey)
+{
+  int at=boundkey.lastIndexOf('@');
+  return hasBoundTF(boundkey.substring(0,at),Long.parseLong(boundkey.substring(at+1)));
+}
+
 
 // remove TF with matching distance & sequence from freetfs & add to boundtfs
 // and return bound TF (if any) in format: dist+seq,locus,ttl
 // note:
-// - it just grabs the first matching TF, ignoring distance from locus,
-//   and ttl - the first TF will probably be the oldest in list however
-//   ie its ttl will be the least
+// - it grabs the TF closest to the locus, ignoring its ttl - where there
+//   are several TFs at that locus, the first (oldest) is taken, ie its ttl
+//   will probably be the least
+// - TFs with a locus <0 (ie morphogens) will only be taken if there are no
+//   TFs with a locus >=0 at all, and then only if the bind locus is less
 
 public String bindTF(String dist, String seq, long locus)
 {
@@ -318,74 +396,49 @@ public String bindTF(String distNseq, long locus)
 {
 if (DEBUG) { System.out.println("binding TF ("+distNseq+") to "+locus+"..."); }
   String bnd=null;
-  Long loco;
-  long k, closest, lessthan, greaterthaneq;
-  Map locmap;
-  List ttlist;
-  Long ttlo;
-  String key;
+  long closest, lessthan, greaterthaneq;
+  int i;
+  long ttl;
 
+  TFLoci tfs=getFreeLoci(distNseq);
 if (DEBUG) {
-System.out.println("free TFs: "+freetfs);
-locmap=(Map)freetfs.get(distNseq); System.out.println("matched "+locmap);
+System.out.println("free TFs: "+tfsToString(freetfs,","));
+System.out.println("matched "+tfs);
 }
-  // note the use of remove in the following, as need to update entries
-  // extract matching dist+sequence TFs - a Map of (locus, List of ttls))
-  if ((locmap=(Map)freetfs.remove(distNseq))!=null) { 
+  // extract matching dist+sequence TFs, ordered by locus
+  if (tfs!=null) {
 if (DEBUG) { System.out.println("matched TF ("+distNseq+") in freetfs..."); }
 
-    // from the matching TFs find the closest TF locus
-    closest=lessthan=greaterthaneq=-1;
-    Iterator iter = locmap.entrySet().iterator();
-    while (iter.hasNext()) {
-      Map.Entry e = (Map.Entry)iter.next();
-      k=((Long)e.getKey()).longValue();
-      if (k>=locus) {
-	greaterthaneq=k;
-	if (lessthan<0) { lessthan=greaterthaneq; }
-	break;
-      }
-      lessthan=greaterthaneq=k;
+    // from the matching TFs find the closest TF locus, ie the loci either
+    // side of the bind locus
+    i=tfs.firstIndex(locus);			// first TF with locus >= locus
+    if (i<tfs.size()) {
+      greaterthaneq=tfs.locus[i];
+      lessthan=(i>0) ? tfs.locus[i-1] : -1;
+      if (lessthan<0) { lessthan=greaterthaneq; }
+    } else {
+      lessthan=greaterthaneq=tfs.locus[i-1];	// all TFs < locus
     }
-    
-    if (lessthan<0) {	 	// in case empty Map for this sequence
-if (DEBUG) { System.out.println("failed bind: empty locus->ttl-list Map for sequence, or bind locus<0..."); }
-      if (locmap.size()>0) {
-        freetfs.put(distNseq,locmap);	// put it back
-      }
-      return bnd; 
+
+    if (lessthan<0) {
+if (DEBUG) { System.out.println("failed bind: no TFs with locus>=0, or bind locus<0..."); }
+      return bnd;
     }
     closest = (locus-lessthan<=greaterthaneq-locus)? lessthan : greaterthaneq;
-    loco=new Long(closest);
 if (DEBUG) { System.out.println("found closest ("+distNseq+") @ "+closest+" in freetfs..."); }
 
-    // and from this entry extract the ttl's List with the matching locus
-    if ((ttlist=(List)locmap.remove(loco))!=null) {
-
-      // and extract the first (oldest) ttl, to give a TF to bind
-      if ((ttlo=(Long)ttlist.remove(0))!=null) {
-if (DEBUG) { System.out.println("extracted oldest ("+distNseq+") @ "+closest+" with ttl="+ttlo.longValue()+" in freetfs..."); }
-	// add TF with dist+seq @ locus with this ttl to the bound TFs
-	//	bountfs: key = dist '+' seq '@' bindloc; value = ttl
-        // the following assumes that no TF already bound at this locus
-        key=new String(distNseq+"@"+locus);
-        boundtfs.put(key,ttlo);
-	// set return value (for info purposes) to this TF
-	bnd=new String(distNseq+","+locus+","+ttlo.longValue());
-      }
-
-      // if any ttls left then put back updated ttl list for this locus
-      if (ttlist.size()>0) {
-if (DEBUG) { System.out.println("ttls left at this locus.."); }
-        locmap.put(loco,ttlist);
-      }
-    }
-
-    // if any TFs @ this locus, put back updated (locus) entry
-    if (locmap.size()>0) {
-if (DEBUG) { System.out.println("TFs left at this locus in freetfs.."); }
-      freetfs.put(distNseq,locmap);
-    }
+    // and extract the first (oldest) TF at this locus, to give a TF to bind
+    i=tfs.firstIndex(closest);
+    ttl=tfs.ttl[i];
+    tfs.remove(i);
+    changes++;
+if (DEBUG) { System.out.println("extracted oldest ("+distNseq+") @ "+closest+" with ttl="+ttl+" in freetfs..."); }
+
+    // add TF with dist+seq @ locus with this ttl to the bound TFs
+    // the following assumes that no TF already bound at this locus
+    boundLoci(seqids.lookup(distNseq)).put(locus,ttl);
+    // set return value (for info purposes) to this TF
+    bnd=new String(distNseq+","+locus+","+ttl);
   }
 
   return bnd; // return bound TF, if any
@@ -412,92 +465,25 @@ public void updateTFs()
 
 void ageFreeTFs()
 {
-  Map locmap;
-  List ttlist;
-
-  long ttl;
-  Long ttlo;
-
   if (DEBUG) { System.out.println("aging free TFs..."); }
   // for each TF with a different dist+seq
-  Iterator iter1 = freetfs.entrySet().iterator();
-  while (iter1.hasNext()) {
-    Map.Entry e1 = (Map.Entry)iter1.next();
-    locmap=(TreeMap)e1.getValue();
-
-if (DEBUG) { System.out.println("getting "+locmap.size()+" TF locii with dist+seq="+(String)e1.getKey()+"..."); }
-    // for each different locus
-    Iterator iter2 = locmap.entrySet().iterator();
-//if (DEBUG) { System.out.println("got iter2..."); }
-    while (iter2.hasNext()) {
-//if (DEBUG) { System.out.println("iter2 hasNext()..."); }
-      Map.Entry e2 = (Map.Entry)iter2.next();
-//if (DEBUG) { System.out.println("got e2 "+e2.getValue()+"..."); }
-      ttlist=(ArrayList)e2.getValue();
-if (DEBUG) { System.out.println(".. "+ttlist.size()+" TFs @ locus="+e2.getKey()+"..."); }
-
-      // for each ttl
-      ListIterator iter3 = ttlist.listIterator();
-      while (iter3.hasNext()) {
-	ttlo=(Long)iter3.next();
-	if (ttlo.longValue()!=Long.MIN_VALUE) { // don't age cytoplasms
-	  ttl=ttlo.longValue()-TFagerate_free;
-          if (DEBUG) { System.out.println("aged free TF ("+e1.getKey()+") @ "+e2.getKey()+" ttl="+ttl+"..."); }
-          if (ttl<=0) {
-            iter3.remove();		// its dead now, so remove it
-            if (DEBUG) { System.out.println("removed TF..."); }
-          } else {
-	    ttlo=new Long(ttl);
-            iter3.set(ttlo);		// update ttl
-            if (DEBUG) { System.out.println("updated TF..."); }
-          }
-	} // end age non-cytoplasm
-else if (DEBUG) { System.out.println("TF is cytoplasm.. don't age..."); }
-      } // end ttl while
-
-      // check if array of ttls now empty (after remove <=0 )
-      if (ttlist.size()==0) {
-        iter2.remove();			// remove this locus from dist+seq TFs
-      } else {
-        e2.setValue(ttlist);		// update ttl's at this locus
-      }
-    }
-
-    // check if any TFs left at this locus
-    // and 
-    if (locmap.size()==0) {
-      iter1.remove();			// remove this dist+seq from TFs
-    } else {
-      e1.setValue(locmap);		// update TFs with this dist+seq
+  for (int id=0; id<freetfs.length; id++) {
+    if (freetfs[id]!=null && freetfs[id].size()>0) {
+      if (DEBUG) { System.out.println("aging TFs with dist+seq="+seqids.name(id)+": "+freetfs[id]+"..."); }
+      changes+=freetfs[id].age(TFagerate_free);
     }
   }
-
 }
 
 
 void ageBoundTFs()
 {
-  long ttl;
-  Long ttlo;
-
   if (DEBUG) { System.out.println("aging bound TFs..."); }
-  Iterator iter = boundtfs.entrySet().iterator();
-  while (iter.hasNext()) {
-    Map.Entry e = (Map.Entry)iter.next();
-    ttlo=(Long)e.getValue();
-    if (ttlo.longValue()!=Long.MIN_VALUE) { // don't age cytoplasms
-      ttl=ttlo.longValue()-TFagerate_bound;
-      if (DEBUG) { System.out.println("aged bound TF ("+(String)e.getKey()+") ttl="+ttl+"..."); }
-      if (ttl<=0) {
-        iter.remove();
-        if (DEBUG) { System.out.println("removed TF..."); }
-      } else {
-        ttlo=new Long(ttl);
-        e.setValue(ttlo);
-        if (DEBUG) { System.out.println("updated TF..."); }
-      }
-    } // end age non-cyto TF
-else if (DEBUG) { System.out.println("TF is cytoplasm.. don't age..."); }
+  for (int id=0; id<boundtfs.length; id++) {
+    if (boundtfs[id]!=null && boundtfs[id].size()>0) {
+      if (DEBUG) { System.out.println("aging bound TFs with dist+seq="+seqids.name(id)+": "+boundtfs[id]+"..."); }
+      changes+=boundtfs[id].age(TFagerate_bound);
+    }
   }
 }
 
@@ -580,18 +566,44 @@ void releaseMorphogen(String morphogen)
 // print the state of the TF collections for debugging purposes
 public void printTFs()
 {
-  System.out.println("free TFs: "+freetfs);
-  System.out.println("bound TFs: "+boundtfs);
+  System.out.println("free TFs: "+tfsToString(freetfs,","));
+  System.out.println("bound TFs: "+tfsToString(boundtfs,"@"));
   System.out.println("not yet released morphogen TFs: "+releaseList);
 }
 
 
+// the TFs in the form: { distNseq sep locus=ttl, .. }
+String tfsToString(TFLoci[] loci, String sep)
+{
+  StringBuffer buf=new StringBuffer("{");
+  for (int id=0; id<loci.length; id++) {
+    if (loci[id]!=null) {
+      for (int i=0; i<loci[id].size(); i++) {
+        if (buf.length()>1) { buf.append(", "); }
+	buf.append(seqids.name(id)+sep+loci[id].locus[i]+"="+loci[id].ttl[i]);
+      }
+    }
+  }
+  buf.append("}");
+  return buf.toString();
+}
+
+
 // clear all the TFs out of the cell
 public void clear()
 {
-  freetfs=new HashMap();
-  boundtfs=new HashMap();
+  clearLoci(freetfs);
+  clearLoci(boundtfs);
   releaseList=new ArrayList();
+  changes++;
+}
+
+// the TFLoci are kept, as the cell is likely to get the same TFs again
+void clearLoci(TFLoci[] loci)
+{
+  for (int id=0; id<loci.length; id++) {
+    if (loci[id]!=null) { loci[id].clear(); }
+  }
 }
 
 
@@ -620,7 +632,8 @@ public void setState(String statestr)
 public void setBoundState(String boundstr)
 {
   try {
-    boundtfs=new HashMap(); // clear the TFs
+    clearLoci(boundtfs); // clear the TFs
+    changes++;
     String[] tfslist=StringSplitter.trimsplit(boundstr,";");
     if (!tfslist[0].equals("TF=bound")) {
       throw new Exception("Error in TFCell.setBoundState("+boundstr+") - requires format: TF=bound;boundTFlist\n");
@@ -646,7 +659,8 @@ public void setBoundState(String boundstr)
 public void setFreeState(String freestr)
 {
   try {
-    freetfs=new HashMap(); // clear the TFs
+    clearLoci(freetfs); // clear the TFs
+    changes++;
     String[] tfslist=StringSplitter.trimsplit(freestr,";");
     if (!tfslist[0].equals("TF=free")) {
       throw new Exception("Error in TFCell.setFreeState("+freestr+") - requires format: TF=free;freeTFlist\n");
@@ -717,17 +731,20 @@ public String getState()
 // 		distfromsrc "+" sequence "@" locus "," ttl
 public String getBoundstate()
 {
-  String state="TF=bound;";
-  Iterator iter = boundtfs.entrySet().iterator();
-  while (iter.hasNext()) {
-    Map.Entry e = (Map.Entry)iter.next();
-    // bound TFs are stored as:
-    //  	key:	dist '+' seq '@' bindloc
-    //  	value:	ttl
-    state+=e.getKey()+","+e.getValue()+";";
+  StringBuffer state=new StringBuffer("TF=bound;");
+  TFLoci tfs;
+
+  // for each TF with a different dist+seq
+  for (int id=0; id<boundtfs.length; id++) {
+    if ((tfs=boundtfs[id])!=null) {
+      // for each different bind locus
+      for (int i=0; i<tfs.size(); i++) {
+	state.append(seqids.name(id)+"@"+tfs.locus[i]+","+tfs.ttl[i]+";");
+      }
+    }
   }
 
-  return state;
+  return state.toString();
 }
 
 
@@ -737,39 +754,20 @@ public String getBoundstate()
 // 	distfromsrc "+" sequence "," locus "," ttl
 public String getFreestate()
 {
-  Map locmap;
-  List ttlist;
-  Long ttlo;
-  
-  String state="TF=free;";
+  StringBuffer state=new StringBuffer("TF=free;");
+  TFLoci tfs;
 
   // for each TF with a different dist+seq
-  //   key:    dist '+' seq
-  //   value:	TreeMap of these at different locus
-  Iterator iter1 = freetfs.entrySet().iterator();
-  while (iter1.hasNext()) {
-    Map.Entry e1 = (Map.Entry)iter1.next();
-    locmap=(TreeMap)e1.getValue();
-
-    // for each different locus
-    // 	key:	locus
-    // 	value:	ArrayList of ttl's at this locus
-    Iterator iter2 = locmap.entrySet().iterator();
-    while (iter2.hasNext()) {
-      Map.Entry e2 = (Map.Entry)iter2.next();
-      ttlist=(ArrayList)e2.getValue();
-      ttlist=(ArrayList)e2.getValue();
-
-      // for each ttl
-      ListIterator iter3 = ttlist.listIterator();
-      while (iter3.hasNext()) {
-	ttlo=(Long)iter3.next();
-	state+=e1.getKey()+","+e2.getKey()+","+ttlo+";";
+  for (int id=0; id<freetfs.length; id++) {
+    if ((tfs=freetfs[id])!=null) {
+      // for each TF, in locus order, oldest first at the same locus
+      for (int i=0; i<tfs.size(); i++) {
+	state.append(seqids.name(id)+","+tfs.locus[i]+","+tfs.ttl[i]+";");
       }
     }
   }
 
-  return state;
+  return state.toString();
 }
 
 // get the state of the unyet released morphogens in semicolon delimited form:
@@ -798,6 +796,94 @@ public String getMorphogenReleasestate()
 }
 
 
+
+// the TFs in binary form, for MhwMatrix snapshots. the TFs are given by
+// their dist+seq ids, so the TFSeqTable has to be written (and restored)
+// along with them, which TFResources does. the bound, then free, TFs are
+// written as the number of ids with TFs, and for each of these the id,
+// the number of TFs, and each TF's locus and ttl. these are followed by
+// the morphogen release list, including any empty release times
+public void writeState(DataOutputStream out) throws IOException
+{
+  writeLoci(out,boundtfs);
+  writeLoci(out,freetfs);
+
+  List rlist;
+  out.writeInt(releaseList.size());
+  for (int i=0; i<releaseList.size(); i++) {
+    rlist=(List)releaseList.get(i);
+    out.writeInt(rlist.size());
+    for (int j=0; j<rlist.size(); j++) {
+      out.writeUTF((String)rlist.get(j));
+    }
+  }
+}
+
+void writeLoci(DataOutputStream out, TFLoci[] loci) throws IOException
+{
+  int nids=0;
+  for (int id=0; id<loci.length; id++) {
+    if (loci[id]!=null && loci[id].size()>0) { nids++; }
+  }
+  out.writeInt(nids);
+  for (int id=0; id<loci.length; id++) {
+    if (loci[id]!=null && loci[id].size()>0) {
+      out.writeInt(id);
+      out.writeInt(loci[id].size());
+      for (int i=0; i<loci[id].size(); i++) {
+	out.writeLong(loci[id].locus[i]);
+	out.writeLong(loci[id].ttl[i]);
+      }
+    }
+  }
+}
+
+
+// restore the TFs written by writeState()
+public void readState(DataInputStream in) throws IOException
+{
+  clearLoci(boundtfs);
+  clearLoci(freetfs);
+  changes++;
+
+  TFLoci tfs;
+  long locus;
+  int nids=in.readInt();
+  for (int k=0; k<nids; k++) {
+    tfs=boundLoci(readId(in));
+    for (int i=in.readInt(); i>0; i--) {
+      locus=in.readLong();
+      tfs.put(locus,in.readLong());
+    }
+  }
+  nids=in.readInt();
+  for (int k=0; k<nids; k++) {
+    tfs=freeLoci(readId(in));
+    for (int i=in.readInt(); i>0; i--) {
+      locus=in.readLong();
+      tfs.add(locus,in.readLong());
+    }
+  }
+
+  releaseList=new ArrayList();
+  List rlist;
+  for (int i=in.readInt(); i>0; i--) {
+    rlist=new ArrayList();
+    for (int j=in.readInt(); j>0; j--) { rlist.add(in.readUTF()); }
+    releaseList.add(rlist);
+  }
+}
+
+int readId(DataInputStream in) throws IOException
+{
+  int id=in.readInt();
+  if (id<0 || id>=seqids.size()) {
+    throw new IOException("TF snapshot has dist+seq id ("+id+") that isn't in the table");
+  }
+  return id;
+}
+
+
 } // end class
 
 
@@ -805,4 +891,118 @@ public String getMorphogenReleasestate()
 
 
 
+// this stores the locus and ttl of each TF with a given dist+seq, sorted
+// by locus. TFs at the same locus are kept in the order they were added
+
+class TFLoci {
+  long[] locus;
+  long[] ttl;
+  int n;		// the number of TFs
+
+  TFLoci()
+  {
+    locus=new long[4];
+    ttl=new long[4];
+    n=0;
+  }
+
+  int size() { return n; }
+
+  void clear() { n=0; }
+
+  // the index of the first TF with a locus >= loc, or n if there are none
+  int firstIndex(long loc)
+  {
+    int lo=0, hi=n, mid;
+    while (lo<hi) {
+      mid=(lo+hi)>>>1;
+      if (locus[mid]<loc) { lo=mid+1; } else { hi=mid; }
+    }
+    return lo;
+  }
+
+  // the index of the (first) TF at loc, or -1 if there isn't one
+  int indexOf(long loc)
+  {
+    int i=firstIndex(loc);
+    return (i<n && locus[i]==loc) ? i : -1;
+  }
+
+  // add a TF after any others at the same locus
+  void add(long loc, long t)
+  {
+    int i=firstIndex(loc);
+    while (i<n && locus[i]==loc) { i++; }
+    insert(i,loc,t);
+  }
+
+  // set the ttl of the TF at loc, adding it if there isn't one
+  void put(long loc, long t)
+  {
+    int i=firstIndex(loc);
+    if (i<n && locus[i]==loc) {
+      ttl[i]=t;
+    } else {
+      insert(i,loc,t);
+    }
+  }
+
+  void insert(int i, long loc, long t)
+  {
+    if (n==locus.length) {
+      long[] l=new long[n*2];
+      long[] tt=new long[n*2];
+      System.arraycopy(locus,0,l,0,n);
+      System.arraycopy(ttl,0,tt,0,n);
+      locus=l;
+      ttl=tt;
+    }
+    System.arraycopy(locus,i,locus,i+1,n-i);
+    System.arraycopy(ttl,i,ttl,i+1,n-i);
+    locus[i]=loc;
+    ttl[i]=t;
+    n++;
+  }
+
+  void remove(int i)
+  {
+    System.arraycopy(locus,i+1,locus,i,n-i-1);
+    System.arraycopy(ttl,i+1,ttl,i,n-i-1);
+    n--;
+  }
+
+  // reduce the ttl of each TF by rate, except for those with a ttl of
+  // Long.MIN_VALUE (cytoplasms), which don't age, and remove those with
+  // ttl<=0. returns the number of TFs removed
+  int age(int rate)
+  {
+    int j=0;
+    long t;
+    for (int i=0; i<n; i++) {
+      t=ttl[i];
+      if (t!=Long.MIN_VALUE) {		// don't age cytoplasms
+        t-=rate;
+        if (t<=0) { continue; }		// its dead now, so remove it
+      }
+      locus[j]=locus[i];
+      ttl[j]=t;
+      j++;
+    }
+    int removed=n-j;
+    n=j;
+    return removed;
+  }
+
+  public String toString()
+  {
+    StringBuffer buf=new StringBuffer("{");
+    for (int i=0; i<n; i++) {
+      if (i>0) { buf.append(", "); }
+      buf.append(locus[i]+"="+ttl[i]);
+    }
+    buf.append("}");
+    return buf.toString();
+  }
+}
+
 
@@ -6,7 +6,7 @@
 // binding TFs to a locus on a chromosome, querying a bound or unbound TF,
 // and for saving and restoring the state of TFs in a cell.
 //
-// this class also requires the local class: TFCell
+// this class also requires the local classes: TFCell, TFSeqTable
 //
 // 		written Dec 2003, J.A. Lee
 
@@ -21,6 +21,7 @@ import java.util.*;
 class TFResources {
 
   TFCell[][] tfmatrix;
+  TFSeqTable seqids;	// the dist+seq ids shared by the cells
 
   int numRows;
   int numCols;
@@ -37,6 +38,10 @@ class TFResources {
 
   Random rand;	// random number generator passed in from enclosing system
 
+  // the cells that a morphogen spreads to, relative to the source, for each
+  // of the 256 spread codes. each is created when the code is first used
+  MorphogenStencil[] spreadStencils;
+
   boolean DEBUG;
 
   
@@ -195,19 +200,51 @@ TFResources(int rows, int cols, long mglifespan, long tflifespan, int ageratef,
   numCols=cols;
   morphogenPropogationDelay=mgpropdelay;
   rand=rnd;
+  spreadStencils=new MorphogenStencil[256];
+
+  // all the cells use the same ids for each different dist+seq
+  seqids=new TFSeqTable();
+
+  tfmatrix=new TFCell[numRows][numCols];
+  for (int i=0; i<numRows; i++) {
+    for (int j=0; j<numCols; j++) {
+      tfmatrix[i][j]=new TFCell(mglifespan,tflifespan,ageratef,agerateb,seqids);
+    }
+  }
+}
+
+
+// create a copy of src, with the same TFs, but that uses rnd for spreading
+// morphogens. this is for forking the enclosing system
+TFResources(TFResources src, Random rnd)
+{
+  DEBUG=src.DEBUG;
+  numRows=src.numRows;
+  numCols=src.numCols;
+  morphogenPropogationDelay=src.morphogenPropogationDelay;
+  rand=rnd;
+  spreadStencils=new MorphogenStencil[256];
+  seqids=new TFSeqTable();
 
+  TFCell c;
   tfmatrix=new TFCell[numRows][numCols];
   for (int i=0; i<numRows; i++) {
     for (int j=0; j<numCols; j++) {
-      tfmatrix[i][j]=new TFCell(mglifespan,tflifespan,ageratef,agerateb);
+      c=src.tfmatrix[i][j];
+      tfmatrix[i][j]=new TFCell(c.morpholifespan,c.TFlifespan,c.TFagerate_free,c.TFagerate_bound,seqids);
     }
   }
+
+  copyState(src);
 }
 
 
 public int getCols() { return numCols; }
 public int getRows() { return numRows; }
 
+// for when the enclosing system's random number generator is restored
+public void setRandom(Random rnd) { rand=rnd; }
+
 public boolean validCoord(int r, int c) 
 {
   return (r>=0 && c>=0 && r<numRows && c<numCols);
@@ -236,18 +273,54 @@ public void createMorphogen(int row, int col, String seq, String spreadfromsrc,
   if (DEBUG) { System.out.println("creating morphogens with seq='"+seq+"', spreadfromsrc='"+spreadfromsrc+"', spreading from "+row+","+col); }
   String distfromsrc;
   int r,c,ttr;
-  CellCoords[] spread=createMorphogenSpread(row,col,spreadfromsrc);
-  for (int i=0; i<spread.length; i++) {
-    r=spread[i].row;
-    c=spread[i].col;
-    distfromsrc=genDistFromSrc(row,col,r,c);
-    ttr=calcReleaseDelay(row,col,r,c);
+  MorphogenStencil spread=getMorphogenStencil(spreadfromsrc);
+  for (int i=0; i<spread.size(); i++) {
+    if (!spread.inRange(this,i,row,col)) { continue; }
+    r=row+spread.rowoff[i];
+    c=col+spread.coloff[i];
+    distfromsrc=genDistFromSrc(spread.dist[i]);
+    ttr=spread.ttr[i];
     if (DEBUG) { System.out.println("placing morphogen TF '"+distfromsrc+"+"+seq+"' at "+r+","+c+" with ttr="+ttr); }
     tfmatrix[r][c].addMorphogen(ttr,seq,distfromsrc,locus);
   }
 }
 
 
+// get the cells a morphogen with this spread code spreads to, relative to
+// the source. only the first 8 digits of the code are used, and (as in
+// decoding the Gray code) any digit other than '1' is treated as a '0'
+MorphogenStencil getMorphogenStencil(String spreadfromsrc)
+{
+  int code=0;
+  for (int i=0; i<8; i++) {
+    code=(code<<1) | ((spreadfromsrc.charAt(i)=='1') ? 1 : 0);
+  }
+
+  if (spreadStencils[code]==null) {
+    spreadStencils[code]=createMorphogenStencil(spreadfromsrc);
+  }
+  return spreadStencils[code];
+}
+
+
+// this gives the cells that are in the device, from the stencil for
+// the spread code, in the order that morphogens are placed in them
+CellCoords[] createMorphogenSpread(int row, int col, String spreadfromsrc)
+{
+  if (DEBUG) { System.out.println("creating morphogen spread from "+row+","+col+" with spreadfromsrc='"+spreadfromsrc+"'.."); }
+  MorphogenStencil spread=getMorphogenStencil(spreadfromsrc);
+  List cellist=new ArrayList();
+  for (int i=0; i<spread.size(); i++) {
+    if (spread.inRange(this,i,row,col)) {
+      cellist.add(new CellCoords(row+spread.rowoff[i],col+spread.coloff[i]));
+    }
+  }
+
+  if (DEBUG) { System.out.println("generated morphogen spread: "+cellist); }
+  return (CellCoords[])cellist.toArray(new CellCoords[0]);
+}
+
+
 // 
 // placement is done by following the axis out to the extent indicated by
 // the row/col spread. then on the cells of the qudrants between axis, the
@@ -266,29 +339,33 @@ public void createMorphogen(int row, int col, String seq, String spreadfromsrc,
 //	0 . . . . . . . .
 //	  0 1 2 3 4 5 6 7
 
-CellCoords[] createMorphogenSpread(int row, int col, String spreadfromsrc)
+// the offsets are stored, along with the range check for each, which is
+// done when the stencil is applied to a source cell. note that the check
+// for the cells along the col axis compares the col to the number of rows
+// and vice versa
+
+MorphogenStencil createMorphogenStencil(String spreadfromsrc)
 {
-  if (DEBUG) { System.out.println("creating morphogen spread from "+row+","+col+" with spreadfromsrc='"+spreadfromsrc+"'.."); }
-  int x,y,rowp,rown,colp,coln;
+  if (DEBUG) { System.out.println("creating morphogen stencil with spreadfromsrc='"+spreadfromsrc+"'.."); }
   int[] spreads=decodeSpread(spreadfromsrc);
   int rspreadn=spreads[0];
   int rspreadp=spreads[1];
   int cspreadn=spreads[2];
   int cspreadp=spreads[3];
 
-  List cellist=new ArrayList();
+  MorphogenStencil spread=new MorphogenStencil(morphogenPropogationDelay);
   
-  cellist.add(new CellCoords(row,col));	// add source
+  spread.add(0,0,MorphogenStencil.ANY);	// add source
 
   // add cells along row & col axis (so long as within valid cell range)
   for (int yoff=-rspreadn;yoff<=rspreadp;yoff++) {
-    if (yoff!=0 && validCoord(row+yoff,col)) {
-      cellist.add(new CellCoords(row+yoff,col));
+    if (yoff!=0) {
+      spread.add(yoff,0,MorphogenStencil.ROWCOL);
     }
   }
   for (int xoff=-cspreadn;xoff<=cspreadp;xoff++) {
-    if (xoff!=0 && validCoord(col+xoff,row)) {
-      cellist.add(new CellCoords(row,col+xoff));
+    if (xoff!=0) {
+      spread.add(0,xoff,MorphogenStencil.COLROW);
     }
   }
 
@@ -305,43 +382,33 @@ CellCoords[] createMorphogenSpread(int row, int col, String spreadfromsrc)
   for (int yoff=1;yoff<=quad1mn;yoff++) {
     // decrease spread on 2nd axis as move further from center on 1st axis 
     for (int xoff=1;xoff<=quad1mn-yoff;xoff++) {
-      if (validCoord(row-yoff,col-xoff)) {
-	cellist.add(new CellCoords(row-yoff,col-xoff));
-      }
+      spread.add(-yoff,-xoff,MorphogenStencil.ROWCOL);
     }
   }
   // quad2: row+1,col-1 up/down to manhattan dist quad2mn
   for (int yoff=1;yoff<=quad2mn;yoff++) {
     // decrease spread on 2nd axis as move further from center on 1st axis 
     for (int xoff=1;xoff<=quad2mn-yoff;xoff++) {
-      if (validCoord(row+yoff,col-xoff)) {
-	cellist.add(new CellCoords(row+yoff,col-xoff));
-      }
+      spread.add(yoff,-xoff,MorphogenStencil.ROWCOL);
     }
   }
   // quad3: row-1,col+1 down/up to manhattan dist quad3mn
   for (int yoff=1;yoff<=quad3mn;yoff++) {
     // decrease spread on 2nd axis as move further from center on 1st axis 
     for (int xoff=1;xoff<=quad3mn-yoff;xoff++) {
-      if (validCoord(row-yoff,col+xoff)) {
-	cellist.add(new CellCoords(row-yoff,col+xoff));
-      }
+      spread.add(-yoff,xoff,MorphogenStencil.ROWCOL);
     }
   }
   // quad4: row+1,col+1 up to manhattan dist quad4mn
   for (int yoff=1;yoff<=quad4mn;yoff++) {
     // decrease spread on 2nd axis as move further from center on 1st axis 
     for (int xoff=1;xoff<=quad4mn-yoff;xoff++) {
-      if (validCoord(row+yoff,col+xoff)) {
-	cellist.add(new CellCoords(row+yoff,col+xoff));
-      }
+      spread.add(yoff,xoff,MorphogenStencil.ROWCOL);
     }
   }
 
-  if (DEBUG) { System.out.println("generated morphogen spread: "+cellist); }
-  // now convert from ArrayList to a standard array
-  // note use of empty array param to the ArrayList.toArray() method
-  return (CellCoords[])cellist.toArray(new CellCoords[0]);
+  if (DEBUG) { System.out.println("generated morphogen stencil: "+spread); }
+  return spread;
 }
 
 
@@ -425,7 +492,12 @@ int binaryToDecimal(String binstr)
 String genDistFromSrc(int srcrow, int srccol, int destrow, int destcol)
 {
   if (DEBUG) { System.out.print("generating morphogen distfromsrc: src="+srcrow+","+srccol+" dest="+destrow+","+destcol+".. "); }
-  int dist=calcManhattanDist(srcrow,srccol,destrow,destcol);
+  return genDistFromSrc(calcManhattanDist(srcrow,srccol,destrow,destcol));
+}
+
+// dist is the manhattan distance from the source
+String genDistFromSrc(int dist)
+{
   StringBuffer binstr=new StringBuffer(dist);
   for (int i=0; i<dist; i++) {
     binstr.append(rand.nextBoolean() ? '1' : '0');
@@ -481,6 +553,11 @@ public String getFreeTF(int row, int col, String dist, String seq)
   return getFreeTF(row,col,dist,seq,locusIgnored);
 }
 
+public boolean hasFreeTF(int row, int col, String distNseq)
+{
+  return (tfmatrix[row][col]).hasFreeTF(distNseq);
+}
+
 
 // return matching TF in format dist+seq,locus,ttl
 // or null if not bound here
@@ -495,6 +572,17 @@ public String getBoundTF(int row, int col, String distNseq, long bindloc)
   return (tfmatrix[row][col]).getBoundTF(distNseq,bindloc);
 }
 
+// boundkey is in form: dist "+" seq "@" bindloc
+public boolean hasBoundTF(int row, int col, String boundkey)
+{
+  return (tfmatrix[row][col]).hasBoundTF(boundkey);
+}
+
+public boolean hasBoundTF(int row, int col, String distNseq, long bindloc)
+{
+  return (tfmatrix[row][col]).hasBoundTF(distNseq,bindloc);
+}
+
 
 // remove TF with matching distance & sequence from freetfs & add to boundtfs
 // and return bound TF (if any) in format: dist+seq,locus,ttl
@@ -532,6 +620,14 @@ public void updateTFs(int row, int col)
 }
 
 
+// the number of times TFs have been added to or removed from the cell.
+// if this hasn't changed, then neither have the free or bound TFs present
+public long getChanges(int row, int col)
+{
+  return (tfmatrix[row][col]).changes;
+}
+
+
 
 // print the state of the TF collections for debugging purposes
 
@@ -582,6 +678,51 @@ public void setState(int row, int col, String statestr)
 {
   tfmatrix[row][col].setState(statestr); 
 }
+
+
+// the TFs of all the cells in binary form, for MhwMatrix snapshots. the
+// dist+seq ids are written first, in id order, so that the cells' TFs
+// get the same ids when they are restored
+public void writeState(DataOutputStream out) throws IOException
+{
+  out.writeInt(seqids.size());
+  for (int id=0; id<seqids.size(); id++) { out.writeUTF(seqids.name(id)); }
+  for (int i=0; i<numRows; i++) {
+    for (int j=0; j<numCols; j++) {
+      tfmatrix[i][j].writeState(out);
+    }
+  }
+}
+
+
+public void readState(DataInputStream in) throws IOException
+{
+  clear();			// so no TFs are using the old ids
+  seqids.clear();
+  for (int n=in.readInt(); n>0; n--) { seqids.intern(in.readUTF()); }
+  for (int i=0; i<numRows; i++) {
+    for (int j=0; j<numCols; j++) {
+      tfmatrix[i][j].readState(in);
+    }
+  }
+}
+
+
+// make the TFs of all the cells the same as src's, which must have the
+// same number of cells. they are copied in their snapshot form, in memory
+public void copyState(TFResources src)
+{
+  try {
+    ByteArrayOutputStream buf=new ByteArrayOutputStream();
+    DataOutputStream out=new DataOutputStream(buf);
+    src.writeState(out);
+    out.close();
+    readState(new DataInputStream(new ByteArrayInputStream(buf.toByteArray())));
+  } catch (IOException e) {
+    System.err.println("Error copying TF state\n" + e);
+    System.exit(1);
+  }
+}
  
 
 } // end class
@@ -591,4 +732,87 @@ public void setState(int row, int col, String statestr)
 
 
 
+// the cells that a morphogen spreads to, given as offsets from the source
+// cell, in the order that morphogens are placed in them. along with each
+// is its distance from the source, the release delay this gives, and the
+// check of whether the cell is within the cell matrix
+
+class MorphogenStencil {
+
+  // the range checks
+  static final int ANY=0;	// no check, ie the source cell
+  static final int ROWCOL=1;	// validCoord(row,col)
+  static final int COLROW=2;	// validCoord(col,row)
+
+  int[] rowoff;
+  int[] coloff;
+  int[] dist;		// manhattan distance from source
+  int[] ttr;		// release delay
+  int[] check;
+  int n;
+
+  int propdelay;	// the release delay per unit of distance
+
+  MorphogenStencil(int mgpropdelay)
+  {
+    propdelay=mgpropdelay;
+    rowoff=new int[8];
+    coloff=new int[8];
+    dist=new int[8];
+    ttr=new int[8];
+    check=new int[8];
+    n=0;
+  }
+
+  int size() { return n; }
+
+  void add(int roff, int coff, int chk)
+  {
+    if (n==rowoff.length) {
+      rowoff=grow(rowoff);
+      coloff=grow(coloff);
+      dist=grow(dist);
+      ttr=grow(ttr);
+      check=grow(check);
+    }
+    rowoff[n]=roff;
+    coloff[n]=coff;
+    dist[n]=Math.abs(roff)+Math.abs(coff);
+    ttr[n]=dist[n]*propdelay;
+    check[n]=chk;
+    n++;
+  }
+
+  int[] grow(int[] a)
+  {
+    int[] b=new int[a.length*2];
+    System.arraycopy(a,0,b,0,a.length);
+    return b;
+  }
+
+  // is the i'th cell in tfs' cell matrix, when spreading from row,col
+  boolean inRange(TFResources tfs, int i, int row, int col)
+  {
+    if (check[i]==ROWCOL) {
+      return tfs.validCoord(row+rowoff[i],col+coloff[i]);
+    } else if (check[i]==COLROW) {
+      return tfs.validCoord(col+coloff[i],row+rowoff[i]);
+    }
+    return true;
+  }
+
+  public String toString()
+  {
+    StringBuffer buf=new StringBuffer("[");
+    for (int i=0; i<n; i++) {
+      if (i>0) { buf.append(", "); }
+      buf.append(rowoff[i]+","+coloff[i]);
+    }
+    buf.append("]");
+    return buf.toString();
+  }
+}
+
+
+
 
@@ -0,0 +1,56 @@
+//			 TFSeqTable.java
+//
+// this class gives each different TF dist '+' seq an integer id, so that the
+// TFs of each cell can be stored in arrays indexed by this. one table is
+// shared by all the cells in a matrix (see TFCell and TFResources)
+//
+// 		written Oct 2026, agent
+//
+
+
+// for collection classes (eg Map)
+import java.util.*;
+
+
+class TFSeqTable {
+  Map ids;		// key: dist '+' seq, value: (Integer) id
+  List names;		// the dist '+' seq of each id
+
+  TFSeqTable()
+  {
+    ids=new HashMap();
+    names=new ArrayList();
+  }
+
+  // the number of ids given out
+  int size() { return names.size(); }
+
+  // forget all the ids. this should only be done when none are in use,
+  // such as when restoring the table from a snapshot
+  void clear()
+  {
+    ids.clear();
+    names.clear();
+  }
+
+  String name(int id) { return (String)names.get(id); }
+
+  // returns the id of distNseq, or -1 if it hasn't been given one
+  int lookup(String distNseq)
+  {
+    Integer id=(Integer)ids.get(distNseq);
+    return (id==null) ? -1 : id.intValue();
+  }
+
+  // returns the id of distNseq, giving it a new id if it doesn't have one
+  int intern(String distNseq)
+  {
+    Integer id=(Integer)ids.get(distNseq);
+    if (id==null) {
+      id=new Integer(names.size());
+      ids.put(distNseq,id);
+      names.add(distNseq);
+    }
+    return id.intValue();
+  }
+}
@@ -1070,6 +1070,22 @@ GENECEILING=$CEILINGGENES
 
 MGSEED=$mgseed
 
+# to grow and test circuits using a TestFnInToOut evaluation server, rather
+# than a new test per chromosome, set this to \"pipe\" to have one started for
+# each generation, or to host:port of an already running server (this can
+# only be used when TEST is TestFnInToOut)
+EVALSERVER=
+# the number of circuits a \"pipe\" server evaluates concurrently
+EVALWORKERS=1
+# set this to true to have the evaluation server decode the chromosomes
+# (in java), rather than decoding them with the perl scripts
+JAVADECODE=false
+# to have a \"pipe\" server reuse the results of chromosomes that decode to
+# the same genes (needs MGSEED), set this to the file to keep them in
+FITCACHE=
+# the maximum number of results kept
+FITCACHESIZE=10000
+
 ";
 # depreceated - removed from end of output (after MGSEED line)
 # these are only needed for running non-developmental EHW